@@ -0,0 +1,328 @@
+package gameLogic;
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import gameLogic.persistence.GameArchive;
+import gameLogic.persistence.HibernatedGame;
+import gameLogic.players.HumanPlayer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+
+
+/**
+ * this class serves a read-only view of the games of the server as json, for the operators.
+ * GAMES_PATH shows the server and every game the game manager keeps: the game in the memory, the
+ * hibernated game and the game that ended last, with its status, its players, its events, an estimate
+ * of its memory, the state of its game thread, the prompt it waits for with the deadline of the prompt
+ * timer, and the calls of the web service it served. THREADS_PATH shows the threads of the server.
+ * the view is read from what the game manager and the game keep for it without their locks, so it
+ * can't stop a game or wait for a stuck one, and it may be a moment out of date.
+ * to try it run the server with -Dmonopoly.admin.port=9091 and read http://localhost:9091/admin/games
+ * @author Dana Akerman
+ */
+public class AdminServer implements HttpHandler
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String PORT_PROPERTY = "monopoly.admin.port"; // the port of the admin view, not served if not set
+    public static final String GAMES_PATH = "/admin/games";
+    public static final String THREADS_PATH = "/admin/threads";
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final HttpServer _server;
+    private final GameManager _manager;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new admin server, call start() to serve
+     * @param manager the game manager to show
+     * @param port the port to listen on
+     * @throws NullPointerException if manager is null
+     * @throws IOException if the port can't be listened on
+     */
+    public AdminServer(GameManager manager, int port) throws IOException
+    {
+        if(manager == null)
+            throw new NullPointerException("manager is null");
+
+        _manager = manager;
+        _server = HttpServer.create(new InetSocketAddress(port), 0);
+        _server.createContext(GAMES_PATH, this);
+        _server.createContext(THREADS_PATH, this);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts serving, on a thread of the http server
+     */
+    public void start()
+    {
+        _server.start();
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+        if(!"GET".equals(exchange.getRequestMethod()))
+        {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(1024);
+        if(exchange.getHttpContext().getPath().equals(THREADS_PATH))
+        {
+            this.appendThreads(json);
+        }
+        else
+        {
+            this.appendGames(json);
+        }
+
+        byte[] body = json.toString().getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+
+        OutputStream out = exchange.getResponseBody();
+        try
+        {
+            out.write(body);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the server and its games
+     */
+    private void appendGames(StringBuilder json)
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        json.append("{\"server\":{\"standby\":").append(_manager.isStandby());
+        json.append(",\"movedTo\":");
+        appendString(json, _manager.getMovedTo());
+        json.append(",\"threads\":").append(threads.getThreadCount())
+                .append(",\"peakThreads\":").append(threads.getPeakThreadCount())
+                .append(",\"heapUsed\":").append(heap.getUsed())
+                .append(",\"heapMax\":").append(heap.getMax())
+                .append(",\"softBudget\":").append(MemoryBudget.getSoftBudget())
+                .append(",\"hardBudget\":").append(MemoryBudget.getHardBudget())
+                .append(",\"gamesPerGB\":").append(MemoryBudget.getGamesPerGB())
+                .append(",\"hardGamesPerGB\":").append(MemoryBudget.getHardGamesPerGB())
+                .append("},\"games\":[");
+
+        boolean first = true;
+        Game game = _manager.getRunningGame();
+        if(game != null)
+        {
+            this.appendGame(json, game, threads);
+            first = false;
+        }
+
+        HibernatedGame hibernated = _manager.getHibernatedGame();
+        if(hibernated != null)
+        {
+            json.append(first ? "" : ",").append("{\"name\":");
+            appendString(json, hibernated.getName());
+            json.append(",\"state\":\"hibernated\",\"file\":");
+            appendString(json, hibernated.getFile().getPath());
+            json.append('}');
+            first = false;
+        }
+
+        GameArchive archive = _manager.getLastFinishedGame();
+        if(archive != null)
+        {
+            json.append(first ? "" : ",").append("{\"name\":");
+            appendString(json, archive.getName());
+            json.append(",\"state\":\"finished\",\"players\":").append(archive.getPlayerNames().length)
+                    .append(",\"events\":").append(archive.getNumEvents())
+                    .append(",\"endTime\":").append(archive.getEndTime()).append('}');
+        }
+        json.append("]}\n");
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes a game in the memory
+     */
+    private void appendGame(StringBuilder json, Game game, ThreadMXBean threads)
+    {
+        GameStats stats = game.getStats();
+
+        json.append("{\"name\":");
+        appendString(json, game.getName());
+        json.append(",\"state\":\"").append(game.isGameOver() ? "over" : (game.isStarted() ? "running" : "waiting"));
+        json.append("\",\"status\":");
+        appendString(json, game.getStatus());
+        json.append(",\"humans\":").append(game.getTotalHumanNum())
+                .append(",\"joined\":").append(game.getCurHumanNum())
+                .append(",\"computers\":").append(game.getCompNum())
+                .append(",\"autoDice\":").append(game.isAutoDice())
+                .append(",\"events\":").append(game.getNumEvents())
+                .append(",\"memoryBytes\":").append(game.getMemoryEstimate())
+                .append(",\"spilledEvents\":").append(game.getNumSpilled())
+                .append(",\"turns\":").append(stats.getTurns())
+                .append(",\"meanTurnNanos\":").append(stats.getMeanTurnNanos())
+                .append(",\"timeouts\":").append(stats.getTimeouts())
+                .append(",\"calls\":").append(stats.getCalls())
+                .append(",\"callsPerMinute\":").append(stats.getCallsPerMinute())
+                .append(",\"abortRequested\":").append(game.isAbortRequested());
+
+        long now = System.nanoTime();
+        json.append(",\"idleMillis\":");
+        if(game.getActivityNanos() == 0)
+        {
+            json.append("null"); // no events yet
+        }
+        else
+        {
+            json.append((now - game.getActivityNanos()) / 1000000);
+        }
+
+        Thread thread = game.getThread();
+        json.append(",\"thread\":");
+        if(thread == null)
+        {
+            json.append("null");
+        }
+        else
+        {
+            appendThread(json, threads.getThreadInfo(thread.getId(), 1));
+        }
+
+        HumanPlayer waiting = game.getWaitingPlayer();
+        json.append(",\"prompt\":");
+        if(waiting == null)
+        {
+            json.append("null");
+        }
+        else
+        {
+            json.append("{\"player\":");
+            appendString(json, waiting.getName());
+            json.append(",\"event\":").append(game.getWaitingEvent())
+                    .append(",\"waitingMillis\":").append((now - game.getWaitingSince()) / 1000000)
+                    .append(",\"deadline\":");
+            if(game.hasPromptTimer())
+            {
+                json.append(game.getPromptDeadline());
+            }
+            else
+            {
+                json.append("null"); // answered, the game thread is being woken
+            }
+            json.append('}');
+        }
+        json.append('}');
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the threads of the server
+     */
+    private void appendThreads(StringBuilder json)
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] infos = threads.getThreadInfo(threads.getAllThreadIds(), 1);
+
+        json.append("{\"threads\":[");
+        boolean first = true;
+        for(int i = 0; i < infos.length; i++)
+        {
+            if(infos[i] != null) // ended since the ids were taken
+            {
+                json.append(first ? "" : ",");
+                appendThread(json, infos[i]);
+                first = false;
+            }
+        }
+        json.append("]}\n");
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the state of a thread, the lock it waits for and where it is
+     */
+    private static void appendThread(StringBuilder json, ThreadInfo info)
+    {
+        if(info == null)
+        {
+            json.append("null");
+            return;
+        }
+
+        json.append("{\"name\":");
+        appendString(json, info.getThreadName());
+        json.append(",\"state\":\"").append(info.getThreadState()).append("\",\"lock\":");
+        appendString(json, info.getLockName());
+        json.append(",\"lockOwner\":");
+        appendString(json, info.getLockOwnerName());
+        json.append(",\"at\":");
+        StackTraceElement[] stack = info.getStackTrace();
+        appendString(json, (stack.length > 0) ? stack[0].toString() : null);
+        json.append('}');
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes a json string, or null
+     */
+    private static void appendString(StringBuilder json, String value)
+    {
+        if(value == null)
+        {
+            json.append("null");
+            return;
+        }
+
+        json.append('"');
+        for(int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\')
+            {
+                json.append('\\').append(c);
+            }
+            else if(c < ' ')
+            {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
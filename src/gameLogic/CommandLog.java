@@ -0,0 +1,216 @@
+package gameLogic;
+
+
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * this class keeps the outcome of the latest commands of the clients of a game, by the key
+ * the client gave the command. a client that didn't hear the answer sends the command again
+ * with the same key, and gets the outcome the first one had without running it again.
+ * a command that is running holds its key, a duplicate that comes meanwhile waits for it.
+ * the commands are journaled, so a recovered game knows them too
+ * @author Dana Akerman
+ */
+public class CommandLog
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final byte DICE = 1;
+    public static final byte BUY = 2;
+    public static final byte RESIGN = 3;
+
+    public static final String OK = "";          // the outcome of a command that succeeded
+    public static final int DEFAULT_CAPACITY = 1024; // commands kept, the oldest are forgotten
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter duplicates = Metrics.getCounter("commands.duplicates");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final DoneCommands _done; // key -> command, the oldest first
+    private final HashSet<String> _running;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new empty command log
+     * @param capacity the number of commands kept
+     * @throws IllegalArgumentException if capacity isn't positive
+     */
+    public CommandLog(int capacity)
+    {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("illegal capacity");
+
+        _running = new HashSet<String>();
+        _done = new DoneCommands(capacity);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts a command. if a command with the same key is running, waits for it to end
+     * @param key the key of the command
+     * @return the outcome of the command that had the key, or null if the key is new
+     * and the caller runs the command, then calls end() or cancel()
+     * @throws NullPointerException if key is null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized String begin(String key) throws InterruptedException
+    {
+        if(key == null)
+            throw new NullPointerException("key is null");
+
+        while(_running.contains(key))
+        {
+            this.wait();
+        }
+
+        Command done = _done.get(key);
+        if(done != null)
+        {
+            duplicates.increment();
+            return done.getOutcome();
+        }
+
+        _running.add(key);
+        return null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends a command that was started, and keeps its outcome for the duplicates
+     * @param command the command
+     * @throws NullPointerException if command is null
+     */
+    public synchronized void end(Command command)
+    {
+        if(command == null)
+            throw new NullPointerException("command is null");
+
+        _running.remove(command.getKey());
+        _done.put(command.getKey(), command);
+        this.notifyAll();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends a command that was started without keeping its outcome, a duplicate runs it again
+     * @param key the key of the command
+     */
+    public synchronized void cancel(String key)
+    {
+        _running.remove(key);
+        this.notifyAll();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds a command read from the journal
+     * @param command the command
+     * @throws NullPointerException if command is null
+     */
+    public synchronized void restore(Command command)
+    {
+        if(command == null)
+            throw new NullPointerException("command is null");
+
+        _done.put(command.getKey(), command);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of commands kept
+     * @return the number of commands
+     */
+    public synchronized int size(){return _done.size();}
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * this class represents a command of a client that was done
+     */
+    public static class Command
+    {
+        private final byte _kind;
+        private final String _key;
+        private final String _outcome;
+
+        /**
+         * constructs a new command
+         * @param kind DICE, BUY or RESIGN
+         * @param key the key of the command
+         * @param outcome the error of the command, or OK
+         * @throws NullPointerException if key or outcome is null
+         */
+        public Command(byte kind, String key, String outcome)
+        {
+            if(key == null)
+                throw new NullPointerException("key is null");
+            if(outcome == null)
+                throw new NullPointerException("outcome is null");
+
+            _kind = kind;
+            _key = key;
+            _outcome = outcome;
+        }
+
+        /**
+         * gets the kind of the command
+         * @return DICE, BUY or RESIGN
+         */
+        public byte getKind(){return _kind;}
+
+        /**
+         * gets the key of the command
+         * @return the key
+         */
+        public String getKey(){return _key;}
+
+        /**
+         * gets the outcome of the command
+         * @return the error of the command, or OK
+         */
+        public String getOutcome(){return _outcome;}
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * this class keeps the last commands done, it drops the oldest one above the capacity
+     */
+    private static class DoneCommands extends LinkedHashMap<String, Command>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int _capacity;
+
+        DoneCommands(int capacity)
+        {
+            _capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Command> eldest)
+        {
+            return this.size() > _capacity;
+        }
+    }
+}
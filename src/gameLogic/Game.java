@@ -2,17 +2,32 @@ package gameLogic;
 
 
 import gameLogic.groups.*;
+import gameLogic.cards.PardonCard;
 import gameLogic.innerEvents.EventGenerator;
+import gameLogic.innerEvents.MyChangeEvent;
+import gameLogic.innerEvents.MyChangeListener;
+import gameLogic.ledger.Ledger;
+import gameLogic.logging.GameLog;
+import gameLogic.ledger.MoneyAuditor;
+import gameLogic.ledger.SettlementEvent;
+import gameLogic.metrics.LockStats;
+import gameLogic.persistence.DomainEvent;
+import gameLogic.persistence.EventSpill;
+import gameLogic.persistence.GameJournal;
 import gameLogic.players.*;
 import gameLogic.squares.*;
+import gameLogic.tracing.RequestTrace;
+import gameLogic.tracing.Tracing;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
 import monopoly.Event;
 import monopoly.EventsFactory;
 import monopoly.MonopolyUtils;
+import monopoly.MyEvent;
 
 /**
  * this class represents a single monopoly game in a monopoly web service
@@ -53,31 +68,88 @@ public class Game extends EventGenerator implements Runnable
     public static final int START_GAME_PAUSE = 3000;
     public static final int END_GAME_PAUSE = 3000;
     
+    // statics
+    //------------------------------------------------------
+    
+    // the contention on the game's monitor where the clients' polls and commands meet the game thread,
+    // the other accessors hold it for a field read and stay plain synchronized
+    private static final LockStats lastEventLock = new LockStats("game.getLastEvent");
+    private static final LockStats playerByNameLock = new LockStats("game.getPlayerByName");
+    private static final LockStats playerByIDLock = new LockStats("game.getPlayerByID");
+    private static final LockStats addEventLock = new LockStats("game.addEvent");
+    private static final LockStats promptAfterLock = new LockStats("game.isPromptAfter");
+    
+    // the contention on the monitor of the player the game waits for
+    private static final LockStats answerLock = new LockStats("player.answer");
+    
     // data members
     //------------------------------------------------------
     
-    private ArrayList<Event> _events;
+    private ArrayList<Event> _events;  // the events after the spilled ones
+    private final Object _eventsAdded; // notified when an event is added
+    private volatile int _numEventsAdded; // written holding _eventsAdded
+    private long[] _eventNanos;        // guarded by _eventsAdded, the time each event after _nanosBase was added
+    private int _nanosBase;            // guarded by _eventsAdded, the event of _eventNanos[0]
+    
+    // the memory of the events, see MemoryBudget
+    private EventSpill _spill;         // the oldest events on the disk, null until the game spills
+    private volatile int _spilled;     // written holding the game's lock, the number of events on the disk
+    private volatile long _eventBytes; // written holding the game's lock, the estimate of the events in _events
+    private volatile long _spilledBytes; // the estimate of the spilled events when they're read back
+    private boolean _spillFailed;      // of the game thread
+    private long _peakBytes;           // of the game thread, the highest estimate at the end of a turn
     private int _userIDGenerator;
     
     // game info
-    private String _name;
-    private String _status;
-    private int _humanPlayersNum;
-    private int _currHumanNum;
-    private int _computerPlayersNum;
-    private boolean _autoDice;
-    private boolean _isGameOver;
+    // the info the clients, the watchdog and the admin read without the lock is volatile
+    private volatile String _name;
+    private String _xmlFileName;
+    private volatile String _status;
+    private volatile int _humanPlayersNum;
+    private volatile int _currHumanNum;
+    private volatile int _computerPlayersNum;
+    private volatile boolean _autoDice;
+    private volatile boolean _isGameOver;
+    private volatile boolean _started;
+    private int _turnIndex; // the index of the player whose turn is next
+    private long _seed;
     
     // members
     private ArrayList<Player> _players;
     private Square[] _gameBoard;
-    private Timer _timer;
+    private volatile Timer _timer;
+    private volatile long _timerDeadline; // the time the prompt timer fires, from System.currentTimeMillis()
     private ArrayList<Country> _countries;
     private SimpleAssetGroup _utils;
     private SimpleAssetGroup _tranportation;
     private ActionSquare _surprise;
     private ActionSquare _warrant;
     private int[] _dice;
+    private GameRandom _diceRandom;
+    private GameRandom _deckRandom;
+    private Ledger _ledger;
+    private MoneyAuditor _auditor;
+    private volatile GameJournal _journal;
+    private final CommandLog _commands;
+    private final GameStats _stats;
+    private volatile RequestTrace.Span _answerTrace; // the trace of the command that woke the game thread
+    
+    // migration
+    private volatile boolean _freezeRequested;
+    private boolean _frozen;
+    private int _steps;                           // the turns a frozen game plays before it stops again, see step()
+    private boolean _migrated;
+    
+    // the progress the watchdog checks, read without the lock
+    private volatile Thread _thread;              // the game thread while the game runs
+    private volatile long _activityNanos;         // the time the last event was added
+    private volatile long _progressNanos;         // the time the last turn ended or a prompt was answered
+    private volatile HumanPlayer _waitingFor;     // the player the game thread waits for, or null
+    private volatile int _waitingEvent;           // the prompt it waits for
+    private volatile long _waitingSince;
+    private volatile long _timerStoppedNanos;     // the time the last answer stopped the prompt timer
+    private volatile boolean _abortRequested;
+    private volatile boolean _abandoned;          // the manager dropped the game, its thread adds and journals nothing
     
     
     // c'tor
@@ -94,28 +166,79 @@ public class Game extends EventGenerator implements Runnable
      * @throws IllegalArgumentException if humanPlayers or compPlayers are illegal
      */
     public Game(String xmlFileName, String gameName, int humanPlayers, int compPlayers, boolean autoDice)
+    {
+        this(xmlFileName, gameName, humanPlayers, compPlayers, autoDice, GameRandom.newSeed());
+    }
+    
+    //------------------------------------------------------
+    
+    /**
+     * constructs a new game whose dice and card shuffles are drawn from the given seed,
+     * two games with the same seed and the same player decisions are identical
+     * @param XmlFileName the xml file name
+     * @param gameName the name of the game
+     * @param humanPlayers number of human players in the game
+     * @param compPlayers number of computer players in the game
+     * @param autoDice 
+     * @param seed the seed of the game's random source
+     * @throws NullPointerException if xmlFileName or gameName are null
+     * @throws IllegalArgumentException if humanPlayers or compPlayers are illegal
+     */
+    public Game(String xmlFileName, String gameName, int humanPlayers, int compPlayers, boolean autoDice, long seed)
     {
     
         this.setName(gameName);
+        _xmlFileName = xmlFileName;
         this.setTotalHuman(humanPlayers);
         this.setComputerNumber(compPlayers);
         _autoDice = autoDice;
 
         // defaults
         _isGameOver = false;
+        _started = false;
+        _turnIndex = 0;
+        _freezeRequested = false;
+        _frozen = false;
+        _migrated = false;
         _currHumanNum = 0;
         _status = WAIT;
         _userIDGenerator = 0;
         ComputerPlayer.resetCompCounter(); // resets the computer player static counter
 
         _events = new ArrayList<Event>();
+        _eventsAdded = new Object();
+        _numEventsAdded = 0;
+        _eventNanos = new long[64];
+        _nanosBase = 0;
+        _spill = null;
+        _spilled = 0;
+        _eventBytes = 0;
+        _spilledBytes = 0;
+        _spillFailed = false;
         _players = new ArrayList<Player>();
+        _ledger = new Ledger(this, _players);
+        _auditor = null;
+        if (MoneyAuditor.isEnabled())
+        {
+            _auditor = new MoneyAuditor(DEFAULT_CASH);
+            _ledger.addMyChangeListener(_auditor);
+        }
+        _ledger.addMyChangeListener(new SettlementRecorder());
         _gameBoard = new Square[BOARD_SIZE];
         _countries = new ArrayList<Country>();
         _utils = new SimpleAssetGroup(this);
         _tranportation = new SimpleAssetGroup(this);
         _timer = null;
+        _journal = null;
+        _commands = new CommandLog(CommandLog.DEFAULT_CAPACITY);
+        _stats = new GameStats();
         _dice = new int[2];
+        
+        // the decks and the dice use separate streams so the shuffles don't shift the dice
+        GameRandom random = new GameRandom(seed);
+        _seed = seed;
+        _deckRandom = random.split();
+        _diceRandom = random.split();
 
         this.addMyChangeListener(GameManager.getInstance());
 
@@ -136,7 +259,15 @@ public class Game extends EventGenerator implements Runnable
      * gets the name of the game
      * @return the name of the game
      */
-    public synchronized String getName(){return _name;}
+    public String getName(){return _name;}
+    
+    //------------------------------------------------------
+
+    /**
+     * gets the name of the xml file the game was built from
+     * @return the name of the xml file the game was built from
+     */
+    public synchronized String getXmlFileName(){return _xmlFileName;}
     
     //------------------------------------------------------
     
@@ -144,7 +275,7 @@ public class Game extends EventGenerator implements Runnable
      * gets the total number of human players
      * @return the total number of human players
      */
-    public synchronized int getTotalHumanNum(){return _humanPlayersNum;}
+    public int getTotalHumanNum(){return _humanPlayersNum;}
     
     //------------------------------------------------------
     
@@ -152,7 +283,7 @@ public class Game extends EventGenerator implements Runnable
      * gets the current number of human players
      * @return the current number of human players
      */
-    public synchronized int getCurHumanNum(){return _currHumanNum;}
+    public int getCurHumanNum(){return _currHumanNum;}
     
     //------------------------------------------------------
     
@@ -160,7 +291,7 @@ public class Game extends EventGenerator implements Runnable
      * gets the number of computer players
      * @return the number of computer players
      */
-    public synchronized int getCompNum(){return _computerPlayersNum;}
+    public int getCompNum(){return _computerPlayersNum;}
     
     //------------------------------------------------------
     
@@ -168,7 +299,7 @@ public class Game extends EventGenerator implements Runnable
      * check if the game played with automatic dice roll
      * @return true if the game played with automatic dice roll
      */
-    public synchronized boolean isAutoDice(){return _autoDice;}
+    public boolean isAutoDice(){return _autoDice;}
     
     //------------------------------------------------------
     
@@ -176,7 +307,7 @@ public class Game extends EventGenerator implements Runnable
      * get the game status
      * @return the game status
      */
-    public synchronized String getStatus(){return _status;}
+    public String getStatus(){return _status;}
     
     //------------------------------------------------------
     
@@ -184,7 +315,95 @@ public class Game extends EventGenerator implements Runnable
      * checks if the game is over
      * @return true if the game is over
      */
-    public synchronized boolean isGameOver(){return _isGameOver;}
+    public boolean isGameOver(){return _isGameOver;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * checks if the game was started, a rebuilt game can be started before it runs
+     * @return true if the game was started
+     */
+    public boolean isStarted(){return _started;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the index of the player whose turn is next
+     * @return the index of the player whose turn is next
+     */
+    public int getTurnIndex(){return _turnIndex;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the seed of the game's random source
+     * @return the seed of the game's random source
+     */
+    public synchronized long getSeed(){return _seed;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the random source used to shuffle the decks
+     * @return the random source used to shuffle the decks
+     */
+    public GameRandom getDeckRandom(){return _deckRandom;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the money ledger of the game, every cash movement goes through it
+     * @return the money ledger of the game
+     */
+    public Ledger getLedger(){return _ledger;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the journal of the game
+     * @return the journal of the game, or null if the game isn't journaled
+     */
+    public GameJournal getJournal(){return _journal;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the log of the commands of the clients
+     * @return the command log of the game
+     */
+    public CommandLog getCommandLog(){return _commands;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the statistics of the turns of the game
+     * @return the statistics of the game
+     */
+    public GameStats getStats(){return _stats;}
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the trace of the command that answered the last prompt, once
+     * @return the span of the command, or null if it wasn't traced
+     */
+    public RequestTrace.Span takeAnswerTrace()
+    {
+        RequestTrace.Span span = _answerTrace;
+        _answerTrace = null;
+        return span;
+    }
+    
+    //------------------------------------------------------
+    
+    /**
+     * sets the journal the game writes its players and events to
+     * @param journal the journal, null to stop journaling
+     */
+    public void setJournal(GameJournal journal)
+    {
+        _journal = journal; // can be null
+    }
     
     //------------------------------------------------------
     
@@ -200,7 +419,22 @@ public class Game extends EventGenerator implements Runnable
      * gets the last event in the event array
      * @return the last event in the event array
      */
-    public synchronized Event getLastEvent(){return _events.get(_events.size() - 1);}
+    public Event getLastEvent()
+    {
+        long start = lastEventLock.enter();
+        synchronized(this)
+        {
+            long acquired = lastEventLock.acquired(start);
+            try
+            {
+                return _events.get(_events.size() - 1);
+            }
+            finally
+            {
+                lastEventLock.released(acquired);
+            }
+        }
+    }
     
     //------------------------------------------------------
     
@@ -229,10 +463,74 @@ public class Game extends EventGenerator implements Runnable
     //------------------------------------------------------
     
     /**
-     * gets the events array
-     * @return the events array
+     * gets all the events of the game, the spilled ones are read back from the disk
+     * @return a copy of the events
+     * @throws IOException if the spilled events can't be read
+     */
+    public ArrayList<Event> getEvents() throws IOException
+    {
+        ArrayList<Event> events = new ArrayList<Event>();
+        
+        while (true)
+        {
+            Event[] read = this.getEvents(events.size());
+            if (read.length == 0)
+            {
+                return events;
+            }
+            events.addAll(Arrays.asList(read));
+        }
+    }
+    
+    //------------------------------------------------------
+    
+    /**
+     * gets the events of the game from the given event, the spilled ones are read back from the disk,
+     * at most MemoryBudget.MAX_READ_EVENTS of them, the client gets the rest with its next call
+     * @param from the index of the first event
+     * @return the events, or null if from is illegal
+     * @throws IOException if the spilled events can't be read
+     */
+    public Event[] getEvents(int from) throws IOException
+    {
+        int spilled;
+        Event[] recent;
+        
+        synchronized(this)
+        {
+            if (from < 0 || from > _spilled + _events.size())
+            {
+                return null;
+            }
+            
+            spilled = _spilled;
+            int first = Math.max(0, from - spilled);
+            recent = _events.subList(first, _events.size()).toArray(new Event[_events.size() - first]);
+        }
+        
+        if (from >= spilled)
+        {
+            return recent;
+        }
+        
+        // read outside the lock, the spilled events don't change
+        if (spilled - from > MemoryBudget.MAX_READ_EVENTS)
+        {
+            return _spill.read(from, from + MemoryBudget.MAX_READ_EVENTS);
+        }
+        Event[] old = _spill.read(from, spilled);
+        Event[] events = Arrays.copyOf(old, old.length + recent.length);
+        System.arraycopy(recent, 0, events, old.length, recent.length);
+        return events;
+    }
+    
+    //------------------------------------------------------
+    
+    /**
+     * counts the events of the game, in the memory and on the disk
+     * @return the number of events
      */
-    public synchronized ArrayList<Event> getEvents(){return _events;}
+    private synchronized int countEvents(){return _spilled + _events.size();}
     
     //------------------------------------------------------
     
@@ -263,20 +561,32 @@ public class Game extends EventGenerator implements Runnable
      * @return the player in the given index, null if not found
      * @throws NullPointerException if name is null
      */
-    public synchronized Player getPlayerByName(String name)
+    public Player getPlayerByName(String name)
     {
         if(name == null)
             throw new NullPointerException("player name is null");
         
-        for(int i = 0; i < _players.size(); i++)
+        long start = playerByNameLock.enter();
+        synchronized(this)
         {
-            Player curr = _players.get(i);
-            if(curr.getName().equals(name))
+            long acquired = playerByNameLock.acquired(start);
+            try
+            {
+                for(int i = 0; i < _players.size(); i++)
+                {
+                    Player curr = _players.get(i);
+                    if(curr.getName().equals(name))
+                    {
+                        return curr;
+                    }
+                }
+                return null;
+            }
+            finally
             {
-                return curr;
+                playerByNameLock.released(acquired);
             }
         }
-        return null;
     }
     
     //--------------------------------------------------------------------
@@ -286,21 +596,33 @@ public class Game extends EventGenerator implements Runnable
      * @param id the id of the player to get
      * @return the player with the given id, null if not found
      */
-    public synchronized HumanPlayer getPlayerByID(int id)
+    public HumanPlayer getPlayerByID(int id)
     {
-        for(int i = 0; i < _players.size(); i++)
+        long start = playerByIDLock.enter();
+        synchronized(this)
         {
-            Player curr = _players.get(i);
-            if(curr.isHuman())
+            long acquired = playerByIDLock.acquired(start);
+            try
             {
-                int playerID = ((HumanPlayer)curr).getID();
-                if(playerID == id)
+                for(int i = 0; i < _players.size(); i++)
                 {
-                    return (HumanPlayer)curr;
+                    Player curr = _players.get(i);
+                    if(curr.isHuman())
+                    {
+                        int playerID = ((HumanPlayer)curr).getID();
+                        if(playerID == id)
+                        {
+                            return (HumanPlayer)curr;
+                        }
+                    }
                 }
+                return null;
+            }
+            finally
+            {
+                playerByIDLock.released(acquired);
             }
         }
-        return null;
     }
     
     //--------------------------------------------------------------------
@@ -361,6 +683,44 @@ public class Game extends EventGenerator implements Runnable
     
     //---------------------------------------------------------------------
     
+    /**
+     * gets the index of the given square on the board
+     * @param square the square
+     * @return the first index of the square on the board, -1 if it's not on the board
+     */
+    public int getSquareIndex(Square square)
+    {
+        for (int i = 0; i < BOARD_SIZE; i++)
+        {
+            if (_gameBoard[i] == square)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the index of the given player in the players array
+     * @param player the player
+     * @return the index of the player, DomainEvent.NO_PLAYER if it's null or not in the game
+     */
+    public int getPlayerIndex(Player player)
+    {
+        for (int i = 0; i < _players.size(); i++)
+        {
+            if (_players.get(i) == player)
+            {
+                return i;
+            }
+        }
+        return DomainEvent.NO_PLAYER;
+    }
+    
+    //---------------------------------------------------------------------
+    
     /**
      * adds a human player with the given name to the players array
      * not checking for game restrictions (duplicate names)
@@ -377,6 +737,12 @@ public class Game extends EventGenerator implements Runnable
             int id = _userIDGenerator;
             _players.add(new HumanPlayer(name, id, DEFAULT_CASH, this)); 
             _userIDGenerator++;
+            
+            GameJournal journal = _journal;
+            if(journal != null)
+            {
+                journal.playerJoined(name, id);
+            }
             return id;
         }
         else
@@ -394,7 +760,56 @@ public class Game extends EventGenerator implements Runnable
     {
         if(e != null)
         {
-            _events.add(e);
+            if(_abandoned)
+            {
+                return; // no client reads it, and the journal is of the game before it was dropped
+            }
+            
+            Object trace = Tracing.begin(Tracing.EVENT);
+            RequestTrace.Span span = RequestTrace.begin("game.addEvent");
+            long start = addEventLock.enter();
+            synchronized(this) // the readers of the events hold the game's lock
+            {
+                long acquired = addEventLock.acquired(start);
+                try
+                {
+                    _events.add(e);
+                    _eventBytes += MemoryBudget.getEventBytes(e);
+                }
+                finally
+                {
+                    addEventLock.released(acquired);
+                }
+            }
+            
+            GameJournal journal = _journal;
+            if(journal != null)
+            {
+                journal.eventAdded(e);
+            }
+            Tracing.end(trace, _name, e.getPlayerName(), e.getEventID());
+            RequestTrace.end(span);
+            
+            synchronized(_eventsAdded)
+            {
+                if(_numEventsAdded - _nanosBase == _eventNanos.length)
+                {
+                    _eventNanos = Arrays.copyOf(_eventNanos, 2 * _eventNanos.length);
+                }
+                long now = System.nanoTime();
+                _eventNanos[_numEventsAdded - _nanosBase] = now;
+                _numEventsAdded++;
+                _activityNanos = now;
+                _eventsAdded.notifyAll();
+            }
+            
+            // a turn that never ends can't spill, it's ended. a game replayed from its journal isn't running yet
+            if(_thread != null && !_abortRequested && MemoryBudget.isOverHard(this.getMemoryEstimate()))
+            {
+                MemoryBudget.gameEnded();
+                GameLog.error(_name, "the game is over its memory budget, it's ended", null);
+                this.abort();
+            }
         }
         else
             throw new NullPointerException("event is null");
@@ -555,8 +970,7 @@ public class Game extends EventGenerator implements Runnable
         } 
         catch (RuntimeException e) 
         {
-            System.out.println("error: theres a problem with the countries format in the xml file");
-            e.printStackTrace();
+            GameLog.error(_name, "theres a problem with the countries format in the xml file", e);
         }
 
         // init utils and transportation
@@ -579,8 +993,7 @@ public class Game extends EventGenerator implements Runnable
         } 
         catch (RuntimeException e) 
         {
-            System.out.println("error: theres a problem with the utils or tranportation format in the xml file");
-            e.printStackTrace();
+            GameLog.error(_name, "theres a problem with the utils or tranportation format in the xml file", e);
         }
 
         // init cards
@@ -592,8 +1005,7 @@ public class Game extends EventGenerator implements Runnable
         } 
         catch (RuntimeException e) 
         {
-            System.out.println("error: theres a problem with cards format in the xml file");
-            e.printStackTrace();
+            GameLog.error(_name, "theres a problem with the cards format in the xml file", e);
         }
 
         this.initBoard();
@@ -602,37 +1014,54 @@ public class Game extends EventGenerator implements Runnable
    //--------------------------------------------------------------------
     
     /**
-     * runs the game
+     * runs the game, a game rebuilt from its journal resumes from the turn it was in
      */
     @Override
     public void run() 
     {
         _status = ACTIVE;
+        _thread = Thread.currentThread();
+        _progressNanos = System.nanoTime();
         
-        MonopolyUtils.sleep(START_GAME_PAUSE); // give time to all users to login 
-        
-        // game start event
-        Event gameStartEvent = 
-                EventsFactory.createGameStartEvent(this._name);
-        this.addEvent(gameStartEvent);
+        if (!_started)
+        {
+            MonopolyUtils.sleep(START_GAME_PAUSE); // give time to all users to login 
+            
+            // game start event
+            Event gameStartEvent = 
+                    EventsFactory.createGameStartEvent(this._name);
+            this.addEvent(gameStartEvent);
+            
+            _started = true;
+            this.record(DomainEvent.GAME_STARTED);
+            GameStats.gameStarted();
+        }
 
-        while (getActualNumPlayers() >= MIN_NUM_PLAYERS && _currHumanNum > 0) // minimum 2 players, at least one human
+        // a rebuilt game finishes the round it was in before checking the players again
+        while (!_abortRequested && (_turnIndex > 0 || (getActualNumPlayers() >= MIN_NUM_PLAYERS && _currHumanNum > 0))) // minimum 2 players, at least one human
         {
             // turn
-            for (int i = 0; i < _players.size(); i++) 
+            for (int i = _turnIndex; i < _players.size(); i++) 
             {
 
                 Player player = _players.get(i);
 
                 if (player != null && player.isInGame()) 
                 {
+                    int firstEvent = this.countEvents();
+                    Object turnTrace = Tracing.begin(Tracing.TURN);
+                    _stats.turnStarted(firstEvent);
                     
                     Square square = _gameBoard[player.getPosition()];
 
                     if (square.shouldPlayerRollDice(player)) 
                     {
-                        // automatic roll if the game is auto dice or the player computerized or the human player resigned
-                        if(_autoDice || !player.isHuman() || (player.isHuman() && ((HumanPlayer)player).isResign()))
+                        // automatic roll if the game is auto dice or the player computerized or the human player resigned,
+                        // or the game is ending
+                        boolean autoRoll = _autoDice || !player.isHuman() || (player.isHuman() && ((HumanPlayer)player).isResign())
+                                || _abortRequested;
+                        
+                        if(autoRoll)
                         {
                             this.rollTheDice();
                         }
@@ -640,6 +1069,7 @@ public class Game extends EventGenerator implements Runnable
                         {
                             ((HumanPlayer)player).playerRollDice();                    
                         }
+                        this.record(DomainEvent.DICE_ROLLED, _dice[0], _dice[1], autoRoll ? 1 : 0);
                         
                         Event diceRollEvent
                                 = EventsFactory.createDiceRollEvent(_name, player.getName(), _dice[0], _dice[1]); 
@@ -670,11 +1100,45 @@ public class Game extends EventGenerator implements Runnable
                                 EventsFactory.createPlayerResignedEvent(_name, player.getName());
                         this.addEvent(playerResignedEvent);
                     }
+                    
+                    _turnIndex = (i + 1) % _players.size();
+                    int numEvents = this.countEvents();
+                    this.record(DomainEvent.TURN_ENDED, _turnIndex, numEvents);
+                    _stats.turnEnded(numEvents);
+                    _progressNanos = System.nanoTime();
+                    Tracing.end(turnTrace, _name, player.getName(), numEvents - firstEvent);
+                    this.checkMemory();
+                    
+                    GameJournal journal = _journal;
+                    if (journal != null && journal.isCheckpointDue())
+                    {
+                        this.checkpoint();
+                    }
+                    RequestTrace.endAll(); // the trace of the command that woke the game ends with its turn
+                    
+                    if (_freezeRequested && this.waitWhileFrozen())
+                    {
+                        this.flushAudit();
+                        return; // the game runs in another process now
+                    }
+                    
+                    if (_abortRequested)
+                    {
+                        break;
+                    }
                 }
             }
+            _turnIndex = 0;
         }
 
-        if(_currHumanNum == 1)
+        if(_abortRequested)
+        {
+            // the watchdog ended a stuck game, the clients only learn that it's over
+            Event gameOverEvent 
+                    = EventsFactory.createGameOverEvent(_name);
+            this.addEvent(gameOverEvent);
+        }
+        else if(_currHumanNum == 1)
         {
             // announce winner
             Player player = this.getWinner();
@@ -689,7 +1153,24 @@ public class Game extends EventGenerator implements Runnable
             this.addEvent(gameOverEvent);
         }
         
+        this.flushAudit(); // the settlements since the last flush, ended or aborted
         _isGameOver = true;
+        _thread = null;
+        synchronized(this)
+        {
+            this.notifyAll(); // a freeze or a step waiting for a turn boundary that won't come
+        }
+        GameStats.gameFinished();
+        MemoryBudget.gameFinished(_peakBytes);
+        GameJournal journal = _journal;
+        if(journal != null)
+        {
+            journal.gameEnded();
+        }
+        if(_abandoned)
+        {
+            return; // the manager has moved on, the journal is left for the recovery
+        }
         MonopolyUtils.sleep(END_GAME_PAUSE); // time for all clients to take all the last events
         this.fireMyChangeEvent("game over"); // notify the game manager that the game is over
     }
@@ -697,71 +1178,348 @@ public class Game extends EventGenerator implements Runnable
     //--------------------------------------------------------------------
     
     /**
-     * rolls the dice
+     * adds the money totals the auditor didn't add yet to the metrics, called by the game thread 
+     * when it stops running the game
      */
-    private void rollTheDice()
+    private void flushAudit()
     {
-        Random generator = new Random();
-        _dice[0] = generator.nextInt(6) + 1;
-        _dice[1] = generator.nextInt(6) + 1;
+        if (_auditor != null)
+        {
+            _auditor.flush();
+        }
     }
     
     //--------------------------------------------------------------------
     
     /**
-     * moves the player according to the dice result
-     * @param player the player to move
-     * @param dice1 the first dice
-     * @param dice2 the second dice
-     * @throws NullPointerException if player is null
+     * asks the game to stop at the next turn boundary and waits until it does. 
+     * a frozen game has no pending prompt and everything it did is journaled
+     * @param timeoutMillis the time to wait for the turn to end
+     * @return true if the game is frozen, false if it isn't running or didn't reach a turn boundary in time
+     * @throws InterruptedException if interrupted while waiting
      */
-    private void movePlayer(Player player, int dice1, int dice2) 
+    public synchronized boolean freeze(long timeoutMillis) throws InterruptedException
     {
-        if (player == null) 
-            throw new NullPointerException("player is null");
-       
-        int oldPos = player.getPosition();
-        int newPos = (oldPos + dice1 + dice2) % BOARD_SIZE;
-
-        // create event
-        Event playerMovedEvent
-                = EventsFactory.createPlayerMovedEvent(_name, player, newPos, REGULAR_MOVE);
-        this.addEvent(playerMovedEvent);
+        if (!_started || _isGameOver || _migrated)
+        {
+            return false;
+        }
         
-        // put in new position
-        player.setPosition(newPos);
-
-        if (oldPos > newPos && newPos != START_SQUARE) 
+        _freezeRequested = true;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        
+        while (!_frozen)
         {
-            this.passedStartOnTheWay(player);
+            long left = deadline - System.currentTimeMillis();
+            
+            if (left <= 0 || _isGameOver)
+            {
+                this.thaw();
+                return false;
+            }
+            this.wait(left);
         }
-
-        _gameBoard[newPos].playerArrived(player);
+        return true;
     }
     
     //--------------------------------------------------------------------
     
     /**
-     * adds the given player 200 dollars
-     * @param player the player to add money to
-     * @throws NullPointerException if player is null
+     * waits until the game asks a player for something after the given event, or is over.
+     * a client that answered a prompt waits here for what its answer caused
+     * @param eventID the id of the event the client answered
+     * @param timeoutMillis the longest time to wait
+     * @return true if the game got there in time
+     * @throws InterruptedException if interrupted while waiting
      */
-    public void passedStartOnTheWay(Player player) 
+    public boolean waitForPrompt(int eventID, long timeoutMillis) throws InterruptedException
     {
-        if (player != null) 
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        
+        while (true)
         {
-            player.addCash(PASSED_START_CASH);
-            Event playerPassedOnStartEvent = 
-                    EventsFactory.createPassedStartSquareEvent(_name, player.getName()); 
+            int seen;
+            synchronized (_eventsAdded)
+            {
+                seen = _numEventsAdded;
+            }
             
-            Event paymentEvent =
-                    EventsFactory.createPaymentToOrFromTreasuryEvent(_name, player.getName(), PASSED_START_CASH, false);
+            if (this.isGameOver() || this.isPromptAfter(eventID))
+            {
+                return true;
+            }
             
-            this.addEvent(playerPassedOnStartEvent);
-            this.addEvent(paymentEvent);
-        } 
-        else 
-            throw new NullPointerException("player is null");
+            // not nested in the game's lock, the game thread adds events holding it
+            synchronized (_eventsAdded)
+            {
+                while (_numEventsAdded == seen)
+                {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0)
+                    {
+                        return false;
+                    }
+                    _eventsAdded.wait(left);
+                }
+            }
+        }
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * records the time the given events took from the moment they were added to the moment a client got them
+     * @param first the index of the first event the client got
+     * @param count the number of events the client got
+     * @param waited true if the client waited for the events with its command, false if it polled for them
+     */
+    public void eventsDelivered(int first, int count, boolean waited)
+    {
+        long now = System.nanoTime();
+        long[] added;
+        
+        synchronized (_eventsAdded)
+        {
+            int from = Math.max(_nanosBase, first); // the times of the spilled events are gone
+            added = Arrays.copyOfRange(_eventNanos, from - _nanosBase, 
+                    Math.max(from, Math.min(first + count, _numEventsAdded)) - _nanosBase);
+        }
+        
+        // recorded outside the lock, the game thread takes it for every event
+        for (int i = 0; i < added.length; i++)
+        {
+            _stats.eventDelivered(now - added[i], waited);
+        }
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * checks if the last event is a prompt that came after the given event
+     */
+    private boolean isPromptAfter(int eventID)
+    {
+        Event last = null;
+        
+        long start = promptAfterLock.enter();
+        synchronized(this)
+        {
+            long acquired = promptAfterLock.acquired(start);
+            try
+            {
+                if (!_events.isEmpty())
+                {
+                    last = _events.get(_events.size() - 1);
+                }
+            }
+            finally
+            {
+                promptAfterLock.released(acquired);
+            }
+        }
+        
+        if (last == null)
+        {
+            return false;
+        }
+        
+        int type = last.getEventType();
+        
+        return last.getEventID() > eventID && (type == MyEvent.PROMPT_ROLL_DICE 
+                || type == MyEvent.PROMPT_BUY_ASSET || type == MyEvent.PROMPT_BUY_HOUSE);
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * lets a frozen game go on, or cancels a freeze that didn't happen yet
+     */
+    public synchronized void thaw()
+    {
+        _freezeRequested = false;
+        _steps = 0;
+        this.notifyAll();
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * lets a frozen game play one turn and waits until it stops at the next turn boundary,
+     * so a tool can look at the game after every turn
+     * @param timeoutMillis the time to wait for the turn to end
+     * @return true if the game is frozen again, false if it's over or didn't reach a turn boundary in time
+     * @throws IllegalStateException if the game isn't frozen
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean step(long timeoutMillis) throws InterruptedException
+    {
+        if (!_frozen)
+            throw new IllegalStateException("the game isn't frozen");
+        
+        _steps++;
+        this.notifyAll();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        
+        while (_steps > 0 || !_frozen)
+        {
+            long left = deadline - System.currentTimeMillis();
+            
+            if (left <= 0 || _isGameOver)
+            {
+                this.thaw();
+                return false;
+            }
+            this.wait(left);
+        }
+        return true;
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * ends a frozen game that was moved to another process, its thread returns without ending the game
+     * @throws IllegalStateException if the game isn't frozen
+     */
+    public synchronized void migrated()
+    {
+        if (!_frozen)
+            throw new IllegalStateException("the game isn't frozen");
+        
+        _migrated = true;
+        this.thaw();
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * checks if the game was moved to another process
+     * @return true if the game was migrated
+     */
+    public synchronized boolean isMigrated(){return _migrated;}
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * parks the game thread at a turn boundary while the game is frozen
+     * @return true if the game was migrated meanwhile
+     */
+    private synchronized boolean waitWhileFrozen()
+    {
+        _frozen = true;
+        this.notifyAll();
+        
+        while (_freezeRequested && _steps == 0)
+        {
+            try
+            {
+                this.wait();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (_steps > 0)
+        {
+            _steps--;
+        }
+        _frozen = false;
+        return _migrated;
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * rolls the dice
+     */
+    private void rollTheDice()
+    {
+        _dice[0] = _diceRandom.rollDie();
+        _dice[1] = _diceRandom.rollDie();
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * moves the player according to the dice result
+     * @param player the player to move
+     * @param dice1 the first dice
+     * @param dice2 the second dice
+     * @throws NullPointerException if player is null
+     */
+    private void movePlayer(Player player, int dice1, int dice2) 
+    {
+        if (player == null) 
+            throw new NullPointerException("player is null");
+       
+        int oldPos = player.getPosition();
+        int newPos = (oldPos + dice1 + dice2) % BOARD_SIZE;
+
+        // create event
+        Event playerMovedEvent
+                = EventsFactory.createPlayerMovedEvent(_name, player, newPos, REGULAR_MOVE);
+        this.addEvent(playerMovedEvent);
+        
+        // put in new position
+        this.placePlayer(player, newPos);
+
+        if (oldPos > newPos && newPos != START_SQUARE) 
+        {
+            this.passedStartOnTheWay(player);
+        }
+
+        this.playerArrivedAt(player, newPos);
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * lets the square at the given index act on a player that arrived at it
+     * @param player the player
+     * @param index the index of the square
+     */
+    public void playerArrivedAt(Player player, int index)
+    {
+        Square square = _gameBoard[index];
+        Object trace = Tracing.begin(Tracing.SQUARE);
+        
+        square.playerArrived(player);
+        Tracing.end(trace, _name, square.getClass().getName(), index);
+    }
+    
+    //--------------------------------------------------------------------
+    
+    /**
+     * adds the given player 200 dollars
+     * @param player the player to add money to
+     * @throws NullPointerException if player is null
+     */
+    public void passedStartOnTheWay(Player player) 
+    {
+        if (player != null) 
+        {
+            Ledger.Transaction transaction = _ledger.begin(Ledger.PASSED_START);
+            try
+            {
+                transaction.pay(Ledger.TREASURY, player, PASSED_START_CASH);
+                Event playerPassedOnStartEvent = 
+                        EventsFactory.createPassedStartSquareEvent(_name, player.getName()); 
+                
+                Event paymentEvent =
+                        EventsFactory.createPaymentToOrFromTreasuryEvent(_name, player.getName(), PASSED_START_CASH, false);
+                
+                transaction.addEvent(playerPassedOnStartEvent);
+                transaction.addEvent(paymentEvent);
+                transaction.commit();
+            }
+            finally
+            {
+                transaction.close();
+            }
+        } 
+        else 
+            throw new NullPointerException("player is null");
     }
     
     //---------------------------------------------------------------------
@@ -781,6 +1539,7 @@ public class Game extends EventGenerator implements Runnable
         Iterator<AssetGroup> iter = assets.iterator();
 
         player.setIsInGame(false);
+        this.record(DomainEvent.PLAYER_REMOVED, this.getPlayerIndex(player));
 
         while (iter.hasNext()) 
         {
@@ -804,43 +1563,848 @@ public class Game extends EventGenerator implements Runnable
     //---------------------------------------------------------------------
     
     /**
-     * starts a countdown resign timer with the given delay in seconds
-     * @param seconds the delay
-     * @throws IllegalArgumentException if seconds is non-positive
+     * puts the given player on the given square
+     * @param player the player to put
+     * @param position the index of the square
+     * @throws IllegalArgumentException if position is out of the board
      */
-    public synchronized void startTimer(int seconds)
+    public void placePlayer(Player player, int position)
     {
-        if(seconds <= 0)
-            throw new IllegalArgumentException("illegal seconds");
-        
-        _timer = new Timer(true);
-        _timer.schedule(new RemovePlayerTask(), 1000 * seconds);
+        player.setPosition(position);
+        this.record(DomainEvent.PLAYER_PLACED, this.getPlayerIndex(player), position);
     }
     
     //---------------------------------------------------------------------
     
     /**
-     * stops the timer and proceeds with the game
+     * sets if the given player can move on his next turn
+     * @param player the player
+     * @param canMove true if the player can move
      */
-    public void stopTimer()
+    public void setPlayerCanMove(Player player, boolean canMove)
     {
-        Event e = this.getLastEvent(); // get last event, its a prompt event with a player name
-        Player player = this.getPlayerByName(e.getPlayerName());
-        
-        if(_timer != null)
+        player.setCanMove(canMove);
+        this.record(DomainEvent.CAN_MOVE_CHANGED, this.getPlayerIndex(player), canMove ? 1 : 0);
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records that the owner of the given asset changed
+     * @param asset the asset
+     * @param owner the new owner, null if the asset has no owner
+     */
+    public void recordOwnerChanged(SingleAsset asset, Player owner)
+    {
+        if (_journal != null)
         {
-            _timer.cancel();
-            _timer = null;
-            
-            // continue with the game, the waiting object is the player
-            synchronized(player)
-            {
-                player.notify();
-            }
+            this.record(DomainEvent.OWNER_CHANGED, this.getSquareIndex(asset), this.getPlayerIndex(owner));
         }
     }
     
-   
+    //---------------------------------------------------------------------
+    
+    /**
+     * records that a house was added to the given city
+     * @param city the city
+     */
+    public void recordHouseAdded(CityAsset city)
+    {
+        if (_journal != null)
+        {
+            this.record(DomainEvent.HOUSE_ADDED, this.getSquareIndex(city));
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records that the given player drew a card
+     * @param type the type of the deck (ActionSquare.SURPRISE or ActionSquare.WARRANT)
+     * @param player the player
+     * @param heldOut true if the player keeps the card (a pardon card)
+     */
+    public void recordCardDrawn(int type, Player player, boolean heldOut)
+    {
+        if (_journal != null)
+        {
+            this.record(DomainEvent.CARD_DRAWN, type, this.getPlayerIndex(player), heldOut ? 1 : 0);
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records that the given player returned his pardon card to the deck
+     * @param player the player
+     */
+    public void recordPardonReturned(Player player)
+    {
+        if (_journal != null)
+        {
+            this.record(DomainEvent.PARDON_RETURNED, this.getPlayerIndex(player));
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records that the given player resigned
+     * @param player the player
+     */
+    public void recordResigned(Player player)
+    {
+        if (_journal != null)
+        {
+            this.record(DomainEvent.RESIGNED, this.getPlayerIndex(player));
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records a domain event without arguments in the journal, if the game is journaled
+     */
+    private void record(byte kind)
+    {
+        GameJournal journal = _journal;
+        if (journal != null)
+        {
+            journal.record(kind);
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records a domain event with one argument in the journal, if the game is journaled
+     */
+    private void record(byte kind, int arg)
+    {
+        GameJournal journal = _journal;
+        if (journal != null)
+        {
+            journal.record(kind, arg);
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records a domain event with two arguments in the journal, if the game is journaled
+     */
+    private void record(byte kind, int arg0, int arg1)
+    {
+        GameJournal journal = _journal;
+        if (journal != null)
+        {
+            journal.record(kind, arg0, arg1);
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * records a domain event with three arguments in the journal, if the game is journaled
+     */
+    private void record(byte kind, int arg0, int arg1, int arg2)
+    {
+        GameJournal journal = _journal;
+        if (journal != null)
+        {
+            journal.record(kind, arg0, arg1, arg2);
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * applies a domain event read from the journal to the game, without running the rules.
+     * only a game that isn't running and isn't journaled yet can be replayed
+     * @param e the domain event
+     * @throws NullPointerException if e is null
+     * @throws IllegalStateException if the event doesn't match the game (another seed or board)
+     */
+    public void replay(DomainEvent e)
+    {
+        if (e == null)
+            throw new NullPointerException("domain event is null");
+        
+        switch (e.getKind())
+        {
+            case DomainEvent.GAME_STARTED:
+                _started = true;
+                _status = ACTIVE;
+                break;
+                
+            case DomainEvent.TURN_ENDED:
+                _turnIndex = e.getArg(0);
+                break;
+                
+            case DomainEvent.DICE_ROLLED:
+                if (e.getArg(2) == 1)
+                {
+                    this.rollTheDice(); // keeps the dice stream where it was
+                    
+                    if (_dice[0] != e.getArg(0) || _dice[1] != e.getArg(1))
+                        throw new IllegalStateException("the dice don't match the journal");
+                }
+                else
+                {
+                    this.setDice(e.getArg(0), e.getArg(1));
+                }
+                break;
+                
+            case DomainEvent.PLAYER_PLACED:
+                this.getPlayerByIndex(e.getArg(0)).setPosition(e.getArg(1));
+                break;
+                
+            case DomainEvent.CAN_MOVE_CHANGED:
+                this.getPlayerByIndex(e.getArg(0)).setCanMove(e.getArg(1) == 1);
+                break;
+                
+            case DomainEvent.SETTLED:
+                int numLegs = e.getArg(1);
+                int[] from = new int[numLegs];
+                int[] to = new int[numLegs];
+                int[] requested = new int[numLegs];
+                int[] paid = new int[numLegs];
+                int[] fromBalance = new int[numLegs];
+                int[] toBalance = new int[numLegs];
+                
+                for (int leg = 0, arg = 2; leg < numLegs; leg++)
+                {
+                    from[leg] = e.getArg(arg++);
+                    to[leg] = e.getArg(arg++);
+                    requested[leg] = e.getArg(arg++);
+                    paid[leg] = e.getArg(arg++);
+                    fromBalance[leg] = e.getArg(arg++);
+                    toBalance[leg] = e.getArg(arg++);
+                }
+                _ledger.replay(e.getArg(0), from, to, requested, paid, fromBalance, toBalance);
+                break;
+                
+            case DomainEvent.OWNER_CHANGED:
+                Player owner = (e.getArg(1) == DomainEvent.NO_PLAYER) ? null : this.getPlayerByIndex(e.getArg(1));
+                ((SingleAsset) this.getSquareByIndex(e.getArg(0))).setOwner(owner);
+                break;
+                
+            case DomainEvent.HOUSE_ADDED:
+                ((CityAsset) this.getSquareByIndex(e.getArg(0))).addHouse();
+                break;
+                
+            case DomainEvent.CARD_DRAWN:
+                ActionSquare deck = (e.getArg(0) == ActionSquare.SURPRISE) ? _surprise : _warrant;
+                
+                if (deck.replayDraw(this.getPlayerByIndex(e.getArg(1))) != (e.getArg(2) == 1))
+                    throw new IllegalStateException("the deck doesn't match the journal");
+                break;
+                
+            case DomainEvent.PARDON_RETURNED:
+                Player player = this.getPlayerByIndex(e.getArg(0));
+                PardonCard card = player.getPardonCard();
+                card.returnToDeck();
+                player.setPardonCard(null);
+                break;
+                
+            case DomainEvent.PLAYER_REMOVED:
+                this.removePlayerFromGame(this.getPlayerByIndex(e.getArg(0)));
+                break;
+                
+            case DomainEvent.RESIGNED:
+                ((HumanPlayer) this.getPlayerByIndex(e.getArg(0))).setResign(true);
+                break;
+                
+            default:
+                break;
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * takes a checkpoint of the game and hands it to the journal, called at turn boundaries.
+     * the copy is taken here, it's encoded and written off the game thread
+     */
+    public void checkpoint()
+    {
+        GameJournal journal = _journal;
+        if (journal == null)
+        {
+            return;
+        }
+        
+        // the length is taken first, a resignation journaled after it is replayed on top of the checkpoint
+        journal.checkpoint(this.copyState(journal.getLength()));
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * copies the state of a game that is over, for the archive
+     * @return the final state of the game
+     * @throws IllegalStateException if the game isn't over
+     */
+    public GameCheckpoint getFinalState()
+    {
+        if (!this.isGameOver())
+            throw new IllegalStateException("the game isn't over");
+        
+        return this.copyState(0);
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * copies the state of the game, on the game thread or when it isn't running
+     */
+    private GameCheckpoint copyState(long journalLength)
+    {
+        GameCheckpoint c = new GameCheckpoint();
+        int numPlayers = _players.size();
+        
+        c._journalLength = journalLength;
+        c._numEvents = this.countEvents();
+        c._started = _started;
+        c._turnIndex = _turnIndex;
+        c._currHumanNum = _currHumanNum;
+        c._dice1 = _dice[0];
+        c._dice2 = _dice[1];
+        c._diceRandomState = _diceRandom.getState();
+        c._deckRandomState = _deckRandom.getState();
+        
+        c._positions = new int[numPlayers];
+        c._cash = new int[numPlayers];
+        c._flags = new int[numPlayers];
+        c._pardonDecks = new int[numPlayers];
+        c._pardonCards = new int[numPlayers];
+        c._paid = new long[numPlayers];
+        c._received = new long[numPlayers];
+        
+        for (int i = 0; i < numPlayers; i++)
+        {
+            Player player = _players.get(i);
+            c._positions[i] = player.getPosition();
+            c._cash[i] = player.getCash();
+            c._flags[i] = (player.canPlayerMove() ? GameCheckpoint.CAN_MOVE : 0)
+                    | (player.isInGame() ? GameCheckpoint.IN_GAME : 0)
+                    | (player.isBankrupt() ? GameCheckpoint.BANKRUPT : 0)
+                    | ((player.isHuman() && ((HumanPlayer)player).isResign()) ? GameCheckpoint.RESIGNED : 0);
+            
+            c._pardonDecks[i] = ActionSquare.SURPRISE;
+            c._pardonCards[i] = GameCheckpoint.NO_CARD;
+            if (player.hasPardonCard())
+            {
+                c._pardonCards[i] = _surprise.getCardID(player.getPardonCard());
+                if (c._pardonCards[i] == GameCheckpoint.NO_CARD)
+                {
+                    c._pardonDecks[i] = ActionSquare.WARRANT;
+                    c._pardonCards[i] = _warrant.getCardID(player.getPardonCard());
+                }
+            }
+            c._paid[i] = _ledger.getTotalPaid(i);
+            c._received[i] = _ledger.getTotalReceived(i);
+        }
+        
+        c._owners = new int[BOARD_SIZE];
+        c._houses = new int[BOARD_SIZE];
+        for (int i = 0; i < BOARD_SIZE; i++)
+        {
+            c._owners[i] = GameCheckpoint.NO_OWNER;
+            if (_gameBoard[i] instanceof SingleAsset)
+            {
+                SingleAsset asset = (SingleAsset) _gameBoard[i];
+                c._owners[i] = this.getPlayerIndex(asset.getOwner());
+                c._houses[i] = asset.isCity() ? ((CityAsset) asset).getNumHouses() : 0;
+            }
+        }
+        
+        c._surpriseCards = this.getCardIDs(_surprise);
+        c._warrantCards = this.getCardIDs(_warrant);
+        
+        c._numSettlements = _ledger.getNumSettlements();
+        c._treasuryPaid = _ledger.getTreasuryPaid();
+        c._treasuryReceived = _ledger.getTreasuryReceived();
+        return c;
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the ids of the cards in the deck of the given square, from the top
+     */
+    private int[] getCardIDs(ActionSquare square)
+    {
+        int[] ids = new int[square.getNumCards()];
+        
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = square.getCardID(square.getCardByIndex(i));
+        }
+        return ids;
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * restores the game to a checkpoint, instead of replaying the journal up to it.
+     * only a game that isn't running and isn't journaled yet can be restored, with the same players
+     * @param c the checkpoint
+     * @throws NullPointerException if c is null
+     * @throws IllegalArgumentException if the checkpoint doesn't match the game
+     */
+    public void restore(GameCheckpoint c)
+    {
+        if (c == null)
+            throw new NullPointerException("checkpoint is null");
+        
+        if (c._positions.length != _players.size() || c._owners.length != BOARD_SIZE)
+            throw new IllegalArgumentException("illegal checkpoint, it's of another game");
+        
+        _started = c._started;
+        if (_started)
+        {
+            _status = ACTIVE;
+        }
+        _turnIndex = c._turnIndex;
+        _currHumanNum = c._currHumanNum;
+        _dice[0] = c._dice1;
+        _dice[1] = c._dice2;
+        _diceRandom.setState(c._diceRandomState);
+        _deckRandom.setState(c._deckRandomState);
+        
+        for (int i = 0; i < _players.size(); i++)
+        {
+            Player player = _players.get(i);
+            player.setPosition(c._positions[i]);
+            player.setCash(c._cash[i]);
+            player.setCanMove((c._flags[i] & GameCheckpoint.CAN_MOVE) != 0);
+            player.setIsInGame((c._flags[i] & GameCheckpoint.IN_GAME) != 0);
+            player.setBankrupt((c._flags[i] & GameCheckpoint.BANKRUPT) != 0);
+            if (player.isHuman())
+            {
+                ((HumanPlayer)player).setResign((c._flags[i] & GameCheckpoint.RESIGNED) != 0);
+            }
+            
+            player.setPardonCard(null);
+            if (c._pardonCards[i] != GameCheckpoint.NO_CARD)
+            {
+                ActionSquare deck = (c._pardonDecks[i] == ActionSquare.SURPRISE) ? _surprise : _warrant;
+                player.setPardonCard((PardonCard) deck.getCardByID(c._pardonCards[i]));
+            }
+        }
+        
+        for (int i = 0; i < BOARD_SIZE; i++)
+        {
+            if (_gameBoard[i] instanceof SingleAsset)
+            {
+                SingleAsset asset = (SingleAsset) _gameBoard[i];
+                asset.setOwner((c._owners[i] == GameCheckpoint.NO_OWNER) ? null : _players.get(c._owners[i]));
+                
+                if (asset.isCity())
+                {
+                    ((CityAsset) asset).setNumHouses(c._houses[i]);
+                }
+            }
+        }
+        
+        _surprise.restoreCards(c._surpriseCards);
+        _warrant.restoreCards(c._warrantCards);
+        
+        _ledger.restore(c._numSettlements, c._paid, c._received, c._treasuryPaid, c._treasuryReceived);
+        if (_auditor != null)
+        {
+            _auditor.reset(c._cash);
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * tells the watchdog the game thread waits for a player to answer a prompt, or got the answer
+     * @param player the player the game waits for, null when the wait is over
+     * @param eventID the id of the prompt
+     */
+    public void setWaitingPlayer(HumanPlayer player, int eventID)
+    {
+        if (player == null)
+        {
+            _progressNanos = System.nanoTime();
+        }
+        else
+        {
+            _waitingEvent = eventID;
+            _waitingSince = System.nanoTime();
+        }
+        _waitingFor = player;
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the game thread
+     * @return the game thread, null if the game isn't running
+     */
+    public Thread getThread(){return _thread;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the number of events of the game, without the lock
+     * @return the number of events
+     */
+    public int getNumEvents(){return _numEventsAdded;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * estimates the memory the game retains, without the lock
+     * @return the estimate in bytes
+     */
+    public long getMemoryEstimate()
+    {
+        return MemoryBudget.GAME_BYTES + MemoryBudget.PLAYER_BYTES * (_humanPlayersNum + _computerPlayersNum) + _eventBytes;
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * estimates the memory all the events of the game take when they're read, the spilled ones too
+     * @return the estimate in bytes
+     */
+    public long getAllEventsEstimate(){return _eventBytes + _spilledBytes;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the number of events the game spilled to the disk
+     * @return the number of events
+     */
+    public int getNumSpilled(){return _spilled;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * deletes the events the game spilled to the disk, when the game is dropped
+     */
+    public void discardSpill()
+    {
+        EventSpill spill;
+        
+        synchronized(this)
+        {
+            spill = _spill;
+        }
+        
+        if (spill != null)
+        {
+            spill.close();
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * spills the oldest events of the game to the disk if it's over the soft budget, on the game thread
+     * at the end of a turn. the game keeps the last MemoryBudget.KEEP_EVENTS events in the memory
+     */
+    private void checkMemory()
+    {
+        long bytes = this.getMemoryEstimate();
+        MemoryBudget.gameMeasured(bytes);
+        _peakBytes = Math.max(_peakBytes, bytes);
+        
+        if (_spillFailed || !MemoryBudget.isOverSoft(bytes))
+        {
+            return;
+        }
+        
+        Event[] spilled;
+        synchronized(this)
+        {
+            int count = _events.size() - MemoryBudget.KEEP_EVENTS;
+            if (count <= 0)
+            {
+                return;
+            }
+            spilled = _events.subList(0, count).toArray(new Event[count]);
+        }
+        
+        // written outside the lock, the clients read the events meanwhile
+        try
+        {
+            if (_spill == null)
+            {
+                _spill = new EventSpill(_name);
+            }
+            _spill.append(spilled);
+        }
+        catch (IOException e)
+        {
+            _spillFailed = true; // the hard budget ends the game if it goes on growing
+            MemoryBudget.spillFailed();
+            GameLog.error(_name, "the events can't be spilled, they stay in the memory", e);
+            return;
+        }
+        
+        long spilledBytes = 0;
+        for (int i = 0; i < spilled.length; i++)
+        {
+            spilledBytes += MemoryBudget.getEventBytes(spilled[i]);
+        }
+        
+        synchronized(this)
+        {
+            // a new list, so the array of the spilled events is freed too
+            ArrayList<Event> kept = new ArrayList<Event>(2 * MemoryBudget.KEEP_EVENTS);
+            kept.addAll(_events.subList(spilled.length, _events.size()));
+            _events = kept;
+            _spilled += spilled.length;
+            _eventBytes -= spilledBytes;
+            _spilledBytes += spilledBytes;
+        }
+        
+        synchronized(_eventsAdded)
+        {
+            int base = _nanosBase + spilled.length;
+            int kept = _numEventsAdded - base;
+            long[] nanos = new long[Math.max(64, 2 * kept)];
+            System.arraycopy(_eventNanos, spilled.length, nanos, 0, kept);
+            _eventNanos = nanos;
+            _nanosBase = base;
+        }
+        MemoryBudget.eventsSpilled(spilled.length);
+        
+        if (!_abortRequested && MemoryBudget.isOverSpill(_spill.getLength()))
+        {
+            MemoryBudget.gameEnded();
+            GameLog.error(_name, "the game spilled over its budget, it's ended", null);
+            this.abort();
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the time the last event was added
+     * @return the time from System.nanoTime()
+     */
+    public long getActivityNanos(){return _activityNanos;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the time the game last moved on, a turn ended or a prompt was answered
+     * @return the time from System.nanoTime()
+     */
+    public long getProgressNanos(){return _progressNanos;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the player the game thread waits for
+     * @return the player, null if the game doesn't wait for a player
+     */
+    public HumanPlayer getWaitingPlayer(){return _waitingFor;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the id of the prompt the game thread waits for
+     * @return the id of the prompt
+     */
+    public int getWaitingEvent(){return _waitingEvent;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the time the game thread started waiting for a player
+     * @return the time from System.nanoTime()
+     */
+    public long getWaitingSince(){return _waitingSince;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * checks if the prompt timer of the game is running
+     * @return true if it's running
+     */
+    public boolean hasPromptTimer(){return _timer != null;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the time the prompt timer fires, if it's running
+     * @return the time from System.currentTimeMillis()
+     */
+    public long getPromptDeadline(){return _timerDeadline;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * gets the time an answer last stopped the prompt timer
+     * @return the time from System.nanoTime(), 0 if no answer did
+     */
+    public long getTimerStoppedNanos(){return _timerStoppedNanos;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * checks if the game is being frozen for a migration, a frozen game doesn't move on
+     * @return true if it is
+     */
+    public boolean isFreezing(){return _freezeRequested;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * wakes the game thread that waits for a player whose answer was already taken,
+     * when the notify of the answer was lost
+     */
+    public void wakeWaitingPlayer()
+    {
+        HumanPlayer player = _waitingFor;
+        
+        if (player != null)
+        {
+            synchronized(player)
+            {
+                player.notify();
+            }
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * times out the prompt the game waits for as if the prompt timer fired, the player resigns
+     */
+    public void timeOutPrompt()
+    {
+        new RemovePlayerTask().run();
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * asks the game to end at the next turn boundary, a game thread waiting for a player is interrupted
+     */
+    public void abort()
+    {
+        _abortRequested = true;
+        
+        Thread thread = _thread;
+        if (thread != null && _waitingFor != null)
+        {
+            thread.interrupt();
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * drops a game whose thread is stuck, if the thread ever goes on it adds no events and
+     * journals nothing. the journal is closed with what was written before, so the server
+     * recovers the game from it when it starts again
+     */
+    void abandon()
+    {
+        _abandoned = true;
+        
+        GameJournal journal = _journal;
+        _journal = null; // before it's closed, so the thread doesn't start a record or a checkpoint
+        if (journal != null)
+        {
+            journal.close();
+        }
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * checks if the game was asked to end
+     * @return true if it was
+     */
+    public boolean isAbortRequested(){return _abortRequested;}
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * starts a countdown resign timer with the given delay in seconds
+     * @param seconds the delay
+     * @throws IllegalArgumentException if seconds is non-positive
+     */
+    public synchronized void startTimer(int seconds)
+    {
+        if(seconds <= 0)
+            throw new IllegalArgumentException("illegal seconds");
+        
+        _timerDeadline = System.currentTimeMillis() + 1000L * seconds;
+        _timer = new Timer(true);
+        _timer.schedule(new RemovePlayerTask(), 1000 * seconds);
+    }
+    
+    //---------------------------------------------------------------------
+    
+    /**
+     * stops the timer and proceeds with the game
+     */
+    public void stopTimer()
+    {
+        Event e = this.getLastEvent(); // get last event, its a prompt event with a player name
+        Player player = this.getPlayerByName(e.getPlayerName());
+        
+        // the player holds its lock from the prompt until it waits, an answer can't come in between
+        RequestTrace.Span span = RequestTrace.begin("game.stopTimer");
+        long start = answerLock.enter();
+        synchronized(player)
+        {
+            long acquired = answerLock.acquired(start);
+            try
+            {
+                if(_timer != null)
+                {
+                    _timer.cancel();
+                    _timer = null;
+                    _timerStoppedNanos = System.nanoTime();
+            
+                    // continue with the game, the waiting object is the player
+                    _answerTrace = span;
+                    player.notify();
+                }
+            }
+            finally
+            {
+                answerLock.released(acquired);
+            }
+        }
+        RequestTrace.end(span);
+    }
+    
+   
+    // SettlementRecorder class
+   //=======================================================================
+    
+    /**
+     * this class records the settlements of the game's ledger in the journal
+     */
+    private class SettlementRecorder implements MyChangeListener
+    {
+        
+        @Override
+        public void changeEventRecieved(MyChangeEvent e) 
+        {
+            GameJournal journal = _journal;
+            
+            if (journal != null && e instanceof SettlementEvent)
+            {
+                journal.settled(((SettlementEvent) e).getSettlement());
+            }
+        }
+        
+    }
+    
+    
     // RemovePlayerTask class
    //=======================================================================
     
@@ -853,21 +2417,25 @@ public class Game extends EventGenerator implements Runnable
         @Override
         public void run() 
         {
+            RequestTrace.startRequest("promptTimeout");
             Event e = getLastEvent();
             Player player = getPlayerByName(e.getPlayerName());
             
             if(player.isHuman())
             {
                 ((HumanPlayer)player).setResign(true);
+                _stats.promptTimedOut();
             }
             
             // continue with the game
             synchronized(player)
             {
+                _answerTrace = RequestTrace.current();
                 player.notify();
             }
             
             stopTimer();
+            RequestTrace.endRequest(false);
         }
         
     }
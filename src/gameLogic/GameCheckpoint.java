@@ -0,0 +1,240 @@
+package gameLogic;
+
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+/**
+ * this class represents a copy of the state of a game taken at a turn boundary:
+ * the players, the owners and houses of the assets, the order of the decks, the random
+ * sources and the ledger totals, and how far the journal and the client events got.
+ * it's taken on the game thread as plain arrays and written in a compact binary format
+ * off the game thread. there is no pending prompt at a turn boundary, so there is none here
+ * @author Dana Akerman
+ */
+public class GameCheckpoint
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final int MAGIC = 0x4d434b50; // "MCKP"
+    public static final byte VERSION = 1;
+
+    // player flags
+    static final int CAN_MOVE = 1;
+    static final int IN_GAME = 2;
+    static final int BANKRUPT = 4;
+    static final int RESIGNED = 8;
+
+    static final int NO_OWNER = -1;
+    static final int NO_CARD = -1;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    // where the checkpoint was taken
+    long _journalLength;
+    int _numEvents;
+
+    // game
+    boolean _started;
+    int _turnIndex;
+    int _currHumanNum;
+    int _dice1;
+    int _dice2;
+    long _diceRandomState;
+    long _deckRandomState;
+
+    // players by index
+    int[] _positions;
+    int[] _cash;
+    int[] _flags;
+    int[] _pardonDecks;  // ActionSquare.SURPRISE or WARRANT
+    int[] _pardonCards;  // card id, NO_CARD if the player has no pardon card
+
+    // board by square index
+    int[] _owners;       // player index, NO_OWNER
+    int[] _houses;
+
+    // decks, card ids from the top
+    int[] _surpriseCards;
+    int[] _warrantCards;
+
+    // ledger
+    long _numSettlements;
+    long[] _paid;
+    long[] _received;
+    long _treasuryPaid;
+    long _treasuryReceived;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs an empty checkpoint, filled by the game or by read()
+     */
+    GameCheckpoint(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * reads a checkpoint written by write()
+     * @param in the stream to read from
+     * @return the checkpoint
+     * @throws IOException if reading failed or the stream is not a checkpoint
+     */
+    public static GameCheckpoint read(DataInputStream in) throws IOException
+    {
+        if(in.readInt() != MAGIC || in.readByte() != VERSION)
+            throw new IOException("not a game checkpoint");
+
+        GameCheckpoint c = new GameCheckpoint();
+        c._journalLength = in.readLong();
+        c._numEvents = in.readInt();
+        c._started = in.readBoolean();
+        c._turnIndex = in.readByte();
+        c._currHumanNum = in.readByte();
+        c._dice1 = in.readByte();
+        c._dice2 = in.readByte();
+        c._diceRandomState = in.readLong();
+        c._deckRandomState = in.readLong();
+
+        int numPlayers = in.readByte();
+        c._positions = new int[numPlayers];
+        c._cash = new int[numPlayers];
+        c._flags = new int[numPlayers];
+        c._pardonDecks = new int[numPlayers];
+        c._pardonCards = new int[numPlayers];
+        c._paid = new long[numPlayers];
+        c._received = new long[numPlayers];
+
+        for(int i = 0; i < numPlayers; i++)
+        {
+            c._positions[i] = in.readByte();
+            c._cash[i] = in.readInt();
+            c._flags[i] = in.readByte();
+            c._pardonDecks[i] = in.readByte();
+            c._pardonCards[i] = in.readByte();
+            c._paid[i] = in.readLong();
+            c._received[i] = in.readLong();
+        }
+
+        int numSquares = in.readByte();
+        c._owners = new int[numSquares];
+        c._houses = new int[numSquares];
+
+        for(int i = 0; i < numSquares; i++)
+        {
+            c._owners[i] = in.readByte();
+            c._houses[i] = in.readByte();
+        }
+
+        c._surpriseCards = readCards(in);
+        c._warrantCards = readCards(in);
+
+        c._numSettlements = in.readLong();
+        c._treasuryPaid = in.readLong();
+        c._treasuryReceived = in.readLong();
+        return c;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads the card ids of a deck
+     */
+    private static int[] readCards(DataInputStream in) throws IOException
+    {
+        int[] cards = new int[in.readUnsignedByte()];
+
+        for(int i = 0; i < cards.length; i++)
+        {
+            cards[i] = in.readUnsignedByte();
+        }
+        return cards;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the card ids of a deck
+     */
+    private static void writeCards(DataOutputStream out, int[] cards) throws IOException
+    {
+        out.writeByte(cards.length);
+
+        for(int i = 0; i < cards.length; i++)
+        {
+            out.writeByte(cards[i]);
+        }
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the length of the journal when the checkpoint was taken
+     * @return the length of the journal, the records after it are not in the checkpoint
+     */
+    public long getJournalLength(){return _journalLength;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of client events when the checkpoint was taken
+     * @return the number of client events
+     */
+    public int getNumEvents(){return _numEvents;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the checkpoint, positions, flags, houses and card ids take a byte each
+     * @param out the stream to write to
+     * @throws IOException if writing failed
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(_journalLength);
+        out.writeInt(_numEvents);
+        out.writeBoolean(_started);
+        out.writeByte(_turnIndex);
+        out.writeByte(_currHumanNum);
+        out.writeByte(_dice1);
+        out.writeByte(_dice2);
+        out.writeLong(_diceRandomState);
+        out.writeLong(_deckRandomState);
+
+        out.writeByte(_positions.length);
+        for(int i = 0; i < _positions.length; i++)
+        {
+            out.writeByte(_positions[i]);
+            out.writeInt(_cash[i]);
+            out.writeByte(_flags[i]);
+            out.writeByte(_pardonDecks[i]);
+            out.writeByte(_pardonCards[i]);
+            out.writeLong(_paid[i]);
+            out.writeLong(_received[i]);
+        }
+
+        out.writeByte(_owners.length);
+        for(int i = 0; i < _owners.length; i++)
+        {
+            out.writeByte(_owners[i]);
+            out.writeByte(_houses[i]);
+        }
+
+        writeCards(out, _surpriseCards);
+        writeCards(out, _warrantCards);
+
+        out.writeLong(_numSettlements);
+        out.writeLong(_treasuryPaid);
+        out.writeLong(_treasuryReceived);
+    }
+}
@@ -3,9 +3,29 @@ package gameLogic;
 
 import gameLogic.innerEvents.MyChangeEvent;
 import gameLogic.innerEvents.MyChangeListener;
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.LockStats;
+import gameLogic.metrics.MetricsBean;
+import gameLogic.metrics.MetricsServer;
 import gameLogic.players.HumanPlayer;
+import gameLogic.persistence.GameArchive;
+import gameLogic.persistence.GameArchives;
+import gameLogic.persistence.GameJournal;
+import gameLogic.persistence.GameReplayer;
+import gameLogic.persistence.HibernatedGame;
+import gameLogic.persistence.RecoveredGame;
 import gameLogic.players.Player;
+import gameLogic.replication.GameMigrator;
+import gameLogic.replication.MigrationListener;
+import gameLogic.replication.Replication;
+import gameLogic.replication.ReplicationReceiver;
+import gameLogic.replication.ReplicationSender;
+import gameLogic.tracing.RequestTrace;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Timer;
+import java.util.TimerTask;
 import monopoly.Event;
 import monopoly.EventsFactory;
 
@@ -22,11 +42,33 @@ public class GameManager implements MyChangeListener
     //--------------------------------------------------------------
     
     private static GameManager instance;
+    private static final LockStats findGameLock = new LockStats("manager.findGame");
+    
+    // constants
+    //--------------------------------------------------------------
+    
+    // when set, every game is seeded with this value so runs can be reproduced
+    public static final String SEED_PROPERTY = "monopoly.seed";
+    
+    // seconds a waiting game may go untouched before it's hibernated to its journal, 0 turns hibernation off
+    public static final String HIBERNATE_PROPERTY = "monopoly.hibernate.idle";
+    public static final int DEFAULT_HIBERNATE_IDLE = 300;
+    // the number of waiting games that may stay in the memory
+    public static final String RESIDENT_PROPERTY = "monopoly.hibernate.resident";
+    public static final int DEFAULT_RESIDENT_GAMES = 16;
     
     // data members
     //--------------------------------------------------------------
     
-    private Game _game;
+    private volatile Game _game;
+    private volatile HibernatedGame _hibernated; // the game when it's not in the memory
+    private ResidentGames _resident;             // null if hibernation is off
+    private GameArchives _archives;              // null if archiving is off
+    private volatile boolean _standby;           // true while the journals are replicated to this server
+    private volatile String _movedTo;            // where the last game was migrated to
+    private boolean _migrating;
+    private boolean _swapping;                   // the game is written to or read from the disk outside the lock
+    private volatile Game _abandoned;            // the last stuck game dropped, its thread may still create events
 
     // c'tor
     //--------------------------------------------------------------
@@ -37,6 +79,29 @@ public class GameManager implements MyChangeListener
     private GameManager() 
     {
         _game = null;
+        _hibernated = null;
+        _resident = null;
+        _standby = false;
+        _movedTo = null;
+        _migrating = false;
+        _swapping = false;
+        _archives = GameArchives.isEnabled() ? GameArchives.fromProperties() : null;
+        
+        int idle = Integer.getInteger(HIBERNATE_PROPERTY, DEFAULT_HIBERNATE_IDLE).intValue();
+        
+        if(GameJournal.isEnabled() && idle > 0)
+        {
+            _resident = new ResidentGames(Integer.getInteger(RESIDENT_PROPERTY, DEFAULT_RESIDENT_GAMES).intValue(), idle * 1000L);
+            
+            Timer timer = new Timer("hibernator", true);
+            long period = Math.max(1000L, _resident.getIdleMillis() / 4);
+            timer.schedule(new HibernateTask(), period, period);
+        }
+        
+        if(!"false".equals(System.getProperty(GameWatchdog.WATCHDOG_PROPERTY)))
+        {
+            new GameWatchdog(this, Integer.getInteger(GameWatchdog.STUCK_PROPERTY, GameWatchdog.DEFAULT_STUCK).intValue()).start();
+        }
     }
     
     // functions & methods
@@ -51,12 +116,265 @@ public class GameManager implements MyChangeListener
         if(instance == null)
         {
             instance = new GameManager();
+            instance.startUp(); // the games call getInstance() so it must be set first
         }
         return instance;
     }
     
     //--------------------------------------------------------------
     
+    /**
+     * shows the metrics and the admin view, then recovers the games and starts replicating the journals to the standby, 
+     * or, on a standby, starts receiving the journals of the primary
+     */
+    private void startUp()
+    {
+        MetricsBean.register();
+        GameLog.info("memory budget of a game " + MemoryBudget.getSoftBudget() + " bytes before spilling, " 
+                + MemoryBudget.getHardBudget() + " bytes before ending, at least " + MemoryBudget.getHardGamesPerGB()
+                + " games per GB at the hard budget, " + MemoryBudget.getGamesPerGB() + " per GB as measured");
+        
+        Integer metricsPort = Integer.getInteger(MetricsServer.PORT_PROPERTY);
+        if(metricsPort != null)
+        {
+            try
+            {
+                new MetricsServer(metricsPort.intValue()).start();
+            }
+            catch(IOException e)
+            {
+                GameLog.error("can't serve the metrics on port " + metricsPort, e);
+            }
+        }
+        
+        Integer adminPort = Integer.getInteger(AdminServer.PORT_PROPERTY);
+        if(adminPort != null)
+        {
+            try
+            {
+                new AdminServer(this, adminPort.intValue()).start();
+            }
+            catch(IOException e)
+            {
+                GameLog.error("can't serve the admin view on port " + adminPort, e);
+            }
+        }
+        
+        if(Replication.isStandby() && GameJournal.isEnabled())
+        {
+            _standby = true;
+            ReplicationReceiver receiver = new ReplicationReceiver(GameJournal.getDirectory(),
+                    Integer.getInteger(Replication.LISTEN_PROPERTY).intValue(),
+                    Integer.getInteger(Replication.FAILOVER_PROPERTY, Replication.DEFAULT_FAILOVER).intValue(),
+                    new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            takeOver();
+                        }
+                    });
+            
+            try
+            {
+                receiver.start();
+                return;
+            }
+            catch(IOException e)
+            {
+                GameLog.error("can't start the standby, running as a primary", e);
+                _standby = false;
+            }
+        }
+        
+        this.recoverGames();
+        
+        if(Replication.hasStandby() && GameJournal.isEnabled())
+        {
+            new ReplicationSender(GameJournal.getDirectory(), System.getProperty(Replication.STANDBY_PROPERTY),
+                    Integer.getInteger(Replication.INTERVAL_PROPERTY, Replication.DEFAULT_INTERVAL).intValue()).start();
+        }
+        
+        Integer migrationPort = Integer.getInteger(GameMigrator.LISTEN_PROPERTY);
+        if(migrationPort != null && GameJournal.isEnabled())
+        {
+            try
+            {
+                new MigrationListener(GameJournal.getDirectory(), migrationPort.intValue(), 
+                        System.getProperty(GameMigrator.URL_PROPERTY, ""), new MigrationListener.Receiver()
+                        {
+                            @Override
+                            public String receiveGame(File journal)
+                            {
+                                return GameManager.this.receiveGame(journal);
+                            }
+                        }).start();
+            }
+            catch(IOException e)
+            {
+                GameLog.error("can't receive migrated games", e);
+            }
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * makes a standby the primary, the games are recovered from the replicated journals
+     */
+    private synchronized void takeOver()
+    {
+        long start = System.nanoTime();
+        this.recoverGames();
+        _standby = false;
+        GameLog.info("took over in " + (System.nanoTime() - start) / 1000000 + " ms");
+        
+        if(Replication.hasStandby())
+        {
+            new ReplicationSender(GameJournal.getDirectory(), System.getProperty(Replication.STANDBY_PROPERTY),
+                    Integer.getInteger(Replication.INTERVAL_PROPERTY, Replication.DEFAULT_INTERVAL).intValue()).start();
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * moves the running game to another server process. the game goes on here until it reaches
+     * a turn boundary, then it stops until the target runs it, and its clients are sent there
+     * @param target the address of the migration listener of the target, host:port
+     * @return null if the game moved, otherwise the error
+     */
+    public String migrateGame(String target)
+    {
+        Game game;
+        
+        synchronized(this)
+        {
+            game = _game;
+            
+            if(game == null || !game.isStarted() || game.isGameOver() || game.getJournal() == null)
+            {
+                return "no running game to migrate";
+            }
+            if(_migrating)
+            {
+                return "the game is already migrating";
+            }
+            _migrating = true;
+        }
+        
+        try
+        {
+            GameMigrator migrator = new GameMigrator(game, target);
+            migrator.migrate(Integer.getInteger(GameMigrator.FREEZE_PROPERTY, GameMigrator.DEFAULT_FREEZE).intValue());
+            
+            synchronized(this)
+            {
+                _game = null;
+                _movedTo = migrator.getURL();
+                this.resetEventIDs();
+                if(_resident != null)
+                {
+                    _resident.remove(game);
+                }
+            }
+            game.discardSpill();
+            
+            GameLog.info(game.getName(), "migrated to " + target 
+                    + ", the game stood still for " + migrator.getStallMillis() + " ms");
+            return null;
+        }
+        catch(IOException e)
+        {
+            GameLog.error(game.getName(), "the game can't be migrated", e);
+            return e.getMessage();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+        finally
+        {
+            synchronized(this)
+            {
+                _migrating = false;
+            }
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * runs a game another server process migrated here
+     * @param journal the journal of the game, with a checkpoint at its end
+     * @return null if the game runs, otherwise the error
+     */
+    private synchronized String receiveGame(File journal)
+    {
+        if(_standby)
+        {
+            return "this server is a standby";
+        }
+        if(_game != null || _hibernated != null)
+        {
+            return "only one game allowed";
+        }
+        
+        try
+        {
+            long start = System.nanoTime();
+            RecoveredGame recovered = RecoveredGame.read(journal);
+            
+            if(recovered.isEnded() || !recovered.isStarted())
+            {
+                return "the game isn't running";
+            }
+            
+            _game = GameReplayer.recover(recovered);
+            _movedTo = null;
+            if(_resident != null)
+            {
+                _resident.touch(_game);
+            }
+            this.runGame();
+            
+            GameLog.info(recovered.getName(), "received the migrated game in " 
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+            return null;
+        }
+        catch(IOException e)
+        {
+            GameLog.error("can't read the journal of a migrated game", e);
+            _game = null;
+            return "can't read the journal, " + e.getMessage();
+        }
+        catch(RuntimeException e)
+        {
+            GameLog.error("can't replay the journal of a migrated game", e);
+            _game = null;
+            return "can't replay the journal, " + e;
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the address the clients of the last migrated game are sent to
+     * @return the address, empty if it's unknown, or null if no game moved away since the last game started here
+     */
+    public String getMovedTo(){return _movedTo;}
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * checks if this server is a standby, which doesn't run games until it takes over
+     * @return true if this server is a standby
+     */
+    public boolean isStandby(){return _standby;}
+    
+    //--------------------------------------------------------------
+    
     /**
      * starts a new game with the given parameters
      * @param XmlFileName the configuration xml file name
@@ -67,13 +385,365 @@ public class GameManager implements MyChangeListener
      */
     public void startGame(String XmlFileName, String gameName, int humanPlayers, int computerizedPlayers, boolean useAutomaticDiceRoll)
     {
+        if(_standby)
+        {
+            GameLog.error(gameName, "this server is a standby, games start on the primary", null);
+            return;
+        }
+        
+        if(!MemoryBudget.canStartGame())
+        {
+            GameLog.error(gameName, "not enough memory for a new game", null);
+            return;
+        }
+        
         try
         {
-            _game = new Game(XmlFileName, gameName, humanPlayers, computerizedPlayers, useAutomaticDiceRoll);
+            Long seed = Long.getLong(SEED_PROPERTY);
+            
+            if(seed != null)
+            {
+                _game = new Game(XmlFileName, gameName, humanPlayers, computerizedPlayers, useAutomaticDiceRoll, seed.longValue());
+            }
+            else
+            {
+                _game = new Game(XmlFileName, gameName, humanPlayers, computerizedPlayers, useAutomaticDiceRoll);
+            }
+            
+            if(GameJournal.isEnabled())
+            {
+                _game.setJournal(GameJournal.create(_game));
+            }
+            
+            if(_resident != null)
+            {
+                _resident.touch(_game);
+            }
+            _movedTo = null;
         }
         catch(Exception e)
         {
-            e.printStackTrace();
+            GameLog.error(gameName, "the game can't be started", e);
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * rebuilds the game that was running or waiting for players when the server went down from its journal.
+     * a started game is replayed up to its last turn boundary and runs again from there,
+     * the journals of older unfinished games are closed
+     */
+    private void recoverGames()
+    {
+        if(!GameJournal.isEnabled())
+        {
+            return;
+        }
+        
+        ArrayList<RecoveredGame> games = RecoveredGame.readUnfinished(GameJournal.getDirectory());
+        
+        for(int i = games.size() - 1; i >= 0; i--) // newest first, only one game is allowed
+        {
+            RecoveredGame recovered = games.get(i);
+            
+            try
+            {
+                if(_game == null)
+                {
+                    long start = System.nanoTime();
+                    _game = GameReplayer.recover(recovered); // the journal is reopened at the last turn boundary
+                    
+                    GameLog.info(recovered.getName(), "recovered from " + recovered.getFile() 
+                            + " (" + recovered.getBoundaryDomainEvents() + " domain events replayed in " 
+                            + (System.nanoTime() - start) / 1000000 + " ms)");
+                    
+                    if(_game.isStarted() || _game.isFull())
+                    {
+                        this.runGame();
+                    }
+                    else if(_resident != null)
+                    {
+                        _resident.touch(_game);
+                    }
+                }
+                else
+                {
+                    GameJournal.reopen(recovered).gameEnded();
+                    GameLog.info(recovered.getName(), "closed the journal, only one game is allowed");
+                }
+            }
+            catch(IOException e)
+            {
+                GameLog.error(recovered.getName(), "the journal can't be closed", e);
+            }
+            catch(RuntimeException e)
+            {
+                GameLog.error(recovered.getName(), "the journal can't be replayed", e);
+                _game = null;
+            }
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the game that is in the memory, without waiting for the manager's lock or rehydrating a game
+     * @return the game, or null if there's none
+     */
+    Game getRunningGame(){return _game;}
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the game that was hibernated to its journal
+     * @return the game, or null if there's none
+     */
+    HibernatedGame getHibernatedGame(){return _hibernated;}
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * counts a call of the web service for the game in the memory, if there's one
+     */
+    public void gameCallServed()
+    {
+        Game game = _game;
+        
+        if(game != null)
+        {
+            game.getStats().callServed();
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * drops a game whose thread is stuck for good so new games can start, the game isn't archived.
+     * its thread adds no more events and its journal is closed, the server recovers it from the
+     * journal when it starts again. the event ids go on from where they are, the thread may still
+     * take ids and the next game's ids only have to grow
+     * @param game the stuck game
+     */
+    void abandonGame(Game game)
+    {
+        synchronized(this)
+        {
+            if(_game != game)
+            {
+                return;
+            }
+            _game = null;
+            _abandoned = game;
+            if(_resident != null)
+            {
+                _resident.remove(game);
+            }
+        }
+        game.abandon();
+        GameLog.info(game.getName(), "abandoned the stuck game");
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * starts the event ids of the next game from 1, unless the thread of an abandoned game
+     * still runs and takes ids from the same generator
+     */
+    private void resetEventIDs()
+    {
+        Game abandoned = _abandoned;
+        if(abandoned != null && abandoned.getThread() != null)
+        {
+            return;
+        }
+        _abandoned = null;
+        EventsFactory.resetEventIdGenerator();
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the current game for a client that asks for it, rebuilding it from its journal if it was hibernated
+     * @return the current game or null if the game doesn't exist
+     */
+    private Game getGame()
+    {
+        RequestTrace.Span span = RequestTrace.begin("manager.getGame"); // with the wait for the manager's lock
+        try
+        {
+            return this.findGame();
+        }
+        finally
+        {
+            RequestTrace.end(span);
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the current game, rebuilding it from its journal if it was hibernated.
+     * the journal is replayed outside the manager's lock, the callers that ask for the game
+     * meanwhile wait for it. a game that can't be rebuilt stays hibernated
+     * @return the current game or null if the game doesn't exist
+     */
+    private Game findGame()
+    {
+        HibernatedGame hibernated;
+        long start = findGameLock.enter();
+        synchronized(this)
+        {
+            long acquired = findGameLock.acquired(start);
+            try
+            {
+                if(_swapping)
+                {
+                    findGameLock.released(acquired); // the lock is let go while waiting
+                    acquired = 0;
+                }
+                if(!this.waitForSwap())
+                {
+                    return null;
+                }
+                
+                if(_game != null || _hibernated == null)
+                {
+                    if(_game != null && _resident != null)
+                    {
+                        _resident.touch(_game);
+                    }
+                    return _game;
+                }
+                
+                hibernated = _hibernated;
+                _swapping = true;
+            }
+            finally
+            {
+                findGameLock.released(acquired);
+            }
+        }
+        
+        Game game = null;
+        try
+        {
+            long rehydrateStart = System.nanoTime();
+            game = hibernated.rehydrate();
+            
+            GameLog.info(hibernated.getName(), "rehydrated in " 
+                    + (System.nanoTime() - rehydrateStart) / 1000000 + " ms");
+        }
+        catch(IOException e)
+        {
+            GameLog.error(hibernated.getName(), "the game can't be rehydrated", e);
+        }
+        catch(RuntimeException e)
+        {
+            GameLog.error(hibernated.getName(), "the game can't be rehydrated", e);
+        }
+        finally
+        {
+            synchronized(this)
+            {
+                if(game != null)
+                {
+                    _game = game;
+                    _hibernated = null;
+                    if(_resident != null)
+                    {
+                        _resident.touch(game);
+                    }
+                }
+                _swapping = false;
+                this.notifyAll();
+            }
+        }
+        return game;
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * waits until the game isn't being written to or read from the disk, called holding the manager's lock
+     * @return false if interrupted while waiting
+     */
+    private boolean waitForSwap()
+    {
+        while(_swapping)
+        {
+            try
+            {
+                this.wait();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * hibernates the waiting games that were not asked for in the idle time,
+     * and the least recently used ones above the budget.
+     * the journal is written outside the manager's lock, the game stays the current game
+     * until it's on the disk and the callers that ask for it meanwhile wait
+     */
+    private void hibernateIdleGames()
+    {
+        ArrayList<Game> evictable = _resident.getEvictable(System.currentTimeMillis());
+        
+        for(int i = 0; i < evictable.size(); i++)
+        {
+            Game game = evictable.get(i);
+            
+            synchronized(this)
+            {
+                _resident.remove(game);
+                
+                // a player may have joined since
+                if(game != _game || _swapping || !HibernatedGame.canHibernate(game))
+                {
+                    continue;
+                }
+                _swapping = true;
+            }
+            
+            HibernatedGame hibernated = null;
+            try
+            {
+                hibernated = HibernatedGame.hibernate(game);
+                GameLog.info(hibernated.getName(), "hibernated to " + hibernated.getFile());
+            }
+            catch(IOException e)
+            {
+                GameLog.error(game.getName(), "the game can't be hibernated", e);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                synchronized(this)
+                {
+                    if(hibernated != null)
+                    {
+                        _hibernated = hibernated;
+                        _game = null;
+                    }
+                    else
+                    {
+                        _resident.touch(game); // it stays in the memory
+                    }
+                    _swapping = false;
+                    this.notifyAll();
+                }
+            }
         }
     }
     
@@ -83,7 +753,7 @@ public class GameManager implements MyChangeListener
      * check if a game exists
      * @return true if a game exists
      */
-    public boolean isGameExists(){return _game != null;}
+    public boolean isGameExists(){return _game != null || _hibernated != null;}
     
     //--------------------------------------------------------------
     
@@ -111,9 +781,16 @@ public class GameManager implements MyChangeListener
      */
     public String getGameName()
     {
-        if(_game != null)
+        Game game = _game;
+        HibernatedGame hibernated = _hibernated;
+        
+        if(game != null)
+        {
+            return game.getName();
+        }
+        else if(hibernated != null)
         {
-            return _game.getName();
+            return hibernated.getName(); // a client listing the games doesn't rehydrate it
         }
         else
         {
@@ -129,9 +806,11 @@ public class GameManager implements MyChangeListener
      */
     public String getGameStatus()
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            return _game.getStatus();
+            return game.getStatus();
         }
         else
         {
@@ -147,9 +826,11 @@ public class GameManager implements MyChangeListener
      */
     public int getGameTotalHumanNum()
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            return _game.getTotalHumanNum();
+            return game.getTotalHumanNum();
         }
         else
         {
@@ -165,9 +846,11 @@ public class GameManager implements MyChangeListener
      */
     public int getGameCurHumanNum()
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            return _game.getCurHumanNum();
+            return game.getCurHumanNum();
         }
         else
         {
@@ -181,7 +864,7 @@ public class GameManager implements MyChangeListener
      * gets the number of computerized players in the current game
      * @return the number of computerized players in the current game
      */
-    public int getGameCompNum(){return _game.getCompNum();}
+    public int getGameCompNum(){return this.getGame().getCompNum();}
     
     //--------------------------------------------------------------
     
@@ -189,7 +872,7 @@ public class GameManager implements MyChangeListener
      * check if auto dice is active in the current game
      * @return true if auto dice is active in the current game
      */
-    public boolean getGameAutoDice(){return _game.isAutoDice();}
+    public boolean getGameAutoDice(){return this.getGame().isAutoDice();}
     
     //--------------------------------------------------------------
     
@@ -197,7 +880,7 @@ public class GameManager implements MyChangeListener
      * checks if the game is full
      * @return true if the game is full
      */
-    public boolean isGameFull(){return _game.isFull();}
+    public boolean isGameFull(){return this.getGame().isFull();}
     
     //--------------------------------------------------------------
     
@@ -212,11 +895,11 @@ public class GameManager implements MyChangeListener
         
         try
         {
-            val = _game.getName().equals(gameName);
+            val = this.getGameName().equals(gameName);
         }
         catch(Exception e)
         {
-            e.printStackTrace();
+            GameLog.error(gameName, "can't compare the name of the game", e);
         }
         
         return val;
@@ -235,11 +918,11 @@ public class GameManager implements MyChangeListener
         
         try
         {
-            p = _game.getPlayerByName(playerName);
+            p = this.getGame().getPlayerByName(playerName);
         }
         catch(Exception e)
         {
-            e.printStackTrace();
+            GameLog.error(null, playerName, GameLog.NO_EVENT, "can't get the player", e);
         }
         
         return p;
@@ -258,11 +941,11 @@ public class GameManager implements MyChangeListener
        
        try
        {
-           id = _game.addPlayer(name);
+           id = this.getGame().addPlayer(name);
        }
        catch(Exception e)
        {
-           e.printStackTrace();
+           GameLog.error(null, name, GameLog.NO_EVENT, "can't add the player", e);
        }
        
        return id;
@@ -277,12 +960,12 @@ public class GameManager implements MyChangeListener
     {
         try
         {
-            Thread gameThread = new Thread(_game);
+            Thread gameThread = new Thread(this.getGame());
             gameThread.start();
         }
         catch(Exception e)
         {
-            e.printStackTrace();
+            GameLog.error("can't run the game", e);
         }
     }
     
@@ -293,24 +976,108 @@ public class GameManager implements MyChangeListener
      */
     public void stopGame()
     {
-        if(_game != null && _game.isGameOver())
+        Game game = _game;
+        
+        if(game != null && game.isGameOver())
         {
-            EventsFactory.resetEventIdGenerator();
+            this.archiveGame(game); // before the game is gone, so the clients can move on to the archive
+            this.resetEventIDs();
             _game = null;
+            game.discardSpill();
+            
+            if(_resident != null)
+            {
+                _resident.remove(game);
+            }
         }
     }
 
     //--------------------------------------------------------------
     
+    /**
+     * writes the archive of a game that is over
+     */
+    private void archiveGame(Game game)
+    {
+        if(_archives == null)
+        {
+            return;
+        }
+        
+        if(MemoryBudget.isOverHard(game.getAllEventsEstimate()))
+        {
+            GameLog.error(game.getName(), "the game is too big to archive within the memory budget, its journal keeps it", null);
+            return;
+        }
+        
+        try
+        {
+            long start = System.nanoTime();
+            GameArchive archive = _archives.archive(game);
+            
+            GameLog.info(game.getName(), "archived to " + archive.getFile() + " (" 
+                    + archive.getNumEvents() + " events in " + (System.nanoTime() - start) / 1000000 + " ms)");
+        }
+        catch(IOException e)
+        {
+            GameLog.error(game.getName(), "the game can't be archived", e);
+        }
+        catch(RuntimeException e)
+        {
+            GameLog.error(game.getName(), "the game can't be archived", e);
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the game that ended last
+     * @return the archive of the game, or null if no game ended or archiving is off
+     */
+    public GameArchive getLastFinishedGame()
+    {
+        if(_archives != null)
+        {
+            return _archives.getLatest();
+        }
+        else
+        {
+            return null;
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the newest finished game with the given name
+     * @param gameName the name of the game
+     * @return the archive of the game, or null if there is none or archiving is off
+     */
+    public GameArchive getFinishedGame(String gameName)
+    {
+        if(_archives != null && gameName != null)
+        {
+            return _archives.get(gameName);
+        }
+        else
+        {
+            return null;
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
     /**
      * get the players of the current game
      * @return the players of the current game or null if the game doesn't exist
      */
     public ArrayList<Player> getGamePlayers()
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            return _game.getPlayers();
+            return game.getPlayers();
         }
         else
         {
@@ -321,14 +1088,38 @@ public class GameManager implements MyChangeListener
     //--------------------------------------------------------------
     
     /**
-     * gets the events in the current game
-     * @return the events in the current game or null if the game doesn't exist
+     * gets the cash of the players of the current game, taken between ledger transactions
+     * @return the cash of each player by its index, or null if the game doesn't exist
      */
-    public ArrayList<Event> getGameEvents()
+    public int[] getGamePlayersCash()
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            return _game.getEvents();
+            return game.getLedger().getCashSnapshot();
+        }
+        else
+        {
+            return null;
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * gets the events in the current game from the given event
+     * @param from the index of the first event
+     * @return the events, or null if the game doesn't exist or from is illegal
+     * @throws IOException if the events the game spilled to the disk can't be read
+     */
+    public Event[] getGameEvents(int from) throws IOException
+    {
+        Game game = this.getGame();
+        
+        if(game != null)
+        {
+            return game.getEvents(from);
         }
         else
         {
@@ -344,9 +1135,14 @@ public class GameManager implements MyChangeListener
      */
     public Event getLastGameEvent()
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            return _game.getLastEvent();
+            RequestTrace.Span span = RequestTrace.begin("game.getLastEvent");
+            Event last = game.getLastEvent();
+            RequestTrace.end(span);
+            return last;
         }
         else
         {
@@ -363,9 +1159,14 @@ public class GameManager implements MyChangeListener
      */
     public HumanPlayer getGamePlayerById(int id)
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            return _game.getPlayerByID(id);
+            RequestTrace.Span span = RequestTrace.begin("game.getPlayerByID");
+            HumanPlayer player = game.getPlayerByID(id);
+            RequestTrace.end(span);
+            return player;
         }
         else
         {
@@ -375,6 +1176,110 @@ public class GameManager implements MyChangeListener
     
     //--------------------------------------------------------------
     
+    /**
+     * starts a command of a client on the current game, see CommandLog.begin
+     * @param key the key of the command
+     * @return the outcome of the command that had the key, or null if the key is new 
+     * or there's no game, and the caller runs the command and ends it with endGameCommand
+     * @throws InterruptedException if interrupted while waiting for a duplicate to end
+     */
+    public String beginGameCommand(String key) throws InterruptedException
+    {
+        Game game = this.getGame();
+        
+        if(game != null)
+        {
+            RequestTrace.Span span = RequestTrace.begin("command.begin"); // waits for a duplicate in progress
+            try
+            {
+                return game.getCommandLog().begin(key);
+            }
+            finally
+            {
+                RequestTrace.end(span);
+            }
+        }
+        return null;
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * ends a command of a client on the current game, it's journaled before its duplicates see it
+     * @param command the command, or null to forget it
+     * @param key the key of the command
+     */
+    public void endGameCommand(CommandLog.Command command, String key)
+    {
+        Game game = this.getGame();
+        
+        if(game == null)
+        {
+            return;
+        }
+        
+        if(command == null)
+        {
+            game.getCommandLog().cancel(key);
+            return;
+        }
+        
+        RequestTrace.Span span = RequestTrace.begin("command.end");
+        GameJournal journal = game.getJournal();
+        if(journal != null)
+        {
+            journal.commandDone(command);
+        }
+        game.getCommandLog().end(command);
+        RequestTrace.end(span);
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * waits until the current game asks a player for something after the given event, or is over
+     * @param eventID the id of the event a client answered
+     * @param timeoutMillis the longest time to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void waitForGamePrompt(int eventID, long timeoutMillis) throws InterruptedException
+    {
+        Game game = this.getGame();
+        
+        if(game != null)
+        {
+            RequestTrace.Span span = RequestTrace.begin("game.waitForPrompt");
+            try
+            {
+                game.waitForPrompt(eventID, timeoutMillis);
+            }
+            finally
+            {
+                RequestTrace.end(span);
+            }
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
+    /**
+     * records the time the given events of the current game took to reach a client
+     * @param first the index of the first event the client got
+     * @param count the number of events the client got
+     * @param waited true if the client waited for the events with its command, false if it polled for them
+     */
+    public void gameEventsDelivered(int first, int count, boolean waited)
+    {
+        Game game = this.getGame();
+        
+        if(game != null)
+        {
+            game.eventsDelivered(first, count, waited);
+        }
+    }
+    
+    //--------------------------------------------------------------
+    
     /**
      * sets the dice in the current game
      * @param dice1 the first dice
@@ -382,9 +1287,11 @@ public class GameManager implements MyChangeListener
      */
     public void setGameDice(int dice1, int dice2)
     {
-        if(_game != null)
+        Game game = this.getGame();
+        
+        if(game != null)
         {
-            _game.setDice(dice1, dice2);
+            game.setDice(dice1, dice2);
         }
     }
     
@@ -414,5 +1321,27 @@ public class GameManager implements MyChangeListener
             stopGame();
         }
     }
+    
+    // inner classes
+    //--------------------------------------------------------------
+    
+    /**
+     * this class is the periodic task that hibernates the idle games
+     */
+    private class HibernateTask extends TimerTask
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                hibernateIdleGames();
+            }
+            catch(RuntimeException e)
+            {
+                GameLog.error("can't hibernate the idle games", e); // the timer thread must survive
+            }
+        }
+    }
    
 }
@@ -0,0 +1,164 @@
+package gameLogic;
+
+
+/**
+ * this class represents the random source of a single monopoly game (dice and card shuffles).
+ * it is a seedable and splittable SplitMix64 generator, so a game can be replayed exactly
+ * from its seed, and it does not allocate when drawing numbers.
+ * the generator is not thread safe, it is used only by the game thread
+ * @author Dana Akerman
+ */
+public class GameRandom
+{
+
+    // constants
+    //------------------------------------------------------------
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // statics
+    //------------------------------------------------------------
+
+    private static long seedUniquifier = 0x2545f4914f6cdd1dL;
+
+    // data members
+    //------------------------------------------------------------
+
+    private final long _seed;
+    private long _state;
+
+    // c'tor
+    //------------------------------------------------------------
+
+    /**
+     * constructs a new random source with the given seed
+     * @param seed the seed
+     */
+    public GameRandom(long seed)
+    {
+        _seed = seed;
+        _state = seed;
+    }
+
+    // methods
+    //------------------------------------------------------------
+
+    /**
+     * creates a new seed that is different on every call
+     * @return a new seed
+     */
+    public static synchronized long newSeed()
+    {
+        seedUniquifier += GOLDEN_GAMMA;
+        return mix64(seedUniquifier ^ System.nanoTime());
+    }
+
+    //------------------------------------------------------------
+
+    /**
+     * gets the seed this random source was created with
+     * @return the seed
+     */
+    public long getSeed(){return _seed;}
+
+    //------------------------------------------------------------
+
+    /**
+     * gets the current state of the generator, used to save and restore it
+     * @return the current state of the generator
+     */
+    public long getState(){return _state;}
+
+    //------------------------------------------------------------
+
+    /**
+     * sets the current state of the generator to a state taken from getState
+     * @param state the state to set
+     */
+    public void setState(long state)
+    {
+        _state = state;
+    }
+
+    //------------------------------------------------------------
+
+    /**
+     * creates a new random source which is independent of this one,
+     * the new source's seed is drawn from this source
+     * @return a new random source
+     */
+    public GameRandom split()
+    {
+        return new GameRandom(this.nextLong());
+    }
+
+    //------------------------------------------------------------
+
+    /**
+     * gets the next random long
+     * @return the next random long
+     */
+    public long nextLong()
+    {
+        _state += GOLDEN_GAMMA;
+        return mix64(_state);
+    }
+
+    //------------------------------------------------------------
+
+    /**
+     * gets a uniformly distributed random int between 0 (inclusive) and bound (exclusive)
+     * @param bound the upper bound
+     * @return a random int in [0, bound)
+     * @throws IllegalArgumentException if bound is non-positive
+     */
+    public int nextInt(int bound)
+    {
+        if(bound <= 0)
+            throw new IllegalArgumentException("illegal bound");
+
+        int r = (int)(this.nextLong() >>> 33);
+        int m = bound - 1;
+
+        if((bound & m) == 0) // power of two
+        {
+            return (int)((bound * (long)r) >> 31);
+        }
+
+        // reject the values of the last partial range so every result is equally likely
+        int u = r;
+        r = u % bound;
+
+        while(u - r + m < 0)
+        {
+            u = (int)(this.nextLong() >>> 33);
+            r = u % bound;
+        }
+        return r;
+    }
+
+    //------------------------------------------------------------
+
+    /**
+     * rolls a single die
+     * @return a value between 1 and 6
+     */
+    public int rollDie()
+    {
+        return this.nextInt(6) + 1;
+    }
+
+    //------------------------------------------------------------
+
+    /**
+     * SplitMix64 finalizer
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    private static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
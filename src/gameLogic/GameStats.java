@@ -0,0 +1,341 @@
+package gameLogic;
+
+
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Gauge;
+import gameLogic.metrics.Histogram;
+import gameLogic.metrics.Metrics;
+import java.util.Timer;
+import java.util.TimerTask;
+
+
+/**
+ * this class keeps the statistics of the turns of a game, and adds them to the server metrics.
+ * a turn is split into the time the game waited for the human player to answer a prompt and
+ * the time the server worked, so slow players, prompt timeouts and a busy server can be told apart.
+ * it also keeps the time the events of the game took to reach the clients, and the calls of the web service it served.
+ * the turns are reported by the game thread, a timeout by the timer thread, a delivery and a call by the client's thread
+ * @author Dana Akerman
+ */
+public class GameStats
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final long RATE_MILLIS = 60 * 1000; // the period of the games per minute gauges
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Histogram turnNanos = Metrics.getHistogram("game.turn.nanos");
+    private static final Histogram turnServerNanos = Metrics.getHistogram("game.turn.server.nanos");
+    private static final Histogram promptWaitNanos = Metrics.getHistogram("game.prompt.wait.nanos");
+    private static final Histogram turnEvents = Metrics.getHistogram("game.turn.events");
+    private static final Histogram deliveryNanos = Metrics.getHistogram("event.delivery.nanos");
+    private static final Histogram pollDeliveryNanos = Metrics.getHistogram("event.delivery.poll.nanos");
+    private static final Histogram waitDeliveryNanos = Metrics.getHistogram("event.delivery.wait.nanos");
+    private static final Counter turns = Metrics.getCounter("game.turns");
+    private static final Counter timeouts = Metrics.getCounter("game.prompt.timeouts");
+    private static final Counter started = Metrics.getCounter("games.started");
+    private static final Counter finished = Metrics.getCounter("games.finished");
+    private static final Gauge startedPerMinute = Metrics.getGauge("games.started.per.minute");
+    private static final Gauge finishedPerMinute = Metrics.getGauge("games.finished.per.minute");
+
+    private static Timer rateTimer; // started with the first game
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private long _turnStart;       // the turn in progress, of the game thread
+    private long _turnPromptNanos;
+    private int _turnFirstEvent;
+
+    private int _turns;
+    private long _turnNanos;
+    private long _maxTurnNanos;
+    private long _serverNanos;
+    private int _prompts;
+    private long _promptNanos;
+    private long _maxPromptNanos;
+    private int _timeouts;
+    private long _events;
+
+    private final Histogram _deliveryNanos = new Histogram("event.delivery.nanos"); // of this game only
+    
+    private long _calls;
+    private long _callMinute;      // the minute the calls below were counted in
+    private long _minuteCalls;
+    private long _lastMinuteCalls; // the calls of the minute before it
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts the turn of a player
+     * @param numEvents the number of events of the game before the turn
+     */
+    public synchronized void turnStarted(int numEvents)
+    {
+        _turnStart = System.nanoTime();
+        _turnPromptNanos = 0;
+        _turnFirstEvent = numEvents;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends the turn of a player
+     * @param numEvents the number of events of the game after the turn
+     */
+    public synchronized void turnEnded(int numEvents)
+    {
+        long nanos = System.nanoTime() - _turnStart;
+        long server = Math.max(0, nanos - _turnPromptNanos);
+        int events = numEvents - _turnFirstEvent;
+
+        _turns++;
+        _turnNanos += nanos;
+        _maxTurnNanos = Math.max(_maxTurnNanos, nanos);
+        _serverNanos += server;
+        _events += events;
+
+        turns.increment();
+        turnNanos.record(nanos);
+        turnServerNanos.record(server);
+        turnEvents.record(events);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds the time the game waited for a player to answer a prompt, or for the prompt to time out
+     * @param nanos the time waited
+     */
+    public synchronized void promptAnswered(long nanos)
+    {
+        _turnPromptNanos += nanos;
+        _prompts++;
+        _promptNanos += nanos;
+        _maxPromptNanos = Math.max(_maxPromptNanos, nanos);
+
+        promptWaitNanos.record(nanos);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * counts a prompt that timed out, and resigned its player
+     */
+    public synchronized void promptTimedOut()
+    {
+        _timeouts++;
+        timeouts.increment();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records the time an event took from the moment it was added to the moment a client got it
+     * @param nanos the time
+     * @param waited true if the client waited for the event with its command, false if it polled for it
+     */
+    public void eventDelivered(long nanos, boolean waited)
+    {
+        _deliveryNanos.record(nanos);
+        deliveryNanos.record(nanos);
+
+        if(waited)
+        {
+            waitDeliveryNanos.record(nanos);
+        }
+        else
+        {
+            pollDeliveryNanos.record(nanos);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * counts a call of the web service the game served
+     */
+    public synchronized void callServed()
+    {
+        this.countMinute(System.currentTimeMillis());
+        _calls++;
+        _minuteCalls++;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of calls of the web service the game served
+     * @return the number of calls
+     */
+    public synchronized long getCalls(){return _calls;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of calls of the web service the game served in the last whole minute
+     * @return the number of calls
+     */
+    public synchronized long getCallsPerMinute()
+    {
+        this.countMinute(System.currentTimeMillis());
+        return _lastMinuteCalls;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * moves the count of the calls to the minute of the given time
+     */
+    private void countMinute(long nowMillis)
+    {
+        long minute = nowMillis / 60000;
+
+        if(minute != _callMinute)
+        {
+            _lastMinuteCalls = (minute == _callMinute + 1) ? _minuteCalls : 0;
+            _minuteCalls = 0;
+            _callMinute = minute;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of turns played
+     * @return the number of turns
+     */
+    public synchronized int getTurns(){return _turns;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the mean time of a turn
+     * @return the mean time in nanoseconds, 0 if no turn was played
+     */
+    public synchronized long getMeanTurnNanos(){return (_turns == 0) ? 0 : _turnNanos / _turns;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the longest turn
+     * @return the time in nanoseconds
+     */
+    public synchronized long getMaxTurnNanos(){return _maxTurnNanos;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the mean time the server worked in a turn, the turn without the prompt waits
+     * @return the mean time in nanoseconds, 0 if no turn was played
+     */
+    public synchronized long getMeanServerNanos(){return (_turns == 0) ? 0 : _serverNanos / _turns;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of prompts the players answered or let time out
+     * @return the number of prompts
+     */
+    public synchronized int getPrompts(){return _prompts;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the mean time a prompt waited for its player
+     * @return the mean time in nanoseconds, 0 if there were no prompts
+     */
+    public synchronized long getMeanPromptNanos(){return (_prompts == 0) ? 0 : _promptNanos / _prompts;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the longest time a prompt waited for its player
+     * @return the time in nanoseconds
+     */
+    public synchronized long getMaxPromptNanos(){return _maxPromptNanos;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of prompts that timed out
+     * @return the number of timeouts
+     */
+    public synchronized int getTimeouts(){return _timeouts;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the mean number of events of a turn
+     * @return the mean number of events, 0 if no turn was played
+     */
+    public synchronized double getMeanTurnEvents(){return (_turns == 0) ? 0 : (double) _events / _turns;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the times the events of the game took to reach the clients
+     * @return a snapshot of the delivery times in nanoseconds
+     */
+    public Histogram.Snapshot getDeliveryNanos(){return _deliveryNanos.getSnapshot();}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * counts a game that started
+     */
+    public static void gameStarted()
+    {
+        startRates();
+        started.increment();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * counts a game that finished
+     */
+    public static void gameFinished()
+    {
+        finished.increment();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * starts setting the games per minute gauges, from the counters every RATE_MILLIS
+     */
+    private static synchronized void startRates()
+    {
+        if(rateTimer != null)
+        {
+            return;
+        }
+
+        rateTimer = new Timer("game rates", true);
+        rateTimer.schedule(new TimerTask()
+        {
+            private long _lastStarted = started.get();
+            private long _lastFinished = finished.get();
+
+            @Override
+            public void run()
+            {
+                long nowStarted = started.get();
+                long nowFinished = finished.get();
+
+                startedPerMinute.set((nowStarted - _lastStarted) * 60000 / RATE_MILLIS);
+                finishedPerMinute.set((nowFinished - _lastFinished) * 60000 / RATE_MILLIS);
+
+                _lastStarted = nowStarted;
+                _lastFinished = nowFinished;
+            }
+        }, RATE_MILLIS, RATE_MILLIS);
+    }
+}
@@ -0,0 +1,275 @@
+package gameLogic;
+
+
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import gameLogic.players.HumanPlayer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.Timer;
+import java.util.TimerTask;
+
+
+/**
+ * this class watches the running game for a game thread that stopped moving on, and gets it going again.
+ * it checks the game every CHECK_MILLIS against the deadline of what the game thread is doing:
+ * a game thread waiting for an answer that was already taken lost the notify of the answer, and is woken.
+ * a game thread waiting for a prompt longer than the prompt timer missed its timeout, and the prompt is
+ * timed out. a game thread that didn't end a turn in the stuck time is stuck if it added no events in it
+ * and livelocked if it did, and the game is ended at its next turn boundary. a game thread that doesn't
+ * get going after its recovery, or doesn't end in the stuck time after it was asked to, is abandoned by
+ * the game manager so new games can start, its journal stays open and the game is recovered with the server.
+ * every problem is logged with the stack of the game thread and the lock it waits for, and counted in the metrics.
+ * the watchdog reads only what the game keeps for it without the lock, so a game thread that holds its
+ * locks forever can't stop it
+ * @author Dana Akerman
+ */
+public class GameWatchdog
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String WATCHDOG_PROPERTY = "monopoly.watchdog";  // false turns the watchdog off
+    public static final String STUCK_PROPERTY = "monopoly.watchdog.stuck"; // seconds a turn may take without a prompt
+    public static final int DEFAULT_STUCK = 60;
+    public static final long CHECK_MILLIS = 5000;
+    public static final long GRACE_NANOS = 10 * 1000000000L; // the time the game thread has to wake up
+
+    // the problems
+    public static final String LOST_WAKEUP = "lost wakeup";
+    public static final String MISSED_TIMEOUT = "missed timeout";
+    public static final String STUCK = "stuck";
+    public static final String LIVELOCK = "livelock";
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter lostWakeups = Metrics.getCounter("watchdog.lost.wakeups");
+    private static final Counter missedTimeouts = Metrics.getCounter("watchdog.missed.timeouts");
+    private static final Counter stuck = Metrics.getCounter("watchdog.stuck");
+    private static final Counter livelocks = Metrics.getCounter("watchdog.livelocks");
+    private static final Counter aborted = Metrics.getCounter("watchdog.aborted");
+    private static final Counter abandoned = Metrics.getCounter("watchdog.abandoned");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final GameManager _manager;
+    private final long _stuckNanos;
+    private Game _game;          // the game the state below is about, of the watchdog thread
+    private String _recovered;   // the problem the game was last recovered from, or null
+    private long _abortedNanos;  // the time the game was asked to end, 0 if it wasn't
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a watchdog of the games of a game manager
+     * @param manager the game manager
+     * @param stuckSeconds the time a turn may take without a prompt
+     * @throws NullPointerException if manager is null
+     * @throws IllegalArgumentException if stuckSeconds is non-positive
+     */
+    public GameWatchdog(GameManager manager, int stuckSeconds)
+    {
+        if(manager == null)
+            throw new NullPointerException("manager is null");
+        if(stuckSeconds <= 0)
+            throw new IllegalArgumentException("illegal stuck seconds");
+
+        _manager = manager;
+        _stuckNanos = stuckSeconds * 1000000000L;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts checking the games every CHECK_MILLIS on a thread of its own
+     */
+    public void start()
+    {
+        Timer timer = new Timer("game watchdog", true);
+        timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    check();
+                }
+                catch(RuntimeException e)
+                {
+                    GameLog.error("the watchdog can't check the game", e); // the timer thread must survive
+                }
+            }
+        }, CHECK_MILLIS, CHECK_MILLIS);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks the running game and recovers it if it stopped moving on
+     */
+    void check()
+    {
+        Game game = _manager.getRunningGame();
+
+        if(game != _game)
+        {
+            _game = game;
+            _recovered = null;
+            _abortedNanos = 0;
+        }
+
+        if(game == null || game.getThread() == null || game.isFreezing())
+        {
+            return; // not running, or stopping for a migration
+        }
+
+        long now = System.nanoTime();
+
+        if(_abortedNanos != 0)
+        {
+            if(now - _abortedNanos > _stuckNanos)
+            {
+                this.dump(game, "the game didn't end after it was aborted");
+                abandoned.increment();
+                _manager.abandonGame(game);
+            }
+            return;
+        }
+
+        String problem = this.diagnose(game, now);
+
+        if(problem == null)
+        {
+            _recovered = null;
+            return;
+        }
+
+        if(problem.equals(_recovered))
+        {
+            this.dump(game, "the game is still " + problem + " after its recovery");
+            this.abort(game);
+            return;
+        }
+
+        this.dump(game, problem);
+        _recovered = problem;
+
+        if(problem == LOST_WAKEUP)
+        {
+            lostWakeups.increment();
+            game.wakeWaitingPlayer();
+        }
+        else if(problem == MISSED_TIMEOUT)
+        {
+            missedTimeouts.increment();
+            game.timeOutPrompt();
+        }
+        else
+        {
+            if(problem == STUCK)
+            {
+                stuck.increment();
+            }
+            else
+            {
+                livelocks.increment();
+            }
+            this.abort(game);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * finds what keeps the game from moving on
+     * @return the problem, null if the game is fine
+     */
+    private String diagnose(Game game, long now)
+    {
+        HumanPlayer waiting = game.getWaitingPlayer();
+
+        if(waiting != null)
+        {
+            if(!game.hasPromptTimer())
+            {
+                // the answer stopped the timer, or the timer was stopped before the player waited
+                long since = Math.max(game.getWaitingSince(), game.getTimerStoppedNanos());
+                return (now - since > GRACE_NANOS) ? LOST_WAKEUP : null;
+            }
+
+            long timeout = Game.PROMPT_TIMER_SECS * 1000000000L;
+            return (now - game.getWaitingSince() > timeout + GRACE_NANOS) ? MISSED_TIMEOUT : null;
+        }
+
+        if(now - game.getProgressNanos() > _stuckNanos)
+        {
+            return (now - game.getActivityNanos() > _stuckNanos) ? STUCK : LIVELOCK;
+        }
+        return null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * asks the game to end, it's abandoned if it doesn't
+     */
+    private void abort(Game game)
+    {
+        aborted.increment();
+        _abortedNanos = System.nanoTime();
+        game.abort();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * logs the state of the game and the stack of its game thread
+     */
+    private void dump(Game game, String problem)
+    {
+        long now = System.nanoTime();
+        HumanPlayer waiting = game.getWaitingPlayer();
+        Thread thread = game.getThread();
+
+        StringBuilder state = new StringBuilder(problem);
+        if(waiting != null)
+        {
+            state.append(", waiting for ").append(waiting.getName()).append(" for ")
+                    .append((now - game.getWaitingSince()) / 1000000000L).append(" s, the prompt timer is ")
+                    .append(game.hasPromptTimer() ? "running" : "stopped");
+        }
+        state.append(", no progress for ").append((now - game.getProgressNanos()) / 1000000000L)
+                .append(" s, no events for ").append((now - game.getActivityNanos()) / 1000000000L).append(" s");
+
+        if(thread != null)
+        {
+            ThreadInfo info = ManagementFactory.getThreadMXBean().getThreadInfo(new long[] {thread.getId()}, true, false)[0];
+            if(info != null)
+            {
+                state.append(", ").append(info.getThreadName()).append(" is ").append(info.getThreadState());
+                if(info.getLockName() != null)
+                {
+                    state.append(" on ").append(info.getLockName());
+                }
+                if(info.getLockOwnerName() != null)
+                {
+                    state.append(" held by ").append(info.getLockOwnerName());
+                }
+            }
+        }
+
+        // the log shows the stack of the game thread, not of the watchdog
+        Throwable stack = new Throwable(state.toString());
+        stack.setStackTrace((thread != null) ? thread.getStackTrace() : new StackTraceElement[0]);
+
+        GameLog.error(game.getName(), (waiting != null) ? waiting.getName() : null,
+                (waiting != null) ? game.getWaitingEvent() : GameLog.NO_EVENT, "the game stopped moving on", stack);
+    }
+}
@@ -0,0 +1,263 @@
+package gameLogic;
+
+
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Gauge;
+import gameLogic.metrics.Histogram;
+import gameLogic.metrics.Metrics;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import monopoly.Event;
+
+
+/**
+ * this class keeps the memory of the games within budgets. a game estimates the memory it retains:
+ * its board and cards, its players, and its events with their messages.
+ * when a game is over the soft budget at the end of a turn, it spills its events to the disk except
+ * the last KEEP_EVENTS, the clients read them back from there, at most MAX_READ_EVENTS in a call.
+ * a game over the hard budget, one whose events can't be spilled or a turn that never ends, is ended,
+ * and so is a game that spilled more than the spill budget to the disk. a new game is refused when the heap
+ * left after the last collection can't hold a game at the hard budget. a game whose events can't be
+ * read within the hard budget isn't archived, its journal keeps it.
+ * the highest estimate of every game that ended is kept in the metric memory.game.peak.bytes, a gigabyte
+ * of heap holds getGamesPerGB() games like the ones measured, the metric memory.games.per.gb, taken at
+ * the 99th percentile of the peaks. the hard budget is the most a game can hold, so a gigabyte holds
+ * at least getHardGamesPerGB() games whatever they do, the metric memory.games.per.gb.hard.
+ * the estimates were measured on a 64 bit jvm with compressed references: about 56 KB for a game,
+ * and 85 bytes freed for every event spilled. most messages are shared literals, counting their
+ * chars for every event errs on the safe side
+ * @author Dana Akerman
+ */
+public class MemoryBudget
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String SOFT_PROPERTY = "monopoly.memory.soft"; // bytes of a game above which its events are spilled, 0 turns spilling off
+    public static final String HARD_PROPERTY = "monopoly.memory.hard"; // bytes of a game above which it's ended, 0 turns it off
+    public static final long DEFAULT_SOFT = 4 * 1024 * 1024;
+    public static final long DEFAULT_HARD = 32 * 1024 * 1024;
+    public static final String SPILL_PROPERTY = "monopoly.memory.spill.max"; // bytes of spilled events above which the game is ended, 0 turns it off
+    public static final long DEFAULT_SPILL = 256 * 1024 * 1024;
+    public static final int KEEP_EVENTS = 1024; // the last events a spilled game keeps for the clients
+    public static final int MAX_READ_EVENTS = 8 * KEEP_EVENTS; // the spilled events a client gets in a call
+    public static final long GB = 1024 * 1024 * 1024;
+    public static final double PEAK_PERCENTILE = 99; // of the peaks of the games, for the games per gigabyte
+
+    public static final long GAME_BYTES = 56000;  // the board, the cards and the groups
+    public static final long PLAYER_BYTES = 200;  // a player with its assets
+    public static final long EVENT_BYTES = 80;    // an event without the chars of its message, its place in the list and its time
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final long softBudget = Math.max(0, Long.getLong(SOFT_PROPERTY, DEFAULT_SOFT).longValue());
+    private static final long hardBudget = Math.max(0, Long.getLong(HARD_PROPERTY, DEFAULT_HARD).longValue());
+    private static final long spillBudget = Math.max(0, Long.getLong(SPILL_PROPERTY, DEFAULT_SPILL).longValue());
+
+    private static final Counter spills = Metrics.getCounter("memory.spills");
+    private static final Counter spilledEvents = Metrics.getCounter("memory.spilled.events");
+    private static final Counter spillFailures = Metrics.getCounter("memory.spill.failures");
+    private static final Counter ended = Metrics.getCounter("memory.games.ended");
+    private static final Counter refused = Metrics.getCounter("memory.games.refused");
+    private static final Gauge gameBytes = Metrics.getGauge("memory.game.bytes");
+    private static final Histogram peakBytes = Metrics.getHistogram("memory.game.peak.bytes");
+    private static final Gauge gamesPerGB = Metrics.getGauge("memory.games.per.gb");
+    private static final Gauge hardGamesPerGB = Metrics.getGauge("memory.games.per.gb.hard");
+
+    static
+    {
+        hardGamesPerGB.set(getHardGamesPerGB());
+    }
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private MemoryBudget(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the memory of a game above which its events are spilled
+     * @return the budget in bytes, 0 if events aren't spilled
+     */
+    public static long getSoftBudget(){return softBudget;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the memory of a game above which it's ended
+     * @return the budget in bytes, 0 if games aren't ended
+     */
+    public static long getHardBudget(){return hardBudget;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the size of the spilled events of a game above which it's ended
+     * @return the budget in bytes, 0 if games aren't ended
+     */
+    public static long getSpillBudget(){return spillBudget;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of games a gigabyte of heap holds, when every game is at the PEAK_PERCENTILE
+     * of the highest estimates of the games that ended
+     * @return the number of games, 0 if no game ended yet
+     */
+    public static long getGamesPerGB()
+    {
+        long peak = peakBytes.getSnapshot().getPercentile(PEAK_PERCENTILE);
+        return (peak == 0) ? 0 : GB / peak;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of games a gigabyte of heap holds at least, when every game is at the hard budget
+     * @return the number of games, 0 if the games have no hard budget
+     */
+    public static long getHardGamesPerGB()
+    {
+        return (hardBudget == 0) ? 0 : GB / hardBudget;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * estimates the memory an event retains in the events of a game
+     * @param e the event
+     * @return the estimate in bytes
+     */
+    public static long getEventBytes(Event e)
+    {
+        String message = e.getEventMessage();
+        return EVENT_BYTES + ((message == null) ? 0 : (2L * message.length() + 7) & ~7L);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if a game should spill its events
+     * @param bytes the estimate of the memory of the game
+     * @return true if it's over the soft budget
+     */
+    public static boolean isOverSoft(long bytes){return softBudget != 0 && bytes > softBudget;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if a game should be ended
+     * @param bytes the estimate of the memory of the game
+     * @return true if it's over the hard budget
+     */
+    public static boolean isOverHard(long bytes){return hardBudget != 0 && bytes > hardBudget;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if a game spilled too much to the disk
+     * @param bytes the length of the spilled events of the game
+     * @return true if it's over the spill budget
+     */
+    public static boolean isOverSpill(long bytes){return spillBudget != 0 && bytes > spillBudget;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the heap can hold a new game at the hard budget, a refused game is counted in the metrics.
+     * the heap in use is taken after the last collection, so the garbage doesn't refuse games
+     * @return true if the game can start
+     */
+    public static boolean canStartGame()
+    {
+        if(hardBudget == 0)
+        {
+            return true;
+        }
+
+        long retained = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if(pool.getType() == MemoryType.HEAP && usage != null)
+            {
+                retained += usage.getUsed();
+            }
+        }
+
+        if(Runtime.getRuntime().maxMemory() - retained < hardBudget)
+        {
+            refused.increment();
+            return false;
+        }
+        return true;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * shows the estimate of the memory of the game in the memory in the metrics
+     * @param bytes the estimate in bytes
+     */
+    public static void gameMeasured(long bytes)
+    {
+        gameBytes.set(bytes);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * keeps the highest estimate of a game that ended, and shows the games per gigabyte it makes in the metrics
+     * @param bytes the highest estimate in bytes, 0 if the game wasn't measured
+     */
+    public static void gameFinished(long bytes)
+    {
+        if(bytes == 0)
+        {
+            return; // ended before its first turn did
+        }
+        peakBytes.record(bytes);
+        gamesPerGB.set(getGamesPerGB());
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * counts events a game spilled to the disk
+     * @param events the number of events
+     */
+    public static void eventsSpilled(int events)
+    {
+        spills.increment();
+        spilledEvents.add(events);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * counts a game whose events couldn't be spilled
+     */
+    public static void spillFailed()
+    {
+        spillFailures.increment();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * counts a game that was ended for its memory
+     */
+    public static void gameEnded()
+    {
+        ended.increment();
+    }
+}
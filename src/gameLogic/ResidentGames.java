@@ -0,0 +1,147 @@
+package gameLogic;
+
+
+import gameLogic.persistence.HibernatedGame;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * this class keeps the games that are in the memory in least recently used order.
+ * a game is touched when a client asks for it, the games that were not touched for
+ * longer than the idle time, and the least recently used ones above the budget,
+ * are the candidates for hibernation
+ * @author Dana Akerman
+ */
+public class ResidentGames
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final int _budget;
+    private final long _idleMillis;
+    private final LinkedHashMap<Game, Long> _games; // game -> last touched, the least recently used first
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new set of resident games
+     * @param budget the number of games that may stay in the memory
+     * @param idleMillis the time a game may go untouched before it's hibernated
+     * @throws IllegalArgumentException if budget or idleMillis is negative
+     */
+    public ResidentGames(int budget, long idleMillis)
+    {
+        if(budget < 0)
+            throw new IllegalArgumentException("illegal budget");
+        if(idleMillis < 0)
+            throw new IllegalArgumentException("illegal idle time");
+
+        _budget = budget;
+        _idleMillis = idleMillis;
+        _games = new LinkedHashMap<Game, Long>(16, 0.75f, true);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of games that may stay in the memory
+     * @return the budget
+     */
+    public int getBudget(){return _budget;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the time a game may go untouched before it's hibernated
+     * @return the idle time in milliseconds
+     */
+    public long getIdleMillis(){return _idleMillis;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of games in the memory
+     * @return the number of resident games
+     */
+    public synchronized int size(){return _games.size();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * marks the given game as the most recently used one
+     * @param game the game a client asked for
+     * @throws NullPointerException if game is null
+     */
+    public synchronized void touch(Game game)
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        _games.put(game, Long.valueOf(System.currentTimeMillis()));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * removes the given game, it was hibernated or it's over
+     * @param game the game to remove
+     */
+    public synchronized void remove(Game game)
+    {
+        _games.remove(game);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the games that should be hibernated, the least recently used first.
+     * only the games that can be hibernated count against the budget
+     * @param now the current time in milliseconds
+     * @return the games to hibernate
+     */
+    public ArrayList<Game> getEvictable(long now)
+    {
+        ArrayList<Game> candidates = new ArrayList<Game>();
+        ArrayList<Long> touched = new ArrayList<Long>();
+
+        // the games are asked outside the lock, a game that fires an event may be touching us
+        synchronized(this)
+        {
+            Iterator<Map.Entry<Game, Long>> it = _games.entrySet().iterator();
+            while(it.hasNext())
+            {
+                Map.Entry<Game, Long> entry = it.next();
+                candidates.add(entry.getKey());
+                touched.add(entry.getValue());
+            }
+        }
+
+        for(int i = candidates.size() - 1; i >= 0; i--)
+        {
+            if(!HibernatedGame.canHibernate(candidates.get(i)))
+            {
+                candidates.remove(i);
+                touched.remove(i);
+            }
+        }
+
+        ArrayList<Game> result = new ArrayList<Game>();
+        for(int i = 0; i < candidates.size(); i++)
+        {
+            boolean overBudget = candidates.size() - i > _budget;
+            boolean idle = now - touched.get(i).longValue() >= _idleMillis;
+
+            if(overBudget || idle)
+            {
+                result.add(candidates.get(i));
+            }
+        }
+        return result;
+    }
+}
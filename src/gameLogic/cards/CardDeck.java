@@ -0,0 +1,234 @@
+package gameLogic.cards;
+
+
+import gameLogic.GameRandom;
+
+
+/**
+ * this class represents a deck of cards in a monopoly game, kept in a circular array.
+ * drawing from the top, putting back to the bottom and holding a card out of the deck
+ * (pardon cards kept by a player) are O(1) and don't allocate.
+ * the array grows only while the deck is being built
+ * @author Dana Akerman
+ */
+public class CardDeck
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private Card[] _cards;
+    private int _head; // index of the top card
+    private int _size;
+    private int _heldOut;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new empty deck
+     */
+    public CardDeck()
+    {
+        _cards = new Card[DEFAULT_CAPACITY];
+        _head = 0;
+        _size = 0;
+        _heldOut = 0;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of cards in the deck
+     * @return the number of cards in the deck
+     */
+    public int size(){return _size;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of cards that were drawn and are held out of the deck
+     * @return the number of cards held out of the deck
+     */
+    public int getNumHeldOut(){return _heldOut;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the deck is empty
+     * @return true if the deck is empty
+     */
+    public boolean isEmpty(){return _size == 0;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the card in the given position, 0 is the top of the deck
+     * @param index the position of the card
+     * @return the card in the given position
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     */
+    public Card get(int index)
+    {
+        if(index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("illegal deck index");
+
+        return _cards[(_head + index) % _cards.length];
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the card on the top of the deck without drawing it
+     * @return the card on the top of the deck, or null if the deck is empty
+     */
+    public Card peek()
+    {
+        if(_size == 0)
+        {
+            return null;
+        }
+        return _cards[_head];
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * removes the card on the top of the deck
+     * the card must be put back or held out afterwards
+     * @return the card on the top of the deck
+     * @throws IndexOutOfBoundsException if the deck is empty
+     */
+    public Card draw()
+    {
+        if(_size == 0)
+            throw new IndexOutOfBoundsException("deck is empty");
+
+        Card card = _cards[_head];
+        _cards[_head] = null;
+        _head = (_head + 1) % _cards.length;
+        _size--;
+        return card;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds a card to the bottom of the deck
+     * @param card the card to add
+     * @throws NullPointerException if card is null
+     */
+    public void putBack(Card card)
+    {
+        if(card == null)
+            throw new NullPointerException("card is null");
+
+        if(_size + _heldOut == _cards.length)
+        {
+            this.grow();
+        }
+
+        _cards[(_head + _size) % _cards.length] = card;
+        _size++;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * marks a drawn card as held out of the deck, its place is kept for its return
+     * @param card the drawn card
+     * @throws NullPointerException if card is null
+     */
+    public void holdOut(Card card)
+    {
+        if(card == null)
+            throw new NullPointerException("card is null");
+
+        _heldOut++;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * returns a card that was held out to the bottom of the deck
+     * @param card the card to return
+     * @throws NullPointerException if card is null
+     * @throws IllegalArgumentException if no card is held out of the deck
+     */
+    public void returnHeldOut(Card card)
+    {
+        if(card == null)
+            throw new NullPointerException("card is null");
+        if(_heldOut == 0)
+            throw new IllegalArgumentException("no card is held out of the deck");
+
+        _heldOut--;
+        this.putBack(card);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * removes all the cards from the deck, including the held out ones
+     */
+    public void clear()
+    {
+        for(int i = 0; i < _cards.length; i++)
+        {
+            _cards[i] = null;
+        }
+        _head = 0;
+        _size = 0;
+        _heldOut = 0;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * shuffles the cards in the deck with a Fisher-Yates shuffle
+     * @param random the random source
+     * @throws NullPointerException if random is null
+     */
+    public void shuffle(GameRandom random)
+    {
+        if(random == null)
+            throw new NullPointerException("random is null");
+
+        for(int i = _size - 1; i > 0; i--)
+        {
+            int pos = random.nextInt(i + 1);
+
+            if(pos != i)
+            {
+                int a = (_head + pos) % _cards.length;
+                int b = (_head + i) % _cards.length;
+                Card temp = _cards[a];
+                _cards[a] = _cards[b];
+                _cards[b] = temp;
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * doubles the capacity of the deck, the cards are moved to the start of the new array
+     */
+    private void grow()
+    {
+        Card[] cards = new Card[_cards.length * 2];
+
+        for(int i = 0; i < _size; i++)
+        {
+            cards[i] = _cards[(_head + i) % _cards.length];
+        }
+        _cards = cards;
+        _head = 0;
+    }
+}
@@ -2,6 +2,7 @@ package gameLogic.cards;
 
 
 import gameLogic.Game;
+import gameLogic.ledger.Ledger;
 import gameLogic.players.Player;
 import gameLogic.squares.ActionSquare;
 import monopoly.Event;
@@ -17,8 +18,8 @@ public class FinancialCard extends ActionCard
     // constants
     //-------------------------------------------------------------------
     
-    private static final int OTHERS = 0;
-    private static final int TREASURY = 1;
+    public static final int OTHERS = 0;
+    public static final int TREASURY = 1;
     
     // data members
     //-------------------------------------------------------------------
@@ -63,6 +64,22 @@ public class FinancialCard extends ActionCard
 
     //-------------------------------------------------------------------
     
+    /**
+     * gets the "on who" flag
+     * @return TREASURY or OTHERS (other players)
+     */
+    public int getOnWho(){return _onWho;}
+    
+    //-------------------------------------------------------------------
+    
+    /**
+     * gets the amount of cash in the card
+     * @return the amount of cash in the card
+     */
+    public int getAmount(){return _amount;}
+    
+    //-------------------------------------------------------------------
+    
     /**
      * sets the "on who" flag
      * @param onWho who this card operates on, may be TREASURY or OTHRES (other players)
@@ -104,99 +121,104 @@ public class FinancialCard extends ActionCard
             throw new NullPointerException("player is null");
   
         
-        switch (_onWho) 
+        Ledger.Transaction transaction = _game.getLedger().begin(Ledger.CARD);
+        try
         {
-            case TREASURY:
+            switch (_onWho) 
+            {
+                case TREASURY:
                 
-                if (_type == ActionSquare.SURPRISE)
-                {
-                    player.addCash(_amount);
-                    
-                    // payment event
-                    Event paymentEvent 
-                            = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), _amount, false);
-                    _game.addEvent(paymentEvent);
-                } 
-                else // WARRANT
-                {
-                    int payment = player.reduceCash(_amount);
-                    
-                    if (payment > 0) 
+                    if (_type == ActionSquare.SURPRISE)
                     {
+                        transaction.pay(Ledger.TREASURY, player, _amount);
+                    
                         // payment event
                         Event paymentEvent 
-                                = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), payment, true);
-                        _game.addEvent(paymentEvent);
+                                = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), _amount, false);
+                        transaction.addEvent(paymentEvent);
+                    } 
+                    else // WARRANT
+                    {
+                        int payment = transaction.pay(player, Ledger.TREASURY, _amount);
+                    
+                        if (payment > 0) 
+                        {
+                            // payment event
+                            Event paymentEvent 
+                                    = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), payment, true);
+                            transaction.addEvent(paymentEvent);
+                        }
                     }
-                }
-                break;
+                    break;
             
-            case OTHERS:
+                case OTHERS:
                 
-                boolean paymentPossible = true;
+                    boolean paymentPossible = true;
                 
-                if (_type == ActionSquare.SURPRISE) 
-                {
-                    for (int i = 0; i < _game.getTotalNumPlayers() && paymentPossible; i++) 
+                    if (_type == ActionSquare.SURPRISE) 
                     {
-                        Player curr = _game.getPlayerByIndex(i);
-                        
-                        if (curr != null && curr != player) 
+                        for (int i = 0; i < _game.getTotalNumPlayers() && paymentPossible; i++) 
                         {
-                            if (curr.isInGame()) 
+                            Player curr = _game.getPlayerByIndex(i);
+                        
+                            if (curr != null && curr != player) 
                             {
-                                int payment = curr.reduceCash(_amount);
-                                
-                                if (payment > 0) 
-                                {
-                                    player.addCash(payment);
-                                    
-                                    // payment event
-                                    Event paymentEvent 
-                                            = EventsFactory.createPaymentToOrFromPlayerEvent(_game.getName(), player.getName(), curr.getName(), payment, false);
-                                    _game.addEvent(paymentEvent);
-                                } 
-                                else 
+                                if (curr.isInGame()) 
                                 {
-                                    paymentPossible = false;
+                                    int payment = transaction.pay(curr, player, _amount);
+                                
+                                    if (payment > 0) 
+                                    {
+                                        // payment event
+                                        Event paymentEvent 
+                                                = EventsFactory.createPaymentToOrFromPlayerEvent(_game.getName(), player.getName(), curr.getName(), payment, false);
+                                        transaction.addEvent(paymentEvent);
+                                    } 
+                                    else 
+                                    {
+                                        paymentPossible = false;
+                                    }
                                 }
                             }
                         }
-                    }
-                } 
-                else // WARRANT
-                {
-                    for (int i = 0; i < _game.getTotalNumPlayers() && paymentPossible; i++) 
+                    } 
+                    else // WARRANT
                     {
-                        Player curr = _game.getPlayerByIndex(i);
-                        
-                        if (curr != null && curr != player) 
+                        for (int i = 0; i < _game.getTotalNumPlayers() && paymentPossible; i++) 
                         {
-                            if (player.isInGame() && curr.isInGame()) 
+                            Player curr = _game.getPlayerByIndex(i);
+                        
+                            if (curr != null && curr != player) 
                             {
-                                int payment = player.reduceCash(_amount);
-                                
-                                if (payment > 0) 
-                                {
-                                    curr.addCash(payment);
-                                    
-                                    // payment event
-                                    Event paymentEvent 
-                                            = EventsFactory.createPaymentToOrFromPlayerEvent(_game.getName(), player.getName(), curr.getName(), payment, true);
-                                    _game.addEvent(paymentEvent);
-                                } 
-                                else 
+                                if (player.isInGame() && curr.isInGame()) 
                                 {
-                                    paymentPossible = false;
+                                    int payment = transaction.pay(player, curr, _amount);
+                                
+                                    if (payment > 0) 
+                                    {
+                                        // payment event
+                                        Event paymentEvent 
+                                                = EventsFactory.createPaymentToOrFromPlayerEvent(_game.getName(), player.getName(), curr.getName(), payment, true);
+                                        transaction.addEvent(paymentEvent);
+                                    } 
+                                    else 
+                                    {
+                                        paymentPossible = false;
+                                    }
                                 }
                             }
                         }
                     }
-                }
-                break;
+                    break;
             
-            default:
-                break;
+                default:
+                    break;
+            }
+            transaction.commit();
+        }
+        finally
+        {
+            transaction.close();
         }        
     }
 }
@@ -18,9 +18,9 @@ public class GotoCard extends ActionCard
     // constants
     //-------------------------------------------------------------------
     
-    private static final int START = 0;
-    private static final int NEXT = 1; // the next square of the same type
-    private static final int JAIL = 2;
+    public static final int START = 0;
+    public static final int NEXT = 1; // the next square of the same type
+    public static final int JAIL = 2;
     
     // data members
     //-------------------------------------------------------------------
@@ -62,6 +62,14 @@ public class GotoCard extends ActionCard
 
     //-------------------------------------------------------------------
     
+    /**
+     * gets the target of the card (destination square)
+     * @return START, NEXT or JAIL
+     */
+    public int getTarget(){return _target;}
+    
+    //-------------------------------------------------------------------
+    
     /**
      * sets the target of the card (destination square), must be START, NEXT or JAIL
      * @param target the target of the card
@@ -95,8 +103,8 @@ public class GotoCard extends ActionCard
                         EventsFactory.createPlayerMovedEvent(_game.getName(), player, Game.START_SQUARE, Game.TELEPORT_MOVE);
                 _game.addEvent(playerMoveToStartEvent);
 
-                player.setPosition(Game.START_SQUARE);
-                _game.getSquareByIndex(Game.START_SQUARE).playerArrived(player);
+                _game.placePlayer(player, Game.START_SQUARE);
+                _game.playerArrivedAt(player, Game.START_SQUARE);
                 break;
 
             case JAIL:
@@ -109,8 +117,8 @@ public class GotoCard extends ActionCard
                 _game.addEvent(playerSentToJailEvent);
                 _game.addEvent(playerMoveToJailEvent);
 
-                player.setPosition(Game.GO_TO_JAIL_SQUARE);
-                _game.getSquareByIndex(Game.GO_TO_JAIL_SQUARE).playerArrived(player);
+                _game.placePlayer(player, Game.GO_TO_JAIL_SQUARE);
+                _game.playerArrivedAt(player, Game.GO_TO_JAIL_SQUARE);
                 break;
 
             case NEXT:
@@ -141,8 +149,8 @@ public class GotoCard extends ActionCard
                                 EventsFactory.createPlayerMovedEvent(_game.getName(), player, i, Game.TELEPORT_MOVE);
                         _game.addEvent(playerMoveToNextEvent);
 
-                        player.setPosition(i);
-                        _game.getSquareByIndex(i).playerArrived(player);
+                        _game.placePlayer(player, i);
+                        _game.playerArrivedAt(player, i);
                         moved = true;
                     }
                 }
@@ -82,11 +82,11 @@ public class PardonCard extends Card
     //---------------------------------------------------------------------
     
     /**
-     * adds the pardon card to the end of the deck 
+     * returns the pardon card from the player to the end of the deck 
      */
     public void returnToDeck() 
     {
-        _square.addCard(this);
+        _square.returnCard(this);
     }
 
     //---------------------------------------------------------------------
@@ -59,7 +59,21 @@ public abstract class EventGenerator
         if (message == null) 
             throw new NullPointerException();
 
-        MyChangeEvent e = new MyChangeEvent(this, message);
+        this.fireMyChangeEvent(new MyChangeEvent(this, message));
+    }
+
+    //------------------------------------------------------------
+    
+    /**
+     * shoots the given event to all the listeners
+     * @param e the event
+     * @throws NullPointerException if e is null
+     */
+    protected void fireMyChangeEvent(MyChangeEvent e) 
+    {
+        if (e == null) 
+            throw new NullPointerException();
+
         Iterator<MyChangeListener> listeners = _listeners.iterator();
         while (listeners.hasNext()) {
             ((MyChangeListener) listeners.next()).changeEventRecieved(e);
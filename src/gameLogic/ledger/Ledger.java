@@ -0,0 +1,630 @@
+package gameLogic.ledger;
+
+
+import gameLogic.Game;
+import gameLogic.innerEvents.EventGenerator;
+import gameLogic.players.Player;
+import gameLogic.tracing.Tracing;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import monopoly.Event;
+
+
+/**
+ * this class represents the money ledger of a monopoly game.
+ * every movement of cash is done inside a transaction: begin(kind), any number of pay()
+ * legs, commit(), and close() in a finally block. readers of the players' cash (getCashSnapshot)
+ * never see a transaction half applied, a transaction closed without a commit is rolled back,
+ * and the client events of a transaction are added to the game only when it commits.
+ * every commit fires a SettlementEvent with all the legs of the transaction.
+ * the events are added and the settlement fired after the ledger is unlocked, so the listeners
+ * and the game never run holding it
+ * @author Dana Akerman
+ */
+public class Ledger extends EventGenerator
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final Player TREASURY = null;
+
+    // settlement kinds
+    public static final int PASSED_START = 0;
+    public static final int LANDED_ON_START = 1;
+    public static final int ASSET_PURCHASE = 2;
+    public static final int HOUSE_PURCHASE = 3;
+    public static final int RENT = 4;
+    public static final int CARD = 5;
+
+    private static final String[] KIND_NAMES = {"passed start", "landed on start",
+        "asset purchase", "house purchase", "rent", "card"};
+
+    private static final int INITIAL_LEGS = 2 * Game.MAX_NUM_PLAYERS;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final Game _game;
+    private final ArrayList<Player> _players;
+    private final ReentrantLock _lock;
+    private final Transaction _transaction;
+    private long _settlementIDGenerator;
+
+    // running totals by player index
+    private long[] _paid;
+    private long[] _received;
+    private long _treasuryPaid;
+    private long _treasuryReceived;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new ledger for the given game
+     * @param game the game this ledger belongs to
+     * @param players the players list of the game
+     * @throws NullPointerException if game or players is null
+     */
+    public Ledger(Game game, ArrayList<Player> players)
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        if(players == null)
+            throw new NullPointerException("players is null");
+
+        _game = game;
+        _players = players;
+        _lock = new ReentrantLock();
+        _transaction = new Transaction();
+        _settlementIDGenerator = 0;
+        _paid = new long[Game.MAX_NUM_PLAYERS];
+        _received = new long[Game.MAX_NUM_PLAYERS];
+        _treasuryPaid = 0;
+        _treasuryReceived = 0;
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the name of the given settlement kind
+     * @param kind the settlement kind
+     * @return the name of the settlement kind
+     */
+    public static String getKindName(int kind)
+    {
+        if(kind >= 0 && kind < KIND_NAMES.length)
+        {
+            return KIND_NAMES[kind];
+        }
+        return "unknown";
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * begins a new transaction, blocking the cash readers until it's closed.
+     * transactions are not nested, commit() is called at the end of the try block
+     * and close() in its finally block
+     * @param kind the settlement kind of the transaction
+     * @return the transaction
+     * @throws IllegalArgumentException if kind is illegal
+     * @throws IllegalStateException if a transaction is already open
+     */
+    public Transaction begin(int kind)
+    {
+        if(kind < 0 || kind >= KIND_NAMES.length)
+            throw new IllegalArgumentException("illegal settlement kind");
+
+        _lock.lock();
+
+        if(_transaction._open)
+        {
+            _lock.unlock();
+            throw new IllegalStateException("a transaction is already open");
+        }
+
+        _transaction.open(kind);
+        return _transaction;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * applies a settlement read from the journal of the game: the balances recorded in each
+     * leg are set as they are, a payer that paid less than requested goes bankrupt.
+     * the settlement is committed and fired like one made by a transaction
+     * @param kind the settlement kind
+     * @param from the payer of each leg
+     * @param to the payee of each leg
+     * @param requested the amount requested in each leg
+     * @param paid the amount actually paid in each leg
+     * @param fromBalance the cash of the payer right after each leg
+     * @param toBalance the cash of the payee right after each leg
+     * @throws IllegalArgumentException if kind is illegal
+     */
+    public void replay(int kind, int[] from, int[] to, int[] requested, int[] paid, int[] fromBalance, int[] toBalance)
+    {
+        if(kind < 0 || kind >= KIND_NAMES.length)
+            throw new IllegalArgumentException("illegal settlement kind");
+
+        Settlement settlement;
+        _lock.lock();
+        try
+        {
+            for(int i = 0; i < from.length; i++)
+            {
+                if(from[i] != Settlement.TREASURY)
+                {
+                    Player payer = _players.get(from[i]);
+                    payer.setCash(fromBalance[i]);
+
+                    if(paid[i] < requested[i])
+                    {
+                        payer.setBankrupt(true);
+                    }
+                }
+
+                if(to[i] != Settlement.TREASURY)
+                {
+                    _players.get(to[i]).setCash(toBalance[i]);
+                }
+                _transaction.addToTotals(from[i], to[i], paid[i]);
+            }
+
+            settlement = new Settlement(++_settlementIDGenerator, kind, from, to, requested, paid, fromBalance, toBalance);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        fireMyChangeEvent(new SettlementEvent(this, settlement));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * sets the running totals of the ledger, for a game restored from a checkpoint
+     * @param numSettlements the number of settlements committed so far
+     * @param paid the total amount each player paid, by its index in the game
+     * @param received the total amount each player received, by its index in the game
+     * @param treasuryPaid the total amount the treasury paid
+     * @param treasuryReceived the total amount the treasury received
+     * @throws NullPointerException if paid or received is null
+     */
+    public void restore(long numSettlements, long[] paid, long[] received, long treasuryPaid, long treasuryReceived)
+    {
+        if(paid == null || received == null)
+            throw new NullPointerException("totals are null");
+
+        _lock.lock();
+        try
+        {
+            _settlementIDGenerator = numSettlements;
+            System.arraycopy(paid, 0, _paid, 0, paid.length);
+            System.arraycopy(received, 0, _received, 0, received.length);
+            _treasuryPaid = treasuryPaid;
+            _treasuryReceived = treasuryReceived;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the cash of all the players, taken between transactions
+     * @return the cash of each player by its index in the game
+     */
+    public int[] getCashSnapshot()
+    {
+        _lock.lock();
+        try
+        {
+            int[] cash = new int[_players.size()];
+
+            for(int i = 0; i < cash.length; i++)
+            {
+                cash[i] = _players.get(i).getCash();
+            }
+            return cash;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the total amount the given player paid since the game started
+     * @param index the index of the player in the game
+     * @return the total amount paid by the player
+     */
+    public long getTotalPaid(int index)
+    {
+        _lock.lock();
+        try
+        {
+            return _paid[index];
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the total amount the given player received since the game started
+     * @param index the index of the player in the game
+     * @return the total amount received by the player
+     */
+    public long getTotalReceived(int index)
+    {
+        _lock.lock();
+        try
+        {
+            return _received[index];
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the total amount the treasury paid since the game started
+     * @return the total amount paid by the treasury
+     */
+    public long getTreasuryPaid()
+    {
+        _lock.lock();
+        try
+        {
+            return _treasuryPaid;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the total amount the treasury received since the game started
+     * @return the total amount received by the treasury
+     */
+    public long getTreasuryReceived()
+    {
+        _lock.lock();
+        try
+        {
+            return _treasuryReceived;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of settlements committed so far
+     * @return the number of settlements committed
+     */
+    public long getNumSettlements()
+    {
+        _lock.lock();
+        try
+        {
+            return _settlementIDGenerator;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the index of the given player in the game
+     * @param player the player, or TREASURY
+     * @return the index of the player, Settlement.TREASURY for the treasury
+     * @throws IllegalArgumentException if the player is not in the game
+     */
+    private int indexOf(Player player)
+    {
+        if(player == TREASURY)
+        {
+            return Settlement.TREASURY;
+        }
+
+        for(int i = 0; i < _players.size(); i++)
+        {
+            if(_players.get(i) == player)
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("illegal player, not in this game");
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * this class represents an open transaction of the ledger.
+     * there is only one per ledger and it's reused by every begin()
+     */
+    public class Transaction
+    {
+        // data members
+        //---------------------------------------------------------------
+
+        private boolean _open;
+        private int _kind;
+        private int _numLegs;
+        private int[] _from;
+        private int[] _to;
+        private int[] _requested;
+        private int[] _paidAmounts;
+        private int[] _fromBalance;
+        private int[] _toBalance;
+        private ArrayList<Event> _events;
+        private long _bankrupted; // a bit for every player this transaction made bankrupt
+        private Object _trace;
+
+        // c'tor
+        //---------------------------------------------------------------
+
+        /**
+         * constructs a new closed transaction
+         */
+        private Transaction()
+        {
+            _open = false;
+            _from = new int[INITIAL_LEGS];
+            _to = new int[INITIAL_LEGS];
+            _requested = new int[INITIAL_LEGS];
+            _paidAmounts = new int[INITIAL_LEGS];
+            _fromBalance = new int[INITIAL_LEGS];
+            _toBalance = new int[INITIAL_LEGS];
+            _events = new ArrayList<Event>();
+        }
+
+        // methods
+        //---------------------------------------------------------------
+
+        /**
+         * moves cash from the payer to the payee. a player that can't pay the whole
+         * amount pays all his cash and goes bankrupt, the treasury always pays
+         * @param from the paying player, or TREASURY
+         * @param to the paid player, or TREASURY
+         * @param amount the requested amount
+         * @return the amount actually paid
+         * @throws IllegalArgumentException if amount is non-positive or a player is not in the game
+         */
+        public int pay(Player from, Player to, int amount)
+        {
+            if(amount <= 0)
+                throw new IllegalArgumentException("illegal amount input");
+
+            int fromIndex = indexOf(from);
+            int toIndex = indexOf(to);
+            int payment;
+
+            if(from == TREASURY)
+            {
+                payment = amount;
+            }
+            else
+            {
+                boolean bankrupt = from.isBankrupt();
+                payment = from.reduceCash(amount);
+
+                if(!bankrupt && from.isBankrupt())
+                {
+                    _bankrupted |= 1L << fromIndex;
+                }
+            }
+
+            if(to != TREASURY && payment > 0)
+            {
+                to.addCash(payment);
+            }
+
+            this.addLeg(fromIndex, toIndex, amount, payment,
+                    (from == TREASURY) ? 0 : from.getCash(), (to == TREASURY) ? 0 : to.getCash());
+            return payment;
+        }
+
+        //---------------------------------------------------------------
+
+        /**
+         * adds a client event that is added to the game when the transaction commits
+         * @param event the event to add
+         * @throws NullPointerException if event is null
+         */
+        public void addEvent(Event event)
+        {
+            if(event == null)
+                throw new NullPointerException("event is null");
+
+            _events.add(event);
+        }
+
+        //---------------------------------------------------------------
+
+        /**
+         * commits the transaction: updates the running totals and unlocks the ledger,
+         * then adds the client events to the game and fires the settlement to the ledger listeners
+         * @throws IllegalStateException if the transaction is not open
+         */
+        public void commit()
+        {
+            if(!_open)
+                throw new IllegalStateException("the transaction is not open");
+
+            Object trace = _trace;
+            Settlement settlement;
+            Event[] events;
+            try
+            {
+                for(int i = 0; i < _numLegs; i++)
+                {
+                    this.addToTotals(_from[i], _to[i], _paidAmounts[i]);
+                }
+
+                settlement = new Settlement(++_settlementIDGenerator, _kind, Arrays.copyOf(_from, _numLegs),
+                        Arrays.copyOf(_to, _numLegs), Arrays.copyOf(_requested, _numLegs), Arrays.copyOf(_paidAmounts, _numLegs),
+                        Arrays.copyOf(_fromBalance, _numLegs), Arrays.copyOf(_toBalance, _numLegs));
+
+                events = _events.toArray(new Event[_events.size()]);
+            }
+            finally
+            {
+                _open = false;
+                _events.clear();
+                _lock.unlock();
+            }
+
+            for(int i = 0; i < events.length; i++)
+            {
+                _game.addEvent(events[i]);
+            }
+            fireMyChangeEvent(new SettlementEvent(Ledger.this, settlement));
+            Tracing.end(trace, _game.getName(), KIND_NAMES[settlement.getKind()], settlement.getNumLegs());
+        }
+
+        //---------------------------------------------------------------
+
+        /**
+         * closes the transaction, does nothing if it was committed. a transaction that wasn't
+         * committed is rolled back: the cash of its legs is moved back, the players it made
+         * bankrupt aren't anymore, and nothing is added to the game or fired
+         */
+        public void close()
+        {
+            if(!_open)
+            {
+                return;
+            }
+
+            Object trace = _trace;
+            int kind = _kind;
+            int numLegs = _numLegs;
+            try
+            {
+                for(int i = _numLegs - 1; i >= 0; i--)
+                {
+                    if(_from[i] != Settlement.TREASURY)
+                    {
+                        _players.get(_from[i]).addCash(_paidAmounts[i]);
+                    }
+                    if(_to[i] != Settlement.TREASURY)
+                    {
+                        Player payee = _players.get(_to[i]);
+                        payee.setCash(payee.getCash() - _paidAmounts[i]);
+                    }
+                }
+
+                for(int i = 0; i < _players.size(); i++)
+                {
+                    if((_bankrupted & (1L << i)) != 0)
+                    {
+                        _players.get(i).setBankrupt(false);
+                    }
+                }
+            }
+            finally
+            {
+                _open = false;
+                _events.clear();
+                _lock.unlock();
+            }
+
+            Tracing.end(trace, _game.getName(), KIND_NAMES[kind] + " rolled back", numLegs);
+        }
+
+        //---------------------------------------------------------------
+
+        /**
+         * opens the transaction for a new settlement
+         * @param kind the settlement kind
+         */
+        private void open(int kind)
+        {
+            _open = true;
+            _kind = kind;
+            _numLegs = 0;
+            _bankrupted = 0;
+            _trace = Tracing.begin(Tracing.SETTLEMENT);
+        }
+
+        //---------------------------------------------------------------
+
+        /**
+         * records a leg of the transaction
+         */
+        private void addLeg(int from, int to, int requested, int paid, int fromBalance, int toBalance)
+        {
+            if(_numLegs == _from.length)
+            {
+                _from = Arrays.copyOf(_from, _numLegs * 2);
+                _to = Arrays.copyOf(_to, _numLegs * 2);
+                _requested = Arrays.copyOf(_requested, _numLegs * 2);
+                _paidAmounts = Arrays.copyOf(_paidAmounts, _numLegs * 2);
+                _fromBalance = Arrays.copyOf(_fromBalance, _numLegs * 2);
+                _toBalance = Arrays.copyOf(_toBalance, _numLegs * 2);
+            }
+
+            _from[_numLegs] = from;
+            _to[_numLegs] = to;
+            _requested[_numLegs] = requested;
+            _paidAmounts[_numLegs] = paid;
+            _fromBalance[_numLegs] = fromBalance;
+            _toBalance[_numLegs] = toBalance;
+            _numLegs++;
+        }
+
+        //---------------------------------------------------------------
+
+        /**
+         * adds a committed leg to the running totals
+         */
+        private void addToTotals(int from, int to, int paid)
+        {
+            if(from == Settlement.TREASURY)
+            {
+                _treasuryPaid += paid;
+            }
+            else
+            {
+                _paid[from] += paid;
+            }
+
+            if(to == Settlement.TREASURY)
+            {
+                _treasuryReceived += paid;
+            }
+            else
+            {
+                _received[to] += paid;
+            }
+        }
+    }
+}
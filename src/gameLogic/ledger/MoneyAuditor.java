@@ -0,0 +1,267 @@
+package gameLogic.ledger;
+
+
+import gameLogic.Game;
+import gameLogic.innerEvents.MyChangeEvent;
+import gameLogic.innerEvents.MyChangeListener;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+
+
+/**
+ * this class audits the settlements of a ledger as double-entry bookkeeping.
+ * every leg moves money from a source to a sink (a player or the treasury), the auditor
+ * keeps the expected balance of every player and checks each leg against the balances
+ * the ledger recorded, so cash that changed outside the ledger, payments that were capped
+ * without bankrupting the payer and money that appeared from nowhere are caught on the
+ * first settlement that touches the account. violations are counted in the metrics right
+ * away, the money totals are added to the shared counters every FLUSH_INTERVAL settlements
+ * and when the game stops running
+ * @author Dana Akerman
+ */
+public class MoneyAuditor implements MyChangeListener
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String AUDIT_PROPERTY = "monopoly.audit";
+    public static final int FLUSH_INTERVAL = 64;
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter settlements = Metrics.getCounter("money.settlements");
+    private static final Counter minted = Metrics.getCounter("money.minted");
+    private static final Counter burned = Metrics.getCounter("money.burned");
+    private static final Counter transferred = Metrics.getCounter("money.transferred");
+    private static final Counter shortfalls = Metrics.getCounter("money.shortfalls");
+    private static final Counter shortfallAmount = Metrics.getCounter("money.shortfall.amount");
+    private static final Counter violations = Metrics.getCounter("money.audit.violations");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final int _openingBalance;
+    private int[] _balances;
+    private boolean[] _opened;
+    private long _numViolations;
+    private String _lastViolation;
+
+    // totals not yet added to the shared counters
+    private int _settlements;
+    private long _minted;
+    private long _burned;
+    private long _transferred;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new auditor
+     * @param openingBalance the cash every player starts the game with
+     * @throws IllegalArgumentException if openingBalance is negative
+     */
+    public MoneyAuditor(int openingBalance)
+    {
+        if(openingBalance < 0)
+            throw new IllegalArgumentException("illegal opening balance");
+
+        _openingBalance = openingBalance;
+        _balances = new int[Game.MAX_NUM_PLAYERS];
+        _opened = new boolean[Game.MAX_NUM_PLAYERS];
+        _numViolations = 0;
+        _lastViolation = null;
+        _settlements = 0;
+        _minted = 0;
+        _burned = 0;
+        _transferred = 0;
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if auditing is on, it is unless the monopoly.audit property is false
+     * @return true if auditing is on
+     */
+    public static boolean isEnabled()
+    {
+        return !("false".equalsIgnoreCase(System.getProperty(AUDIT_PROPERTY)));
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of violations this auditor found
+     * @return the number of violations
+     */
+    public synchronized long getNumViolations(){return _numViolations;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the description of the last violation this auditor found
+     * @return the last violation, or null if there were none
+     */
+    public synchronized String getLastViolation(){return _lastViolation;}
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void changeEventRecieved(MyChangeEvent e)
+    {
+        if(e instanceof SettlementEvent)
+        {
+            this.audit(((SettlementEvent) e).getSettlement());
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * audits the legs of the given settlement
+     * @param settlement the committed settlement
+     * @throws NullPointerException if settlement is null
+     */
+    public void audit(Settlement settlement)
+    {
+        if(settlement == null)
+            throw new NullPointerException("settlement is null");
+
+        for(int leg = 0; leg < settlement.getNumLegs(); leg++)
+        {
+            int from = settlement.getFrom(leg);
+            int to = settlement.getTo(leg);
+            int requested = settlement.getRequested(leg);
+            int paid = settlement.getPaid(leg);
+
+            if(paid < 0 || paid > requested)
+            {
+                this.violation(settlement, leg, "paid amount out of range");
+            }
+
+            // source
+            if(from == Settlement.TREASURY)
+            {
+                _minted += paid;
+
+                if(paid != requested)
+                {
+                    this.violation(settlement, leg, "treasury payment capped");
+                }
+            }
+            else
+            {
+                if(this.getBalance(from) - paid != settlement.getFromBalance(leg))
+                {
+                    this.violation(settlement, leg, "payer balance changed outside the ledger");
+                }
+
+                if(paid < requested)
+                {
+                    shortfalls.increment();
+                    shortfallAmount.add(requested - paid);
+
+                    if(settlement.getFromBalance(leg) != 0)
+                    {
+                        this.violation(settlement, leg, "payment capped while payer has cash");
+                    }
+                }
+                _balances[from] = settlement.getFromBalance(leg);
+            }
+
+            // sink
+            if(to == Settlement.TREASURY)
+            {
+                _burned += paid;
+            }
+            else
+            {
+                if(from != Settlement.TREASURY)
+                {
+                    _transferred += paid;
+                }
+
+                if(this.getBalance(to) + paid != settlement.getToBalance(leg))
+                {
+                    this.violation(settlement, leg, "payee balance changed outside the ledger");
+                }
+                _balances[to] = settlement.getToBalance(leg);
+            }
+        }
+
+        // the counters are shared by all the games, we don't touch them on every settlement
+        if(++_settlements == FLUSH_INTERVAL)
+        {
+            this.flush();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * sets the expected balances of the players, for a game restored from a checkpoint
+     * @param balances the cash of each player by its index in the game
+     * @throws NullPointerException if balances is null
+     */
+    public void reset(int[] balances)
+    {
+        if(balances == null)
+            throw new NullPointerException("balances is null");
+
+        for(int i = 0; i < balances.length; i++)
+        {
+            _opened[i] = true;
+            _balances[i] = balances[i];
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds the totals of the settlements audited since the last flush to the shared counters,
+     * called by the thread that audits
+     */
+    public void flush()
+    {
+        settlements.add(_settlements);
+        minted.add(_minted);
+        burned.add(_burned);
+        transferred.add(_transferred);
+        _settlements = 0;
+        _minted = 0;
+        _burned = 0;
+        _transferred = 0;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the expected balance of the given player, opening his account if needed
+     * @param index the index of the player in the game
+     * @return the expected balance of the player
+     */
+    private int getBalance(int index)
+    {
+        if(!_opened[index])
+        {
+            _opened[index] = true;
+            _balances[index] = _openingBalance;
+        }
+        return _balances[index];
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a violation
+     */
+    private synchronized void violation(Settlement settlement, int leg, String message)
+    {
+        violations.increment();
+        _numViolations++;
+        _lastViolation = message + ", leg " + leg + " of " + settlement;
+    }
+}
@@ -0,0 +1,152 @@
+package gameLogic.ledger;
+
+
+/**
+ * this class represents a committed settlement in a monopoly game: all the legs
+ * (payer, payee, requested amount, paid amount and the balances right after the leg)
+ * of one money transaction, kept in int arrays.
+ * players are identified by their index in the game, the treasury is Settlement.TREASURY
+ * @author Dana Akerman
+ */
+public class Settlement
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final int TREASURY = -1;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final long _id;
+    private final int _kind;
+    private final int[] _from;
+    private final int[] _to;
+    private final int[] _requested;
+    private final int[] _paid;
+    private final int[] _fromBalance;
+    private final int[] _toBalance;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new settlement, the arrays are owned by the settlement from now on
+     * @param id the sequence number of the settlement in its ledger
+     * @param kind the kind of the settlement (Ledger.RENT, Ledger.CARD...)
+     * @param from the payer of each leg
+     * @param to the payee of each leg
+     * @param requested the amount requested in each leg
+     * @param paid the amount actually paid in each leg
+     * @param fromBalance the cash of the payer right after each leg
+     * @param toBalance the cash of the payee right after each leg
+     */
+    Settlement(long id, int kind, int[] from, int[] to, int[] requested, int[] paid,
+               int[] fromBalance, int[] toBalance)
+    {
+        _id = id;
+        _kind = kind;
+        _from = from;
+        _to = to;
+        _requested = requested;
+        _paid = paid;
+        _fromBalance = fromBalance;
+        _toBalance = toBalance;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the sequence number of the settlement in its ledger
+     * @return the sequence number of the settlement
+     */
+    public long getID(){return _id;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the kind of the settlement
+     * @return the kind of the settlement (Ledger.RENT, Ledger.CARD...)
+     */
+    public int getKind(){return _kind;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of legs in the settlement
+     * @return the number of legs in the settlement
+     */
+    public int getNumLegs(){return _from.length;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the payer of the given leg
+     * @param leg the index of the leg
+     * @return the index of the paying player, TREASURY if the treasury pays
+     */
+    public int getFrom(int leg){return _from[leg];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the payee of the given leg
+     * @param leg the index of the leg
+     * @return the index of the paid player, TREASURY if the treasury is paid
+     */
+    public int getTo(int leg){return _to[leg];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the amount requested in the given leg
+     * @param leg the index of the leg
+     * @return the amount requested
+     */
+    public int getRequested(int leg){return _requested[leg];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the amount actually paid in the given leg, less than requested if the payer went bankrupt
+     * @param leg the index of the leg
+     * @return the amount paid
+     */
+    public int getPaid(int leg){return _paid[leg];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the cash of the payer right after the given leg
+     * @param leg the index of the leg
+     * @return the cash of the payer, 0 if the treasury pays
+     */
+    public int getFromBalance(int leg){return _fromBalance[leg];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the cash of the payee right after the given leg
+     * @param leg the index of the leg
+     * @return the cash of the payee, 0 if the treasury is paid
+     */
+    public int getToBalance(int leg){return _toBalance[leg];}
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("settlement ").append(_id).append(" (").append(Ledger.getKindName(_kind)).append("):");
+
+        for(int i = 0; i < _from.length; i++)
+        {
+            builder.append(' ').append(_from[i]).append("->").append(_to[i])
+                   .append(' ').append(_paid[i]).append('/').append(_requested[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package gameLogic.ledger;
+
+
+import gameLogic.innerEvents.MyChangeEvent;
+
+
+/**
+ * this class represents the change event fired by a ledger when a settlement is committed
+ * @author Dana Akerman
+ */
+public class SettlementEvent extends MyChangeEvent
+{
+
+    // constants
+    //--------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String MESSAGE = "settlement";
+
+    // data members
+    //--------------------------------------------------------------
+
+    private transient Settlement _settlement;
+
+    // c'tor
+    //--------------------------------------------------------------
+
+    /**
+     * constructs a new settlement event
+     * @param source the ledger that committed the settlement
+     * @param settlement the committed settlement
+     */
+    public SettlementEvent(Object source, Settlement settlement)
+    {
+        super(source, MESSAGE);
+        _settlement = settlement;
+    }
+
+    // methods
+    //--------------------------------------------------------------
+
+    /**
+     * gets the committed settlement
+     * @return the committed settlement
+     */
+    public Settlement getSettlement(){return _settlement;}
+}
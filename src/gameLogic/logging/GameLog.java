@@ -0,0 +1,380 @@
+package gameLogic.logging;
+
+
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import gameLogic.tracing.RequestTrace;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * this class is the log of the server. a caller only puts its record in a bounded queue,
+ * and a log thread formats and writes the records to the standard output, so a storm of
+ * errors doesn't make the threads of the games and the clients wait for each other on it.
+ * a record is a line of key=value fields: the time, the level, the game, the player and
+ * the event it's about, the request trace of the thread, the message and the exception,
+ * followed by the stack trace.
+ * an error message is written at most SUPPRESS_LIMIT times a second, the next record
+ * written with it tells how many were suppressed. when the queue is full records are dropped.
+ * the dropped, suppressed and written records are counted in the metrics
+ * @author Dana Akerman
+ */
+public class GameLog
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final int CAPACITY = 4096;           // the records waiting to be written
+    public static final long SUPPRESS_MILLIS = 1000;   // the window of the duplicate suppression
+    public static final int SUPPRESS_LIMIT = 10;       // the records of a message in a window
+    public static final int MAX_MESSAGES = 1024;       // the messages suppression is kept for
+    public static final int NO_EVENT = -1;
+
+    public static final String INFO = "info";
+    public static final String ERROR = "error";
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter written = Metrics.getCounter("log.records");
+    private static final Counter dropped = Metrics.getCounter("log.dropped");
+    private static final Counter suppressed = Metrics.getCounter("log.suppressed");
+
+    private static final ArrayBlockingQueue<Record> queue = new ArrayBlockingQueue<Record>(CAPACITY);
+    private static final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<String, Window>();
+    private static final PrintStream out = System.out;
+    private static final Writer writer = new Writer();
+
+    static
+    {
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread("game log flush")
+        {
+            @Override
+            public void run()
+            {
+                writer.flush();
+            }
+        });
+    }
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private GameLog(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * logs what the server did
+     * @param message the message
+     */
+    public static void info(String message)
+    {
+        log(INFO, null, null, NO_EVENT, message, null);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * logs what the server did with a game
+     * @param game the name of the game
+     * @param message the message
+     */
+    public static void info(String game, String message)
+    {
+        log(INFO, game, null, NO_EVENT, message, null);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * logs an error
+     * @param message the message, the same for every error of its kind
+     * @param ex the exception, or null
+     */
+    public static void error(String message, Throwable ex)
+    {
+        log(ERROR, null, null, NO_EVENT, message, ex);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * logs an error of a game
+     * @param game the name of the game
+     * @param message the message, the same for every error of its kind
+     * @param ex the exception, or null
+     */
+    public static void error(String game, String message, Throwable ex)
+    {
+        log(ERROR, game, null, NO_EVENT, message, ex);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * logs an error of a player of a game
+     * @param game the name of the game, or null
+     * @param player the name or the id of the player, or null
+     * @param eventID the event the error is about, or NO_EVENT
+     * @param message the message, the same for every error of its kind
+     * @param ex the exception, or null
+     */
+    public static void error(String game, String player, int eventID, String message, Throwable ex)
+    {
+        log(ERROR, game, player, eventID, message, ex);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * puts a record in the queue, unless its message was written too often lately or the queue is full
+     */
+    private static void log(String level, String game, String player, int eventID, String message, Throwable ex)
+    {
+        int suppressedBefore = 0;
+
+        if(level == ERROR)
+        {
+            suppressedBefore = admit(message);
+            if(suppressedBefore < 0)
+            {
+                suppressed.increment();
+                return;
+            }
+        }
+
+        if(!queue.offer(new Record(System.currentTimeMillis(), level, game, player, eventID, 
+                RequestTrace.getTraceID(), message, ex, suppressedBefore)))
+        {
+            dropped.increment();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if a record of the given message can be written now
+     * @return the number of records of the message suppressed before it, or -1 if it's suppressed
+     */
+    private static int admit(String message)
+    {
+        if(message == null)
+        {
+            return 0;
+        }
+
+        Window window = windows.get(message);
+        if(window == null)
+        {
+            if(windows.size() >= MAX_MESSAGES)
+            {
+                return 0; // too many kinds of messages to tell the duplicates
+            }
+
+            Window created = new Window();
+            window = windows.putIfAbsent(message, created);
+            if(window == null)
+            {
+                window = created;
+            }
+        }
+        return window.admit(System.currentTimeMillis());
+    }
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * this class counts the records of a message in the current window
+     */
+    private static class Window
+    {
+        private long _start;
+        private int _admitted;
+        private int _suppressed;
+
+        /**
+         * counts a record of the message
+         * @param now the time of the record
+         * @return the number of records suppressed before it, or -1 if it's suppressed
+         */
+        synchronized int admit(long now)
+        {
+            if(now - _start >= SUPPRESS_MILLIS)
+            {
+                int before = _suppressed;
+                _start = now;
+                _admitted = 1;
+                _suppressed = 0;
+                return before;
+            }
+
+            if(_admitted < SUPPRESS_LIMIT)
+            {
+                _admitted++;
+                return 0;
+            }
+
+            _suppressed++;
+            return -1;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * this class represents a record waiting to be written
+     */
+    private static class Record
+    {
+        final long _time;
+        final String _level;
+        final String _game;
+        final String _player;
+        final int _eventID;
+        final String _traceID;
+        final String _message;
+        final Throwable _exception;
+        final int _suppressed;
+
+        Record(long time, String level, String game, String player, int eventID, String traceID, 
+                String message, Throwable exception, int suppressed)
+        {
+            _time = time;
+            _level = level;
+            _game = game;
+            _player = player;
+            _eventID = eventID;
+            _traceID = traceID;
+            _message = message;
+            _exception = exception;
+            _suppressed = suppressed;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * this class is the log thread, it writes the records in batches and flushes after each batch
+     */
+    private static class Writer extends Thread
+    {
+        private final SimpleDateFormat _format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        private final StringBuilder _line = new StringBuilder(256);
+        private final ArrayList<Record> _batch = new ArrayList<Record>();
+        private final Date _date = new Date();
+
+        Writer()
+        {
+            super("game log");
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            while(true)
+            {
+                Record record;
+                try
+                {
+                    record = queue.take();
+                }
+                catch(InterruptedException ex)
+                {
+                    return;
+                }
+                this.write(record); // the batch is only touched under the monitor, flush() writes it too
+            }
+        }
+
+        /**
+         * writes the records left in the queue, when the server stops
+         */
+        synchronized void flush()
+        {
+            this.write(null);
+        }
+
+        /**
+         * writes a record taken from the queue and the ones waiting in it
+         * @param first the record taken, null if none
+         */
+        private synchronized void write(Record first)
+        {
+            if(first != null)
+            {
+                _batch.add(first);
+            }
+            queue.drainTo(_batch);
+
+            for(int i = 0; i < _batch.size(); i++)
+            {
+                this.format(_batch.get(i));
+                out.print(_line);
+            }
+            out.flush();
+
+            written.add(_batch.size());
+            _batch.clear();
+        }
+
+        /**
+         * formats a record into the line buffer
+         */
+        private void format(Record record)
+        {
+            _line.setLength(0);
+            _date.setTime(record._time);
+
+            _line.append("time=\"").append(_format.format(_date)).append("\" level=").append(record._level);
+            if(record._game != null)
+            {
+                _line.append(" game=\"").append(record._game).append('"');
+            }
+            if(record._player != null)
+            {
+                _line.append(" player=\"").append(record._player).append('"');
+            }
+            if(record._eventID != NO_EVENT)
+            {
+                _line.append(" event=").append(record._eventID);
+            }
+            if(record._traceID != null)
+            {
+                _line.append(" trace=").append(record._traceID);
+            }
+            _line.append(" msg=\"").append(record._message).append('"');
+            if(record._suppressed > 0)
+            {
+                _line.append(" suppressed=").append(record._suppressed);
+            }
+            if(record._exception != null)
+            {
+                _line.append(" error=\"").append(record._exception).append('"');
+            }
+            _line.append('\n');
+
+            if(record._exception != null)
+            {
+                StringWriter trace = new StringWriter();
+                record._exception.printStackTrace(new PrintWriter(trace));
+                _line.append(trace.getBuffer());
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package gameLogic.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * this class represents a named monotonic counter, safe to update from any thread
+ * @author Dana Akerman
+ */
+public class Counter
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final String _name;
+    private final AtomicLong _value;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new counter, counters are created by the Metrics registry
+     * @param name the name of the counter
+     */
+    Counter(String name)
+    {
+        _name = name;
+        _value = new AtomicLong();
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the name of the counter
+     * @return the name of the counter
+     */
+    public String getName(){return _name;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the value of the counter
+     * @return the value of the counter
+     */
+    public long get(){return _value.get();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds one to the counter
+     */
+    public void increment()
+    {
+        _value.incrementAndGet();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds the given amount to the counter
+     * @param amount the amount to add
+     * @throws IllegalArgumentException if amount is negative
+     */
+    public void add(long amount)
+    {
+        if(amount < 0)
+            throw new IllegalArgumentException("illegal amount input");
+
+        _value.addAndGet(amount);
+    }
+}
@@ -0,0 +1,60 @@
+package gameLogic.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * this class represents a named value that goes up and down, safe to set from any thread
+ * @author Dana Akerman
+ */
+public class Gauge
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final String _name;
+    private final AtomicLong _value;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new gauge, gauges are created by the Metrics registry
+     * @param name the name of the gauge
+     */
+    Gauge(String name)
+    {
+        _name = name;
+        _value = new AtomicLong();
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the name of the gauge
+     * @return the name of the gauge
+     */
+    public String getName(){return _name;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the value of the gauge
+     * @return the value of the gauge
+     */
+    public long get(){return _value.get();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * sets the value of the gauge
+     * @param value the new value
+     */
+    public void set(long value)
+    {
+        _value.set(value);
+    }
+}
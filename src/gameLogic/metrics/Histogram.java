@@ -0,0 +1,226 @@
+package gameLogic.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * this class represents a named histogram of non negative values, latencies in nanoseconds.
+ * the buckets are log-linear like an hdr histogram: every power of two is split into
+ * SUB_BUCKETS buckets, so a percentile is within 1/SUB_BUCKETS of the real value at any
+ * magnitude. recording is an index computation and two atomic adds, without locks
+ * or allocation, safe from any thread. a snapshot is read without stopping the recorders,
+ * so it may miss the values recorded while it's taken
+ * @author Dana Akerman
+ */
+public class Histogram
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final int SUB_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BITS; // 32, ~3% resolution
+    private static final int NUM_BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final String _name;
+    private final AtomicLongArray _counts;
+    private final AtomicLong _sum;
+    private final AtomicLong _max;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new histogram. the histograms of the server metrics are created by the Metrics
+     * registry, one made here isn't shown and is read by its owner
+     * @param name the name of the histogram
+     */
+    public Histogram(String name)
+    {
+        _name = name;
+        _counts = new AtomicLongArray(NUM_BUCKETS);
+        _sum = new AtomicLong();
+        _max = new AtomicLong();
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the name of the histogram
+     * @return the name of the histogram
+     */
+    public String getName(){return _name;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a value, a negative value is recorded as 0
+     * @param value the value
+     */
+    public void record(long value)
+    {
+        if(value < 0)
+        {
+            value = 0;
+        }
+
+        _counts.incrementAndGet(getBucket(value));
+        _sum.addAndGet(value);
+
+        long max = _max.get();
+        while(value > max && !_max.compareAndSet(max, value))
+        {
+            max = _max.get();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records the time since the given start
+     * @param startNanos the start, from System.nanoTime()
+     */
+    public void recordSince(long startNanos)
+    {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * takes a snapshot of the histogram
+     * @return the snapshot
+     */
+    public Snapshot getSnapshot()
+    {
+        long[] counts = new long[NUM_BUCKETS];
+        long count = 0;
+
+        for(int i = 0; i < NUM_BUCKETS; i++)
+        {
+            counts[i] = _counts.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, _sum.get(), _max.get());
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the bucket of a value
+     * @param value the value, not negative
+     * @return the index of the bucket
+     */
+    static int getBucket(long value)
+    {
+        if(value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the highest value of a bucket
+     * @param bucket the index of the bucket
+     * @return the highest value that falls in the bucket
+     */
+    static long getBucketMax(int bucket)
+    {
+        if(bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS)) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * this class is a copy of a histogram at one moment
+     */
+    public static class Snapshot
+    {
+        private final long[] _counts;
+        private final long _count;
+        private final long _sum;
+        private final long _max;
+
+        Snapshot(long[] counts, long count, long sum, long max)
+        {
+            _counts = counts;
+            _count = count;
+            _sum = sum;
+            _max = max;
+        }
+
+        /**
+         * gets the number of values
+         * @return the number of values
+         */
+        public long getCount(){return _count;}
+
+        /**
+         * gets the mean of the values
+         * @return the mean, 0 if there are none
+         */
+        public long getMean(){return (_count == 0) ? 0 : _sum / _count;}
+
+        /**
+         * gets the sum of the values
+         * @return the sum of the values
+         */
+        public long getSum(){return _sum;}
+
+        /**
+         * gets the largest value
+         * @return the largest value, 0 if there are none
+         */
+        public long getMax(){return _max;}
+
+        /**
+         * gets a percentile of the values
+         * @param percentile the percentile, 0 to 100
+         * @return the highest value of the bucket the percentile falls in, at most the largest value
+         * @throws IllegalArgumentException if percentile is out of range
+         */
+        public long getPercentile(double percentile)
+        {
+            if(percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("illegal percentile");
+
+            if(_count == 0)
+            {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(_count * percentile / 100));
+            long seen = 0;
+
+            for(int i = 0; i < _counts.length; i++)
+            {
+                seen += _counts[i];
+                if(seen >= rank)
+                {
+                    return Math.min(getBucketMax(i), _max);
+                }
+            }
+            return _max;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package gameLogic.metrics;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * this class is the registry of the server metrics. a metric is created the first
+ * time it's asked for and lives as long as the server, callers keep the returned
+ * object in a static field so the hot paths don't look it up
+ * @author Dana Akerman
+ */
+public class Metrics
+{
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    private static final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+    private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * no instances
+     */
+    private Metrics(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the counter with the given name, creating it if needed
+     * @param name the name of the counter
+     * @return the counter with the given name
+     * @throws NullPointerException if name is null
+     */
+    public static Counter getCounter(String name)
+    {
+        if(name == null)
+            throw new NullPointerException("name is null");
+
+        Counter counter = counters.get(name);
+
+        if(counter == null)
+        {
+            Counter created = new Counter(name);
+            counter = counters.putIfAbsent(name, created);
+
+            if(counter == null)
+            {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the gauge with the given name, creating it if needed
+     * @param name the name of the gauge
+     * @return the gauge with the given name
+     * @throws NullPointerException if name is null
+     */
+    public static Gauge getGauge(String name)
+    {
+        if(name == null)
+            throw new NullPointerException("name is null");
+
+        Gauge gauge = gauges.get(name);
+
+        if(gauge == null)
+        {
+            Gauge created = new Gauge(name);
+            gauge = gauges.putIfAbsent(name, created);
+
+            if(gauge == null)
+            {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the histogram with the given name, creating it if needed
+     * @param name the name of the histogram
+     * @return the histogram with the given name
+     * @throws NullPointerException if name is null
+     */
+    public static Histogram getHistogram(String name)
+    {
+        if(name == null)
+            throw new NullPointerException("name is null");
+
+        Histogram histogram = histograms.get(name);
+
+        if(histogram == null)
+        {
+            Histogram created = new Histogram(name);
+            histogram = histograms.putIfAbsent(name, created);
+
+            if(histogram == null)
+            {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets all the counters, sorted by name
+     * @return all the counters
+     */
+    public static ArrayList<Counter> getCounters()
+    {
+        ArrayList<String> names = new ArrayList<String>(counters.keySet());
+        Collections.sort(names);
+
+        ArrayList<Counter> result = new ArrayList<Counter>();
+        for(int i = 0; i < names.size(); i++)
+        {
+            result.add(counters.get(names.get(i)));
+        }
+        return result;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets all the gauges, sorted by name
+     * @return all the gauges
+     */
+    public static ArrayList<Gauge> getGauges()
+    {
+        ArrayList<String> names = new ArrayList<String>(gauges.keySet());
+        Collections.sort(names);
+
+        ArrayList<Gauge> result = new ArrayList<Gauge>();
+        for(int i = 0; i < names.size(); i++)
+        {
+            result.add(gauges.get(names.get(i)));
+        }
+        return result;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets all the histograms, sorted by name
+     * @return all the histograms
+     */
+    public static ArrayList<Histogram> getHistograms()
+    {
+        ArrayList<String> names = new ArrayList<String>(histograms.keySet());
+        Collections.sort(names);
+
+        ArrayList<Histogram> result = new ArrayList<Histogram>();
+        for(int i = 0; i < names.size(); i++)
+        {
+            result.add(histograms.get(names.get(i)));
+        }
+        return result;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the values of the counters, the gauges and the histograms, each sorted by name. a histogram gives
+     * the values <name>.count, .mean, .p50, .p90, .p99, .p999 and .max
+     * @return metric name -> value
+     */
+    public static LinkedHashMap<String, Long> getValues()
+    {
+        LinkedHashMap<String, Long> values = new LinkedHashMap<String, Long>();
+
+        ArrayList<Counter> counterList = getCounters();
+        for(int i = 0; i < counterList.size(); i++)
+        {
+            values.put(counterList.get(i).getName(), counterList.get(i).get());
+        }
+
+        ArrayList<Gauge> gaugeList = getGauges();
+        for(int i = 0; i < gaugeList.size(); i++)
+        {
+            values.put(gaugeList.get(i).getName(), gaugeList.get(i).get());
+        }
+
+        ArrayList<Histogram> histogramList = getHistograms();
+        for(int i = 0; i < histogramList.size(); i++)
+        {
+            String name = histogramList.get(i).getName();
+            Histogram.Snapshot snapshot = histogramList.get(i).getSnapshot();
+
+            values.put(name + ".count", snapshot.getCount());
+            values.put(name + ".mean", snapshot.getMean());
+            values.put(name + ".p50", snapshot.getPercentile(50));
+            values.put(name + ".p90", snapshot.getPercentile(90));
+            values.put(name + ".p99", snapshot.getPercentile(99));
+            values.put(name + ".p999", snapshot.getPercentile(99.9));
+            values.put(name + ".max", snapshot.getMax());
+        }
+        return values;
+    }
+}
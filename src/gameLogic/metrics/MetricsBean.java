@@ -0,0 +1,145 @@
+package gameLogic.metrics;
+
+
+import gameLogic.logging.GameLog;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+
+/**
+ * this class shows the server metrics in jmx, as the read only attributes of the
+ * monopoly:type=Metrics bean. every value Metrics.getValues() gives is an attribute,
+ * and the metrics created after the bean was registered show up too
+ * @author Dana Akerman
+ */
+public class MetricsBean implements DynamicMBean
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String OBJECT_NAME = "monopoly:type=Metrics";
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static boolean registered = false;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new bean, call register() to show the metrics
+     */
+    private MetricsBean(){}
+
+    // methods
+    //-------------------------------------------------------------------
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        Long value = Metrics.getValues().get(attribute);
+
+        if(value == null)
+            throw new AttributeNotFoundException("illegal attribute " + attribute);
+
+        return value;
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+    {
+        LinkedHashMap<String, Long> values = Metrics.getValues();
+        AttributeList list = new AttributeList();
+
+        for(int i = 0; i < attributes.length; i++)
+        {
+            Long value = values.get(attributes[i]);
+            if(value != null)
+            {
+                list.add(new Attribute(attributes[i], value));
+            }
+        }
+        return list;
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException("the metrics are read only");
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList(); // none was set
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+    {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "the metrics have no operations");
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+        ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        Iterator<Map.Entry<String, Long>> values = Metrics.getValues().entrySet().iterator();
+
+        while(values.hasNext())
+        {
+            attributes.add(new MBeanAttributeInfo(values.next().getKey(), Long.class.getName(), "", true, false, false));
+        }
+
+        return new MBeanInfo(MetricsBean.class.getName(), "the monopoly server metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * registers the bean in the platform mbean server, once
+     */
+    public static synchronized void register()
+    {
+        if(registered)
+        {
+            return;
+        }
+
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        }
+        catch(JMException ex)
+        {
+            GameLog.error("can't show the metrics in jmx", ex);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package gameLogic.metrics;
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * this class serves the server metrics as plain text for a scraper, a line of
+ * "name value" for every value Metrics.getValues() gives, with the dots of the
+ * names made underscores. to try it run the server with -Dmonopoly.metrics.port=9090
+ * and read http://localhost:9090/metrics
+ * @author Dana Akerman
+ */
+public class MetricsServer implements HttpHandler
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String PORT_PROPERTY = "monopoly.metrics.port"; // the port of the metrics, not served if not set
+    public static final String PATH = "/metrics";
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final HttpServer _server;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new metrics server, call start() to serve
+     * @param port the port to listen on
+     * @throws IOException if the port can't be listened on
+     */
+    public MetricsServer(int port) throws IOException
+    {
+        _server = HttpServer.create(new InetSocketAddress(port), 0);
+        _server.createContext(PATH, this);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts serving, on a thread of the http server
+     */
+    public void start()
+    {
+        _server.start();
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+        StringBuilder text = new StringBuilder();
+        Iterator<Map.Entry<String, Long>> values = Metrics.getValues().entrySet().iterator();
+
+        while(values.hasNext())
+        {
+            Map.Entry<String, Long> value = values.next();
+            text.append(value.getKey().replace('.', '_')).append(' ').append(value.getValue()).append('\n');
+        }
+
+        byte[] body = text.toString().getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+
+        OutputStream out = exchange.getResponseBody();
+        try
+        {
+            out.write(body);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package gameLogic.persistence;
+
+
+import gameLogic.GameCheckpoint;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import monopoly.Event;
+
+
+/**
+ * this class writes the archive of a finished game, read back by GameArchive.
+ * the events are stored by column: the strings of all the events go to one dictionary and
+ * the events keep their index in it, and every int column is stored as its minimum plus
+ * the smallest width (1, 2 or 4 bytes) that holds the rest, so event i is read from fixed offsets.
+ * the final state of the game is stored as a checkpoint
+ * @author Dana Akerman
+ */
+public class ArchiveWriter
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final int MAGIC = 0x4d415243; // "MARC"
+    public static final byte VERSION = 1;
+
+    // the columns, in the order they are written
+    public static final int ID = 0;
+    public static final int TYPE = 1;
+    public static final int PLAYER = 2;
+    public static final int MESSAGE = 3;
+    public static final int TIMEOUT = 4;
+    public static final int SQUARE = 5;
+    public static final int NEXT_SQUARE = 6;
+    public static final int DICE1 = 7;
+    public static final int DICE2 = 8;
+    public static final int FLAGS = 9;
+    public static final int PAYMENT_TO = 10;
+    public static final int AMOUNT = 11;
+    public static final int NUM_COLUMNS = 12;
+
+    // the bits of the FLAGS column
+    public static final int MOVED = 1;
+    public static final int TREASURY = 2;
+    public static final int FROM_USER = 4;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private ArchiveWriter(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the archive of a finished game to a temporary file and renames it
+     * @param file the archive file
+     * @param name the name of the game
+     * @param endTime the time the game ended, in milliseconds
+     * @param players the names of the players by their index in the game
+     * @param events the client events of the game
+     * @param finalState the state of the game when it ended
+     * @return the size of the archive
+     * @throws NullPointerException if an argument is null
+     * @throws IOException if the archive can't be written
+     */
+    public static long write(File file, String name, long endTime, ArrayList<String> players,
+                             ArrayList<Event> events, GameCheckpoint finalState) throws IOException
+    {
+        if(file == null)
+            throw new NullPointerException("file is null");
+        if(name == null)
+            throw new NullPointerException("name is null");
+        if(players == null)
+            throw new NullPointerException("players is null");
+        if(events == null)
+            throw new NullPointerException("events is null");
+        if(finalState == null)
+            throw new NullPointerException("final state is null");
+
+        int numEvents = events.size();
+        ArrayList<String> strings = new ArrayList<String>();
+        HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+        int[][] columns = new int[NUM_COLUMNS][numEvents];
+
+        for(int i = 0; i < numEvents; i++)
+        {
+            Event e = events.get(i);
+            columns[ID][i] = e.getEventID();
+            columns[TYPE][i] = e.getEventType();
+            columns[PLAYER][i] = intern(e.getPlayerName(), strings, dictionary);
+            columns[MESSAGE][i] = intern(e.getEventMessage(), strings, dictionary);
+            columns[TIMEOUT][i] = e.getTimeoutCount();
+            columns[SQUARE][i] = e.getBoardSquareID();
+            columns[NEXT_SQUARE][i] = e.getNextBoardSquareID();
+            columns[DICE1][i] = e.getFirstDiceResult();
+            columns[DICE2][i] = e.getSecondDiceResult();
+            columns[FLAGS][i] = (e.isPlayerMoved() ? MOVED : 0)
+                    | (e.isPaymentToOrFromTreasury() ? TREASURY : 0)
+                    | (e.isPaymemtFromUser() ? FROM_USER : 0);
+            columns[PAYMENT_TO][i] = intern(e.getPaymentToPlayerName(), strings, dictionary);
+            columns[AMOUNT][i] = e.getPaymentAmount();
+        }
+
+        int nameIndex = intern(name, strings, dictionary);
+        int[] playerIndexes = new int[players.size()];
+        for(int i = 0; i < playerIndexes.length; i++)
+        {
+            playerIndexes[i] = intern(players.get(i), strings, dictionary);
+        }
+
+        ByteArrayOutputStream state = new ByteArrayOutputStream(512);
+        finalState.write(new DataOutputStream(state));
+
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(endTime);
+            out.writeInt(numEvents);
+            out.writeInt(nameIndex);
+
+            writeDictionary(out, strings);
+
+            out.writeByte(playerIndexes.length);
+            for(int i = 0; i < playerIndexes.length; i++)
+            {
+                out.writeInt(playerIndexes[i]);
+            }
+
+            out.writeInt(state.size());
+            state.writeTo(out);
+
+            for(int c = 0; c < NUM_COLUMNS; c++)
+            {
+                writeColumn(out, columns[c]);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if(!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+            throw new IOException("can't rename " + temp + " to " + file);
+
+        return file.length();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the width of the values of a column, given its range
+     * @param range the maximum minus the minimum of the column
+     * @return 1, 2 or 4 bytes
+     */
+    static int getWidth(long range)
+    {
+        if(range <= 0xff)
+        {
+            return 1;
+        }
+        else if(range <= 0xffff)
+        {
+            return 2;
+        }
+        return 4;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the index of the given string in the dictionary, adding it if needed. null is stored as an empty string
+     */
+    private static int intern(String s, ArrayList<String> strings, HashMap<String, Integer> dictionary)
+    {
+        String key = (s == null) ? "" : s;
+        Integer index = dictionary.get(key);
+
+        if(index == null)
+        {
+            index = Integer.valueOf(strings.size());
+            strings.add(key);
+            dictionary.put(key, index);
+        }
+        return index.intValue();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the dictionary: the number of strings, the end offset of every string and the utf-8 bytes
+     */
+    private static void writeDictionary(DataOutputStream out, ArrayList<String> strings) throws IOException
+    {
+        byte[][] bytes = new byte[strings.size()][];
+        int end = 0;
+
+        out.writeInt(strings.size());
+        for(int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = strings.get(i).getBytes(UTF8);
+            end += bytes[i].length;
+            out.writeInt(end);
+        }
+
+        for(int i = 0; i < bytes.length; i++)
+        {
+            out.write(bytes[i]);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes a column: its width, its minimum and every value minus the minimum
+     */
+    private static void writeColumn(DataOutputStream out, int[] values) throws IOException
+    {
+        int min = 0;
+        int max = 0;
+
+        for(int i = 0; i < values.length; i++)
+        {
+            if(i == 0 || values[i] < min)
+            {
+                min = values[i];
+            }
+            if(i == 0 || values[i] > max)
+            {
+                max = values[i];
+            }
+        }
+
+        int width = getWidth((long) max - min);
+        out.writeByte(width);
+        out.writeInt(min);
+
+        for(int i = 0; i < values.length; i++)
+        {
+            int value = values[i] - min;
+
+            switch(width)
+            {
+                case 1:
+                    out.writeByte(value);
+                    break;
+
+                case 2:
+                    out.writeShort(value);
+                    break;
+
+                default:
+                    out.writeInt(value);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package gameLogic.persistence;
+
+
+import gameLogic.Game;
+import gameLogic.ledger.Ledger;
+import gameLogic.players.Player;
+import java.io.File;
+import java.io.IOException;
+import monopoly.EventsFactory;
+
+
+/**
+ * this class measures how long recovering a game takes as a function of its length,
+ * replaying the whole journal against restoring the last checkpoint and replaying the tail.
+ * the journals are of two players paying each other rent every turn, written through a
+ * real game so the checkpoints are taken the way the game loop takes them
+ * run it with: java gameLogic.persistence.CheckpointBenchmark [max turns] [dir]
+ * @author Dana Akerman
+ */
+public class CheckpointBenchmark
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final int RENT = 10;
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * runs the benchmark
+     * @param args the number of turns of the longest game and the directory of the journals, both optional
+     * @throws IOException if a journal can't be written or read
+     * @throws InterruptedException if interrupted while waiting for a checkpoint
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int maxTurns = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        File dir = new File((args.length > 1) ? args[1] : System.getProperty("java.io.tmpdir"), "checkpoint-benchmark");
+        System.setProperty(GameJournal.DIR_PROPERTY, dir.getPath());
+        System.setProperty(GameJournal.FSYNC_PROPERTY, "none");
+        System.setProperty(GameJournal.JOURNAL_PROPERTY, "false"); // the game manager doesn't recover the benchmark journals
+
+        File warmUp = write(1000, 0);
+        recover(warmUp);
+        warmUp.delete();
+
+        for(int turns = 1000; turns <= maxTurns; turns *= 10)
+        {
+            File full = write(turns, 0);
+            File checkpointed = write(turns, GameJournal.DEFAULT_CHECKPOINT_INTERVAL);
+
+            long fullMillis = recover(full);
+            long checkpointMillis = recover(checkpointed);
+
+            System.out.println(turns + " turns, " + (full.length() / 1024) + " KB: whole journal "
+                    + fullMillis + " ms, from checkpoint " + checkpointMillis + " ms");
+
+            full.delete();
+            checkpointed.delete();
+            CheckpointFile.getFile(checkpointed).delete();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the journal of a game with the given number of turns
+     * @return the journal file
+     */
+    private static File write(int turns, int checkpointInterval) throws IOException, InterruptedException
+    {
+        System.setProperty(GameJournal.CHECKPOINT_PROPERTY, Integer.toString(checkpointInterval));
+
+        Game game = new Game("monopoly.xml", "benchmark", 1, 1, false, 1L);
+        GameJournal journal = GameJournal.create(game);
+        game.setJournal(journal);
+        game.addPlayer("player");
+
+        for(int turn = 0; turn < turns; turn++)
+        {
+            int index = turn % 2;
+            Player player = game.getPlayerByIndex(index);
+            Player owner = game.getPlayerByIndex(1 - index);
+            int dice1 = 1 + turn % 6;
+            int dice2 = 1 + (turn / 6) % 6;
+            int position = (player.getPosition() + dice1 + dice2) % Game.BOARD_SIZE;
+
+            apply(game, journal, new DomainEvent(DomainEvent.DICE_ROLLED, new int[]{dice1, dice2, 0}));
+            game.addEvent(EventsFactory.createDiceRollEvent("benchmark", player.getName(), dice1, dice2));
+
+            apply(game, journal, new DomainEvent(DomainEvent.PLAYER_PLACED, new int[]{index, position}));
+            game.addEvent(EventsFactory.createPlayerMovedEvent("benchmark", player, position, Game.REGULAR_MOVE));
+
+            // journaled by the game, settlements are recorded when they commit
+            game.replay(new DomainEvent(DomainEvent.SETTLED, new int[]{Ledger.RENT, 1, index, 1 - index,
+                RENT, RENT, player.getCash() - RENT, owner.getCash() + RENT}));
+
+            apply(game, journal, new DomainEvent(DomainEvent.TURN_ENDED, new int[]{1 - index, game.getNumEvents()}));
+
+            if(journal.isCheckpointDue())
+            {
+                game.checkpoint();
+            }
+        }
+
+        journal.flush();
+        journal.close();
+        return journal.getFile();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * applies a domain event to the game and journals it
+     */
+    private static void apply(Game game, GameJournal journal, DomainEvent e)
+    {
+        game.replay(e);
+
+        switch(e.getNumArgs())
+        {
+            case 2:
+                journal.record(e.getKind(), e.getArg(0), e.getArg(1));
+                break;
+
+            default:
+                journal.record(e.getKind(), e.getArg(0), e.getArg(1), e.getArg(2));
+                break;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads and rebuilds the game of the given journal
+     * @return the time it took in ms
+     */
+    private static long recover(File file) throws IOException
+    {
+        long start = System.nanoTime();
+        GameReplayer.rebuild(RecoveredGame.read(file));
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -0,0 +1,148 @@
+package gameLogic.persistence;
+
+
+import gameLogic.GameCheckpoint;
+import gameLogic.logging.GameLog;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+
+/**
+ * this class saves and loads the checkpoint file that sits next to the journal of a game.
+ * a new checkpoint is written to a temporary file, forced and renamed over the old one,
+ * so there is always one whole checkpoint. a crc at the end catches a corrupted file
+ * @author Dana Akerman
+ */
+public class CheckpointFile
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String EXTENSION = ".checkpoint";
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private CheckpointFile(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the checkpoint file of the given journal
+     * @param journal the journal file
+     * @return the checkpoint file of the journal
+     * @throws NullPointerException if journal is null
+     */
+    public static File getFile(File journal)
+    {
+        if(journal == null)
+            throw new NullPointerException("journal is null");
+
+        return new File(journal.getPath() + EXTENSION);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * saves a checkpoint, replacing the one in the file
+     * @param file the checkpoint file
+     * @param checkpoint the checkpoint
+     * @return the size of the checkpoint file
+     * @throws NullPointerException if file or checkpoint is null
+     * @throws IOException if the checkpoint can't be written
+     */
+    public static int save(File file, GameCheckpoint checkpoint) throws IOException
+    {
+        if(file == null)
+            throw new NullPointerException("file is null");
+
+        if(checkpoint == null)
+            throw new NullPointerException("checkpoint is null");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        checkpoint.write(out);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        try
+        {
+            bytes.writeTo(stream);
+            stream.getFD().sync();
+        }
+        finally
+        {
+            stream.close();
+        }
+
+        if(!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+            throw new IOException("can't rename " + temp + " to " + file);
+
+        return bytes.size();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * loads the checkpoint in the given file
+     * @param file the checkpoint file
+     * @return the checkpoint, or null if there is no checkpoint or it's corrupted
+     * @throws NullPointerException if file is null
+     */
+    public static GameCheckpoint load(File file)
+    {
+        if(file == null)
+            throw new NullPointerException("file is null");
+
+        if(!file.isFile() || file.length() < 4)
+        {
+            return null;
+        }
+
+        try
+        {
+            byte[] bytes = new byte[(int) file.length()];
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try
+            {
+                in.readFully(bytes);
+            }
+            finally
+            {
+                in.close();
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            DataInputStream checkpoint = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            if(checkpoint.skipBytes(bytes.length - 4) != bytes.length - 4 || checkpoint.readInt() != (int) crc.getValue())
+            {
+                GameLog.error("checkpoint " + file + " is corrupted", null);
+                return null;
+            }
+            return GameCheckpoint.read(new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4)));
+        }
+        catch(IOException ex)
+        {
+            GameLog.error("can't read checkpoint " + file, ex);
+            return null;
+        }
+    }
+}
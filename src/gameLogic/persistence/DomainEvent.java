@@ -0,0 +1,109 @@
+package gameLogic.persistence;
+
+
+/**
+ * this class represents a state transition of a game, complete enough to apply it to
+ * the game without running the rules: players are identified by their index in the game,
+ * squares by their index on the board. the kinds are journal record types, next to
+ * the GameJournal ones, and the arguments are written as ints
+ * @author Dana Akerman
+ */
+public class DomainEvent
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final byte GAME_STARTED = 10;     // -
+    public static final byte TURN_ENDED = 11;       // next turn index, number of client events
+    public static final byte DICE_ROLLED = 12;      // dice1, dice2, 1 if rolled by the game
+    public static final byte PLAYER_PLACED = 13;    // player, square
+    public static final byte CAN_MOVE_CHANGED = 14; // player, 1 or 0
+    public static final byte SETTLED = 15;          // kind, legs, then for each leg: from, to, requested, paid, from balance, to balance
+    public static final byte OWNER_CHANGED = 16;    // square, player or -1
+    public static final byte HOUSE_ADDED = 17;      // square
+    public static final byte CARD_DRAWN = 18;       // deck type, player, 1 if held out
+    public static final byte PARDON_RETURNED = 19;  // player
+    public static final byte PLAYER_REMOVED = 20;   // player
+    public static final byte RESIGNED = 21;         // player
+
+    public static final int NO_PLAYER = -1;
+
+    private static final int[] NO_ARGS = new int[0];
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final byte _kind;
+    private final int[] _args;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new domain event
+     * @param kind the kind of the event
+     * @param args the arguments of the event, owned by the event from now on
+     * @throws IllegalArgumentException if the kind is illegal
+     */
+    public DomainEvent(byte kind, int[] args)
+    {
+        if(!isDomainEvent(kind))
+            throw new IllegalArgumentException("illegal domain event kind");
+
+        _kind = kind;
+        _args = (args == null) ? NO_ARGS : args;
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the given journal record type is a domain event
+     * @param type the record type
+     * @return true if the record type is a domain event
+     */
+    public static boolean isDomainEvent(byte type)
+    {
+        return type >= GAME_STARTED && type <= RESIGNED;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the kind of the event
+     * @return the kind of the event
+     */
+    public byte getKind(){return _kind;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of arguments
+     * @return the number of arguments
+     */
+    public int getNumArgs(){return _args.length;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets an argument of the event
+     * @param index the index of the argument
+     * @return the argument
+     */
+    public int getArg(int index){return _args[index];}
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("domain event ").append(_kind);
+        for(int i = 0; i < _args.length; i++)
+        {
+            builder.append(' ').append(_args[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package gameLogic.persistence;
+
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import monopoly.Event;
+import monopoly.MyEvent;
+
+
+/**
+ * this class writes client events to binary streams and reads them back
+ * @author Dana Akerman
+ */
+public class EventCodec
+{
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * no instances
+     */
+    private EventCodec(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * writes all the fields of the given event
+     * @param out the output
+     * @param e the event
+     * @throws IOException if writing failed
+     */
+    public static void write(DataOutput out, Event e) throws IOException
+    {
+        out.writeInt(e.getEventID());
+        out.writeByte(e.getEventType());
+        writeString(out, e.getGameName());
+        writeString(out, e.getPlayerName());
+        writeString(out, e.getEventMessage());
+        out.writeInt(e.getTimeoutCount());
+        out.writeByte(e.getBoardSquareID());
+        out.writeByte(e.getNextBoardSquareID());
+        out.writeByte(e.getFirstDiceResult());
+        out.writeByte(e.getSecondDiceResult());
+        out.writeBoolean(e.isPlayerMoved());
+        out.writeBoolean(e.isPaymentToOrFromTreasury());
+        out.writeBoolean(e.isPaymemtFromUser());
+        writeString(out, e.getPaymentToPlayerName());
+        out.writeInt(e.getPaymentAmount());
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads an event written by write()
+     * @param in the input
+     * @return the event
+     * @throws IOException if reading failed
+     */
+    public static Event read(DataInput in) throws IOException
+    {
+        MyEvent e = new MyEvent();
+        e.setEventID(in.readInt());
+        e.setEventType(in.readByte());
+        e.setGameName(in.readUTF());
+        e.setPlayerName(in.readUTF());
+        e.setEventMessage(in.readUTF());
+        e.setTimeoutCount(in.readInt());
+        e.setBoardSquareID(in.readByte());
+        e.setNextBoardSquareID(in.readByte());
+
+        // unset dice and payment are 0, which the setters don't accept
+        int dice1 = in.readByte();
+        int dice2 = in.readByte();
+        if(dice1 != 0)
+        {
+            e.setFirstDiceResult(dice1);
+        }
+        if(dice2 != 0)
+        {
+            e.setSecondDiceResult(dice2);
+        }
+
+        e.setPlayerMoved(in.readBoolean());
+        e.setPaymentToOrFromTreasury(in.readBoolean());
+        e.setPaymemtFromUser(in.readBoolean());
+        e.setPaymentToPlayerName(in.readUTF());
+
+        int payment = in.readInt();
+        if(payment != 0)
+        {
+            e.setPaymentAmount(payment);
+        }
+        return e;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes a string that may be null, null is written as an empty string
+     */
+    private static void writeString(DataOutput out, String s) throws IOException
+    {
+        out.writeUTF((s == null) ? "" : s);
+    }
+}
@@ -0,0 +1,223 @@
+package gameLogic.persistence;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import monopoly.Event;
+
+
+/**
+ * this class keeps the oldest events of a running game on the disk, so a game that goes on
+ * for long doesn't keep all its events in the memory. the events are appended to a temporary file
+ * in the order they were added, and read back when a client asks for them.
+ * the offset of every INDEX_EVERY event is kept in the memory, reading an event skips the
+ * events before it in its block, so the memory of the index is a bit for every event.
+ * the file is deleted when the spill is closed or the server stops
+ * @author Dana Akerman
+ */
+public class EventSpill
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String DIR_PROPERTY = "monopoly.memory.spill.dir"; // the directory of the files, the temporary directory if not set
+    public static final int INDEX_EVERY = 64;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _file;
+    private BufferedOutputStream _out; // null when the spill is closed
+    private long _length;
+    private int _numEvents;
+    private long[] _index; // the offset of every INDEX_EVERY event
+    private boolean _failed; // a write failed, the end of the file is unknown
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * creates a new spill file of a game
+     * @param name the name of the game, for the file name
+     * @throws IOException if the file can't be created
+     */
+    public EventSpill(String name) throws IOException
+    {
+        String dir = System.getProperty(DIR_PROPERTY);
+        String prefix = (name == null) ? "" : name.replaceAll("[^A-Za-z0-9]", "");
+
+        _file = File.createTempFile("spill-" + prefix + "-", ".events", (dir == null) ? null : new File(dir));
+        _file.deleteOnExit();
+        _out = new BufferedOutputStream(new FileOutputStream(_file), 64 * 1024);
+        _length = 0;
+        _numEvents = 0;
+        _index = new long[16];
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the spill file
+     * @return the file
+     */
+    public File getFile(){return _file;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of events on the disk
+     * @return the number of events
+     */
+    public synchronized int getNumEvents(){return _numEvents;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the length of the spill file
+     * @return the length in bytes
+     */
+    public synchronized long getLength(){return _length;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the memory the index of the events takes
+     * @return the memory in bytes
+     */
+    public synchronized long getIndexBytes(){return 16 + 8L * _index.length;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * appends the next events of the game and writes them to the disk
+     * @param events the events, in the order they were added after the ones already spilled
+     * @throws NullPointerException if events is null
+     * @throws IllegalStateException if the spill is closed
+     * @throws IOException if the events can't be written or a write failed before, the events written
+     * before them stay readable
+     */
+    public synchronized void append(Event[] events) throws IOException
+    {
+        if(events == null)
+            throw new NullPointerException("events is null");
+        if(_out == null)
+            throw new IllegalStateException("the spill is closed");
+        if(_failed)
+            throw new IOException("a write of " + _file + " failed before");
+
+        DataOutputStream out = new DataOutputStream(_out); // counts the bytes of this append
+        int numEvents = _numEvents;
+        long[] index = _index;
+
+        try
+        {
+            for(int i = 0; i < events.length; i++, numEvents++)
+            {
+                if(numEvents % INDEX_EVERY == 0)
+                {
+                    int block = numEvents / INDEX_EVERY;
+                    if(block == index.length)
+                    {
+                        index = Arrays.copyOf(index, 2 * index.length);
+                    }
+                    index[block] = _length + out.size();
+                }
+                EventCodec.write(out, events[i]);
+            }
+            out.flush();
+        }
+        catch(IOException e)
+        {
+            _failed = true;
+            throw e;
+        }
+
+        _length += out.size();
+        _numEvents = numEvents;
+        _index = index;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads events back from the disk
+     * @param from the index of the first event
+     * @param to the index after the last event
+     * @return the events
+     * @throws IllegalArgumentException if the range isn't of spilled events
+     * @throws IllegalStateException if the spill is closed
+     * @throws IOException if the events can't be read
+     */
+    public synchronized Event[] read(int from, int to) throws IOException
+    {
+        if(from < 0 || to < from || to > _numEvents)
+            throw new IllegalArgumentException("illegal range of events");
+        if(_out == null)
+            throw new IllegalStateException("the spill is closed");
+
+        Event[] events = new Event[to - from];
+        if(events.length == 0)
+        {
+            return events;
+        }
+
+        int block = from / INDEX_EVERY;
+        FileInputStream file = new FileInputStream(_file);
+        try
+        {
+            long skip = _index[block];
+            while(skip > 0)
+            {
+                skip -= file.skip(skip);
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024));
+            for(int i = block * INDEX_EVERY; i < from; i++)
+            {
+                EventCodec.read(in);
+            }
+            for(int i = 0; i < events.length; i++)
+            {
+                events[i] = EventCodec.read(in);
+            }
+        }
+        finally
+        {
+            file.close();
+        }
+        return events;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * closes the spill and deletes its file
+     */
+    public synchronized void close()
+    {
+        if(_out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            _out.close();
+        }
+        catch(IOException e)
+        {
+            // the file is deleted anyway
+        }
+        _out = null;
+        _file.delete();
+    }
+}
@@ -0,0 +1,306 @@
+package gameLogic.persistence;
+
+
+import gameLogic.GameCheckpoint;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import monopoly.Event;
+import monopoly.MyEvent;
+
+
+/**
+ * this class reads the archive of a finished game, written by ArchiveWriter.
+ * the file is mapped to the memory and the events are decoded from it when they are asked for,
+ * the strings of the dictionary are decoded once. an archive is immutable and may be read by
+ * any number of threads
+ * @author Dana Akerman
+ */
+public class GameArchive
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _file;
+    private final ByteBuffer _buffer;
+    private final long _endTime;
+    private final int _numEvents;
+    private final String _name;
+    private final int _dictionaryStart;  // the end offsets of the strings
+    private final int _stringsStart;     // the utf-8 bytes of the strings
+    private final String[] _strings;     // decoded on demand
+    private final String[] _players;
+    private final int _stateStart;
+    private final int _stateLength;
+    private final int[] _widths;
+    private final int[] _mins;
+    private final int[] _offsets;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new archive over the mapped file, available only in this class
+     * @param file the archive file
+     * @param buffer the mapped file
+     * @throws IOException if the file isn't an archive
+     */
+    private GameArchive(File file, ByteBuffer buffer) throws IOException
+    {
+        _file = file;
+        _buffer = buffer;
+
+        if(buffer.getInt(0) != ArchiveWriter.MAGIC || buffer.get(4) != ArchiveWriter.VERSION)
+            throw new IOException(file + " is not a game archive");
+
+        _endTime = buffer.getLong(5);
+        _numEvents = buffer.getInt(13);
+        int nameIndex = buffer.getInt(17);
+
+        int numStrings = buffer.getInt(21);
+        _dictionaryStart = 25;
+        _stringsStart = _dictionaryStart + numStrings * 4;
+        _strings = new String[numStrings];
+        int position = _stringsStart + ((numStrings > 0) ? buffer.getInt(_stringsStart - 4) : 0);
+
+        _name = this.getString(nameIndex);
+
+        _players = new String[buffer.get(position)];
+        position++;
+        for(int i = 0; i < _players.length; i++)
+        {
+            _players[i] = this.getString(buffer.getInt(position));
+            position += 4;
+        }
+
+        _stateLength = buffer.getInt(position);
+        _stateStart = position + 4;
+        position = _stateStart + _stateLength;
+
+        _widths = new int[ArchiveWriter.NUM_COLUMNS];
+        _mins = new int[ArchiveWriter.NUM_COLUMNS];
+        _offsets = new int[ArchiveWriter.NUM_COLUMNS];
+        for(int c = 0; c < ArchiveWriter.NUM_COLUMNS; c++)
+        {
+            _widths[c] = buffer.get(position);
+            _mins[c] = buffer.getInt(position + 1);
+            _offsets[c] = position + 5;
+            position = _offsets[c] + _widths[c] * _numEvents;
+        }
+
+        if(position != buffer.limit())
+            throw new IOException(file + " is a corrupted game archive");
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * maps an archive file to the memory
+     * @param file the archive file
+     * @return the archive
+     * @throws NullPointerException if file is null
+     * @throws IOException if the file can't be mapped or isn't an archive
+     */
+    public static GameArchive open(File file) throws IOException
+    {
+        if(file == null)
+            throw new NullPointerException("file is null");
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GameArchive(file, buffer); // the mapping stays valid after the file is closed
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            throw new IOException(file + " is a truncated game archive");
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the archive file
+     * @return the archive file
+     */
+    public File getFile(){return _file;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the name of the game
+     * @return the name of the game
+     */
+    public String getName(){return _name;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the time the game ended
+     * @return the end time in milliseconds
+     */
+    public long getEndTime(){return _endTime;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of events in the game
+     * @return the number of events
+     */
+    public int getNumEvents(){return _numEvents;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the names of the players by their index in the game
+     * @return the names of the players
+     */
+    public String[] getPlayerNames(){return _players.clone();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the state of the game when it ended
+     * @return the final state
+     * @throws IOException if the state can't be decoded
+     */
+    public GameCheckpoint getFinalState() throws IOException
+    {
+        byte[] bytes = new byte[_stateLength];
+        ByteBuffer view = _buffer.duplicate();
+        view.position(_stateStart);
+        view.get(bytes);
+        return GameCheckpoint.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the events from the given index to the end of the game
+     * @param from the index of the first event
+     * @return the events
+     * @throws IllegalArgumentException if from is out of range
+     */
+    public Event[] getEvents(int from)
+    {
+        if(from < 0 || from > _numEvents)
+            throw new IllegalArgumentException("illegal event index");
+
+        Event[] events = new Event[_numEvents - from];
+        for(int i = 0; i < events.length; i++)
+        {
+            events[i] = this.getEvent(from + i);
+        }
+        return events;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the event at the given index
+     * @param index the index of the event in the game
+     * @return the event
+     * @throws IllegalArgumentException if index is out of range
+     */
+    public Event getEvent(int index)
+    {
+        if(index < 0 || index >= _numEvents)
+            throw new IllegalArgumentException("illegal event index");
+
+        MyEvent e = new MyEvent();
+        e.setGameName(_name);
+        e.setEventID(this.get(ArchiveWriter.ID, index));
+        e.setEventType(this.get(ArchiveWriter.TYPE, index));
+        e.setPlayerName(this.getString(this.get(ArchiveWriter.PLAYER, index)));
+        e.setEventMessage(this.getString(this.get(ArchiveWriter.MESSAGE, index)));
+        e.setTimeoutCount(this.get(ArchiveWriter.TIMEOUT, index));
+        e.setBoardSquareID(this.get(ArchiveWriter.SQUARE, index));
+        e.setNextBoardSquareID(this.get(ArchiveWriter.NEXT_SQUARE, index));
+
+        // unset dice and payment are 0, which the setters don't accept
+        int dice1 = this.get(ArchiveWriter.DICE1, index);
+        int dice2 = this.get(ArchiveWriter.DICE2, index);
+        if(dice1 != 0)
+        {
+            e.setFirstDiceResult(dice1);
+        }
+        if(dice2 != 0)
+        {
+            e.setSecondDiceResult(dice2);
+        }
+
+        int flags = this.get(ArchiveWriter.FLAGS, index);
+        e.setPlayerMoved((flags & ArchiveWriter.MOVED) != 0);
+        e.setPaymentToOrFromTreasury((flags & ArchiveWriter.TREASURY) != 0);
+        e.setPaymemtFromUser((flags & ArchiveWriter.FROM_USER) != 0);
+        e.setPaymentToPlayerName(this.getString(this.get(ArchiveWriter.PAYMENT_TO, index)));
+
+        int payment = this.get(ArchiveWriter.AMOUNT, index);
+        if(payment != 0)
+        {
+            e.setPaymentAmount(payment);
+        }
+        return e;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the value of the given column for the event at the given index
+     */
+    private int get(int column, int index)
+    {
+        int position = _offsets[column] + index * _widths[column];
+
+        switch(_widths[column])
+        {
+            case 1:
+                return _mins[column] + (_buffer.get(position) & 0xff);
+
+            case 2:
+                return _mins[column] + (_buffer.getShort(position) & 0xffff);
+
+            default:
+                return _mins[column] + _buffer.getInt(position);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the string at the given index of the dictionary, decoding it the first time
+     */
+    private String getString(int index)
+    {
+        String s = _strings[index];
+
+        if(s == null)
+        {
+            int start = (index == 0) ? 0 : _buffer.getInt(_dictionaryStart + (index - 1) * 4);
+            int end = _buffer.getInt(_dictionaryStart + index * 4);
+
+            byte[] bytes = new byte[end - start];
+            ByteBuffer view = _buffer.duplicate();
+            view.position(_stringsStart + start);
+            view.get(bytes);
+
+            s = new String(bytes, ArchiveWriter.UTF8);
+            _strings[index] = s; // a race decodes it twice, strings are immutable
+        }
+        return s;
+    }
+}
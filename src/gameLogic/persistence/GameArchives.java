@@ -0,0 +1,349 @@
+package gameLogic.persistence;
+
+
+import gameLogic.Game;
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import gameLogic.players.Player;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * this class is the directory of the archives of the finished games.
+ * a game is archived when it's over, its archive is kept until it's older than the retention
+ * time or there are more than the maximum number of archives. the archives that were read
+ * lately stay mapped, the games are found by name, the newest game with the name first
+ * @author Dana Akerman
+ */
+public class GameArchives
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String ARCHIVE_PROPERTY = "monopoly.archive";                 // false turns archiving off
+    public static final String DIR_PROPERTY = "monopoly.archive.dir";
+    public static final String RETENTION_PROPERTY = "monopoly.archive.retention";     // hours, 0 keeps the archives forever
+    public static final String MAX_ARCHIVES_PROPERTY = "monopoly.archive.max";
+    public static final String DEFAULT_DIR = "archive";
+    public static final int DEFAULT_RETENTION = 7 * 24;
+    public static final int DEFAULT_MAX_ARCHIVES = 1000;
+    public static final int MAX_MAPPED = 16;
+    public static final String EXTENSION = ".archive";
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter archived = Metrics.getCounter("archive.games");
+    private static final Counter archivedBytes = Metrics.getCounter("archive.bytes");
+    private static final Counter expired = Metrics.getCounter("archive.expired");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _dir;
+    private final long _retentionMillis;
+    private final int _maxArchives;
+    private final MappedArchives _mapped; // the least recently read first
+    private GameArchive _latest;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new archives directory
+     * @param dir the directory of the archives
+     * @param retentionMillis the time an archive is kept, 0 keeps it forever
+     * @param maxArchives the maximum number of archives
+     * @throws NullPointerException if dir is null
+     * @throws IllegalArgumentException if retentionMillis is negative or maxArchives isn't positive
+     */
+    public GameArchives(File dir, long retentionMillis, int maxArchives)
+    {
+        if(dir == null)
+            throw new NullPointerException("dir is null");
+        if(retentionMillis < 0)
+            throw new IllegalArgumentException("illegal retention");
+        if(maxArchives <= 0)
+            throw new IllegalArgumentException("illegal maximum number of archives");
+
+        _dir = dir;
+        _retentionMillis = retentionMillis;
+        _maxArchives = maxArchives;
+        _mapped = new MappedArchives();
+        _latest = null;
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if archiving is on, it is unless the monopoly.archive property is false
+     * @return true if archiving is on
+     */
+    public static boolean isEnabled()
+    {
+        return !("false".equalsIgnoreCase(System.getProperty(ARCHIVE_PROPERTY)));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * creates the archives directory the properties point to
+     * @return the archives directory
+     */
+    public static GameArchives fromProperties()
+    {
+        return new GameArchives(new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR)),
+                Integer.getInteger(RETENTION_PROPERTY, DEFAULT_RETENTION).intValue() * 3600000L,
+                Integer.getInteger(MAX_ARCHIVES_PROPERTY, DEFAULT_MAX_ARCHIVES).intValue());
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the directory of the archives
+     * @return the archives directory
+     */
+    public File getDirectory(){return _dir;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * archives a game that is over, and deletes the archives that expired
+     * @param game the game
+     * @return the archive of the game
+     * @throws NullPointerException if game is null
+     * @throws IllegalStateException if the game isn't over
+     * @throws IOException if the archive can't be written or mapped
+     */
+    public GameArchive archive(Game game) throws IOException
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        if(!_dir.isDirectory() && !_dir.mkdirs())
+            throw new IOException("can't create archive directory " + _dir);
+
+        ArrayList<Player> players = game.getPlayers();
+        ArrayList<String> names = new ArrayList<String>();
+        for(int i = 0; i < players.size(); i++)
+        {
+            names.add(players.get(i).getName());
+        }
+
+        long now = System.currentTimeMillis();
+        File file = new File(_dir, "game-" + now + "-" + Long.toHexString(game.getSeed()) + EXTENSION);
+        long size;
+
+        synchronized(game)
+        {
+            size = ArchiveWriter.write(file, game.getName(), now, names, game.getEvents(), game.getFinalState());
+        }
+        archived.increment();
+        archivedBytes.add(size);
+
+        GameArchive archive = GameArchive.open(file);
+        synchronized(this)
+        {
+            _mapped.put(file, archive);
+            _latest = archive;
+        }
+        this.deleteExpired(now);
+        return archive;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the game that ended last, since the server started
+     * @return the archive of the game, or null if no game ended
+     */
+    public synchronized GameArchive getLatest(){return _latest;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the newest finished game with the given name
+     * @param name the name of the game
+     * @return the archive of the game, or null if there is none
+     * @throws NullPointerException if name is null
+     */
+    public GameArchive get(String name)
+    {
+        if(name == null)
+            throw new NullPointerException("name is null");
+
+        synchronized(this)
+        {
+            if(_latest != null && _latest.getName().equals(name))
+            {
+                return _latest;
+            }
+        }
+
+        File[] files = this.listArchives();
+        for(int i = files.length - 1; i >= 0; i--)
+        {
+            GameArchive archive = this.map(files[i]);
+
+            if(archive != null && archive.getName().equals(name))
+            {
+                return archive;
+            }
+        }
+        return null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * deletes the archives that are older than the retention time, and the oldest ones above the maximum
+     * @param now the current time in milliseconds
+     * @return the number of archives deleted
+     */
+    public int deleteExpired(long now)
+    {
+        File[] files = this.listArchives();
+        int deleted = 0;
+
+        for(int i = 0; i < files.length; i++)
+        {
+            boolean old = _retentionMillis > 0 && now - files[i].lastModified() > _retentionMillis;
+            boolean extra = files.length - i > _maxArchives;
+
+            if((old || extra) && files[i].delete())
+            {
+                deleted++;
+                synchronized(this)
+                {
+                    _mapped.remove(files[i]);
+                    if(_latest != null && _latest.getFile().equals(files[i]))
+                    {
+                        _latest = null;
+                    }
+                }
+            }
+        }
+        expired.add(deleted);
+        return deleted;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the mapped archive in the given file, mapping it if needed
+     */
+    private GameArchive map(File file)
+    {
+        synchronized(this)
+        {
+            GameArchive archive = _mapped.get(file);
+            if(archive != null)
+            {
+                return archive;
+            }
+        }
+
+        try
+        {
+            GameArchive archive = GameArchive.open(file);
+            synchronized(this)
+            {
+                _mapped.put(file, archive);
+            }
+            return archive;
+        }
+        catch(IOException ex)
+        {
+            GameLog.error("can't read archive " + file, ex);
+            return null;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * lists the archive files, the oldest first
+     */
+    private File[] listArchives()
+    {
+        File[] files = _dir.listFiles(new FileFilter()
+        {
+            @Override
+            public boolean accept(File file)
+            {
+                return file.isFile() && file.getName().endsWith(EXTENSION);
+            }
+        });
+
+        if(files == null)
+        {
+            return new File[0];
+        }
+
+        // the names start with the end time
+        Arrays.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File f1, File f2)
+            {
+                long t1 = getEndTime(f1);
+                long t2 = getEndTime(f2);
+                return (t1 < t2) ? -1 : ((t1 > t2) ? 1 : f1.getName().compareTo(f2.getName()));
+            }
+        });
+        return files;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the end time in the name of an archive file, 0 if the name isn't an archive name
+     */
+    private static long getEndTime(File file)
+    {
+        String name = file.getName();
+        int end = name.indexOf('-', 5);
+
+        try
+        {
+            return Long.parseLong(name.substring(5, end));
+        }
+        catch(RuntimeException ex)
+        {
+            return 0;
+        }
+    }
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * this class keeps the archives read last, it drops the least recently read one above MAX_MAPPED
+     */
+    private static class MappedArchives extends LinkedHashMap<File, GameArchive>
+    {
+        private static final long serialVersionUID = 1L;
+
+        MappedArchives()
+        {
+            super(MAX_MAPPED, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, GameArchive> eldest)
+        {
+            return this.size() > MAX_MAPPED; // unmapped when collected
+        }
+    }
+}
@@ -0,0 +1,610 @@
+package gameLogic.persistence;
+
+
+import gameLogic.CommandLog;
+import gameLogic.Game;
+import gameLogic.GameCheckpoint;
+import gameLogic.ledger.Settlement;
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import monopoly.Event;
+
+
+/**
+ * this class represents the append-only journal of a single game: a header with
+ * everything needed to construct the game again (including the seed), the players that
+ * joined, the client events, the domain events the game can be replayed from, the commands
+ * of the clients with their outcomes and an end record once the game is over.
+ * the records are written by a JournalWriter, off the game thread. every CHECKPOINT_PROPERTY
+ * records the game is asked for a checkpoint at its next turn boundary, so a recovery
+ * replays only the records after it. checkpoints are written by one shared background thread
+ * @author Dana Akerman
+ */
+public class GameJournal
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String JOURNAL_PROPERTY = "monopoly.journal";    // false turns journaling off
+    public static final String DIR_PROPERTY = "monopoly.journal.dir";
+    public static final String FSYNC_PROPERTY = "monopoly.journal.fsync"; // none, batch, or an interval in ms
+    public static final String CHECKPOINT_PROPERTY = "monopoly.journal.checkpoint"; // records between checkpoints, 0 turns them off
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 4096;
+    public static final String DEFAULT_DIR = "journal";
+    public static final String EXTENSION = ".journal";
+
+    // record types
+    public static final byte HEADER = 1;
+    public static final byte JOIN = 2;
+    public static final byte EVENT = 3;
+    public static final byte END = 4;
+    public static final byte COMMAND = 5;
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter records = Metrics.getCounter("journal.records");
+    private static final Counter dropped = Metrics.getCounter("journal.records.dropped");
+    private static final Counter checkpoints = Metrics.getCounter("journal.checkpoints");
+    private static final Counter checkpointsSkipped = Metrics.getCounter("journal.checkpoints.skipped");
+
+    private static final ExecutorService checkpointWriter = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "checkpoint writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final String _gameName; // for the log
+    private final JournalWriter _writer;
+    private final RecordBuffer _bytes;
+    private final DataOutputStream _out;
+    private final int _checkpointInterval;
+    private boolean _ended;
+    private int _sinceCheckpoint;
+    private boolean _checkpointPending;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a journal over the given writer
+     * @param gameName the name of the game
+     * @param writer the writer of the journal file
+     */
+    private GameJournal(String gameName, JournalWriter writer)
+    {
+        _gameName = gameName;
+        _writer = writer;
+        _bytes = new RecordBuffer();
+        _out = new DataOutputStream(_bytes);
+        _checkpointInterval = Integer.getInteger(CHECKPOINT_PROPERTY, DEFAULT_CHECKPOINT_INTERVAL).intValue();
+        _ended = false;
+        _sinceCheckpoint = 0;
+        _checkpointPending = false;
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if journaling is on, it is unless the monopoly.journal property is false
+     * @return true if journaling is on
+     */
+    public static boolean isEnabled()
+    {
+        return !("false".equalsIgnoreCase(System.getProperty(JOURNAL_PROPERTY)));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the journals directory
+     * @return the journals directory
+     */
+    public static File getDirectory()
+    {
+        return new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * creates the journal of a new game and writes its header
+     * @param game the game
+     * @return the journal of the game
+     * @throws NullPointerException if game is null
+     * @throws IOException if the journal file can't be created
+     */
+    public static GameJournal create(Game game) throws IOException
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        File dir = getDirectory();
+        if(!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("can't create journal directory " + dir);
+
+        File file = new File(dir, "game-" + System.currentTimeMillis() + "-"
+                + Long.toHexString(game.getSeed()) + EXTENSION);
+
+        GameJournal journal = new GameJournal(game.getName(), openWriter(file));
+        journal.writeHeader(game);
+        return journal;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reopens the journal of a recovered game for appending, a torn tail is cut off first
+     * @param recovered the recovered game
+     * @return the journal of the game
+     * @throws NullPointerException if recovered is null
+     * @throws IOException if the journal file can't be opened
+     */
+    public static GameJournal reopen(RecoveredGame recovered) throws IOException
+    {
+        if(recovered == null)
+            throw new NullPointerException("recovered is null");
+
+        return reopen(recovered, recovered.getValidLength());
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reopens the journal of a recovered game for appending, everything after the given length is cut off
+     * @param recovered the recovered game
+     * @param length the length to keep
+     * @return the journal of the game
+     * @throws NullPointerException if recovered is null
+     * @throws IllegalArgumentException if length is out of the valid part of the journal
+     * @throws IOException if the journal file can't be opened
+     */
+    public static GameJournal reopen(RecoveredGame recovered, long length) throws IOException
+    {
+        if(recovered == null)
+            throw new NullPointerException("recovered is null");
+
+        if(length < 0 || length > recovered.getValidLength())
+            throw new IllegalArgumentException("illegal journal length");
+
+        RandomAccessFile raf = new RandomAccessFile(recovered.getFile(), "rw");
+        try
+        {
+            raf.setLength(length);
+        }
+        finally
+        {
+            raf.close();
+        }
+        return new GameJournal(recovered.getName(), openWriter(recovered.getFile()));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * opens a writer with the fsync policy of the monopoly.journal.fsync property
+     */
+    private static JournalWriter openWriter(File file) throws IOException
+    {
+        String fsync = System.getProperty(FSYNC_PROPERTY, "batch");
+
+        if(fsync.equalsIgnoreCase("none"))
+        {
+            return new JournalWriter(file, JournalWriter.FSYNC_NONE, 0);
+        }
+        if(fsync.equalsIgnoreCase("batch"))
+        {
+            return new JournalWriter(file, JournalWriter.FSYNC_BATCH, 0);
+        }
+        return new JournalWriter(file, JournalWriter.FSYNC_INTERVAL, Long.parseLong(fsync));
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the journal file
+     * @return the journal file
+     */
+    public File getFile(){return _writer.getFile();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the writer of the journal
+     * @return the writer of the journal
+     */
+    public JournalWriter getWriter(){return _writer;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the length of the journal with all the records appended so far
+     * @return the length of the journal
+     */
+    public long getLength(){return _writer.getLength();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if enough records were appended since the last checkpoint to take another one,
+     * and the last one was written already
+     * @return true if a checkpoint is due
+     */
+    public synchronized boolean isCheckpointDue()
+    {
+        return _checkpointInterval > 0 && _sinceCheckpoint >= _checkpointInterval && !_checkpointPending;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes a checkpoint of the game in the background, it's skipped if the previous one
+     * wasn't written yet
+     * @param checkpoint the checkpoint, taken at a turn boundary
+     * @throws NullPointerException if checkpoint is null
+     */
+    public synchronized void checkpoint(final GameCheckpoint checkpoint)
+    {
+        if(checkpoint == null)
+            throw new NullPointerException("checkpoint is null");
+
+        if(_checkpointPending || _ended)
+        {
+            checkpointsSkipped.increment();
+            return;
+        }
+
+        _checkpointPending = true;
+        _sinceCheckpoint = 0;
+        checkpointWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    CheckpointFile.save(CheckpointFile.getFile(getFile()), checkpoint);
+                    checkpoints.increment();
+                }
+                catch(IOException ex)
+                {
+                    GameLog.error(_gameName, "the checkpoint can't be written", ex);
+                }
+                finally
+                {
+                    synchronized(GameJournal.this)
+                    {
+                        _checkpointPending = false;
+                    }
+                }
+            }
+        });
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records that a human player joined the game
+     * @param name the name of the player
+     * @param id the id the player got
+     */
+    public synchronized void playerJoined(String name, int id)
+    {
+        try
+        {
+            _out.writeUTF(name);
+            _out.writeInt(id);
+        }
+        catch(IOException ex)
+        {
+            throw new IllegalStateException(ex); // can't happen, it's a memory stream
+        }
+        this.append(JOIN);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a client event
+     * @param e the event
+     */
+    public synchronized void eventAdded(Event e)
+    {
+        try
+        {
+            EventCodec.write(_out, e);
+        }
+        catch(IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        this.append(EVENT);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a command of a client that was done, with its outcome
+     * @param command the command
+     */
+    public synchronized void commandDone(CommandLog.Command command)
+    {
+        try
+        {
+            _out.writeByte(command.getKind());
+            _out.writeUTF(command.getKey());
+            _out.writeUTF(command.getOutcome());
+        }
+        catch(IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        this.append(COMMAND);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a domain event without arguments
+     * @param kind the kind of the domain event
+     */
+    public synchronized void record(byte kind)
+    {
+        this.append(kind);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a domain event with one argument
+     * @param kind the kind of the domain event
+     * @param arg the argument
+     */
+    public synchronized void record(byte kind, int arg)
+    {
+        this.writeInt(arg);
+        this.append(kind);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a domain event with two arguments
+     * @param kind the kind of the domain event
+     * @param arg0 the first argument
+     * @param arg1 the second argument
+     */
+    public synchronized void record(byte kind, int arg0, int arg1)
+    {
+        this.writeInt(arg0);
+        this.writeInt(arg1);
+        this.append(kind);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a domain event with three arguments
+     * @param kind the kind of the domain event
+     * @param arg0 the first argument
+     * @param arg1 the second argument
+     * @param arg2 the third argument
+     */
+    public synchronized void record(byte kind, int arg0, int arg1, int arg2)
+    {
+        this.writeInt(arg0);
+        this.writeInt(arg1);
+        this.writeInt(arg2);
+        this.append(kind);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records a committed ledger settlement as a DomainEvent.SETTLED
+     * @param settlement the settlement
+     */
+    public synchronized void settled(Settlement settlement)
+    {
+        this.writeInt(settlement.getKind());
+        this.writeInt(settlement.getNumLegs());
+
+        for(int leg = 0; leg < settlement.getNumLegs(); leg++)
+        {
+            this.writeInt(settlement.getFrom(leg));
+            this.writeInt(settlement.getTo(leg));
+            this.writeInt(settlement.getRequested(leg));
+            this.writeInt(settlement.getPaid(leg));
+            this.writeInt(settlement.getFromBalance(leg));
+            this.writeInt(settlement.getToBalance(leg));
+        }
+        this.append(DomainEvent.SETTLED);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * waits until the records appended so far and the checkpoint handed over so far are written
+     * @throws IOException if the journal failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws IOException, InterruptedException
+    {
+        _writer.flush();
+
+        try
+        {
+            checkpointWriter.submit(new Runnable()
+            {
+                @Override
+                public void run(){} // the checkpoints before it are written
+            }).get();
+        }
+        catch(ExecutionException ex)
+        {
+            throw new IllegalStateException(ex); // can't happen, it does nothing
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * records that the game is over and closes the journal
+     */
+    public synchronized void gameEnded()
+    {
+        if(_ended)
+        {
+            return;
+        }
+
+        this.append(END);
+        _ended = true;
+        this.close();
+
+        // a game that is over isn't recovered, after the checkpoint that may still be written
+        checkpointWriter.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                CheckpointFile.getFile(getFile()).delete();
+            }
+        });
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes what's left and closes the journal file
+     */
+    public void close()
+    {
+        try
+        {
+            _writer.close();
+        }
+        catch(IOException ex)
+        {
+            GameLog.error(_gameName, "the journal can't be closed", ex);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes the header record of the given game
+     */
+    private synchronized void writeHeader(Game game)
+    {
+        try
+        {
+            _out.writeUTF(game.getXmlFileName());
+            _out.writeUTF(game.getName());
+            _out.writeInt(game.getTotalHumanNum());
+            _out.writeInt(game.getCompNum());
+            _out.writeBoolean(game.isAutoDice());
+            _out.writeLong(game.getSeed());
+        }
+        catch(IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        this.append(HEADER);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes an int to the record stream
+     */
+    private void writeInt(int value)
+    {
+        try
+        {
+            _out.writeInt(value);
+        }
+        catch(IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * appends the bytes written to the record stream as a record of the given type
+     */
+    private void append(byte type)
+    {
+        if(_writer.append(type, _bytes.getArray(), _bytes.size()))
+        {
+            records.increment();
+            _sinceCheckpoint++;
+        }
+        else
+        {
+            dropped.increment();
+        }
+        _bytes.reset();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * this class is a byte array stream whose array can be appended without a copy.
+     * it's used only under the journal's lock so its writes aren't synchronized
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream
+    {
+        RecordBuffer()
+        {
+            super(256);
+        }
+
+        byte[] getArray(){return buf;}
+
+        @Override
+        public void write(int b)
+        {
+            if(count == buf.length)
+            {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            if(count + len > buf.length)
+            {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + len));
+            }
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package gameLogic.persistence;
+
+
+import gameLogic.CommandLog;
+import gameLogic.Game;
+import java.io.IOException;
+import java.util.ArrayList;
+import monopoly.Event;
+import monopoly.EventsFactory;
+
+
+/**
+ * this class rebuilds a game from what was read back from its journal.
+ * the game is constructed again from the header (the same seed gives the same board, decks
+ * and dice stream), the players join again, it's restored from the checkpoint if there is one,
+ * and the domain events up to the last turn boundary are applied to it without running the rules. the game is then ready to run from
+ * the turn that was cut, a player that resigned after the boundary stays resigned.
+ * the command log gets the commands of the clients, so their retries are still recognized
+ * @author Dana Akerman
+ */
+public class GameReplayer
+{
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private GameReplayer(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * rebuilds a recovered game without a journal
+     * @param recovered the recovered game
+     * @return the rebuilt game, not running
+     * @throws NullPointerException if recovered is null
+     * @throws IllegalStateException if the journal doesn't match the game
+     */
+    public static Game rebuild(RecoveredGame recovered)
+    {
+        if(recovered == null)
+            throw new NullPointerException("recovered is null");
+
+        Game game = replay(recovered);
+        replayResignations(game, recovered);
+        return game;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * rebuilds a recovered game and reopens its journal at the last turn boundary,
+     * the turn that was cut is journaled again when the game runs
+     * @param recovered the recovered game
+     * @return the rebuilt game, not running
+     * @throws NullPointerException if recovered is null
+     * @throws IllegalStateException if the journal doesn't match the game
+     * @throws IOException if the journal can't be reopened
+     */
+    public static Game recover(RecoveredGame recovered) throws IOException
+    {
+        if(recovered == null)
+            throw new NullPointerException("recovered is null");
+
+        Game game = replay(recovered);
+
+        // the client events of the new turn continue the ids of the recovered ones
+        if(recovered.getBoundaryEvents() > 0)
+        {
+            EventsFactory.eventIdGenerator = game.getLastEvent().getEventID();
+        }
+
+        game.setJournal(GameJournal.reopen(recovered, recovered.getBoundaryLength()));
+        replayResignations(game, recovered); // journaled again, they were cut with the turn
+        restoreCommands(game, recovered);
+        return game;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs the game and applies the journal up to the last turn boundary
+     */
+    private static Game replay(RecoveredGame recovered)
+    {
+        Game game = new Game(recovered.getXmlFileName(), recovered.getName(), recovered.getHumanPlayers(),
+                recovered.getCompPlayers(), recovered.isAutoDice(), recovered.getSeed());
+
+        ArrayList<String> joined = recovered.getJoinedPlayers();
+        for(int i = 0; i < joined.size(); i++)
+        {
+            game.addPlayer(joined.get(i));
+        }
+
+        ArrayList<Event> events = recovered.getEvents();
+        for(int i = 0; i < recovered.getBoundaryEvents(); i++)
+        {
+            game.addEvent(events.get(i));
+        }
+
+        if(recovered.getCheckpoint() != null)
+        {
+            game.restore(recovered.getCheckpoint());
+        }
+
+        ArrayList<DomainEvent> domainEvents = recovered.getDomainEvents();
+        for(int i = 0; i < recovered.getBoundaryDomainEvents(); i++)
+        {
+            game.replay(domainEvents.get(i));
+        }
+        return game;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * applies the resignations that came after the last turn boundary
+     */
+    private static void replayResignations(Game game, RecoveredGame recovered)
+    {
+        ArrayList<DomainEvent> domainEvents = recovered.getDomainEvents();
+
+        for(int i = recovered.getBoundaryDomainEvents(); i < domainEvents.size(); i++)
+        {
+            DomainEvent e = domainEvents.get(i);
+
+            if(e.getKind() == DomainEvent.RESIGNED)
+            {
+                game.replay(e);
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gives the game the commands of its clients. the commands after the last turn boundary
+     * were cut with the turn, a duplicate runs them again, except the resignations which are kept
+     */
+    private static void restoreCommands(Game game, RecoveredGame recovered)
+    {
+        ArrayList<CommandLog.Command> commands = recovered.getCommands();
+
+        for(int i = 0; i < commands.size(); i++)
+        {
+            CommandLog.Command command = commands.get(i);
+
+            if(i < recovered.getBoundaryCommands())
+            {
+                game.getCommandLog().restore(command);
+            }
+            else if(command.getKind() == CommandLog.RESIGN)
+            {
+                game.getCommandLog().restore(command);
+                game.getJournal().commandDone(command);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package gameLogic.persistence;
+
+
+import gameLogic.Game;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+ * this class represents a game that was evicted from the memory, the journal of the game
+ * is its form on the disk and only the name of the game is kept.
+ * only a game that waits for players can be hibernated, it has no thread and no timer,
+ * the joins in its journal are all that's needed to rebuild it
+ * @author Dana Akerman
+ */
+public class HibernatedGame
+{
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter hibernated = Metrics.getCounter("games.hibernated");
+    private static final Counter rehydrated = Metrics.getCounter("games.rehydrated");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _file;
+    private final String _name;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new hibernated game, available only in this class
+     * @param file the journal of the game
+     * @param name the name of the game
+     */
+    private HibernatedGame(File file, String name)
+    {
+        _file = file;
+        _name = name;
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the given game can be hibernated, it must wait for players and have a journal
+     * @param game the game to check
+     * @return true if the game can be hibernated
+     * @throws NullPointerException if game is null
+     */
+    public static boolean canHibernate(Game game)
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        return game.getJournal() != null && !game.isStarted() && !game.isFull();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * hibernates the given game, its journal is written and closed. the caller drops the game
+     * @param game the game to hibernate
+     * @return the hibernated game
+     * @throws NullPointerException if game is null
+     * @throws IllegalArgumentException if the game can't be hibernated
+     * @throws IOException if the journal failed
+     * @throws InterruptedException if interrupted while the journal is written
+     */
+    public static HibernatedGame hibernate(Game game) throws IOException, InterruptedException
+    {
+        if(!canHibernate(game))
+            throw new IllegalArgumentException("illegal game to hibernate, it doesn't wait for players");
+
+        GameJournal journal = game.getJournal();
+        journal.flush();
+        journal.close();
+        hibernated.increment();
+        return new HibernatedGame(journal.getFile(), game.getName());
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the journal of the game
+     * @return the journal file
+     */
+    public File getFile(){return _file;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the name of the game
+     * @return the name of the game
+     */
+    public String getName(){return _name;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * rebuilds the game from its journal, which is reopened for it
+     * @return the game, waiting for players as it was
+     * @throws IOException if the journal can't be read or reopened
+     * @throws IllegalStateException if the journal doesn't match the game
+     */
+    public Game rehydrate() throws IOException
+    {
+        Game game = GameReplayer.recover(RecoveredGame.read(_file));
+        rehydrated.increment();
+        return game;
+    }
+}
@@ -0,0 +1,83 @@
+package gameLogic.persistence;
+
+
+import gameLogic.Game;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import monopoly.Event;
+import monopoly.EventsFactory;
+
+
+/**
+ * this class measures how long adding an event takes with the journal under each
+ * fsync policy, against adding it to the in-memory event list only
+ * run it with: java gameLogic.persistence.JournalBenchmark [events] [dir]
+ * @author Dana Akerman
+ */
+public class JournalBenchmark
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final String[] POLICIES = {"none", "batch", "10"};
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * runs the benchmark
+     * @param args number of events and the directory of the journals, both optional
+     * @throws IOException if a journal can't be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        File dir = new File((args.length > 1) ? args[1] : System.getProperty("java.io.tmpdir"), "journal-benchmark");
+        System.setProperty(GameJournal.DIR_PROPERTY, dir.getPath());
+
+        Game game = new Game("monopoly.xml", "benchmark", 1, 1, true, 1L);
+        Event[] events = new Event[1024];
+        for(int i = 0; i < events.length; i++)
+        {
+            events[i] = EventsFactory.createDiceRollEvent("benchmark", "player", 1 + i % 6, 1 + (i / 6) % 6);
+        }
+
+        for(int round = 0; round < 2; round++) // the first round warms up
+        {
+            ArrayList<Event> list = new ArrayList<Event>();
+            long start = System.nanoTime();
+            for(int i = 0; i < count; i++)
+            {
+                list.add(events[i & 1023]);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println("in memory: " + (nanos / count) + " ns per event");
+
+            for(int p = 0; p < POLICIES.length; p++)
+            {
+                System.setProperty(GameJournal.FSYNC_PROPERTY, POLICIES[p]);
+                GameJournal journal = GameJournal.create(game);
+                list = new ArrayList<Event>();
+
+                start = System.nanoTime();
+                for(int i = 0; i < count; i++)
+                {
+                    list.add(events[i & 1023]);
+                    journal.eventAdded(events[i & 1023]);
+                }
+                long appended = System.nanoTime() - start;
+                journal.getWriter().flush();
+                long durable = System.nanoTime() - start;
+
+                System.out.println("journal, fsync " + POLICIES[p] + ": " + (appended / count) + " ns per event, "
+                        + (durable / 1000000) + " ms until durable, "
+                        + (journal.getWriter().getDurableBytes() / count) + " bytes per event");
+
+                journal.close();
+                journal.getFile().delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package gameLogic.persistence;
+
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+
+/**
+ * this class reads the records of a journal file written by a JournalWriter.
+ * reading stops at the end of the file or at the first torn or corrupted record,
+ * what was read up to there is the valid part of the journal
+ * @author Dana Akerman
+ */
+public class JournalReader
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    // a record bigger than this is garbage from a torn write
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final DataInputStream _in;
+    private final CRC32 _crc;
+    private byte _type;
+    private byte[] _payload;
+    private int _length;
+    private long _validLength;
+    private boolean _done;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * opens the given journal file for reading
+     * @param file the journal file
+     * @throws NullPointerException if file is null
+     * @throws IOException if the file can't be opened
+     */
+    public JournalReader(File file) throws IOException
+    {
+        if(file == null)
+            throw new NullPointerException("file is null");
+
+        _in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        _crc = new CRC32();
+        _payload = new byte[256];
+        _length = 0;
+        _validLength = 0;
+        _done = false;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * reads the next record
+     * @return true if a record was read, false at the end of the valid part of the journal
+     * @throws IOException if reading failed
+     */
+    public boolean next() throws IOException
+    {
+        if(_done)
+        {
+            return false;
+        }
+
+        try
+        {
+            int length = _in.readInt();
+
+            if(length < 0 || length > MAX_RECORD_SIZE)
+            {
+                return this.stop();
+            }
+
+            byte type = _in.readByte();
+
+            if(_payload.length < length)
+            {
+                _payload = new byte[Math.max(length, _payload.length * 2)];
+            }
+            _in.readFully(_payload, 0, length);
+            int crc = _in.readInt();
+
+            _crc.reset();
+            _crc.update(type);
+            _crc.update(_payload, 0, length);
+
+            if((int) _crc.getValue() != crc)
+            {
+                return this.stop();
+            }
+
+            _type = type;
+            _length = length;
+            _validLength += length + JournalWriter.FRAME_OVERHEAD;
+            return true;
+        }
+        catch(EOFException ex)
+        {
+            return this.stop();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the type of the current record
+     * @return the type of the current record
+     */
+    public byte getType(){return _type;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the payload length of the current record
+     * @return the payload length of the current record
+     */
+    public int getLength(){return _length;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets a stream over the payload of the current record
+     * @return a stream over the payload of the current record
+     */
+    public DataInputStream getPayload()
+    {
+        return new DataInputStream(new ByteArrayInputStream(_payload, 0, _length));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the length of the valid part of the journal read so far
+     * @return the number of bytes of whole, uncorrupted records read so far
+     */
+    public long getValidLength(){return _validLength;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * closes the file
+     * @throws IOException if closing failed
+     */
+    public void close() throws IOException
+    {
+        _in.close();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * marks the end of the valid part of the journal
+     * @return false
+     */
+    private boolean stop()
+    {
+        _done = true;
+        return false;
+    }
+}
@@ -0,0 +1,399 @@
+package gameLogic.persistence;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+
+/**
+ * this class appends framed records to a journal file with group commit.
+ * append() only copies the record to a memory buffer, a background thread writes
+ * everything appended since its last write in one call and forces it to disk
+ * according to the fsync policy, so the game thread never waits for the disk.
+ * a record is framed as: payload length (int), type (byte), payload, crc32 of type and payload (int)
+ * @author Dana Akerman
+ */
+public class JournalWriter implements Runnable
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final int FSYNC_NONE = 0;     // leave it to the os
+    public static final int FSYNC_BATCH = 1;    // force after every group commit
+    public static final int FSYNC_INTERVAL = 2; // force at most once per interval
+
+    public static final int FRAME_OVERHEAD = 9;
+
+    // how long the writer lets records gather before writing them
+    public static final long GROUP_COMMIT_MILLIS = 1;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _file;
+    private final RandomAccessFile _raf;
+    private final FileChannel _channel;
+    private final int _fsyncPolicy;
+    private final long _fsyncIntervalMillis;
+    private final CRC32 _crc;
+    private final Thread _thread;
+    private final long _openLength; // the length of the file when it was opened
+
+    // guarded by this
+    private ByteBuffer _pending;
+    private long _appended;
+    private long _durable;
+    private boolean _closed;
+    private IOException _failure;
+
+    // writer thread only
+    private ByteBuffer _writing;
+    private long _lastForce;
+    private boolean _unforced;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * opens the given file for appending and starts the writer thread
+     * @param file the journal file, created if it doesn't exist
+     * @param fsyncPolicy FSYNC_NONE, FSYNC_BATCH or FSYNC_INTERVAL
+     * @param fsyncIntervalMillis the interval for FSYNC_INTERVAL
+     * @throws NullPointerException if file is null
+     * @throws IllegalArgumentException if the policy or the interval are illegal
+     * @throws IOException if the file can't be opened
+     */
+    public JournalWriter(File file, int fsyncPolicy, long fsyncIntervalMillis) throws IOException
+    {
+        if(file == null)
+            throw new NullPointerException("file is null");
+
+        if(fsyncPolicy < FSYNC_NONE || fsyncPolicy > FSYNC_INTERVAL)
+            throw new IllegalArgumentException("illegal fsync policy");
+
+        if(fsyncPolicy == FSYNC_INTERVAL && fsyncIntervalMillis <= 0)
+            throw new IllegalArgumentException("illegal fsync interval");
+
+        _file = file;
+        _raf = new RandomAccessFile(file, "rw");
+        _channel = _raf.getChannel();
+        _openLength = _channel.size();
+        _channel.position(_openLength);
+        _fsyncPolicy = fsyncPolicy;
+        _fsyncIntervalMillis = fsyncIntervalMillis;
+        _crc = new CRC32();
+        _pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        _writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        _appended = 0;
+        _durable = 0;
+        _closed = false;
+        _failure = null;
+        _lastForce = System.currentTimeMillis();
+        _unforced = false;
+
+        _thread = new Thread(this, "journal " + file.getName());
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the journal file
+     * @return the journal file
+     */
+    public File getFile(){return _file;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of bytes appended since the writer was opened
+     * @return the number of bytes appended
+     */
+    public synchronized long getAppendedBytes(){return _appended;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the length the journal file will have once everything appended is written
+     * @return the length of the journal file with all the appended records
+     */
+    public synchronized long getLength(){return _openLength + _appended;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of appended bytes that were written (and forced, by the policy)
+     * @return the number of durable bytes
+     */
+    public synchronized long getDurableBytes(){return _durable;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the error that stopped the writer
+     * @return the error, or null if the writer is fine
+     */
+    public synchronized IOException getFailure(){return _failure;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * appends a record, the record is written later by the writer thread.
+     * records appended after the writer failed or was closed are dropped
+     * @param type the type of the record
+     * @param payload the payload array
+     * @param length the number of payload bytes
+     * @return false if the record was dropped
+     * @throws NullPointerException if payload is null
+     */
+    public synchronized boolean append(byte type, byte[] payload, int length)
+    {
+        if(payload == null)
+            throw new NullPointerException("payload is null");
+
+        if(_closed || _failure != null)
+        {
+            return false;
+        }
+
+        int size = length + FRAME_OVERHEAD;
+        if(_pending.remaining() < size)
+        {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(_pending.capacity() * 2, _pending.position() + size));
+            _pending.flip();
+            bigger.put(_pending);
+            _pending = bigger;
+        }
+
+        _crc.reset();
+        _crc.update(type);
+        _crc.update(payload, 0, length);
+
+        _pending.putInt(length);
+        _pending.put(type);
+        _pending.put(payload, 0, length);
+        _pending.putInt((int) _crc.getValue());
+        _appended += size;
+
+        // the writer waits only while there is nothing to write
+        if(_pending.position() == size)
+        {
+            this.notifyAll();
+        }
+        return true;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * waits until everything appended so far is durable
+     * @throws IOException if the writer failed
+     */
+    public synchronized void flush() throws IOException
+    {
+        long target = _appended;
+
+        while(_durable < target && _failure == null)
+        {
+            if(_closed && !_thread.isAlive())
+            {
+                break;
+            }
+
+            try
+            {
+                this.wait(100);
+            }
+            catch(InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if(_failure != null)
+        {
+            throw _failure;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * writes what's left, forces it to disk and closes the file
+     * @throws IOException if the writer failed
+     */
+    public void close() throws IOException
+    {
+        synchronized(this)
+        {
+            if(_closed)
+            {
+                return;
+            }
+            _closed = true;
+            this.notifyAll();
+        }
+
+        try
+        {
+            _thread.join();
+        }
+        catch(InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        try
+        {
+            if(_channel.isOpen())
+            {
+                _channel.force(false);
+            }
+        }
+        finally
+        {
+            _raf.close();
+        }
+
+        IOException failure = this.getFailure();
+        if(failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * the writer thread loop
+     */
+    @Override
+    public void run()
+    {
+        while(true)
+        {
+            long target;
+
+            synchronized(this)
+            {
+                while(_pending.position() == 0 && !_closed)
+                {
+                    try
+                    {
+                        if(_unforced)
+                        {
+                            long left = _fsyncIntervalMillis - (System.currentTimeMillis() - _lastForce);
+                            if(left <= 0)
+                            {
+                                break;
+                            }
+                            this.wait(left);
+                        }
+                        else
+                        {
+                            this.wait();
+                        }
+                    }
+                    catch(InterruptedException ex)
+                    {
+                        _closed = true;
+                    }
+                }
+
+                if(_pending.position() == 0 && _closed)
+                {
+                    return;
+                }
+
+                // let more records join this commit, the appends don't wake us up meanwhile
+                if(!_closed && _pending.position() > 0)
+                {
+                    try
+                    {
+                        this.wait(GROUP_COMMIT_MILLIS);
+                    }
+                    catch(InterruptedException ex)
+                    {
+                        _closed = true;
+                    }
+                }
+
+                // swap the buffers, the game thread goes on appending to an empty one
+                ByteBuffer full = _pending;
+                _pending = _writing;
+                _writing = full;
+                target = _appended;
+            }
+
+            try
+            {
+                _writing.flip();
+                while(_writing.hasRemaining())
+                {
+                    _channel.write(_writing);
+                }
+                _writing.clear();
+                this.force();
+
+                synchronized(this)
+                {
+                    _durable = target;
+                    this.notifyAll();
+                }
+            }
+            catch(IOException ex)
+            {
+                synchronized(this)
+                {
+                    _failure = ex;
+                    _pending.clear();
+                    this.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * forces the written bytes to disk according to the policy
+     * @throws IOException if the force failed
+     */
+    private void force() throws IOException
+    {
+        switch(_fsyncPolicy)
+        {
+            case FSYNC_BATCH:
+                _channel.force(false);
+                break;
+
+            case FSYNC_INTERVAL:
+                long now = System.currentTimeMillis();
+                if(now - _lastForce >= _fsyncIntervalMillis)
+                {
+                    _channel.force(false);
+                    _lastForce = now;
+                    _unforced = false;
+                }
+                else
+                {
+                    _unforced = true;
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+}
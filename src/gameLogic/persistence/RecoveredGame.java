@@ -0,0 +1,419 @@
+package gameLogic.persistence;
+
+
+import gameLogic.CommandLog;
+import gameLogic.GameCheckpoint;
+import gameLogic.logging.GameLog;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import monopoly.Event;
+
+
+/**
+ * this class represents what was read back from the journal of a game:
+ * the header, the players that joined, the client events, the domain events and the commands.
+ * it also keeps the last turn boundary of the journal, the point a game is replayed up to
+ * and resumed from (a turn that was cut in the middle is played again).
+ * when the journal has a checkpoint the domain events before it are not decoded, the game
+ * is restored from the checkpoint and only the domain events after it are replayed
+ * @author Dana Akerman
+ */
+public class RecoveredGame
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _file;
+    private String _xmlFileName;
+    private String _name;
+    private int _humanPlayers;
+    private int _compPlayers;
+    private boolean _autoDice;
+    private long _seed;
+    private ArrayList<String> _joined;
+    private ArrayList<Event> _events;
+    private ArrayList<DomainEvent> _domainEvents;
+    private ArrayList<CommandLog.Command> _commands;
+    private boolean _started;
+    private boolean _ended;
+    private long _validLength;
+    private GameCheckpoint _checkpoint;
+
+    // the last turn boundary
+    private int _boundaryDomainEvents;
+    private int _boundaryEvents;
+    private int _boundaryCommands;
+    private long _boundaryLength;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs an empty recovered game of the given journal file
+     * @param file the journal file
+     */
+    private RecoveredGame(File file)
+    {
+        _file = file;
+        _joined = new ArrayList<String>();
+        _events = new ArrayList<Event>();
+        _domainEvents = new ArrayList<DomainEvent>();
+        _commands = new ArrayList<CommandLog.Command>();
+        _started = false;
+        _ended = false;
+        _validLength = 0;
+        _checkpoint = null;
+        _boundaryDomainEvents = 0;
+        _boundaryEvents = 0;
+        _boundaryCommands = 0;
+        _boundaryLength = 0;
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * reads the journal of a game, from its checkpoint if it has one
+     * @param file the journal file
+     * @return the recovered game, or null if the journal has no header
+     * @throws NullPointerException if file is null
+     * @throws IOException if reading failed
+     */
+    public static RecoveredGame read(File file) throws IOException
+    {
+        if(file == null)
+            throw new NullPointerException("file is null");
+
+        GameCheckpoint checkpoint = CheckpointFile.load(CheckpointFile.getFile(file));
+        RecoveredGame game = read(file, checkpoint);
+
+        if(checkpoint != null && game != null && game._checkpoint == null)
+        {
+            GameLog.error(game.getName(), "the checkpoint doesn't match the journal, reading all of it", null);
+            game = read(file, null);
+        }
+        return game;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads the journal of a game, the domain events up to the checkpoint are skipped.
+     * the checkpoint is kept only if it was taken at the end of a record with as many client events
+     */
+    private static RecoveredGame read(File file, GameCheckpoint checkpoint) throws IOException
+    {
+        RecoveredGame game = new RecoveredGame(file);
+        JournalReader reader = new JournalReader(file);
+        boolean hasHeader = false;
+        long skipUpTo = (checkpoint == null) ? -1 : checkpoint.getJournalLength();
+
+        try
+        {
+            while(reader.next())
+            {
+                DataInputStream in = reader.getPayload();
+
+                switch(reader.getType())
+                {
+                    case GameJournal.HEADER:
+                        game._xmlFileName = in.readUTF();
+                        game._name = in.readUTF();
+                        game._humanPlayers = in.readInt();
+                        game._compPlayers = in.readInt();
+                        game._autoDice = in.readBoolean();
+                        game._seed = in.readLong();
+                        hasHeader = true;
+                        game.markBoundary(reader.getValidLength());
+                        break;
+
+                    case GameJournal.JOIN:
+                        game._joined.add(in.readUTF());
+                        game.markBoundary(reader.getValidLength());
+                        break;
+
+                    case GameJournal.EVENT:
+                        game._events.add(EventCodec.read(in));
+                        break;
+
+                    case GameJournal.COMMAND:
+                        game._commands.add(new CommandLog.Command(in.readByte(), in.readUTF(), in.readUTF()));
+                        break;
+
+                    case GameJournal.END:
+                        game._ended = true;
+                        break;
+
+                    default:
+                        if(reader.getType() == DomainEvent.GAME_STARTED)
+                        {
+                            game._started = true;
+                        }
+
+                        if(reader.getValidLength() <= skipUpTo)
+                        {
+                            break; // in the checkpoint
+                        }
+
+                        if(DomainEvent.isDomainEvent(reader.getType()))
+                        {
+                            game.addDomainEvent(reader.getType(), in, reader.getLength(), reader.getValidLength());
+                        }
+                        break;
+                }
+
+                if(reader.getValidLength() == skipUpTo && game._events.size() == checkpoint.getNumEvents())
+                {
+                    game._checkpoint = checkpoint;
+                    game.markBoundary(reader.getValidLength());
+                }
+            }
+            game._validLength = reader.getValidLength();
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        return hasHeader ? game : null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads the journals in the given directory of the games that are not over, oldest first
+     * @param dir the journals directory
+     * @return the recovered games
+     * @throws NullPointerException if dir is null
+     */
+    public static ArrayList<RecoveredGame> readUnfinished(File dir)
+    {
+        if(dir == null)
+            throw new NullPointerException("dir is null");
+
+        ArrayList<RecoveredGame> games = new ArrayList<RecoveredGame>();
+        File[] files = dir.listFiles(new FileFilter()
+        {
+            @Override
+            public boolean accept(File file)
+            {
+                return file.isFile() && file.getName().endsWith(GameJournal.EXTENSION);
+            }
+        });
+
+        if(files == null)
+        {
+            return games;
+        }
+
+        Arrays.sort(files); // the names start with the creation time
+        for(int i = 0; i < files.length; i++)
+        {
+            try
+            {
+                RecoveredGame game = read(files[i]);
+                if(game != null && !game.isEnded())
+                {
+                    games.add(game);
+                }
+            }
+            catch(IOException ex)
+            {
+                GameLog.error("can't read journal " + files[i], ex);
+            }
+        }
+        return games;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * adds a domain event read from the journal, game started and turn ended events are turn boundaries
+     */
+    private void addDomainEvent(byte kind, DataInputStream in, int length, long validLength) throws IOException
+    {
+        int[] args = new int[length / 4];
+
+        for(int i = 0; i < args.length; i++)
+        {
+            args[i] = in.readInt();
+        }
+        _domainEvents.add(new DomainEvent(kind, args));
+
+        if(kind == DomainEvent.GAME_STARTED || kind == DomainEvent.TURN_ENDED)
+        {
+            this.markBoundary(validLength);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * marks the end of the record just read as the last turn boundary
+     */
+    private void markBoundary(long validLength)
+    {
+        _boundaryDomainEvents = _domainEvents.size();
+        _boundaryEvents = _events.size();
+        _boundaryCommands = _commands.size();
+        _boundaryLength = validLength;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the journal file
+     * @return the journal file
+     */
+    public File getFile(){return _file;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the xml file name of the game
+     * @return the xml file name of the game
+     */
+    public String getXmlFileName(){return _xmlFileName;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the name of the game
+     * @return the name of the game
+     */
+    public String getName(){return _name;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the total number of human players
+     * @return the total number of human players
+     */
+    public int getHumanPlayers(){return _humanPlayers;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of computer players
+     * @return the number of computer players
+     */
+    public int getCompPlayers(){return _compPlayers;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the game is played with automatic dice roll
+     * @return true if the game is played with automatic dice roll
+     */
+    public boolean isAutoDice(){return _autoDice;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the seed of the game
+     * @return the seed of the game
+     */
+    public long getSeed(){return _seed;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the names of the human players that joined, in joining order
+     * @return the names of the human players that joined
+     */
+    public ArrayList<String> getJoinedPlayers(){return _joined;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the client events of the game
+     * @return the client events of the game
+     */
+    public ArrayList<Event> getEvents(){return _events;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the checkpoint the game is restored from
+     * @return the checkpoint, or null if the whole journal is replayed
+     */
+    public GameCheckpoint getCheckpoint(){return _checkpoint;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the domain events of the game after the checkpoint
+     * @return the domain events of the game after the checkpoint, all of them if there is none
+     */
+    public ArrayList<DomainEvent> getDomainEvents(){return _domainEvents;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of domain events after the checkpoint up to the last turn boundary
+     * @return the number of domain events up to the last turn boundary
+     */
+    public int getBoundaryDomainEvents(){return _boundaryDomainEvents;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of client events up to the last turn boundary
+     * @return the number of client events up to the last turn boundary
+     */
+    public int getBoundaryEvents(){return _boundaryEvents;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the commands of the clients
+     * @return the commands, oldest first
+     */
+    public ArrayList<CommandLog.Command> getCommands(){return _commands;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of commands up to the last turn boundary
+     * @return the number of commands
+     */
+    public int getBoundaryCommands(){return _boundaryCommands;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the length of the journal up to the last turn boundary
+     * @return the length of the journal up to the last turn boundary
+     */
+    public long getBoundaryLength(){return _boundaryLength;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the journal has an end record
+     * @return true if the game is over
+     */
+    public boolean isEnded(){return _ended;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the length of the valid part of the journal, a torn tail after it is dropped
+     * @return the length of the valid part of the journal
+     */
+    public long getValidLength(){return _validLength;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the game was started (not waiting for players anymore)
+     * @return true if the game was started
+     */
+    public boolean isStarted(){return _started;}
+}
@@ -2,7 +2,11 @@ package gameLogic.players;
 
 
 import gameLogic.Game;
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.LockStats;
 import gameLogic.squares.SingleAsset;
+import gameLogic.tracing.RequestTrace;
+import gameLogic.tracing.Tracing;
 import monopoly.Event;
 import monopoly.EventsFactory;
 
@@ -13,6 +17,12 @@ import monopoly.EventsFactory;
  */
 public class HumanPlayer extends Player 
 {
+    // statics
+    //---------------------------------------------------------------
+    
+    // the contention on the player's monitor, the game thread holds it from a prompt until it waits
+    private static final LockStats promptLock = new LockStats("player.prompt");
+    
     // data members
     //---------------------------------------------------------------
     
@@ -71,6 +81,11 @@ public class HumanPlayer extends Player
     public synchronized void setResign(boolean val)
     {
         _resign = val;
+        
+        if(val && _game != null)
+        {
+            _game.recordResigned(this);
+        }
     }
     
     //---------------------------------------------------------------
@@ -108,23 +123,44 @@ public class HumanPlayer extends Player
      */
     public void playerRollDice()
     {
-        // prompt dice roll event
-        Event promptDiceRollEvent 
-                = EventsFactory.createPromptDiceRollEvent(_game.getName(), _name, 30);
-        _game.addEvent(promptDiceRollEvent);
-        _game.startTimer(Game.PROMPT_TIMER_SECS);
-
-        // wait until client answers or timer expire
+        // the prompt is added holding the lock, so an answer to it waits until the player waits
+        long prompted = promptLock.enter();
         synchronized (this) 
         {
+            long acquired = promptLock.acquired(prompted);
+            Event promptDiceRollEvent;
+            try
+            {
+                // prompt dice roll event
+                promptDiceRollEvent = EventsFactory.createPromptDiceRollEvent(_game.getName(), _name, 30);
+                _game.addEvent(promptDiceRollEvent);
+                _game.startTimer(Game.PROMPT_TIMER_SECS);
+            }
+            finally
+            {
+                promptLock.released(acquired); // the lock is let go while waiting
+            }
+
+            // wait until client answers or timer expire
+            long start = System.nanoTime();
+            Object trace = Tracing.begin(Tracing.PROMPT);
+            RequestTrace.endAll();
+            _game.setWaitingPlayer(this, promptDiceRollEvent.getEventID());
             try 
             {
                 this.wait();
             } 
             catch (InterruptedException ex) 
             {
-                ex.printStackTrace();
+                if (!_game.isAbortRequested()) // the watchdog interrupts a stuck game it ends
+                {
+                    GameLog.error(_game.getName(), _name, promptDiceRollEvent.getEventID(), "interrupted waiting for the dice roll", ex);
+                }
             }
+            _game.setWaitingPlayer(null, 0);
+            RequestTrace.resume(_game.takeAnswerTrace(), "game.answered"); // the game thread continues the trace of the answer
+            _game.getStats().promptAnswered(System.nanoTime() - start);
+            Tracing.end(trace, _game.getName(), _name, promptDiceRollEvent.getEventID());
         }
     }
     
@@ -138,35 +174,60 @@ public class HumanPlayer extends Player
 		
 	int cost = asset.getCostPrice();
 		
-	if(_cash >= cost && !_resign)
+	if(_cash >= cost && !_resign && !_game.isAbortRequested()) // an ending game doesn't prompt
 	{
-            //return UserInterface.getBuyDecision(asset, cost);
-            if(what == SingleAsset.ASSET)
-            {
-                Event promptBuyAssetEvent
-                        = EventsFactory.createPromptBuyAssetEvent(_game.getName(), this, Game.PROMPT_TIMER_SECS);
-                _game.addEvent(promptBuyAssetEvent);
-            }
-            else // house
-            {
-                Event promptBuyHouseEvent
-                        = EventsFactory.createPromptBuyHouseEvent(_game.getName(), this, Game.PROMPT_TIMER_SECS);
-                _game.addEvent(promptBuyHouseEvent);
-            }
-            _game.startTimer(Game.PROMPT_TIMER_SECS);
-            
-            // stop game
-            // the game will be notified if timer expires or stops
+            // the prompt is added holding the lock, so an answer to it waits until the player waits
+            long prompted = promptLock.enter();
             synchronized(this)
             {
+                long acquired = promptLock.acquired(prompted);
+
+                //return UserInterface.getBuyDecision(asset, cost);
+                Event prompt;
+                try
+                {
+                    if(what == SingleAsset.ASSET)
+                    {
+                        Event promptBuyAssetEvent
+                                = EventsFactory.createPromptBuyAssetEvent(_game.getName(), this, Game.PROMPT_TIMER_SECS);
+                        _game.addEvent(promptBuyAssetEvent);
+                        prompt = promptBuyAssetEvent;
+                    }
+                    else // house
+                    {
+                        Event promptBuyHouseEvent
+                                = EventsFactory.createPromptBuyHouseEvent(_game.getName(), this, Game.PROMPT_TIMER_SECS);
+                        _game.addEvent(promptBuyHouseEvent);
+                        prompt = promptBuyHouseEvent;
+                    }
+                    _game.startTimer(Game.PROMPT_TIMER_SECS);
+                }
+                finally
+                {
+                    promptLock.released(acquired); // the lock is let go while waiting
+                }
+            
+                // stop game
+                // the game will be notified if timer expires or stops
+                long start = System.nanoTime();
+                Object trace = Tracing.begin(Tracing.PROMPT);
+                RequestTrace.endAll();
+                _game.setWaitingPlayer(this, prompt.getEventID());
                 try 
                 {
                     this.wait();
                 } 
                 catch (InterruptedException ex) 
                 {
-                    ex.printStackTrace();
+                    if (!_game.isAbortRequested())
+                    {
+                        GameLog.error(_game.getName(), _name, prompt.getEventID(), "interrupted waiting for the buy decision", ex);
+                    }
                 }
+                _game.setWaitingPlayer(null, 0);
+                RequestTrace.resume(_game.takeAnswerTrace(), "game.answered");
+                _game.getStats().promptAnswered(System.nanoTime() - start);
+                Tracing.end(trace, _game.getName(), _name, prompt.getEventID());
             }
             
             return _decision;
@@ -27,7 +27,7 @@ public abstract class Player
     private boolean _canMoveNextTurn;
     private boolean _isInGame;
     private PardonCard _pardonCard;
-    protected int _cash;
+    protected volatile int _cash; // written inside ledger transactions
     private boolean _bankrupt;
 
     // c'tor
@@ -0,0 +1,253 @@
+package gameLogic.replication;
+
+
+import gameLogic.Game;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Gauge;
+import gameLogic.metrics.Metrics;
+import gameLogic.persistence.CheckpointFile;
+import gameLogic.persistence.GameJournal;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+
+/**
+ * this class moves a running game to another server process, which listens with a MigrationListener.
+ * the journal is copied while the game goes on, then the game is frozen at a turn boundary,
+ * a checkpoint is taken and only what was journaled since the copy is sent with it. the target
+ * rebuilds the game from the checkpoint, with nothing to replay, and runs it. if the target fails
+ * the game goes on here. the clients see the game stop from the freeze until the target runs it
+ *
+ * a migration is: MAGIC, VERSION and the journal name, APPEND messages as in the replication,
+ * REPLACE with the checkpoint and COMMIT with the journal length. the target answers with
+ * a boolean and the address to send the clients to, or the error
+ * @author Dana Akerman
+ */
+public class GameMigrator
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String LISTEN_PROPERTY = "monopoly.migration.listen"; // port
+    public static final String URL_PROPERTY = "monopoly.migration.url";       // where the clients of a game moved here go
+    public static final String FREEZE_PROPERTY = "monopoly.migration.freeze"; // ms to wait for a turn boundary
+    public static final int DEFAULT_FREEZE = 150000; // longer than a prompt
+
+    public static final int MAGIC = 0x4d4d4947; // "MMIG"
+    public static final byte VERSION = 1;
+    public static final byte COMMIT = 7; // length
+    public static final byte ABORT = 8;
+
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter migrations = Metrics.getCounter("migration.games");
+    private static final Counter failures = Metrics.getCounter("migration.failures");
+    private static final Gauge stall = Metrics.getGauge("migration.stall.millis");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final Game _game;
+    private final String _target;
+    private String _url;
+    private long _stallMillis;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new migration of the given game
+     * @param game the running game
+     * @param target the address of the target's migration listener, host:port
+     * @throws NullPointerException if game or target is null
+     * @throws IllegalArgumentException if the game has no journal
+     */
+    public GameMigrator(Game game, String target)
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+        if(target == null)
+            throw new NullPointerException("target is null");
+        if(game.getJournal() == null)
+            throw new IllegalArgumentException("illegal game to migrate, it has no journal");
+
+        _game = game;
+        _target = target;
+        _url = null;
+        _stallMillis = -1;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the address the target sends the clients to
+     * @return the address, or null if the game wasn't migrated
+     */
+    public String getURL(){return _url;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the time the game stood still
+     * @return the time from the freeze until the target ran the game, in ms
+     */
+    public long getStallMillis(){return _stallMillis;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * moves the game to the target. when it returns the game runs on the target and
+     * its journal here is ended, the caller drops the game
+     * @param freezeMillis the time to wait for the game to reach a turn boundary
+     * @throws IOException if the target can't be reached or failed, the game goes on here
+     * @throws InterruptedException if interrupted, the game goes on here
+     */
+    public void migrate(long freezeMillis) throws IOException, InterruptedException
+    {
+        int colon = _target.lastIndexOf(':');
+        if(colon <= 0)
+            throw new IllegalArgumentException("illegal target address, expected host:port");
+
+        GameJournal journal = _game.getJournal();
+        File file = journal.getFile();
+        boolean frozen = false;
+        Socket socket = new Socket();
+
+        try
+        {
+            socket.connect(new InetSocketAddress(_target.substring(0, colon), Integer.parseInt(_target.substring(colon + 1))), TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Replication.MAX_CHUNK + 1024));
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(file.getName());
+
+            // the bulk of the journal goes while the game runs
+            long copied = sendJournal(out, file, 0, file.length());
+            out.flush();
+
+            if(!_game.freeze(freezeMillis))
+            {
+                out.writeByte(ABORT);
+                out.flush();
+                throw new IOException("the game didn't reach a turn boundary");
+            }
+            frozen = true;
+            long start = System.nanoTime();
+
+            // everything up to the boundary is on the disk, and a checkpoint of it
+            journal.flush();
+            _game.checkpoint();
+            long length = journal.getLength(); // a resignation may still come, it's replayed on the target
+            journal.flush();
+
+            sendJournal(out, file, copied, length);
+            sendCheckpoint(out, CheckpointFile.getFile(file));
+            out.writeByte(COMMIT);
+            out.writeLong(length);
+            out.flush();
+
+            boolean ok = in.readBoolean();
+            String reply = in.readUTF();
+            if(!ok)
+                throw new IOException("the target failed, " + reply);
+
+            // the game is the target's, this journal ends so the game isn't recovered here
+            journal.gameEnded();
+            _game.migrated();
+            frozen = false;
+
+            _url = reply;
+            _stallMillis = (System.nanoTime() - start) / 1000000;
+            stall.set(_stallMillis);
+            migrations.increment();
+        }
+        catch(IOException ex)
+        {
+            failures.increment();
+            throw ex;
+        }
+        finally
+        {
+            if(frozen)
+            {
+                _game.thaw();
+            }
+            socket.close();
+        }
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * sends the bytes of the journal between the given offsets
+     * @return the end offset
+     */
+    private static long sendJournal(DataOutputStream out, File file, long from, long to) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            byte[] chunk = new byte[Replication.MAX_CHUNK];
+            raf.seek(from);
+
+            while(from < to)
+            {
+                int size = (int) Math.min(to - from, chunk.length);
+                raf.readFully(chunk, 0, size);
+
+                out.writeByte(Replication.APPEND);
+                out.writeUTF(file.getName());
+                out.writeLong(from);
+                out.writeInt(size);
+                out.write(chunk, 0, size);
+                from += size;
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+        return to;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * sends the checkpoint file
+     */
+    private static void sendCheckpoint(DataOutputStream out, File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+
+            out.writeByte(Replication.REPLACE);
+            out.writeUTF(file.getName());
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+}
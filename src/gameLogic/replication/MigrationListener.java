@@ -0,0 +1,237 @@
+package gameLogic.replication;
+
+
+import gameLogic.logging.GameLog;
+import gameLogic.persistence.CheckpointFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+
+/**
+ * this class receives the games other server processes move here with a GameMigrator, on a thread of its own.
+ * the journal and the checkpoint of the game are written to the journals directory and handed to the
+ * receiver, which rebuilds the game and runs it. one game is received at a time
+ * @author Dana Akerman
+ */
+public class MigrationListener implements Runnable
+{
+
+    /**
+     * this interface is implemented by the server that takes the migrated games
+     */
+    public interface Receiver
+    {
+        /**
+         * rebuilds a migrated game from its journal and runs it
+         * @param journal the journal of the game, with its checkpoint next to it
+         * @return null if the game runs, otherwise the error
+         */
+        String receiveGame(File journal);
+    }
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _dir;
+    private final int _port;
+    private final String _url;
+    private final Receiver _receiver;
+    private final Thread _thread;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new listener, call start() to run it
+     * @param dir the journals directory
+     * @param port the port to listen on
+     * @param url the address the clients of a game moved here are sent to
+     * @param receiver the server that takes the games
+     * @throws NullPointerException if dir, url or receiver is null
+     */
+    public MigrationListener(File dir, int port, String url, Receiver receiver)
+    {
+        if(dir == null)
+            throw new NullPointerException("dir is null");
+        if(url == null)
+            throw new NullPointerException("url is null");
+        if(receiver == null)
+            throw new NullPointerException("receiver is null");
+
+        _dir = dir;
+        _port = port;
+        _url = url;
+        _receiver = receiver;
+
+        _thread = new Thread(this, "migration listener");
+        _thread.setDaemon(true);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts listening for games
+     * @throws IOException if the journals directory can't be created
+     */
+    public void start() throws IOException
+    {
+        if(!_dir.isDirectory() && !_dir.mkdirs())
+            throw new IOException("can't create journal directory " + _dir);
+
+        _thread.start();
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void run()
+    {
+        ServerSocket server;
+        try
+        {
+            server = new ServerSocket(_port);
+        }
+        catch(IOException ex)
+        {
+            GameLog.error("can't listen for migrated games on port " + _port, ex);
+            return;
+        }
+
+        while(true)
+        {
+            Socket socket = null;
+            try
+            {
+                socket = server.accept();
+                this.receive(socket);
+            }
+            catch(IOException ex)
+            {
+                GameLog.error("a game migration failed", ex);
+            }
+            finally
+            {
+                try
+                {
+                    if(socket != null)
+                    {
+                        socket.close();
+                    }
+                }
+                catch(IOException ex)
+                {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * receives one game
+     */
+    private void receive(Socket socket) throws IOException
+    {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), Replication.MAX_CHUNK + 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if(in.readInt() != GameMigrator.MAGIC || in.readByte() != GameMigrator.VERSION)
+            throw new IOException("the other side isn't a monopoly server");
+
+        String name = in.readUTF();
+        if(!Replication.isReplicated(name) || !Replication.isJournal(name))
+            throw new IOException("illegal journal name " + name);
+
+        File file = new File(_dir, name);
+        File checkpoint = null;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean received = false;
+
+        try
+        {
+            raf.setLength(0); // a game that moved away from here before and comes back
+            byte[] chunk = new byte[Replication.MAX_CHUNK];
+
+            while(true)
+            {
+                byte type = in.readByte();
+
+                if(type == GameMigrator.ABORT)
+                {
+                    return;
+                }
+                else if(type == GameMigrator.COMMIT)
+                {
+                    long length = in.readLong();
+                    if(raf.length() != length)
+                        throw new IOException("the journal of " + name + " is " + raf.length() + " bytes, not " + length);
+
+                    raf.close();
+                    String error = _receiver.receiveGame(file);
+                    received = (error == null);
+
+                    out.writeBoolean(received);
+                    out.writeUTF(received ? _url : error);
+                    out.flush();
+                    return;
+                }
+
+                String target = in.readUTF();
+                if(type == Replication.APPEND && target.equals(name))
+                {
+                    long offset = in.readLong();
+                    int length = in.readInt();
+                    if(length < 0 || length > chunk.length || offset != raf.length())
+                        throw new IOException("illegal append to " + name);
+
+                    in.readFully(chunk, 0, length);
+                    raf.seek(offset);
+                    raf.write(chunk, 0, length);
+                }
+                else if(type == Replication.REPLACE && target.equals(CheckpointFile.getFile(file).getName()))
+                {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+
+                    checkpoint = new File(_dir, target);
+                    FileOutputStream stream = new FileOutputStream(checkpoint);
+                    try
+                    {
+                        stream.write(bytes);
+                    }
+                    finally
+                    {
+                        stream.close();
+                    }
+                }
+                else
+                {
+                    throw new IOException("illegal migration message " + type);
+                }
+            }
+        }
+        finally
+        {
+            raf.close();
+            if(!received)
+            {
+                file.delete();
+                if(checkpoint != null)
+                {
+                    checkpoint.delete();
+                }
+            }
+        }
+    }
+}
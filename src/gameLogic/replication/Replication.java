@@ -0,0 +1,141 @@
+package gameLogic.replication;
+
+
+import gameLogic.persistence.CheckpointFile;
+import gameLogic.persistence.GameJournal;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+
+/**
+ * this class holds the settings and the wire protocol of the journal replication.
+ * the primary ships the bytes of its journals and checkpoints to a standby process, which
+ * keeps a copy of them in its own journals directory. when the primary is gone the standby
+ * recovers the games from the copies, the same way a server recovers after a crash.
+ * to try it on one machine, run the standby with -Dmonopoly.replication.listen=7070 and
+ * its own -Dmonopoly.journal.dir, and the primary with -Dmonopoly.replication.standby=localhost:7070.
+ *
+ * the standby starts a connection with HELLO: MAGIC, VERSION, the number of files, and
+ * the name, length and tail crc of each of its journals. the primary then sends APPEND,
+ * TRUNCATE, REPLACE and DELETE messages, and a SYNC the standby answers with an ACK
+ * once everything before it is written
+ * @author Dana Akerman
+ */
+public class Replication
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String STANDBY_PROPERTY = "monopoly.replication.standby";   // host:port, set on the primary
+    public static final String LISTEN_PROPERTY = "monopoly.replication.listen";     // port, set on the standby
+    public static final String FAILOVER_PROPERTY = "monopoly.replication.failover"; // ms without a primary before taking over, 0 never
+    public static final String INTERVAL_PROPERTY = "monopoly.replication.interval"; // ms between shipments
+    public static final int DEFAULT_FAILOVER = 5000;
+    public static final int DEFAULT_INTERVAL = 10;
+
+    public static final int MAGIC = 0x4d52504c; // "MRPL"
+    public static final byte VERSION = 1;
+
+    // primary to standby
+    public static final byte APPEND = 1;   // name, offset, length, bytes
+    public static final byte TRUNCATE = 2; // name, length
+    public static final byte REPLACE = 3;  // name, length, bytes: the whole file
+    public static final byte DELETE = 4;   // name
+    public static final byte SYNC = 5;     // id
+
+    // standby to primary
+    public static final byte ACK = 6;      // id, bytes applied
+
+    public static final int TAIL_LENGTH = 4096;      // the bytes the tail crc covers
+    public static final int MAX_CHUNK = 64 * 1024;   // the largest APPEND
+    public static final long HEARTBEAT_MILLIS = 1000; // a SYNC is sent at least this often
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private Replication(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if this server is a standby, it is if the monopoly.replication.listen property is set
+     * @return true if this server is a standby
+     */
+    public static boolean isStandby()
+    {
+        return System.getProperty(LISTEN_PROPERTY) != null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if this server ships its journals to a standby
+     * @return true if the monopoly.replication.standby property is set
+     */
+    public static boolean hasStandby()
+    {
+        return System.getProperty(STANDBY_PROPERTY) != null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if a file name from the wire is a journal or a checkpoint in the journals directory
+     * @param name the file name
+     * @return true if the name is legal
+     */
+    public static boolean isReplicated(String name)
+    {
+        return name != null && name.equals(new File(name).getName()) && !name.startsWith(".")
+                && (isJournal(name) || name.endsWith(GameJournal.EXTENSION + CheckpointFile.EXTENSION));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if a file name is the name of a journal, which is replicated by appending
+     * @param name the file name
+     * @return true if it's the name of a journal
+     */
+    public static boolean isJournal(String name)
+    {
+        return name.endsWith(GameJournal.EXTENSION);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * computes the crc of the bytes before the given length of a file, up to TAIL_LENGTH of them
+     * @param file the file
+     * @param length the length the tail ends at
+     * @return the crc of the tail
+     * @throws IOException if the file can't be read or is shorter than length
+     */
+    public static long getTailCRC(File file, long length) throws IOException
+    {
+        int size = (int) Math.min(length, TAIL_LENGTH);
+        byte[] bytes = new byte[size];
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            raf.seek(length - size);
+            raf.readFully(bytes);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
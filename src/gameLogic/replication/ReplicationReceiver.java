@@ -0,0 +1,373 @@
+package gameLogic.replication;
+
+
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Iterator;
+
+
+/**
+ * this class keeps the standby's copy of the primary's journals, on a thread of its own.
+ * it waits for the primary, writes what it ships to the journals directory and acknowledges
+ * every SYNC. when the primary went away and didn't come back within the failover time,
+ * the receiver stops listening and hands over to the take over task, which recovers the
+ * games from the copies. the standby never takes over before a primary connected once
+ * @author Dana Akerman
+ */
+public class ReplicationReceiver implements Runnable
+{
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter receivedBytes = Metrics.getCounter("replication.bytes.received");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _dir;
+    private final int _port;
+    private final long _failoverMillis;
+    private final Runnable _takeOver;
+    private final Thread _thread;
+    private final HashMap<String, RandomAccessFile> _open; // the journals being written
+    private volatile boolean _tookOver;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new receiver, call start() to run it
+     * @param dir the journals directory of the standby
+     * @param port the port to listen on
+     * @param failoverMillis the time without a primary before taking over, 0 never takes over
+     * @param takeOver the task that makes this server the primary
+     * @throws NullPointerException if dir or takeOver is null
+     * @throws IllegalArgumentException if failoverMillis is negative
+     */
+    public ReplicationReceiver(File dir, int port, long failoverMillis, Runnable takeOver)
+    {
+        if(dir == null)
+            throw new NullPointerException("dir is null");
+        if(takeOver == null)
+            throw new NullPointerException("take over is null");
+        if(failoverMillis < 0)
+            throw new IllegalArgumentException("illegal failover time");
+
+        _dir = dir;
+        _port = port;
+        _failoverMillis = failoverMillis;
+        _takeOver = takeOver;
+        _open = new HashMap<String, RandomAccessFile>();
+        _tookOver = false;
+
+        _thread = new Thread(this, "replication from primary");
+        _thread.setDaemon(true);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts listening for the primary
+     * @throws IOException if the journals directory can't be created
+     */
+    public void start() throws IOException
+    {
+        if(!_dir.isDirectory() && !_dir.mkdirs())
+            throw new IOException("can't create journal directory " + _dir);
+
+        _thread.start();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if this standby took over
+     * @return true if it took over
+     */
+    public boolean isTookOver(){return _tookOver;}
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void run()
+    {
+        ServerSocket server = null;
+        try
+        {
+            server = new ServerSocket(_port);
+            GameLog.info("standby, waiting for the primary on port " + _port);
+            boolean connectedOnce = false;
+
+            while(true)
+            {
+                server.setSoTimeout(connectedOnce ? (int) _failoverMillis : 0);
+                Socket socket;
+
+                try
+                {
+                    socket = server.accept();
+                }
+                catch(SocketTimeoutException ex)
+                {
+                    break; // the primary is gone
+                }
+
+                connectedOnce = true;
+                this.receive(socket);
+            }
+        }
+        catch(IOException ex)
+        {
+            GameLog.error("the standby can't listen on port " + _port, ex);
+            return;
+        }
+        finally
+        {
+            this.closeFiles();
+            if(server != null)
+            {
+                try
+                {
+                    server.close();
+                }
+                catch(IOException ex)
+                {
+                    // nothing to do
+                }
+            }
+        }
+
+        GameLog.info("the primary is gone, taking over");
+        _tookOver = true;
+        _takeOver.run();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * applies what one primary connection ships, until it breaks
+     */
+    private void receive(Socket socket)
+    {
+        long applied = 0;
+
+        try
+        {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), Replication.MAX_CHUNK + 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.writeHello(out);
+            GameLog.info("the primary connected from " + socket.getRemoteSocketAddress());
+
+            byte[] chunk = new byte[Replication.MAX_CHUNK];
+            while(true)
+            {
+                byte type = in.readByte();
+
+                if(type == Replication.SYNC)
+                {
+                    long id = in.readLong();
+                    out.writeByte(Replication.ACK);
+                    out.writeLong(id);
+                    out.writeLong(applied);
+                    out.flush();
+                    continue;
+                }
+
+                String name = in.readUTF();
+                if(!Replication.isReplicated(name))
+                    throw new IOException("illegal file name " + name);
+
+                switch(type)
+                {
+                    case Replication.APPEND:
+                    {
+                        long offset = in.readLong();
+                        int length = in.readInt();
+                        if(length < 0 || length > chunk.length)
+                            throw new IOException("illegal append length");
+
+                        in.readFully(chunk, 0, length);
+                        RandomAccessFile raf = this.getFile(name);
+                        if(offset != raf.length())
+                            throw new IOException("append to " + name + " at " + offset + " leaves a gap");
+
+                        raf.seek(offset);
+                        raf.write(chunk, 0, length);
+                        applied += length;
+                        receivedBytes.add(length);
+                        break;
+                    }
+
+                    case Replication.TRUNCATE:
+                        this.getFile(name).setLength(in.readLong());
+                        break;
+
+                    case Replication.REPLACE:
+                    {
+                        int length = in.readInt();
+                        if(length < 0)
+                            throw new IOException("illegal replace length");
+
+                        byte[] bytes = new byte[length];
+                        in.readFully(bytes);
+                        this.replace(name, bytes);
+                        applied += length;
+                        receivedBytes.add(length);
+                        break;
+                    }
+
+                    case Replication.DELETE:
+                        this.closeFile(name);
+                        new File(_dir, name).delete();
+                        break;
+
+                    default:
+                        throw new IOException("illegal message type " + type);
+                }
+            }
+        }
+        catch(IOException ex)
+        {
+            GameLog.info("the primary disconnected, " + ex.getMessage());
+        }
+        finally
+        {
+            this.closeFiles();
+            try
+            {
+                socket.close();
+            }
+            catch(IOException ex)
+            {
+                // nothing to do
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * tells the primary which journals the standby has, with the crc of their tails
+     */
+    private void writeHello(DataOutputStream out) throws IOException
+    {
+        String[] names = _dir.list();
+        int count = 0;
+
+        for(int i = 0; names != null && i < names.length; i++)
+        {
+            if(Replication.isReplicated(names[i]) && Replication.isJournal(names[i]))
+            {
+                names[count++] = names[i];
+            }
+        }
+
+        out.writeInt(Replication.MAGIC);
+        out.writeByte(Replication.VERSION);
+        out.writeInt(count);
+        for(int i = 0; i < count; i++)
+        {
+            File file = new File(_dir, names[i]);
+            long length = file.length();
+
+            out.writeUTF(names[i]);
+            out.writeLong(length);
+            out.writeLong(Replication.getTailCRC(file, length));
+        }
+        out.flush();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the open copy of a journal, opening it if needed
+     */
+    private RandomAccessFile getFile(String name) throws IOException
+    {
+        RandomAccessFile raf = _open.get(name);
+
+        if(raf == null)
+        {
+            raf = new RandomAccessFile(new File(_dir, name), "rw");
+            _open.put(name, raf);
+        }
+        return raf;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * replaces a checkpoint the way the primary does, through a temporary file
+     */
+    private void replace(String name, byte[] bytes) throws IOException
+    {
+        File file = new File(_dir, name);
+        File temp = new File(_dir, name + ".tmp");
+
+        FileOutputStream stream = new FileOutputStream(temp);
+        try
+        {
+            stream.write(bytes);
+        }
+        finally
+        {
+            stream.close();
+        }
+
+        if(!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+            throw new IOException("can't rename " + temp + " to " + file);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * closes the copy of a journal
+     */
+    private void closeFile(String name) throws IOException
+    {
+        RandomAccessFile raf = _open.remove(name);
+
+        if(raf != null)
+        {
+            raf.close();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * closes all the copies of the journals
+     */
+    private void closeFiles()
+    {
+        Iterator<RandomAccessFile> it = _open.values().iterator();
+        while(it.hasNext())
+        {
+            try
+            {
+                it.next().close();
+            }
+            catch(IOException ex)
+            {
+                GameLog.error("a copy of a journal can't be closed", ex);
+            }
+        }
+        _open.clear();
+    }
+}
@@ -0,0 +1,450 @@
+package gameLogic.replication;
+
+
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Gauge;
+import gameLogic.metrics.Metrics;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+
+/**
+ * this class ships the journals of the primary to the standby, on a thread of its own.
+ * it follows the files in the journals directory and sends what was appended to them since the
+ * last shipment, the games never wait for it. a connection that breaks is made again,
+ * and the standby tells what it has so only the missing bytes are sent.
+ * the lag is the bytes sent and not acknowledged yet, and the age of the oldest SYNC
+ * that wasn't acknowledged
+ * @author Dana Akerman
+ */
+public class ReplicationSender implements Runnable
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final long RECONNECT_MILLIS = 1000;
+    private static final long LIST_MILLIS = 1000;
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter shippedBytes = Metrics.getCounter("replication.bytes.shipped");
+    private static final Counter connects = Metrics.getCounter("replication.connects");
+    private static final Gauge lagBytes = Metrics.getGauge("replication.lag.bytes");
+    private static final Gauge lagMillis = Metrics.getGauge("replication.lag.millis");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final File _dir;
+    private final String _host;
+    private final int _port;
+    private final long _intervalMillis;
+    private final Thread _thread;
+    private volatile boolean _stopped;
+
+    // replication thread only
+    private final HashMap<String, Long> _shipped;      // file -> the bytes the standby has, or the version of a checkpoint
+    private final LinkedList<long[]> _unacked;         // {sync id, time sent}
+    private long _sentBytes;
+    private long _syncID;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new sender, call start() to run it
+     * @param dir the journals directory
+     * @param standby the address of the standby, host:port
+     * @param intervalMillis the time between shipments
+     * @throws NullPointerException if dir or standby is null
+     * @throws IllegalArgumentException if standby isn't host:port or intervalMillis isn't positive
+     */
+    public ReplicationSender(File dir, String standby, long intervalMillis)
+    {
+        if(dir == null)
+            throw new NullPointerException("dir is null");
+        if(standby == null)
+            throw new NullPointerException("standby is null");
+        if(intervalMillis <= 0)
+            throw new IllegalArgumentException("illegal interval");
+
+        int colon = standby.lastIndexOf(':');
+        if(colon <= 0)
+            throw new IllegalArgumentException("illegal standby address, expected host:port");
+
+        _dir = dir;
+        _host = standby.substring(0, colon);
+        _port = Integer.parseInt(standby.substring(colon + 1));
+        _intervalMillis = intervalMillis;
+        _shipped = new HashMap<String, Long>();
+        _unacked = new LinkedList<long[]>();
+        _sentBytes = 0;
+        _syncID = 0;
+        _stopped = false;
+
+        _thread = new Thread(this, "replication to " + standby);
+        _thread.setDaemon(true);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts shipping
+     */
+    public void start()
+    {
+        _thread.start();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * stops shipping, the connection is closed
+     */
+    public void stop()
+    {
+        _stopped = true;
+        _thread.interrupt();
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void run()
+    {
+        while(!_stopped)
+        {
+            Socket socket = null;
+            try
+            {
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(_host, _port), (int) RECONNECT_MILLIS);
+                socket.setTcpNoDelay(true);
+                connects.increment();
+                GameLog.info("replicating the journals to " + _host + ":" + _port);
+
+                this.ship(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Replication.MAX_CHUNK + 1024)));
+            }
+            catch(IOException ex)
+            {
+                if(socket.isConnected())
+                {
+                    GameLog.error("the replication to " + _host + ":" + _port + " broke", ex);
+                }
+            }
+            catch(InterruptedException ex)
+            {
+                return;
+            }
+            finally
+            {
+                try
+                {
+                    socket.close();
+                }
+                catch(IOException ex)
+                {
+                    // nothing to do
+                }
+            }
+
+            // the standby has nothing until it says what it has
+            _shipped.clear();
+            _unacked.clear();
+            _sentBytes = 0;
+            lagBytes.set(0);
+            lagMillis.set(0);
+
+            try
+            {
+                Thread.sleep(RECONNECT_MILLIS);
+            }
+            catch(InterruptedException ex)
+            {
+                return;
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * runs one connection: reads what the standby has, then ships until the connection breaks
+     */
+    private void ship(DataInputStream in, DataOutputStream out) throws IOException, InterruptedException
+    {
+        this.readHello(in, out);
+
+        long ackedBytes = 0;
+        long lastList = 0;
+        long lastSync = 0;
+        HashSet<String> files = new HashSet<String>();
+
+        while(!_stopped)
+        {
+            long now = System.currentTimeMillis();
+            boolean sent = false;
+
+            if(now - lastList >= LIST_MILLIS)
+            {
+                files = this.list();
+                lastList = now;
+                sent |= this.shipDeleted(out, files);
+            }
+
+            Iterator<String> it = files.iterator();
+            while(it.hasNext())
+            {
+                String name = it.next();
+                sent |= Replication.isJournal(name) ? this.shipJournal(out, name) : this.shipCheckpoint(out, name);
+            }
+
+            if(sent || now - lastSync >= Replication.HEARTBEAT_MILLIS)
+            {
+                out.writeByte(Replication.SYNC);
+                out.writeLong(++_syncID);
+                _unacked.add(new long[] {_syncID, now});
+                lastSync = now;
+            }
+            out.flush();
+
+            // acknowledgements, without blocking
+            while(in.available() >= 17)
+            {
+                if(in.readByte() != Replication.ACK)
+                    throw new IOException("illegal message from the standby");
+
+                long id = in.readLong();
+                ackedBytes = in.readLong();
+
+                while(!_unacked.isEmpty() && _unacked.getFirst()[0] <= id)
+                {
+                    _unacked.removeFirst();
+                }
+            }
+
+            lagBytes.set(_sentBytes - ackedBytes);
+            lagMillis.set(_unacked.isEmpty() ? 0 : System.currentTimeMillis() - _unacked.getFirst()[1]);
+
+            Thread.sleep(_intervalMillis);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads the files the standby has, a journal whose tail doesn't match ours is shipped again from the start
+     */
+    private void readHello(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        if(in.readInt() != Replication.MAGIC || in.readByte() != Replication.VERSION)
+            throw new IOException("the other side isn't a monopoly standby");
+
+        int count = in.readInt();
+        for(int i = 0; i < count; i++)
+        {
+            String name = in.readUTF();
+            long length = in.readLong();
+            long crc = in.readLong();
+
+            File file = new File(_dir, name);
+            long have = 0;
+
+            try
+            {
+                if(file.length() >= length && Replication.getTailCRC(file, length) == crc)
+                {
+                    have = length;
+                }
+            }
+            catch(IOException ex)
+            {
+                have = 0; // gone meanwhile, the listing deletes it
+            }
+
+            _shipped.put(name, Long.valueOf(have));
+            if(have != length)
+            {
+                out.writeByte(Replication.TRUNCATE);
+                out.writeUTF(name);
+                out.writeLong(have);
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * lists the replicated files in the journals directory
+     */
+    private HashSet<String> list()
+    {
+        HashSet<String> files = new HashSet<String>();
+        String[] names = _dir.list();
+
+        if(names != null)
+        {
+            for(int i = 0; i < names.length; i++)
+            {
+                if(Replication.isReplicated(names[i]))
+                {
+                    files.add(names[i]);
+                }
+            }
+        }
+        return files;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * deletes on the standby the files that are gone here
+     */
+    private boolean shipDeleted(DataOutputStream out, HashSet<String> files) throws IOException
+    {
+        ArrayList<String> deleted = new ArrayList<String>();
+
+        Iterator<Map.Entry<String, Long>> it = _shipped.entrySet().iterator();
+        while(it.hasNext())
+        {
+            String name = it.next().getKey();
+
+            if(!files.contains(name))
+            {
+                deleted.add(name);
+                it.remove();
+            }
+        }
+
+        for(int i = 0; i < deleted.size(); i++)
+        {
+            out.writeByte(Replication.DELETE);
+            out.writeUTF(deleted.get(i));
+        }
+        return !deleted.isEmpty();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ships what was appended to a journal since the last shipment
+     */
+    private boolean shipJournal(DataOutputStream out, String name) throws IOException
+    {
+        File file = new File(_dir, name);
+        Long shipped = _shipped.get(name);
+        long from = (shipped == null) ? 0 : shipped.longValue();
+        long length = file.length();
+
+        if(length == from)
+        {
+            return false;
+        }
+
+        if(length < from) // the journal was cut at a turn boundary when it was reopened
+        {
+            out.writeByte(Replication.TRUNCATE);
+            out.writeUTF(name);
+            out.writeLong(length);
+            _shipped.put(name, Long.valueOf(length));
+            return true;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            byte[] chunk = new byte[(int) Math.min(length - from, Replication.MAX_CHUNK)];
+            raf.seek(from);
+
+            while(from < length)
+            {
+                int size = (int) Math.min(length - from, chunk.length);
+                raf.readFully(chunk, 0, size);
+
+                out.writeByte(Replication.APPEND);
+                out.writeUTF(name);
+                out.writeLong(from);
+                out.writeInt(size);
+                out.write(chunk, 0, size);
+
+                from += size;
+                _sentBytes += size;
+                shippedBytes.add(size);
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        _shipped.put(name, Long.valueOf(length));
+        return true;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ships a checkpoint again if it was replaced since the last shipment
+     */
+    private boolean shipCheckpoint(DataOutputStream out, String name) throws IOException
+    {
+        File file = new File(_dir, name);
+        long version = file.lastModified() ^ (file.length() << 40);
+        Long shipped = _shipped.get(name);
+
+        if(shipped != null && shipped.longValue() == version)
+        {
+            return false;
+        }
+
+        byte[] bytes;
+        RandomAccessFile raf;
+        try
+        {
+            raf = new RandomAccessFile(file, "r");
+        }
+        catch(FileNotFoundException ex)
+        {
+            return false; // the game ended meanwhile, the listing deletes it
+        }
+
+        try
+        {
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes); // a checkpoint is replaced by renaming, never written in place
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        out.writeByte(Replication.REPLACE);
+        out.writeUTF(name);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+
+        _sentBytes += bytes.length;
+        shippedBytes.add(bytes.length);
+        _shipped.put(name, Long.valueOf(version));
+        return true;
+    }
+}
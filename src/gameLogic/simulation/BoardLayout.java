@@ -0,0 +1,345 @@
+package gameLogic.simulation;
+
+
+import gameLogic.Game;
+import gameLogic.cards.Card;
+import gameLogic.cards.FinancialCard;
+import gameLogic.cards.GotoCard;
+import gameLogic.cards.PardonCard;
+import gameLogic.groups.AssetGroup;
+import gameLogic.groups.SimpleAssetGroup;
+import gameLogic.players.Player;
+import gameLogic.squares.*;
+import java.util.ArrayList;
+
+
+/**
+ * this class represents the immutable part of a monopoly board (squares, prices, groups and cards)
+ * flattened into primitive arrays, so it can be shared by many compact game states
+ * @author Dana Akerman
+ */
+public class BoardLayout
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    // square kinds
+    public static final int START = 0;
+    public static final int CITY = 1;
+    public static final int SIMPLE_ASSET = 2;
+    public static final int SURPRISE = 3;
+    public static final int WARRANT = 4;
+    public static final int JAIL_OR_FREE_PASS = 5;
+    public static final int PARKING = 6;
+    public static final int GO_TO_JAIL = 7;
+
+    // card kinds
+    public static final int CARD_TREASURY = 0;
+    public static final int CARD_OTHERS = 1;
+    public static final int CARD_GOTO_START = 2;
+    public static final int CARD_GOTO_NEXT = 3;
+    public static final int CARD_GOTO_JAIL = 4;
+    public static final int CARD_PARDON = 5;
+
+    // decks
+    public static final int SURPRISE_DECK = 0;
+    public static final int WARRANT_DECK = 1;
+    public static final int NUM_DECKS = 2;
+
+    public static final int NO_GROUP = -1;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    // squares
+    final byte[] _kind;
+    final byte[] _group;
+    final int[] _cost;       // city or simple asset cost
+    final int[] _houseCost;  // cities only
+    final int[] _rent;       // BOARD_SIZE * (MAX_HOUSES + 1), simple assets use column 0
+
+    // groups
+    final int[] _groupOffset;
+    final int[] _groupSize;
+    final int[] _groupSquares;
+    final int[] _groupSpecialRent; // 0 for countries
+
+    // cards
+    final Card[] _cards;
+    final byte[] _cardKind;
+    final byte[] _cardDeck;
+    final int[] _cardAmount;
+    final int[][] _initialDecks;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a board layout from the board and decks of the given game
+     * the decks are taken in their current order
+     * @param game the game to take the board from
+     * @throws NullPointerException if game is null
+     */
+    public BoardLayout(Game game)
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        int size = Game.BOARD_SIZE;
+        int rentColumns = CityAsset.MAX_HOUSES + 1;
+
+        _kind = new byte[size];
+        _group = new byte[size];
+        _cost = new int[size];
+        _houseCost = new int[size];
+        _rent = new int[size * rentColumns];
+
+        ArrayList<AssetGroup> groups = new ArrayList<AssetGroup>();
+        ArrayList<Card> cards = new ArrayList<Card>();
+        ActionSquare[] deckSquares = new ActionSquare[NUM_DECKS];
+
+        for(int i = 0; i < size; i++)
+        {
+            Square square = game.getSquareByIndex(i);
+            _group[i] = NO_GROUP;
+
+            if(square instanceof SingleAsset)
+            {
+                SingleAsset asset = (SingleAsset)square;
+                int groupIndex = groups.indexOf(asset.getGroup());
+
+                if(groupIndex < 0)
+                {
+                    groupIndex = groups.size();
+                    groups.add(asset.getGroup());
+                }
+                _group[i] = (byte)groupIndex;
+
+                if(asset.isCity())
+                {
+                    CityAsset city = (CityAsset)asset;
+                    _kind[i] = CITY;
+                    _cost[i] = city.getCityCostPrice();
+                    _houseCost[i] = city.getHouseCostPrice();
+
+                    for(int j = 0; j < rentColumns; j++)
+                    {
+                        _rent[i * rentColumns + j] = city.getRentPrice(j);
+                    }
+                }
+                else
+                {
+                    _kind[i] = SIMPLE_ASSET;
+                    _cost[i] = asset.getCostPrice();
+                    _rent[i * rentColumns] = asset.getRentPrice();
+                }
+            }
+            else if(square instanceof ActionSquare)
+            {
+                ActionSquare action = (ActionSquare)square;
+                int deck = (action.getType() == ActionSquare.SURPRISE) ? SURPRISE_DECK : WARRANT_DECK;
+
+                _kind[i] = (byte)((deck == SURPRISE_DECK) ? SURPRISE : WARRANT);
+
+                if(deckSquares[deck] == null)
+                {
+                    deckSquares[deck] = action;
+                    for(int j = 0; j < action.getNumCards(); j++)
+                    {
+                        cards.add(action.getCardByIndex(j));
+                    }
+                }
+            }
+            else if(square instanceof StartSquare)
+            {
+                _kind[i] = START;
+            }
+            else if(square instanceof JailOrFreePassSquare)
+            {
+                _kind[i] = JAIL_OR_FREE_PASS;
+            }
+            else if(square instanceof ParkingSquare)
+            {
+                _kind[i] = PARKING;
+            }
+            else if(square instanceof GoToJailSquare)
+            {
+                _kind[i] = GO_TO_JAIL;
+            }
+            else
+                throw new IllegalArgumentException("unknown square type in index " + i);
+        }
+
+        // pardon cards held by players are out of the deck but still belong to the board
+        for(int i = 0; i < game.getPlayers().size(); i++)
+        {
+            Player player = game.getPlayers().get(i);
+            if(player.hasPardonCard() && !cards.contains(player.getPardonCard()))
+            {
+                cards.add(player.getPardonCard());
+            }
+        }
+
+        // groups
+        _groupOffset = new int[groups.size()];
+        _groupSize = new int[groups.size()];
+        _groupSpecialRent = new int[groups.size()];
+        _groupSquares = new int[size];
+
+        int offset = 0;
+        for(int g = 0; g < groups.size(); g++)
+        {
+            _groupOffset[g] = offset;
+            for(int i = 0; i < size; i++)
+            {
+                if(_group[i] == g)
+                {
+                    _groupSquares[offset++] = i;
+                }
+            }
+            _groupSize[g] = offset - _groupOffset[g];
+
+            if(groups.get(g) instanceof SimpleAssetGroup)
+            {
+                _groupSpecialRent[g] = ((SimpleAssetGroup)groups.get(g)).getSpecialRentPriceForGroup();
+            }
+        }
+
+        // cards
+        _cards = cards.toArray(new Card[cards.size()]);
+        _cardKind = new byte[_cards.length];
+        _cardDeck = new byte[_cards.length];
+        _cardAmount = new int[_cards.length];
+
+        for(int c = 0; c < _cards.length; c++)
+        {
+            Card card = _cards[c];
+            _cardDeck[c] = (byte)((card.getType() == ActionSquare.SURPRISE) ? SURPRISE_DECK : WARRANT_DECK);
+
+            if(card instanceof FinancialCard)
+            {
+                FinancialCard financial = (FinancialCard)card;
+                _cardKind[c] = (byte)((financial.getOnWho() == FinancialCard.TREASURY) ? CARD_TREASURY : CARD_OTHERS);
+                _cardAmount[c] = financial.getAmount();
+            }
+            else if(card instanceof GotoCard)
+            {
+                int target = ((GotoCard)card).getTarget();
+
+                if(target == GotoCard.START)
+                {
+                    _cardKind[c] = CARD_GOTO_START;
+                }
+                else if(target == GotoCard.NEXT)
+                {
+                    _cardKind[c] = CARD_GOTO_NEXT;
+                }
+                else
+                {
+                    _cardKind[c] = CARD_GOTO_JAIL;
+                }
+            }
+            else if(card instanceof PardonCard)
+            {
+                _cardKind[c] = CARD_PARDON;
+            }
+            else
+                throw new IllegalArgumentException("unknown card type");
+        }
+
+        // initial deck order
+        _initialDecks = new int[NUM_DECKS][];
+        for(int d = 0; d < NUM_DECKS; d++)
+        {
+            ActionSquare square = deckSquares[d];
+            int numCards = (square == null) ? 0 : square.getNumCards();
+
+            _initialDecks[d] = new int[numCards];
+            for(int j = 0; j < numCards; j++)
+            {
+                _initialDecks[d][j] = this.getCardIndex(square.getCardByIndex(j));
+            }
+        }
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the kind of the square in the given index
+     * @param square the index of the square
+     * @return the kind of the square (START, CITY, SIMPLE_ASSET...)
+     */
+    public int getSquareKind(int square){return _kind[square];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of distinct cards on the board
+     * @return the number of distinct cards on the board
+     */
+    public int getNumCards(){return _cards.length;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of cards that belong to the given deck
+     * @param deck SURPRISE_DECK or WARRANT_DECK
+     * @return the number of cards that belong to the given deck
+     */
+    public int getDeckCapacity(int deck)
+    {
+        int counter = 0;
+
+        for(int c = 0; c < _cardDeck.length; c++)
+        {
+            if(_cardDeck[c] == deck)
+            {
+                counter++;
+            }
+        }
+        return counter;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the card with the given index
+     * @param index the index of the card
+     * @return the card with the given index
+     */
+    public Card getCard(int index){return _cards[index];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the index of the given card
+     * @param card the card
+     * @return the index of the card, -1 if it is not on this board
+     */
+    public int getCardIndex(Card card)
+    {
+        for(int c = 0; c < _cards.length; c++)
+        {
+            if(_cards[c] == card)
+            {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the rent of the square with the given number of houses
+     * @param square the index of the square
+     * @param numHouses the number of houses
+     * @return the rent of the square
+     */
+    int getRent(int square, int numHouses)
+    {
+        return _rent[square * (CityAsset.MAX_HOUSES + 1) + numHouses];
+    }
+}
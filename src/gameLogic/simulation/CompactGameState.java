@@ -0,0 +1,442 @@
+package gameLogic.simulation;
+
+
+import gameLogic.Game;
+import gameLogic.players.Player;
+import gameLogic.squares.ActionSquare;
+import gameLogic.squares.CityAsset;
+import gameLogic.squares.SingleAsset;
+import gameLogic.squares.Square;
+import java.util.ArrayList;
+
+
+/**
+ * this class represents the mutable state of a monopoly game as a struct of arrays
+ * (cash, positions, owners, houses and int indexed card decks) instead of an object graph.
+ * it is used by the rules kernel to simulate many games cheaply
+ * @author Dana Akerman
+ */
+public class CompactGameState
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final byte NO_OWNER = -1;
+    public static final int NO_CARD = -1;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    final BoardLayout _board;
+    final int _numPlayers;
+
+    // players
+    final int[] _cash;
+    final int[] _position;
+    final int[] _pardonCard;
+    final boolean[] _canMove;
+    final boolean[] _inGame;
+    final boolean[] _bankrupt;
+    final boolean[] _human;
+    int _humansInGame;
+    int _playersInGame;
+
+    // squares
+    final byte[] _owner;
+    final byte[] _houses;
+
+    // decks, each deck is a ring inside _deckCards
+    final int[] _deckCards;
+    final int[] _deckOffset;
+    final int[] _deckCapacity;
+    final int[] _deckHead;
+    final int[] _deckSize;
+
+    int _turns;
+
+    // c'tors
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new game state on the given board, all players at start with the default cash
+     * and the decks in their initial board order
+     * @param board the board layout
+     * @param numPlayers the number of players
+     * @param numHumans the number of players (the first ones) that count as human players
+     * @throws NullPointerException if board is null
+     * @throws IllegalArgumentException if the numbers of players are illegal
+     */
+    public CompactGameState(BoardLayout board, int numPlayers, int numHumans)
+    {
+        this(board, numPlayers);
+
+        if(numHumans < 0 || numHumans > numPlayers)
+            throw new IllegalArgumentException("illegal human players number");
+
+        for(int p = 0; p < numPlayers; p++)
+        {
+            _cash[p] = Game.DEFAULT_CASH;
+            _position[p] = Game.START_SQUARE;
+            _pardonCard[p] = NO_CARD;
+            _canMove[p] = true;
+            _inGame[p] = true;
+            _human[p] = (p < numHumans);
+        }
+        _playersInGame = numPlayers;
+        _humansInGame = numHumans;
+
+        for(int i = 0; i < Game.BOARD_SIZE; i++)
+        {
+            _owner[i] = NO_OWNER;
+        }
+
+        for(int d = 0; d < BoardLayout.NUM_DECKS; d++)
+        {
+            int[] deck = board._initialDecks[d];
+            System.arraycopy(deck, 0, _deckCards, _deckOffset[d], deck.length);
+            _deckSize[d] = deck.length;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * allocates the arrays of a state, called only by the other c'tors and factories
+     * @param board the board layout
+     * @param numPlayers the number of players
+     */
+    private CompactGameState(BoardLayout board, int numPlayers)
+    {
+        if(board == null)
+            throw new NullPointerException("board is null");
+
+        if(numPlayers < 1 || numPlayers > Game.MAX_NUM_PLAYERS)
+            throw new IllegalArgumentException("illegal players number");
+
+        _board = board;
+        _numPlayers = numPlayers;
+
+        _cash = new int[numPlayers];
+        _position = new int[numPlayers];
+        _pardonCard = new int[numPlayers];
+        _canMove = new boolean[numPlayers];
+        _inGame = new boolean[numPlayers];
+        _bankrupt = new boolean[numPlayers];
+        _human = new boolean[numPlayers];
+
+        _owner = new byte[Game.BOARD_SIZE];
+        _houses = new byte[Game.BOARD_SIZE];
+
+        _deckOffset = new int[BoardLayout.NUM_DECKS];
+        _deckCapacity = new int[BoardLayout.NUM_DECKS];
+        _deckHead = new int[BoardLayout.NUM_DECKS];
+        _deckSize = new int[BoardLayout.NUM_DECKS];
+
+        int total = 0;
+        for(int d = 0; d < BoardLayout.NUM_DECKS; d++)
+        {
+            _deckOffset[d] = total;
+            _deckCapacity[d] = board.getDeckCapacity(d);
+            total += _deckCapacity[d];
+        }
+        _deckCards = new int[total];
+    }
+
+    // factories
+    //-------------------------------------------------------------------
+
+    /**
+     * creates a compact copy of the current state of the given game
+     * @param board the layout of the game's board
+     * @param game the game to copy
+     * @return the compact state of the game
+     * @throws NullPointerException if board or game are null
+     */
+    public static CompactGameState fromGame(BoardLayout board, Game game)
+    {
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        ArrayList<Player> players = game.getPlayers();
+        CompactGameState state = new CompactGameState(board, players.size());
+
+        for(int p = 0; p < players.size(); p++)
+        {
+            Player player = players.get(p);
+            state._cash[p] = player.getCash();
+            state._position[p] = player.getPosition();
+            state._pardonCard[p] = player.hasPardonCard() ? board.getCardIndex(player.getPardonCard()) : NO_CARD;
+            state._canMove[p] = player.canPlayerMove();
+            state._inGame[p] = player.isInGame();
+            state._bankrupt[p] = player.isBankrupt();
+            state._human[p] = player.isHuman();
+
+            if(player.isInGame())
+            {
+                state._playersInGame++;
+            }
+        }
+        state._humansInGame = game.getCurHumanNum();
+
+        ActionSquare[] deckSquares = new ActionSquare[BoardLayout.NUM_DECKS];
+
+        for(int i = 0; i < Game.BOARD_SIZE; i++)
+        {
+            Square square = game.getSquareByIndex(i);
+            state._owner[i] = NO_OWNER;
+
+            if(square instanceof SingleAsset)
+            {
+                Player owner = ((SingleAsset)square).getOwner();
+                if(owner != null)
+                {
+                    state._owner[i] = (byte)players.indexOf(owner);
+                }
+                if(square instanceof CityAsset)
+                {
+                    state._houses[i] = (byte)((CityAsset)square).getNumHouses();
+                }
+            }
+            else if(square instanceof ActionSquare)
+            {
+                ActionSquare action = (ActionSquare)square;
+                int deck = (action.getType() == ActionSquare.SURPRISE) ? BoardLayout.SURPRISE_DECK : BoardLayout.WARRANT_DECK;
+                deckSquares[deck] = action;
+            }
+        }
+
+        for(int d = 0; d < BoardLayout.NUM_DECKS; d++)
+        {
+            ActionSquare square = deckSquares[d];
+            int numCards = (square == null) ? 0 : square.getNumCards();
+
+            for(int j = 0; j < numCards; j++)
+            {
+                state._deckCards[state._deckOffset[d] + j] = board.getCardIndex(square.getCardByIndex(j));
+            }
+            state._deckSize[d] = numCards;
+        }
+
+        return state;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * creates a deep copy of this state that shares the same board layout
+     * @return a copy of this state
+     */
+    public CompactGameState copy()
+    {
+        CompactGameState copy = new CompactGameState(_board, _numPlayers);
+        this.copyTo(copy);
+        return copy;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * copies this state into the given state, without allocating
+     * @param other a state on the same board with the same number of players
+     * @throws IllegalArgumentException if the other state has a different shape
+     */
+    public void copyTo(CompactGameState other)
+    {
+        if(other._board != _board || other._numPlayers != _numPlayers)
+            throw new IllegalArgumentException("states are not of the same shape");
+
+        System.arraycopy(_cash, 0, other._cash, 0, _numPlayers);
+        System.arraycopy(_position, 0, other._position, 0, _numPlayers);
+        System.arraycopy(_pardonCard, 0, other._pardonCard, 0, _numPlayers);
+        System.arraycopy(_canMove, 0, other._canMove, 0, _numPlayers);
+        System.arraycopy(_inGame, 0, other._inGame, 0, _numPlayers);
+        System.arraycopy(_bankrupt, 0, other._bankrupt, 0, _numPlayers);
+        System.arraycopy(_human, 0, other._human, 0, _numPlayers);
+        System.arraycopy(_owner, 0, other._owner, 0, _owner.length);
+        System.arraycopy(_houses, 0, other._houses, 0, _houses.length);
+        System.arraycopy(_deckCards, 0, other._deckCards, 0, _deckCards.length);
+        System.arraycopy(_deckHead, 0, other._deckHead, 0, _deckHead.length);
+        System.arraycopy(_deckSize, 0, other._deckSize, 0, _deckSize.length);
+        other._humansInGame = _humansInGame;
+        other._playersInGame = _playersInGame;
+        other._turns = _turns;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the board layout of this state
+     * @return the board layout of this state
+     */
+    public BoardLayout getBoard(){return _board;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of players
+     * @return the number of players
+     */
+    public int getNumPlayers(){return _numPlayers;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the cash of the given player
+     * @param player the index of the player
+     * @return the cash of the player
+     */
+    public int getCash(int player){return _cash[player];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the position of the given player
+     * @param player the index of the player
+     * @return the position of the player
+     */
+    public int getPosition(int player){return _position[player];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the given player is in the game
+     * @param player the index of the player
+     * @return true if the player is in the game
+     */
+    public boolean isInGame(int player){return _inGame[player];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the given player can move next turn
+     * @param player the index of the player
+     * @return true if the player can move next turn
+     */
+    public boolean canPlayerMove(int player){return _canMove[player];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the pardon card held by the given player
+     * @param player the index of the player
+     * @return the index of the card, NO_CARD if the player has no pardon card
+     */
+    public int getPardonCard(int player){return _pardonCard[player];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the owner of the given square
+     * @param square the index of the square
+     * @return the index of the owner, NO_OWNER if the square has no owner
+     */
+    public int getOwner(int square){return _owner[square];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of houses in the given square
+     * @param square the index of the square
+     * @return the number of houses in the square
+     */
+    public int getNumHouses(int square){return _houses[square];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of cards in the given deck
+     * @param deck SURPRISE_DECK or WARRANT_DECK
+     * @return the number of cards in the deck
+     */
+    public int getDeckSize(int deck){return _deckSize[deck];}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the card in the given position of the given deck, 0 is the top of the deck
+     * @param deck SURPRISE_DECK or WARRANT_DECK
+     * @param index the position in the deck
+     * @return the index of the card
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     */
+    public int getDeckCard(int deck, int index)
+    {
+        if(index < 0 || index >= _deckSize[deck])
+            throw new IndexOutOfBoundsException("illegal deck index");
+
+        return _deckCards[_deckOffset[deck] + (_deckHead[deck] + index) % _deckCapacity[deck]];
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the number of turns played on this state
+     * @return the number of turns played on this state
+     */
+    public int getTurns(){return _turns;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the game is over, the same condition as the game loop
+     * (minimum 2 players, at least one human)
+     * @return true if the game is over
+     */
+    public boolean isGameOver()
+    {
+        return _playersInGame < Game.MIN_NUM_PLAYERS || _humansInGame <= 0;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if this state is identical to the given state
+     * @param other the state to compare
+     * @return the first difference found or null if the states are identical
+     */
+    public String diff(CompactGameState other)
+    {
+        if(other._numPlayers != _numPlayers)
+            return "number of players";
+
+        for(int p = 0; p < _numPlayers; p++)
+        {
+            if(_cash[p] != other._cash[p])
+                return "cash of player " + p + ": " + _cash[p] + " != " + other._cash[p];
+            if(_position[p] != other._position[p])
+                return "position of player " + p + ": " + _position[p] + " != " + other._position[p];
+            if(_pardonCard[p] != other._pardonCard[p])
+                return "pardon card of player " + p;
+            if(_canMove[p] != other._canMove[p])
+                return "can move of player " + p;
+            if(_inGame[p] != other._inGame[p])
+                return "in game of player " + p;
+            if(_bankrupt[p] != other._bankrupt[p])
+                return "bankrupt of player " + p;
+        }
+
+        for(int i = 0; i < _owner.length; i++)
+        {
+            if(_owner[i] != other._owner[i])
+                return "owner of square " + i + ": " + _owner[i] + " != " + other._owner[i];
+            if(_houses[i] != other._houses[i])
+                return "houses of square " + i + ": " + _houses[i] + " != " + other._houses[i];
+        }
+
+        for(int d = 0; d < BoardLayout.NUM_DECKS; d++)
+        {
+            if(_deckSize[d] != other._deckSize[d])
+                return "size of deck " + d;
+
+            for(int j = 0; j < _deckSize[d]; j++)
+            {
+                if(this.getDeckCard(d, j) != other.getDeckCard(d, j))
+                    return "card " + j + " of deck " + d;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,15 @@
+package gameLogic.simulation;
+
+
+/**
+ * this interface represents a source of dice results for the rules kernel
+ * @author Dana Akerman
+ */
+public interface DiceSource
+{
+    /**
+     * rolls a single die
+     * @return a value between 1 and 6
+     */
+    public int rollDie();
+}
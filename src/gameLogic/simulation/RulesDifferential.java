@@ -0,0 +1,320 @@
+package gameLogic.simulation;
+
+
+import gameLogic.Game;
+import gameLogic.GameRandom;
+import gameLogic.players.HumanPlayer;
+import gameLogic.players.Player;
+import gameLogic.squares.SingleAsset;
+import java.util.ArrayList;
+
+
+/**
+ * this class checks that the rules kernel plays by the same rules as the game.
+ * it plays seeded games on the game with auto dice, where the human player decides like a computer
+ * player, and plays the same seed on the kernel turn by turn next to it: the game is frozen at every
+ * turn boundary, the kernel plays up to the same turn and the states are compared, the cash, the
+ * positions, the owners, the houses and the order of the decks. a game is played until it's over or
+ * up to a number of turns, so the games where nobody goes bankrupt are compared too.
+ * a game that differs is printed, the check fails if a game differs or no turn was compared.
+ * run it with: java gameLogic.simulation.RulesDifferential [games] [seed] [turns]
+ * @author Dana Akerman
+ */
+public class RulesDifferential
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final long GAME_MILLIS = 20000; // the longest a batch of games plays on its own, after the start pause
+    private static final long STEP_MILLIS = 10000; // the longest a turn takes, a game that doesn't stop by then fails
+    private static final int MAX_COMPUTERS = 5;
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * runs the check, exits with 1 if a game differs or nothing was compared
+     * @param args number of games, seed and turns of a game, all optional
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 1L;
+        int turns = (args.length > 2) ? Integer.parseInt(args[2]) : 2000;
+
+        PlayedGame[] played = new PlayedGame[games];
+        for(int g = 0; g < games; g++)
+        {
+            played[g] = new PlayedGame("rules" + g, 1 + g % MAX_COMPUTERS, seed + g);
+            played[g].start();
+        }
+        for(int g = 0; g < games; g++)
+        {
+            played[g].freeze(); // all of them, before the first one is compared
+        }
+
+        int differs = 0;
+        long compared = 0;
+
+        for(int g = 0; g < games; g++)
+        {
+            String diff = played[g].compareTurns(turns);
+            compared += played[g].getTurnsCompared();
+            if(diff != null)
+            {
+                differs++;
+                System.out.println("game " + g + ": " + diff);
+            }
+        }
+
+        System.out.println("rules: " + games + " games, " + compared + " turns compared, "
+                + (games - differs) + " same, " + differs + " differ");
+        System.exit((differs == 0 && compared > 0) ? 0 : 1); // the game threads end after their end pause
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * plays seeded games on the game on their own, each with a human player and 1 to MAX_COMPUTERS
+     * computer players. a game pauses START_GAME_PAUSE before its first turn, so the games play on their
+     * own threads, batch of them at a time. a game that doesn't end in time is aborted
+     * @param games the number of games
+     * @param seed the seed of the first game, the next games take the next seeds
+     * @param batch the number of games played at a time
+     * @return the played games, in the order of their seeds
+     * @throws IllegalArgumentException if games is negative or batch isn't positive
+     */
+    public static PlayedGame[] playGames(int games, long seed, int batch) throws InterruptedException
+    {
+        if(games < 0)
+            throw new IllegalArgumentException("illegal number of games");
+        if(batch <= 0)
+            throw new IllegalArgumentException("illegal batch");
+
+        PlayedGame[] played = new PlayedGame[games];
+
+        for(int first = 0; first < games; first += batch)
+        {
+            int last = Math.min(games, first + batch);
+            for(int g = first; g < last; g++)
+            {
+                played[g] = new PlayedGame("rules" + g, 1 + g % MAX_COMPUTERS, seed + g);
+                played[g].start();
+            }
+
+            long deadline = System.currentTimeMillis() + Game.START_GAME_PAUSE + GAME_MILLIS;
+            for(int g = first; g < last; g++)
+            {
+                played[g].join(deadline);
+            }
+        }
+        return played;
+    }
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * a seeded game played on the game, with the kernel that plays the same seed
+     */
+    public static class PlayedGame
+    {
+        private final Game _game;
+        private final Thread _thread;
+        private final CompactGameState _state; // the kernel's
+        private final RulesKernel _kernel;
+        private int _next;                     // the player the kernel plays next
+        private boolean _frozen;               // the game is stopped at a turn boundary
+        private int _compared;                 // the turns the states were compared after
+
+        /**
+         * creates the game, with its players in their seats, and the kernel from its starting state
+         * @param name the name of the game
+         * @param computers the number of computer players
+         * @param seed the seed of the game
+         */
+        PlayedGame(String name, int computers, long seed)
+        {
+            _game = new Game("monopoly.xml", name, 1, computers, true, seed);
+            _game.addPlayer("player");
+
+            // the kernel decides for every player like a computer player
+            ArrayList<Player> players = _game.getPlayers();
+            HumanPlayer joined = (HumanPlayer) players.get(players.size() - 1);
+            players.set(players.size() - 1, new ComputerLikePlayer(joined.getName(), joined.getID(), _game));
+
+            _thread = new Thread(_game, name);
+            _thread.setDaemon(true);
+
+            // the dice stream of the game, taken after the deck stream like the game takes it
+            GameRandom random = new GameRandom(seed);
+            random.split();
+            final GameRandom dice = random.split();
+
+            _state = CompactGameState.fromGame(new BoardLayout(_game), _game);
+            _kernel = new RulesKernel(_state, new DiceSource()
+            {
+                @Override
+                public int rollDie()
+                {
+                    return dice.rollDie();
+                }
+            });
+        }
+
+        /**
+         * starts the game on its thread
+         */
+        void start()
+        {
+            _thread.start();
+        }
+
+        /**
+         * waits for the game to end, aborts it if it doesn't end in time
+         * @param deadline the time it should end by, in milliseconds
+         */
+        void join(long deadline) throws InterruptedException
+        {
+            _thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if(_thread.isAlive())
+            {
+                _game.abort();
+                _thread.join(Game.END_GAME_PAUSE + 1000);
+            }
+        }
+
+        /**
+         * gets the game
+         * @return the game
+         */
+        public Game getGame(){return _game;}
+
+        /**
+         * gets the number of turns the states were compared after
+         * @return the number of turns
+         */
+        public int getTurnsCompared(){return _compared;}
+
+        /**
+         * waits for the started game to start playing and stops it at its first turn boundary.
+         * the game may play a few turns before it stops, the kernel catches up when they're compared
+         */
+        void freeze() throws InterruptedException
+        {
+            while(!_game.isStarted() && _thread.isAlive())
+            {
+                Thread.sleep(10);
+            }
+            _frozen = _game.freeze(STEP_MILLIS);
+        }
+
+        /**
+         * plays the kernel next to the frozen game and compares the states after every turn,
+         * until the game is over or played the given turns, then the game is aborted
+         * @param maxTurns the turns to compare
+         * @return null if the states were the same, otherwise the first difference
+         */
+        public String compareTurns(int maxTurns) throws InterruptedException
+        {
+            try
+            {
+                while(_frozen)
+                {
+                    String diff = this.compareTurn();
+                    if(diff != null || _state.getTurns() >= maxTurns)
+                    {
+                        return diff;
+                    }
+                    _frozen = _game.step(STEP_MILLIS);
+                }
+
+                if(!_game.isGameOver())
+                {
+                    return "the game didn't stop at a turn boundary after " + _state.getTurns() + " turns";
+                }
+
+                // over, the last turn and the end of the game
+                _thread.join(STEP_MILLIS);
+                String diff = this.compareTurn();
+                if(diff == null && this.playKernelTurn())
+                {
+                    return "the game ended after " + _state.getTurns() + " turns, the kernel goes on";
+                }
+                return diff;
+            }
+            finally
+            {
+                _game.abort();
+                _game.thaw();
+            }
+        }
+
+        /**
+         * plays the kernel up to the turn the game stopped at and compares the states
+         * @return null if they're the same, otherwise what differs
+         */
+        private String compareTurn()
+        {
+            int turns = _game.getStats().getTurns();
+            while(_state.getTurns() < turns)
+            {
+                if(!this.playKernelTurn())
+                {
+                    return "the kernel ended after " + _state.getTurns() + " turns, the game played " + turns;
+                }
+            }
+
+            String diff = _state.diff(CompactGameState.fromGame(_state.getBoard(), _game));
+            _compared++;
+            return (diff == null) ? null : "turn " + turns + ": " + diff;
+        }
+
+        /**
+         * plays the next turn on the kernel, the players in order like the game loop,
+         * which checks if the game is over only before a round
+         * @return false if the game is over
+         */
+        private boolean playKernelTurn()
+        {
+            while(true)
+            {
+                if(_next == 0 && _state.isGameOver())
+                {
+                    return false;
+                }
+
+                int player = _next;
+                _next = (_next + 1) % _state.getNumPlayers();
+                if(_state.isInGame(player))
+                {
+                    _kernel.playTurn(player);
+                    return true;
+                }
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * a human player that decides like a computer player and never prompts
+     */
+    private static class ComputerLikePlayer extends HumanPlayer
+    {
+        ComputerLikePlayer(String name, int id, Game game)
+        {
+            super(name, id, Game.DEFAULT_CASH, game);
+        }
+
+        @Override
+        public boolean buyDecision(SingleAsset asset, int what)
+        {
+            if(asset == null)
+                throw new NullPointerException("asset is null");
+
+            return _cash > asset.getCostPrice();
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package gameLogic.simulation;
+
+
+import gameLogic.Game;
+import gameLogic.squares.CityAsset;
+
+
+/**
+ * this class runs the monopoly rules over a compact game state.
+ * it follows the same rules as the object model (Game, the squares and the cards)
+ * with every player deciding like a computer player, and without creating events,
+ * so it can simulate many more turns per second
+ * @author Dana Akerman
+ */
+public class RulesKernel
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final CompactGameState _state;
+    private final BoardLayout _board;
+    private final DiceSource _dice;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new rules kernel
+     * @param state the state to play on
+     * @param dice the source of dice results
+     * @throws NullPointerException if state or dice are null
+     */
+    public RulesKernel(CompactGameState state, DiceSource dice)
+    {
+        if(state == null)
+            throw new NullPointerException("state is null");
+
+        if(dice == null)
+            throw new NullPointerException("dice is null");
+
+        _state = state;
+        _board = state._board;
+        _dice = dice;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the state this kernel plays on
+     * @return the state this kernel plays on
+     */
+    public CompactGameState getState(){return _state;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * plays the game until it is over or until the given number of rounds was played
+     * @param maxRounds the maximum number of rounds
+     * @return the number of rounds played
+     */
+    public int playGame(int maxRounds)
+    {
+        int rounds = 0;
+
+        while(!_state.isGameOver() && rounds < maxRounds)
+        {
+            this.playRound();
+            rounds++;
+        }
+        return rounds;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * plays one round, a turn to every player in the game
+     */
+    public void playRound()
+    {
+        for(int p = 0; p < _state._numPlayers; p++)
+        {
+            if(_state._inGame[p])
+            {
+                this.playTurn(p);
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * plays a single turn of the given player
+     * @param player the index of the player
+     */
+    public void playTurn(int player)
+    {
+        CompactGameState s = _state;
+        int square = s._position[player];
+
+        if(this.shouldPlayerRollDice(player, square))
+        {
+            int dice1 = _dice.rollDie();
+            int dice2 = _dice.rollDie();
+
+            if(this.shouldPlayerMove(player, square, dice1, dice2))
+            {
+                this.movePlayer(player, dice1, dice2);
+            }
+        }
+
+        if(s._bankrupt[player])
+        {
+            this.removePlayer(player);
+        }
+
+        s._turns++;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the player can roll the dice, see Square.shouldPlayerRollDice
+     */
+    private boolean shouldPlayerRollDice(int player, int square)
+    {
+        CompactGameState s = _state;
+
+        switch(_board._kind[square])
+        {
+            case BoardLayout.PARKING:
+                if(!s._canMove[player])
+                {
+                    s._canMove[player] = true;
+                    return false;
+                }
+                return true;
+
+            case BoardLayout.JAIL_OR_FREE_PASS:
+                if(!s._canMove[player] && s._pardonCard[player] != CompactGameState.NO_CARD)
+                {
+                    this.returnToDeck(s._pardonCard[player]);
+                    s._pardonCard[player] = CompactGameState.NO_CARD;
+                    s._canMove[player] = true;
+                }
+                return true;
+
+            default:
+                return true;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the player can move, see Square.shouldPlayerMove
+     */
+    private boolean shouldPlayerMove(int player, int square, int dice1, int dice2)
+    {
+        if(_board._kind[square] != BoardLayout.JAIL_OR_FREE_PASS)
+        {
+            return true;
+        }
+
+        if(_state._canMove[player])
+        {
+            return true;
+        }
+
+        _state._canMove[player] = (dice1 == dice2); // double
+        return false;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * moves the player according to the dice result, see Game.movePlayer
+     */
+    private void movePlayer(int player, int dice1, int dice2)
+    {
+        int oldPos = _state._position[player];
+        int newPos = (oldPos + dice1 + dice2) % Game.BOARD_SIZE;
+
+        _state._position[player] = newPos;
+
+        if(oldPos > newPos && newPos != Game.START_SQUARE)
+        {
+            _state._cash[player] += Game.PASSED_START_CASH;
+        }
+
+        this.playerArrived(player, newPos);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * performs the actions of the square on the player, see Square.playerArrived
+     */
+    private void playerArrived(int player, int square)
+    {
+        CompactGameState s = _state;
+
+        switch(_board._kind[square])
+        {
+            case BoardLayout.START:
+                s._cash[player] += Game.STEP_START_CASH;
+                break;
+
+            case BoardLayout.PARKING:
+                s._canMove[player] = false;
+                break;
+
+            case BoardLayout.GO_TO_JAIL:
+                s._position[player] = Game.JAIL_OR_FREE_PASS_SQUARE;
+                s._canMove[player] = false;
+                break;
+
+            case BoardLayout.CITY:
+            case BoardLayout.SIMPLE_ASSET:
+                this.assetArrived(player, square);
+                break;
+
+            case BoardLayout.SURPRISE:
+                this.drawCard(player, BoardLayout.SURPRISE_DECK);
+                break;
+
+            case BoardLayout.WARRANT:
+                this.drawCard(player, BoardLayout.WARRANT_DECK);
+                break;
+
+            default: // jail or free pass
+                break;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * performs the actions of an asset on the player, see SingleAsset.playerArrived
+     */
+    private void assetArrived(int player, int square)
+    {
+        CompactGameState s = _state;
+        int owner = s._owner[square];
+        boolean isCity = (_board._kind[square] == BoardLayout.CITY);
+
+        if(owner == CompactGameState.NO_OWNER)
+        {
+            int cost = _board._cost[square];
+
+            if(s._cash[player] > cost)
+            {
+                this.reduceCash(player, cost);
+                s._owner[square] = (byte)player;
+            }
+        }
+        else if(owner == player)
+        {
+            if(isCity && this.isGroupOwnedBySamePlayer(_board._group[square]) && s._houses[square] < CityAsset.MAX_HOUSES)
+            {
+                int cost = _board._houseCost[square];
+
+                if(s._cash[player] > cost)
+                {
+                    this.reduceCash(player, cost);
+                    s._houses[square]++;
+                }
+            }
+        }
+        else // player has to pay rent
+        {
+            int group = _board._group[square];
+            int rent;
+
+            if(!isCity && this.isGroupOwnedBySamePlayer(group))
+            {
+                rent = _board._groupSpecialRent[group];
+            }
+            else
+            {
+                rent = _board.getRent(square, s._houses[square]);
+            }
+
+            int payment = this.reduceCash(player, rent);
+            s._cash[owner] += payment;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if all the assets in the group belong to the same player, see AssetGroup
+     */
+    private boolean isGroupOwnedBySamePlayer(int group)
+    {
+        int offset = _board._groupOffset[group];
+        int size = _board._groupSize[group];
+        byte owner = _state._owner[_board._groupSquares[offset]];
+
+        if(owner == CompactGameState.NO_OWNER)
+        {
+            return false;
+        }
+
+        for(int i = 1; i < size; i++)
+        {
+            if(_state._owner[_board._groupSquares[offset + i]] != owner)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * draws the card on the top of the deck and activates it, see ActionSquare.playerArrived
+     */
+    private void drawCard(int player, int deck)
+    {
+        CompactGameState s = _state;
+        int capacity = s._deckCapacity[deck];
+        int card = s._deckCards[s._deckOffset[deck] + s._deckHead[deck]];
+
+        s._deckHead[deck] = (s._deckHead[deck] + 1) % capacity;
+        s._deckSize[deck]--;
+
+        // we return the card to the end of the deck if its not a pardon card
+        if(_board._cardKind[card] != BoardLayout.CARD_PARDON)
+        {
+            this.returnToDeck(card);
+        }
+
+        this.doCard(player, card);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds the card to the end of its deck
+     */
+    private void returnToDeck(int card)
+    {
+        CompactGameState s = _state;
+        int deck = _board._cardDeck[card];
+        int tail = (s._deckHead[deck] + s._deckSize[deck]) % s._deckCapacity[deck];
+
+        s._deckCards[s._deckOffset[deck] + tail] = card;
+        s._deckSize[deck]++;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * activates the card on the player, see the doCard methods of the cards
+     */
+    private void doCard(int player, int card)
+    {
+        CompactGameState s = _state;
+        boolean surprise = (_board._cardDeck[card] == BoardLayout.SURPRISE_DECK);
+        int amount = _board._cardAmount[card];
+
+        switch(_board._cardKind[card])
+        {
+            case BoardLayout.CARD_TREASURY:
+                if(surprise)
+                {
+                    s._cash[player] += amount;
+                }
+                else
+                {
+                    this.reduceCash(player, amount);
+                }
+                break;
+
+            case BoardLayout.CARD_OTHERS:
+                boolean paymentPossible = true;
+
+                for(int i = 0; i < s._numPlayers && paymentPossible; i++)
+                {
+                    if(i != player && s._inGame[i] && (surprise || s._inGame[player]))
+                    {
+                        int from = surprise ? i : player;
+                        int to = surprise ? player : i;
+                        int payment = this.reduceCash(from, amount);
+
+                        if(payment > 0)
+                        {
+                            s._cash[to] += payment;
+                        }
+                        else
+                        {
+                            paymentPossible = false;
+                        }
+                    }
+                }
+                break;
+
+            case BoardLayout.CARD_GOTO_START:
+                s._position[player] = Game.START_SQUARE;
+                this.playerArrived(player, Game.START_SQUARE);
+                break;
+
+            case BoardLayout.CARD_GOTO_JAIL:
+                s._position[player] = Game.GO_TO_JAIL_SQUARE;
+                this.playerArrived(player, Game.GO_TO_JAIL_SQUARE);
+                break;
+
+            case BoardLayout.CARD_GOTO_NEXT:
+                int kind = _board._kind[s._position[player]];
+
+                for(int i = s._position[player] + 1; ; i++)
+                {
+                    i = i % Game.BOARD_SIZE;
+
+                    // if its a surprise and we passed start player gets money
+                    if(surprise && i == Game.START_SQUARE)
+                    {
+                        s._cash[player] += Game.PASSED_START_CASH;
+                    }
+
+                    // go to the closest surprise/warrant square
+                    if(_board._kind[i] == kind)
+                    {
+                        s._position[player] = i;
+                        this.playerArrived(player, i);
+                        break;
+                    }
+                }
+                break;
+
+            case BoardLayout.CARD_PARDON:
+                s._pardonCard[player] = card;
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reduces cash from the player, see Player.reduceCash
+     * @return the amount actually paid
+     */
+    private int reduceCash(int player, int cash)
+    {
+        CompactGameState s = _state;
+        int payment = cash;
+
+        if(cash > s._cash[player])
+        {
+            payment = s._cash[player];
+            s._bankrupt[player] = true;
+        }
+
+        s._cash[player] -= payment;
+        return payment;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * removes the player from the game and frees his assets, see Game.removePlayerFromGame
+     */
+    private void removePlayer(int player)
+    {
+        CompactGameState s = _state;
+
+        s._inGame[player] = false;
+        s._playersInGame--;
+
+        for(int i = 0; i < Game.BOARD_SIZE; i++)
+        {
+            if(s._owner[i] == player)
+            {
+                s._owner[i] = CompactGameState.NO_OWNER;
+            }
+        }
+
+        if(s._human[player])
+        {
+            s._humansInGame--;
+        }
+    }
+}
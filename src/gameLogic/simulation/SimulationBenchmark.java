@@ -0,0 +1,274 @@
+package gameLogic.simulation;
+
+
+import gameLogic.Game;
+import gameLogic.GameRandom;
+import gameLogic.GameStats;
+import gameLogic.cards.Card;
+import gameLogic.cards.CardDeck;
+import gameLogic.ledger.Ledger;
+import gameLogic.ledger.MoneyAuditor;
+import gameLogic.players.ComputerPlayer;
+import gameLogic.players.Player;
+import java.util.ArrayList;
+
+
+/**
+ * this class measures how many turns per second the rules kernel simulates next to
+ * how many the game plays with and without the money auditor, how many cards per second a deck draws
+ * and how many settlements per second the ledger commits with and without the money auditor
+ * run it with: java gameLogic.simulation.SimulationBenchmark [games] [players] [seed]
+ * @author Dana Akerman
+ */
+public class SimulationBenchmark
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final int MAX_ROUNDS = 1000;
+    private static final int WARMUP_GAMES = 2000;
+    private static final int DECK_DRAWS = 20000000;
+    private static final int SETTLEMENTS = 5000000;
+    private static final int BASELINE_GAMES = 4;
+    private static final int AUDIT_GAMES = 2;
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * runs the benchmark
+     * @param args number of games, number of players and seed, all optional
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        int players = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1L;
+
+        Game game = new Game("monopoly.xml", "benchmark", 1, 1, true, seed);
+        BoardLayout board = new BoardLayout(game);
+
+        runKernel(board, players, WARMUP_GAMES, seed); // warm up
+        long start = System.nanoTime();
+        long turns = runKernel(board, players, games, seed);
+        long nanos = System.nanoTime() - start;
+
+        long kernelRate = turns * 1000000000L / Math.max(nanos, 1);
+        System.out.println("kernel: " + games + " games, " + turns + " turns, " + kernelRate + " turns/sec");
+
+        long[] played = runGame(BASELINE_GAMES, seed);
+        long gameRate = played[0] * 1000000000L / Math.max(played[1], 1);
+        System.out.println("game: " + BASELINE_GAMES + " games, " + played[0] + " turns, " + gameRate
+                + " turns/sec, the kernel is " + (kernelRate / Math.max(gameRate, 1)) + " times faster");
+
+        // the baseline warmed up the turns, the auditor is read when a game is constructed
+        String audit = System.getProperty(MoneyAuditor.AUDIT_PROPERTY);
+        System.setProperty(MoneyAuditor.AUDIT_PROPERTY, "false");
+        long[] plainGames = runGame(AUDIT_GAMES, seed);
+        System.setProperty(MoneyAuditor.AUDIT_PROPERTY, "true");
+        long[] auditedGames = runGame(AUDIT_GAMES, seed);
+        if(audit == null)
+        {
+            System.clearProperty(MoneyAuditor.AUDIT_PROPERTY);
+        }
+        else
+        {
+            System.setProperty(MoneyAuditor.AUDIT_PROPERTY, audit);
+        }
+
+        long plainTurn = plainGames[1] / Math.max(plainGames[0], 1);
+        long auditedTurn = auditedGames[1] / Math.max(auditedGames[0], 1);
+        System.out.println("turns: " + (plainGames[0] + auditedGames[0]) + " turns, "
+                + (1000000000L / Math.max(plainTurn, 1)) + "/sec plain, "
+                + (1000000000L / Math.max(auditedTurn, 1)) + "/sec audited, audit costs "
+                + (auditedTurn - plainTurn) + " ns per turn");
+
+        for(int deck = 0; deck < BoardLayout.NUM_DECKS; deck++)
+        {
+            runDeck(board, deck, DECK_DRAWS); // warm up
+            start = System.nanoTime();
+            runDeck(board, deck, DECK_DRAWS);
+            nanos = System.nanoTime() - start;
+
+            System.out.println("deck " + deck + ": " + DECK_DRAWS + " draws, "
+                    + (DECK_DRAWS * 1000000000L / Math.max(nanos, 1)) + " draws/sec");
+        }
+
+        for(int round = 0; round < 2; round++) // the first round warms up
+        {
+            start = System.nanoTime();
+            runLedger(game, players, SETTLEMENTS, false);
+            long plain = System.nanoTime() - start;
+            start = System.nanoTime();
+            long found = runLedger(game, players, SETTLEMENTS, true);
+            long audited = System.nanoTime() - start;
+
+            System.out.println("ledger: " + SETTLEMENTS + " settlements, "
+                    + (SETTLEMENTS * 1000000000L / Math.max(plain, 1)) + "/sec plain, "
+                    + (SETTLEMENTS * 1000000000L / Math.max(audited, 1)) + "/sec audited, audit costs "
+                    + ((audited - plain) / SETTLEMENTS) + " ns per settlement, " + found + " violations");
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * simulates the given number of games on the kernel
+     * @param board the board layout
+     * @param players the number of players in each game
+     * @param games the number of games
+     * @param seed the seed of the dice
+     * @return the total number of turns played
+     */
+    public static long runKernel(BoardLayout board, int players, int games, long seed)
+    {
+        final GameRandom random = new GameRandom(seed);
+        DiceSource dice = new DiceSource()
+        {
+            @Override
+            public int rollDie(){return random.rollDie();}
+        };
+
+        CompactGameState initial = new CompactGameState(board, players, 1);
+        CompactGameState state = initial.copy();
+        RulesKernel kernel = new RulesKernel(state, dice);
+        long turns = 0;
+
+        for(int i = 0; i < games; i++)
+        {
+            initial.copyTo(state);
+            kernel.playGame(MAX_ROUNDS);
+            turns += state.getTurns();
+        }
+        return turns;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * plays seeded games on the game one at a time, like RulesDifferential, and adds up the time
+     * of their turns. the pauses before and after a game aren't turns so they aren't counted
+     * @param games the number of games
+     * @param seed the seed of the first game
+     * @return the total number of turns played and their total nanoseconds
+     */
+    public static long[] runGame(int games, long seed) throws InterruptedException
+    {
+        RulesDifferential.PlayedGame[] played = RulesDifferential.playGames(games, seed, 1);
+        long turns = 0;
+        long nanos = 0;
+
+        for(int i = 0; i < played.length; i++)
+        {
+            GameStats stats = played[i].getGame().getStats();
+            turns += stats.getTurns();
+            nanos += stats.getTurns() * stats.getMeanTurnNanos();
+        }
+        return new long[] {turns, nanos};
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * commits settlements like a turn does: rent between two players and an
+     * "others" card where every player pays one, cash is topped up from the treasury
+     * @param game the game the ledger belongs to
+     * @param players the number of players
+     * @param settlements the number of settlements
+     * @param audit true to audit the settlements
+     * @return the number of audit violations
+     */
+    public static long runLedger(Game game, int players, int settlements, boolean audit)
+    {
+        ArrayList<Player> list = new ArrayList<Player>();
+        for(int i = 0; i < players; i++)
+        {
+            list.add(new ComputerPlayer(Game.DEFAULT_CASH));
+        }
+
+        Ledger ledger = new Ledger(game, list);
+        MoneyAuditor auditor = new MoneyAuditor(Game.DEFAULT_CASH);
+        if(audit)
+        {
+            ledger.addMyChangeListener(auditor);
+        }
+
+        for(int i = 0; i < settlements; i++)
+        {
+            Player player = list.get(i % players);
+            Ledger.Transaction transaction;
+
+            switch(i % 3)
+            {
+                case 0:
+                    transaction = ledger.begin(Ledger.RENT);
+                    transaction.pay(player, list.get((i + 1) % players), 50);
+                    break;
+                case 1:
+                    transaction = ledger.begin(Ledger.CARD);
+                    for(int j = 0; j < players; j++)
+                    {
+                        if(list.get(j) != player)
+                        {
+                            transaction.pay(list.get(j), player, 10);
+                        }
+                    }
+                    break;
+                default:
+                    transaction = ledger.begin(Ledger.PASSED_START);
+                    transaction.pay(Ledger.TREASURY, player, Game.PASSED_START_CASH);
+                    break;
+            }
+            transaction.commit();
+        }
+        return auditor.getNumViolations();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * draws cards from a deck like the action squares do, a drawn pardon card is held out
+     * and returned to the deck right away
+     * @param board the board layout
+     * @param deckIndex SURPRISE_DECK or WARRANT_DECK
+     * @param draws the number of draws
+     * @return the number of pardon cards drawn
+     */
+    public static int runDeck(BoardLayout board, int deckIndex, int draws)
+    {
+        ArrayList<Card> cards = new ArrayList<Card>();
+
+        for(int c = 0; c < board.getNumCards(); c++)
+        {
+            if(board._cardDeck[c] == deckIndex)
+            {
+                cards.add(board.getCard(c));
+            }
+        }
+
+        CardDeck deck = new CardDeck();
+        for(int i = 0; i < cards.size(); i++)
+        {
+            deck.putBack(cards.get(i));
+        }
+
+        int pardons = 0;
+        for(int i = 0; i < draws; i++)
+        {
+            Card card = deck.draw();
+
+            if(card.isPardonCard())
+            {
+                deck.holdOut(card);
+                deck.returnHeldOut(card);
+                pardons++;
+            }
+            else
+            {
+                deck.putBack(card);
+            }
+        }
+        return pardons;
+    }
+}
@@ -1,11 +1,11 @@
 package gameLogic.squares;
 
 
-import java.util.ArrayList;
-import java.util.Random;
 import gameLogic.Game;
 import gameLogic.cards.*;
 import gameLogic.players.Player;
+import gameLogic.tracing.Tracing;
+import java.util.ArrayList;
 import monopoly.Event;
 import monopoly.EventsFactory;
 
@@ -26,7 +26,8 @@ public class ActionSquare extends Square
     // data members
     //-------------------------------------------------------------------
     
-    private ArrayList<Card> _cards;
+    private CardDeck _cards;
+    private ArrayList<Card> _allCards; // in the order they were added, a card's index is its id
     private int _type;
 
     // c'tor
@@ -42,7 +43,8 @@ public class ActionSquare extends Square
     public ActionSquare(int type, Game game) 
     {
         super(game);
-        _cards = new ArrayList<Card>();
+        _cards = new CardDeck();
+        _allCards = new ArrayList<Card>();
         this.setType(type);
     }
 
@@ -162,16 +164,18 @@ public class ActionSquare extends Square
         if (player == null) 
             throw new NullPointerException("player is null");
 
-        
-        Card card = _cards.remove(0);
+        Object trace = Tracing.begin(Tracing.CARD);
+        Card card = _cards.draw();
+        _game.recordCardDrawn(_type, player, card.isPardonCard());
 
         // we return the card to the end of the deck if its not a pardon card
         if (!(card.isPardonCard())) 
         {
-            _cards.add(card);
+            _cards.putBack(card);
         } 
-        else // its a pardon card, we need to create an event
+        else // its a pardon card, the player holds it out of the deck, we need to create an event
         {
+            _cards.holdOut(card);
             Event pardonCardEvent = EventsFactory.createGetOutOfJailCardEvent(_game.getName(), player.getName());
             _game.addEvent(pardonCardEvent);
         }
@@ -188,13 +192,40 @@ public class ActionSquare extends Square
         }
 
         card.doCard(player);
+        Tracing.end(trace, _game.getName(), (_type == SURPRISE) ? "surprise" : "warrant", player.getPosition());
+    }
 
+    //-------------------------------------------------------------------
+    
+    /**
+     * draws the top card for the given player when the game is replayed, without playing it:
+     * a pardon card is kept by the player, any other card goes back to the bottom of the deck
+     * @param player the player that drew the card
+     * @return true if the card was a pardon card
+     * @throws NullPointerException if player is null
+     */
+    public boolean replayDraw(Player player)
+    {
+        if (player == null) 
+            throw new NullPointerException("player is null");
+        
+        Card card = _cards.draw();
+        
+        if (!(card.isPardonCard())) 
+        {
+            _cards.putBack(card);
+            return false;
+        }
+        
+        _cards.holdOut(card);
+        player.setPardonCard((PardonCard) card);
+        return true;
     }
 
     //-------------------------------------------------------------------
     
     /**
-     * adds a card to the cards ArrayList
+     * adds a card to the bottom of the deck
      * @param card the card to add
      * @throws nullPoinerException if 'card' is null
      */
@@ -202,7 +233,8 @@ public class ActionSquare extends Square
     {
         if (card != null) 
         {
-            _cards.add(card);
+            _cards.putBack(card);
+            _allCards.add(card);
         } 
         else 
             throw new NullPointerException("card is null");
@@ -211,20 +243,58 @@ public class ActionSquare extends Square
     //-------------------------------------------------------------------
     
     /**
-     * mixes the cards
+     * gets the id of the given card, its index in the order the cards were added to the deck
+     * @param card the card
+     * @return the id of the card, -1 if the card is not of this deck
      */
-    private void mixCards() 
+    public int getCardID(Card card)
     {
-        Random generator = new Random();
-
-        for (int i = 0; i < 100; i++) 
+        for (int i = 0; i < _allCards.size(); i++)
         {
-            int pos1 = generator.nextInt(_cards.size());
-            int pos2 = generator.nextInt(_cards.size());
+            if (_allCards.get(i) == card)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //-------------------------------------------------------------------
+    
+    /**
+     * gets a card by its id
+     * @param id the id of the card
+     * @return the card with the given id
+     * @throws IndexOutOfBoundsException if there is no card with the given id
+     */
+    public Card getCardByID(int id){return _allCards.get(id);}
 
-            if (pos1 != pos2) 
+    //-------------------------------------------------------------------
+    
+    /**
+     * puts the deck back in the given order, the cards that are not in it are held out
+     * @param ids the ids of the cards in the deck, from the top
+     * @throws IllegalArgumentException if a card appears twice
+     */
+    public void restoreCards(int[] ids)
+    {
+        boolean[] inDeck = new boolean[_allCards.size()];
+        _cards.clear();
+        
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (inDeck[ids[i]])
+                throw new IllegalArgumentException("illegal deck order, a card appears twice");
+            
+            inDeck[ids[i]] = true;
+            _cards.putBack(_allCards.get(ids[i]));
+        }
+        
+        for (int i = 0; i < inDeck.length; i++)
+        {
+            if (!inDeck[i])
             {
-                this.swapCards(pos1, pos2);
+                _cards.holdOut(_allCards.get(i));
             }
         }
     }
@@ -232,15 +302,28 @@ public class ActionSquare extends Square
     //-------------------------------------------------------------------
     
     /**
-     * gets two positions in the ArrayList, swaps the cards in those positions
-     * @param pos1 the first position
-     * @param pos2 the second position
+     * returns a card that was held out of the deck (a used pardon card) to the bottom of the deck
+     * @param card the card to return
+     * @throws NullPointerException if 'card' is null
+     */
+    public void returnCard(Card card) 
+    {
+        if (card != null) 
+        {
+            _cards.returnHeldOut(card);
+        } 
+        else 
+            throw new NullPointerException("card is null");
+    }
+
+    //-------------------------------------------------------------------
+    
+    /**
+     * mixes the cards with a Fisher-Yates shuffle drawn from the game's deck random source
      */
-    private void swapCards(int pos1, int pos2) 
+    private void mixCards() 
     {
-        Card temp = _cards.get(pos1);
-        _cards.set(pos1, _cards.get(pos2));
-        _cards.set(pos2, temp);
+        _cards.shuffle(_game.getDeckRandom());
     }
 
     //-------------------------------------------------------------------
@@ -251,18 +334,37 @@ public class ActionSquare extends Square
      */
     public Card getCardOnTop() 
     {
-        if (_cards.size() > 0) 
-        {
-            return _cards.get(0);
-        } 
-        else
-        {
-            return null;
-        }
+        return _cards.peek();
     }
 
     //-------------------------------------------------------------------
     
+    /**
+     * gets the number of cards currently in the deck
+     * @return the number of cards currently in the deck
+     */
+    public int getNumCards(){return _cards.size();}
+
+    //-------------------------------------------------------------------
+    
+    /**
+     * gets the card in the given position of the deck, 0 is the top of the deck
+     * @param index the position of the card
+     * @return the card in the given position
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     */
+    public Card getCardByIndex(int index){return _cards.get(index);}
+
+    //-------------------------------------------------------------------
+    
+    /**
+     * gets the number of cards that were drawn and are held out of the deck by players
+     * @return the number of cards held out of the deck
+     */
+    public int getNumHeldOutCards(){return _cards.getNumHeldOut();}
+
+    //-------------------------------------------------------------------
+    
     @Override
     public String toString() 
     {
@@ -17,7 +17,7 @@ public class CityAsset extends SingleAsset
     // constants
     //------------------------------------------------------------
 
-    static final int MAX_HOUSES = 3;
+    public static final int MAX_HOUSES = 3;
     
     // data members
     //------------------------------------------------------------
@@ -86,6 +86,32 @@ public class CityAsset extends SingleAsset
 
     //-------------------------------------------------------------------
     
+    /**
+     * returns the rent of the city with the given number of houses
+     * @param numHouses the number of houses
+     * @return the rent of the city with the given number of houses
+     * @throws IndexOutOfBoundsException if numHouses is out of bounds
+     */
+    public int getRentPrice(int numHouses){return _rentPrice[numHouses];}
+
+    //-------------------------------------------------------------------
+    
+    /**
+     * returns the cost of the city itself
+     * @return the cost of the city itself
+     */
+    public int getCityCostPrice(){return _cityCostPrice;}
+
+    //-------------------------------------------------------------------
+    
+    /**
+     * returns the cost of a house in the city
+     * @return the cost of a house in the city
+     */
+    public int getHouseCostPrice(){return _houseCostPrice;}
+
+    //-------------------------------------------------------------------
+    
     /**
      * returns the number of houses in the city
      * @return the number of houses in the city
@@ -161,12 +187,30 @@ public class CityAsset extends SingleAsset
 
     //-------------------------------------------------------------------
     
+    /**
+     * sets the number of houses, for a game restored from a checkpoint
+     * @param numHouses the number of houses
+     * @throws IllegalArgumentException if numHouses is negative or more than MAX_HOUSES
+     */
+    public void setNumHouses(int numHouses) 
+    {
+        if (numHouses >= 0 && numHouses <= MAX_HOUSES) 
+        {
+            _numHouses = numHouses;
+        } 
+        else 
+            throw new IllegalArgumentException("illegal number of houses");
+    }
+
+    //-------------------------------------------------------------------
+    
     /**
      * increases the number of houses by one
      */
     public void addHouse() 
     {
         _numHouses++;
+        _game.recordHouseAdded(this);
     }
 
     //-------------------------------------------------------------------
@@ -41,8 +41,8 @@ public class GoToJailSquare extends Square
             _game.addEvent(sentToJailEvent);
             _game.addEvent(moveToJailEvent);
 
-            player.setPosition(Game.JAIL_OR_FREE_PASS_SQUARE);
-            player.setCanMove(false);
+            _game.placePlayer(player, Game.JAIL_OR_FREE_PASS_SQUARE);
+            _game.setPlayerCanMove(player, false);
         } 
         else 
             throw new NullPointerException("player is null");
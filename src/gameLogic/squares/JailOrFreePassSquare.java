@@ -47,11 +47,11 @@ public class JailOrFreePassSquare extends Square
         } 
         else if (dice1 == dice2) //double
         {
-            player.setCanMove(true);
+            _game.setPlayerCanMove(player, true);
         } 
         else 
         {
-            player.setCanMove(false);
+            _game.setPlayerCanMove(player, false);
         }
         return false;
     }
@@ -73,7 +73,8 @@ public class JailOrFreePassSquare extends Square
 
                 player.getPardonCard().returnToDeck();
                 player.setPardonCard(null);
-                player.setCanMove(true);
+                _game.recordPardonReturned(player);
+                _game.setPlayerCanMove(player, true);
 
                 // used pardon card event
                 Event playerUsedPardonCardEvent = 
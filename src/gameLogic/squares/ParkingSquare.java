@@ -33,7 +33,7 @@ public class ParkingSquare extends Square
     {
         if (player != null) 
         {
-            player.setCanMove(false);
+            _game.setPlayerCanMove(player, false);
         } 
         else 
             throw new NullPointerException("player is null");
@@ -48,7 +48,7 @@ public class ParkingSquare extends Square
         {
             if (!(player.canPlayerMove())) 
             {
-                player.setCanMove(true);
+                _game.setPlayerCanMove(player, true);
                 return false;
             }
             return true;
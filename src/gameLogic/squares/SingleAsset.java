@@ -4,6 +4,7 @@ package gameLogic.squares;
 import gameLogic.Game;
 import gameLogic.groups.AssetGroup;
 import gameLogic.groups.SimpleAssetGroup;
+import gameLogic.ledger.Ledger;
 import gameLogic.players.Player;
 import monopoly.Event;
 import monopoly.EventsFactory;
@@ -109,14 +110,25 @@ public abstract class SingleAsset extends Square
 
             if (player.buyDecision(this, ASSET)) 
             {
-                player.reduceCash(cost);
-                this.setOwner(player);
+                Ledger.Transaction transaction = _game.getLedger().begin(Ledger.ASSET_PURCHASE);
+                try
+                {
+                    transaction.pay(player, Ledger.TREASURY, cost);
 
-                // payment and asset bought events
-                Event paymentEvent = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), cost, true);
-                Event assetBoughtEvent = EventsFactory.createAssetBoughtEvent(_game.getName(), player);
-                _game.addEvent(paymentEvent);
-                _game.addEvent(assetBoughtEvent);
+                    // payment and asset bought events
+                    Event paymentEvent = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), cost, true);
+                    Event assetBoughtEvent = EventsFactory.createAssetBoughtEvent(_game.getName(), player);
+                    transaction.addEvent(paymentEvent);
+                    transaction.addEvent(assetBoughtEvent);
+                    transaction.commit();
+                    
+                    // after the commit, a transaction that is rolled back leaves the asset and the journal as they were
+                    this.setOwner(player);
+                }
+                finally
+                {
+                    transaction.close();
+                }
 
             }
         } 
@@ -129,14 +141,24 @@ public abstract class SingleAsset extends Square
                 
                 if (player.buyDecision(this, HOUSE)) 
                 {
-                    player.reduceCash(cost);
-                    ((CityAsset) this).addHouse();
+                    Ledger.Transaction transaction = _game.getLedger().begin(Ledger.HOUSE_PURCHASE);
+                    try
+                    {
+                        transaction.pay(player, Ledger.TREASURY, cost);
 
-                    // payment and house bought events
-                    Event paymentEvent = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), cost, true);
-                    Event houseBoughtEvent = EventsFactory.createHouseBoughtEvent(_game.getName(), player);
-                    _game.addEvent(paymentEvent);
-                    _game.addEvent(houseBoughtEvent);
+                        // payment and house bought events
+                        Event paymentEvent = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), cost, true);
+                        Event houseBoughtEvent = EventsFactory.createHouseBoughtEvent(_game.getName(), player);
+                        transaction.addEvent(paymentEvent);
+                        transaction.addEvent(houseBoughtEvent);
+                        transaction.commit();
+                        
+                        ((CityAsset) this).addHouse(); // after the commit, like the owner above
+                    }
+                    finally
+                    {
+                        transaction.close();
+                    }
 
                 }
             }
@@ -156,13 +178,21 @@ public abstract class SingleAsset extends Square
                 rent = this.getRentPrice();
             }
 
-            int payment = player.reduceCash(rent);
+            Ledger.Transaction transaction = _game.getLedger().begin(Ledger.RENT);
+            try
+            {
+                int payment = transaction.pay(player, _owner, rent);
 
-            if (payment > 0) 
+                if (payment > 0) 
+                {
+                    Event paymentEvent = EventsFactory.createPaymentToOrFromPlayerEvent(_game.getName(), player.getName(), this.getOwnerName(), payment, true);
+                    transaction.addEvent(paymentEvent);
+                }
+                transaction.commit();
+            }
+            finally
             {
-                this.getOwner().addCash(payment);
-                Event paymentEvent = EventsFactory.createPaymentToOrFromPlayerEvent(_game.getName(), player.getName(), this.getOwnerName(), payment, true);
-                _game.addEvent(paymentEvent);
+                transaction.close();
             }
         }
     }
@@ -194,6 +224,7 @@ public abstract class SingleAsset extends Square
     {
         // can be null if no owner
         _owner = owner;
+        _game.recordOwnerChanged(this, owner);
     }
 
     //---------------------------------------------------------
@@ -2,6 +2,7 @@ package gameLogic.squares;
 
 
 import gameLogic.Game;
+import gameLogic.ledger.Ledger;
 import gameLogic.players.Player;
 import monopoly.Event;
 import monopoly.EventsFactory;
@@ -35,13 +36,22 @@ public class StartSquare extends Square
     {
         if (player != null) 
         {
-            player.addCash(Game.STEP_START_CASH);
+            Ledger.Transaction transaction = _game.getLedger().begin(Ledger.LANDED_ON_START);
+            try
+            {
+                transaction.pay(Ledger.TREASURY, player, Game.STEP_START_CASH);
 
-            // landed on start and payment events
-            Event playerLandedOnStartEvent = EventsFactory.createLandedOnStartEvent(_game.getName(), player.getName());
-            Event paymentEvent = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), Game.STEP_START_CASH, false);
-            _game.addEvent(playerLandedOnStartEvent);
-            _game.addEvent(paymentEvent);
+                // landed on start and payment events
+                Event playerLandedOnStartEvent = EventsFactory.createLandedOnStartEvent(_game.getName(), player.getName());
+                Event paymentEvent = EventsFactory.createPaymentToOrFromTreasuryEvent(_game.getName(), player.getName(), Game.STEP_START_CASH, false);
+                transaction.addEvent(playerLandedOnStartEvent);
+                transaction.addEvent(paymentEvent);
+                transaction.commit();
+            }
+            finally
+            {
+                transaction.close();
+            }
         } 
         else 
             throw new NullPointerException("player is null");
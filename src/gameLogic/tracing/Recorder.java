@@ -0,0 +1,27 @@
+package gameLogic.tracing;
+
+
+/**
+ * this interface records the traced work of the game engine. RecorderEvents implements it
+ * with the flight recorder, Tracing calls it only through this interface so nothing but
+ * RecorderEvents needs the jdk.jfr api to compile
+ * @author Dana Akerman
+ */
+interface Recorder
+{
+    /**
+     * begins a traced piece of work if its type is recorded
+     * @param type the type, one of Tracing's types
+     * @return the trace to pass to end(), or null
+     */
+    Object begin(int type);
+
+    /**
+     * ends a traced piece of work
+     * @param trace what begin() returned, not null
+     * @param game the name of the game
+     * @param subject what the work was about
+     * @param value the number of the work
+     */
+    void end(Object trace, String game, String subject, long value);
+}
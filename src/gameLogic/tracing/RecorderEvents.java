@@ -0,0 +1,148 @@
+package gameLogic.tracing;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * this class holds the flight recorder events of the game engine. it's the only class that
+ * uses the jdk.jfr api, Tracing loads it by its name only when the jvm has it, and the build
+ * leaves it out on a jdk without it.
+ * a probe of each type tells if the type is enabled without creating an event
+ * @author Dana Akerman
+ */
+class RecorderEvents implements Recorder
+{
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final GameEvent[] probes = new GameEvent[] {
+            new TurnEvent(), new SquareEvent(), new CardEvent(), new SettlementEvent(),
+            new PromptEvent(), new EventAppendEvent(), new RpcEvent()};
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs the recorder, Tracing makes the only one
+     */
+    RecorderEvents(){}
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * begins an event of the given type if the type is enabled
+     * @param type the type, one of Tracing's types
+     * @return the event, or null
+     */
+    @Override
+    public Object begin(int type)
+    {
+        if(!probes[type].isEnabled())
+        {
+            return null;
+        }
+
+        GameEvent event;
+        switch(type)
+        {
+            case Tracing.TURN: event = new TurnEvent(); break;
+            case Tracing.SQUARE: event = new SquareEvent(); break;
+            case Tracing.CARD: event = new CardEvent(); break;
+            case Tracing.SETTLEMENT: event = new SettlementEvent(); break;
+            case Tracing.PROMPT: event = new PromptEvent(); break;
+            case Tracing.EVENT: event = new EventAppendEvent(); break;
+            default: event = new RpcEvent(); break;
+        }
+        event.begin();
+        return event;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends an event and commits it if it passes the threshold of its type
+     * @param trace the event begin() returned
+     * @param game the name of the game
+     * @param subject what the event was about
+     * @param value the number of the event
+     */
+    @Override
+    public void end(Object trace, String game, String subject, long value)
+    {
+        GameEvent event = (GameEvent) trace;
+
+        event.end();
+        if(event.shouldCommit())
+        {
+            event.game = game;
+            event.subject = subject;
+            event.value = value;
+            event.commit();
+        }
+    }
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * the fields every event of the game engine has
+     */
+    @Category("Monopoly")
+    @Enabled(false)
+    @StackTrace(false)
+    abstract static class GameEvent extends Event
+    {
+        @Label("Game")
+        String game;
+
+        @Label("Subject")
+        String subject;
+
+        @Label("Value")
+        long value;
+    }
+
+    @Name("monopoly.Turn")
+    @Label("Turn")
+    @Description("a turn of a player, the value is the number of events it added")
+    static class TurnEvent extends GameEvent {}
+
+    @Name("monopoly.Square")
+    @Label("Square")
+    @Description("a player arrived at a square, the subject is the kind of square and the value its index")
+    static class SquareEvent extends GameEvent {}
+
+    @Name("monopoly.Card")
+    @Label("Card")
+    @Description("a card was drawn and played, the subject is the deck and the value the position of the player after it")
+    static class CardEvent extends GameEvent {}
+
+    @Name("monopoly.Settlement")
+    @Label("Settlement")
+    @Description("a ledger transaction, the subject is the settlement kind and the value the number of payments")
+    static class SettlementEvent extends GameEvent {}
+
+    @Name("monopoly.PromptWait")
+    @Label("Prompt Wait")
+    @Description("the game waited for a player to answer a prompt, the value is the id of the prompt event")
+    static class PromptEvent extends GameEvent {}
+
+    @Name("monopoly.EventAppend")
+    @Label("Event Append")
+    @Description("an event was added to a game and journaled, the subject is its player and the value its id")
+    static class EventAppendEvent extends GameEvent {}
+
+    @Name("monopoly.Rpc")
+    @Label("Web Service Call")
+    @Description("a call of the web service, the subject is the operation and the value 1 if it failed")
+    static class RpcEvent extends GameEvent {}
+}
@@ -0,0 +1,406 @@
+package gameLogic.tracing;
+
+
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * this class traces a sample of the requests of the clients through the web service, the game manager
+ * and the game. a request is a trace of spans with one id, the span of the web service call and the spans
+ * of what it did under it: finding the game, waiting for its locks, waking the game thread. the game
+ * thread continues the trace of the command that woke it, and a prompt that timed out starts a trace of
+ * its own on the timer thread, so the time of a slow command can be followed to the thread that spent it.
+ * the spans of a thread are kept in a thread local, a request that isn't sampled costs a counter and
+ * a thread local read for every span.
+ * the spans are written by a thread of their own to a file in the chrome trace event format, that
+ * chrome://tracing and perfetto open. the tracing is off unless RATE_PROPERTY is set
+ * @author Dana Akerman
+ */
+public class RequestTrace
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String RATE_PROPERTY = "monopoly.trace.rate"; // the part of the requests traced, 0.01 is 1%
+    public static final String FILE_PROPERTY = "monopoly.trace.file";
+    public static final String DEFAULT_FILE = "monopoly-trace.json";
+    public static final int CAPACITY = 8192; // the spans waiting to be written
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Counter traced = Metrics.getCounter("trace.requests");
+    private static final Counter written = Metrics.getCounter("trace.spans");
+    private static final Counter dropped = Metrics.getCounter("trace.spans.dropped");
+
+    private static final ThreadLocal<Span> current = new ThreadLocal<Span>(); // before sampleEvery, its error is logged with the trace id
+    private static final long sampleEvery = getSampleEvery();
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong spanIDs = new AtomicLong();
+    private static final Random traceIDs = new Random();
+
+    private static final long baseMicros = System.currentTimeMillis() * 1000;
+    private static final long baseNanos = System.nanoTime();
+
+    private static ArrayBlockingQueue<Span> queue; // created with the first trace
+    private static SpanWriter writer;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private RequestTrace(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * starts the trace of a request on this thread if the request is sampled.
+     * a trace left open on the thread is discarded
+     * @param name the name of the request
+     */
+    public static void startRequest(String name)
+    {
+        if(sampleEvery == 0)
+        {
+            return;
+        }
+
+        if(requests.incrementAndGet() % sampleEvery != 0)
+        {
+            if(current.get() != null)
+            {
+                current.remove();
+            }
+            return;
+        }
+
+        if(!startWriter())
+        {
+            return;
+        }
+
+        traced.increment();
+        current.set(new Span(name, traceIDs.nextLong() & Long.MAX_VALUE, 0, null));
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends the trace of the request on this thread, with the spans still open in it
+     * @param failed true if the request failed
+     */
+    public static void endRequest(boolean failed)
+    {
+        Span span = current.get();
+
+        if(span != null)
+        {
+            span._failed = failed;
+            endAll();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * begins a span under the span this thread is in
+     * @param name the name of the span
+     * @return the span, or null if the thread isn't traced
+     */
+    public static Span begin(String name)
+    {
+        Span parent = current.get();
+
+        if(parent == null)
+        {
+            return null;
+        }
+
+        Span span = new Span(name, parent._traceID, parent._spanID, parent);
+        current.set(span);
+        return span;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends a span, the thread is back in the span it was in before it
+     * @param span what begin() returned, nothing is done if it's null
+     */
+    public static void end(Span span)
+    {
+        if(span == null || span._endNanos != 0)
+        {
+            return;
+        }
+
+        span.end();
+        if(current.get() == span)
+        {
+            if(span._parent != null)
+            {
+                current.set(span._parent);
+            }
+            else
+            {
+                current.remove();
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends the spans open on this thread
+     */
+    public static void endAll()
+    {
+        Span span = current.get();
+
+        if(span == null)
+        {
+            return;
+        }
+
+        for(; span != null; span = span._parent)
+        {
+            if(span._endNanos == 0)
+            {
+                span.end();
+            }
+        }
+        current.remove();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the span this thread is in, to continue its trace on another thread
+     * @return the span, or null if the thread isn't traced
+     */
+    public static Span current()
+    {
+        return (sampleEvery == 0) ? null : current.get();
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * continues the trace of a span of another thread on this thread, the spans open on this thread are ended
+     * @param from the span of the other thread, nothing is done if it's null
+     * @param name the name of the span on this thread
+     */
+    public static void resume(Span from, String name)
+    {
+        if(sampleEvery == 0)
+        {
+            return;
+        }
+
+        endAll();
+        if(from != null)
+        {
+            current.set(new Span(name, from._traceID, from._spanID, null));
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the id of the trace of this thread, for the log
+     * @return the id in hex, or null if the thread isn't traced
+     */
+    public static String getTraceID()
+    {
+        Span span = current();
+        return (span == null) ? null : Long.toHexString(span._traceID);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * reads the part of the requests to trace
+     * @return the number of requests for every request traced, 0 if none are
+     */
+    private static long getSampleEvery()
+    {
+        String rate = System.getProperty(RATE_PROPERTY);
+
+        if(rate == null)
+        {
+            return 0;
+        }
+
+        try
+        {
+            double value = Double.parseDouble(rate);
+            return (value <= 0) ? 0 : Math.max(1, Math.round(1 / Math.min(value, 1)));
+        }
+        catch(NumberFormatException ex)
+        {
+            GameLog.error("illegal " + RATE_PROPERTY + " " + rate + ", nothing is traced", null);
+            return 0;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * starts the thread that writes the spans, with the first trace
+     * @return true if the spans can be written
+     */
+    private static synchronized boolean startWriter()
+    {
+        if(writer != null)
+        {
+            return writer._out != null;
+        }
+
+        File file = new File(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+        queue = new ArrayBlockingQueue<Span>(CAPACITY);
+        writer = new SpanWriter();
+
+        try
+        {
+            writer._out = new FileWriter(file);
+            writer._out.write("[\n");
+            writer.start();
+            return true;
+        }
+        catch(IOException ex)
+        {
+            GameLog.error("can't write the traces to " + file.getAbsolutePath(), ex);
+            writer._out = null;
+            return false;
+        }
+    }
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * this class represents a span of a trace, the time a thread spent on a part of a request
+     */
+    public static class Span
+    {
+        private final String _name;
+        private final long _traceID;
+        private final long _spanID;
+        private final long _parentID;
+        private final Span _parent;   // the span the thread was in before it, on the same thread
+        private final long _threadID;
+        private final long _startNanos;
+        private long _endNanos;
+        private boolean _failed;
+
+        /**
+         * constructs a span that starts now on this thread
+         */
+        private Span(String name, long traceID, long parentID, Span parent)
+        {
+            _name = name;
+            _traceID = traceID;
+            _spanID = spanIDs.incrementAndGet();
+            _parentID = parentID;
+            _parent = parent;
+            _threadID = Thread.currentThread().getId();
+            _startNanos = System.nanoTime();
+        }
+
+        /**
+         * ends the span and hands it to the writer
+         */
+        private void end()
+        {
+            _endNanos = System.nanoTime();
+
+            if(!queue.offer(this))
+            {
+                dropped.increment();
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * this class is the thread that writes the spans to the trace file, a complete event for each span
+     */
+    private static class SpanWriter extends Thread
+    {
+        private Writer _out;
+        private final StringBuilder _line = new StringBuilder(256);
+        private final ArrayList<Span> _batch = new ArrayList<Span>();
+
+        SpanWriter()
+        {
+            super("request trace");
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            while(true)
+            {
+                try
+                {
+                    _batch.add(queue.take());
+                    queue.drainTo(_batch);
+
+                    for(int i = 0; i < _batch.size(); i++)
+                    {
+                        this.format(_batch.get(i));
+                        _out.append(_line);
+                    }
+                    _out.flush();
+                    written.add(_batch.size());
+                }
+                catch(InterruptedException ex)
+                {
+                    return;
+                }
+                catch(IOException ex)
+                {
+                    GameLog.error("can't write the traces", ex);
+                    dropped.add(_batch.size());
+                }
+                _batch.clear();
+            }
+        }
+
+        /**
+         * formats a span into the line buffer
+         */
+        private void format(Span span)
+        {
+            _line.setLength(0);
+            _line.append("{\"name\":\"").append(span._name)
+                    .append("\",\"cat\":\"monopoly\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(span._threadID)
+                    .append(",\"ts\":").append(baseMicros + (span._startNanos - baseNanos) / 1000)
+                    .append(",\"dur\":").append((span._endNanos - span._startNanos) / 1000)
+                    .append(",\"args\":{\"trace\":\"").append(Long.toHexString(span._traceID))
+                    .append("\",\"span\":").append(span._spanID)
+                    .append(",\"parent\":").append(span._parentID);
+            if(span._failed)
+            {
+                _line.append(",\"error\":true");
+            }
+            _line.append("}},\n");
+        }
+    }
+}
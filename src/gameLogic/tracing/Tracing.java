@@ -0,0 +1,102 @@
+package gameLogic.tracing;
+
+
+/**
+ * this class marks what the game engine does for the jdk flight recorder, so a recording
+ * shows the turns, squares, cards, settlements, prompt waits, event appends and web service
+ * calls next to the cpu samples. the events are disabled by default, they are enabled with
+ * a settings file that turns on the monopoly.* events, for example
+ * jcmd <pid> JFR.start settings=monopoly.jfc. a disabled event costs a field read and a branch.
+ * on a jvm without the flight recorder nothing is traced. the recorder is loaded by its name,
+ * so a build on a jdk before 8u262 leaves RecorderEvents out and the rest still compiles
+ * @author Dana Akerman
+ */
+public class Tracing
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final int TURN = 0;       // a turn of a player, the subject is the player
+    public static final int SQUARE = 1;     // a player arrived at a square, the subject is the kind of square
+    public static final int CARD = 2;       // a card was drawn and played, the subject is the deck
+    public static final int SETTLEMENT = 3;  // a ledger transaction, the subject is the settlement kind
+    public static final int PROMPT = 4;     // the game waited for a player, the subject is the player
+    public static final int EVENT = 5;      // an event was added, the subject is its player
+    public static final int RPC = 6;        // a call of the web service, the subject is the operation
+    public static final int NUM_TYPES = 7;
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final Recorder recorder = loadRecorder(); // null without the flight recorder
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * not used, this class has only static functions
+     */
+    private Tracing(){}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * begins a traced piece of work
+     * @param type the type of the work, TURN to RPC
+     * @return the trace to pass to end(), null if the type isn't recorded
+     */
+    public static Object begin(int type)
+    {
+        return (recorder != null) ? recorder.begin(type) : null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * ends a traced piece of work
+     * @param trace what begin() returned, nothing is done if it's null
+     * @param game the name of the game, or null
+     * @param subject what the work was about, see the types
+     * @param value a number the type gives, the settlement kind's legs, the event id etc.
+     */
+    public static void end(Object trace, String game, String subject, long value)
+    {
+        if(trace != null)
+        {
+            recorder.end(trace, game, subject, value);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * loads the flight recorder events if the jvm has the flight recorder api, it doesn't before java 8u262
+     * @return the recorder, or null
+     */
+    private static Recorder loadRecorder()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("gameLogic.tracing.RecorderEvents").newInstance();
+        }
+        catch(ClassNotFoundException ex)
+        {
+            return null; // no flight recorder, or the build left RecorderEvents out
+        }
+        catch(InstantiationException ex)
+        {
+            return null;
+        }
+        catch(IllegalAccessException ex)
+        {
+            return null;
+        }
+        catch(LinkageError ex)
+        {
+            return null;
+        }
+    }
+}
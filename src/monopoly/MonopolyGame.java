@@ -1,13 +1,18 @@
 package monopoly;
 
 
+import gameLogic.CommandLog;
 import gameLogic.GameManager;
 import gameLogic.Game;
+import gameLogic.MemoryBudget;
+import gameLogic.logging.GameLog;
+import gameLogic.persistence.GameArchive;
 import gameLogic.players.HumanPlayer;
 import gameLogic.players.Player;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import monopoly.cluster.GameRouter;
+import monopoly.results.CommandResult;
 import monopoly.results.EventArrayResult;
 import monopoly.results.GameDetailsResult;
 import monopoly.results.IDResult;
@@ -22,10 +27,38 @@ import monopoly.results.PlayerDetailsResult;
 public class MonopolyGame 
 {
     
+    // constants
+    //---------------------------------------------------------------------------
+    
+    private static final int MAX_COMMAND_KEY = 128;
+    private static final int MAX_COMMAND_WAIT = 10000; // ms
+    
+    // statics
+    //---------------------------------------------------------------------------
+    
+    private static final OperationMetrics getGameBoardSchemaMetrics = new OperationMetrics("getGameBoardSchema");
+    private static final OperationMetrics getGameBoardXMLMetrics = new OperationMetrics("getGameBoardXML");
+    private static final OperationMetrics startGameMetrics = new OperationMetrics("startGame");
+    private static final OperationMetrics getGameDetailsMetrics = new OperationMetrics("getGameDetails");
+    private static final OperationMetrics getWaitingGamesMetrics = new OperationMetrics("getWaitingGames");
+    private static final OperationMetrics getActiveGamesMetrics = new OperationMetrics("getActiveGames");
+    private static final OperationMetrics joinGameMetrics = new OperationMetrics("joinGame");
+    private static final OperationMetrics getPlayersDetailsMetrics = new OperationMetrics("getPlayersDetails");
+    private static final OperationMetrics getAllEventsMetrics = new OperationMetrics("getAllEvents");
+    private static final OperationMetrics setDiceRollResultsMetrics = new OperationMetrics("setDiceRollResults");
+    private static final OperationMetrics setDiceRollResultsOnceMetrics = new OperationMetrics("setDiceRollResultsOnce");
+    private static final OperationMetrics setDiceRollResultsAndWaitMetrics = new OperationMetrics("setDiceRollResultsAndWait");
+    private static final OperationMetrics resignMetrics = new OperationMetrics("resign");
+    private static final OperationMetrics resignOnceMetrics = new OperationMetrics("resignOnce");
+    private static final OperationMetrics buyMetrics = new OperationMetrics("buy");
+    private static final OperationMetrics buyOnceMetrics = new OperationMetrics("buyOnce");
+    private static final OperationMetrics buyAndWaitMetrics = new OperationMetrics("buyAndWait");
+    
     // data members
     //---------------------------------------------------------------------------
     
     private static GameManager _gameManager = GameManager.getInstance();
+    private static GameRouter _router = GameRouter.fromProperties(new MonopolyGame()); // null unless the server is a node of a cluster
     
     // methods
     //---------------------------------------------------------------------------
@@ -35,6 +68,20 @@ public class MonopolyGame
      * @return the game board schema as string
      */
     public String getGameBoardSchema() 
+    {
+        long start = System.nanoTime();
+        Object trace = getGameBoardSchemaMetrics.begin();
+        return getGameBoardSchemaMetrics.recordLatency(start, trace, this.serveGetGameBoardSchema());
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * gets the game board schema
+     * the call isn't recorded, the operation that called it records it
+     * @return the game board schema as string
+     */
+    private String serveGetGameBoardSchema() 
     {
         try
         {
@@ -42,7 +89,7 @@ public class MonopolyGame
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in get game board schema", e);
+            GameLog.error("error in get game board schema", e);
             return "";
         }
     }
@@ -54,6 +101,20 @@ public class MonopolyGame
      * @return the game board XML as string
      */
     public String getGameBoardXML() 
+    {
+        long start = System.nanoTime();
+        Object trace = getGameBoardXMLMetrics.begin();
+        return getGameBoardXMLMetrics.recordLatency(start, trace, this.serveGetGameBoardXML());
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * gets the game board XML
+     * the call isn't recorded, the operation that called it records it
+     * @return the game board XML as string
+     */
+    private String serveGetGameBoardXML() 
     {
         try
         {
@@ -61,7 +122,7 @@ public class MonopolyGame
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in get game board xml", e);
+            GameLog.error("error in get game board xml", e);
             return "";
         }
     }
@@ -77,13 +138,47 @@ public class MonopolyGame
      * @return a Monopoly result
      */
     public MonopolyResult startGame (String gameName, int humanPlayers, int computerizedPlayers, boolean useAutomaticDiceRoll) 
+    {
+        long start = System.nanoTime();
+        Object trace = startGameMetrics.begin();
+        return startGameMetrics.record(start, trace, this.serveStartGame(gameName, humanPlayers, computerizedPlayers, useAutomaticDiceRoll));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * creates a new game with the given parameters
+     * the call isn't recorded, the operation that called it records it
+     * @param gameName the name of the game
+     * @param humanPlayers the number of human players
+     * @param computerizedPlayers the number of computerized players
+     * @param useAutomaticDiceRoll true if use automatic dice roll
+     * @return a Monopoly result
+     */
+    private MonopolyResult serveStartGame (String gameName, int humanPlayers, int computerizedPlayers, boolean useAutomaticDiceRoll) 
     {
         try
         {
+            String owner = getOwner(gameName);
+            if(owner != null)
+            {
+                return (MonopolyResult) _router.forward(owner, "startGame", new Object[] {gameName, humanPlayers, computerizedPlayers, useAutomaticDiceRoll});
+            }
+            
+            if(_gameManager.isStandby())
+            {
+                return new MonopolyResult("this server is a standby");
+            }
+        
             if(_gameManager.isGameExists())
             {
                 return new MonopolyResult("only one game allowed");
             }
+            
+            if(!MemoryBudget.canStartGame())
+            {
+                return new MonopolyResult("not enough memory for a new game");
+            }
         
             if(gameName == null || gameName.isEmpty())
             {
@@ -107,12 +202,20 @@ public class MonopolyGame
             }
         
             _gameManager.startGame("monopoly.xml", gameName, humanPlayers, computerizedPlayers, useAutomaticDiceRoll);
+            if(_router != null)
+            {
+                _router.publish(); // the other nodes send the players here right away
+            }
         
             return new MonopolyResult();
         }
+        catch(IOException e)
+        {
+            return new MonopolyResult("the server of this game can't be reached");
+        }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error start game", e);
+            GameLog.error(gameName, "error in start game", e);
             return new MonopolyResult("unknown error");
         }
     }
@@ -125,9 +228,30 @@ public class MonopolyGame
      * @return a GameDetailsResult
      */
     public GameDetailsResult getGameDetails (String gameName)
+    {
+        long start = System.nanoTime();
+        Object trace = getGameDetailsMetrics.begin();
+        return getGameDetailsMetrics.record(start, trace, this.serveGetGameDetails(gameName));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * gets the details of the game with the given name
+     * the call isn't recorded, the operation that called it records it
+     * @param gameName the name of the game
+     * @return a GameDetailsResult
+     */
+    private GameDetailsResult serveGetGameDetails (String gameName) 
     {
         try
         {
+            String owner = getOwner(gameName);
+            if(owner != null)
+            {
+                return (GameDetailsResult) _router.forward(owner, "getGameDetails", new Object[] {gameName});
+            }
+            
             if(gameName == null)
             {
                 return new GameDetailsResult("illegal game name");
@@ -136,7 +260,7 @@ public class MonopolyGame
             // if there is no game, or the name is wrong
             if(!_gameManager.isGameExists() || !(_gameManager.isGameSameName(gameName)))
             {
-                return new GameDetailsResult("this game does not exist");
+                return new GameDetailsResult(getNoGameError("this game does not exist"));
             }
         
             String status = _gameManager.getGameStatus();
@@ -146,9 +270,13 @@ public class MonopolyGame
             boolean autoDice = _gameManager.getGameAutoDice();
             return new GameDetailsResult(status, totalHuman, comp, curHuman, autoDice);
         }
+        catch(IOException e)
+        {
+            return new GameDetailsResult("the server of this game can't be reached");
+        }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in get game details", e);
+            GameLog.error(gameName, "error in get game details", e);
             return new GameDetailsResult("unknown error");
         }
     }
@@ -161,9 +289,29 @@ public class MonopolyGame
      * or if there's an exception
      */
     public String[] getWaitingGames() 
+    {
+        long start = System.nanoTime();
+        Object trace = getWaitingGamesMetrics.begin();
+        return getWaitingGamesMetrics.recordLatency(start, trace, this.serveGetWaitingGames());
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * gets the waiting games
+     * the call isn't recorded, the operation that called it records it
+     * @return the waiting games or empty array if there are no waiting games
+     * or if there's an exception
+     */
+    private String[] serveGetWaitingGames() 
     {
         try
         {
+            if(_router != null)
+            {
+                return _router.getWaitingGames();
+            }
+            
             if(!_gameManager.isGameExists())
             {
                 return new String[0]; // empty string array
@@ -178,7 +326,7 @@ public class MonopolyGame
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in get waiting games", e);
+            GameLog.error("error in get waiting games", e);
             return new String[0];
         }
     }
@@ -191,9 +339,29 @@ public class MonopolyGame
      * or if there's an exception
      */
     public String[] getActiveGames() 
+    {
+        long start = System.nanoTime();
+        Object trace = getActiveGamesMetrics.begin();
+        return getActiveGamesMetrics.recordLatency(start, trace, this.serveGetActiveGames());
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * gets the active games
+     * the call isn't recorded, the operation that called it records it
+     * @return the active games or empty array if there are no active games
+     * or if there's an exception
+     */
+    private String[] serveGetActiveGames() 
     {
         try
         {
+            if(_router != null)
+            {
+                return _router.getActiveGames();
+            }
+            
             if(!_gameManager.isGameExists())
             {
                 return new String[0]; // empty string array
@@ -208,7 +376,7 @@ public class MonopolyGame
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in get active games", e);
+            GameLog.error("error in get active games", e);
             return new String[0];
         }
     }
@@ -223,16 +391,39 @@ public class MonopolyGame
      * @return IDResult
      */
     public IDResult joinGame (String gameName, String playerName) 
+    {
+        long start = System.nanoTime();
+        Object trace = joinGameMetrics.begin();
+        return joinGameMetrics.record(start, trace, this.serveJoinGame(gameName, playerName));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * joins the player with the given name to the game with the given name
+     * gives the player a unique id to this specific game
+     * the call isn't recorded, the operation that called it records it
+     * @param gameName the name of the game
+     * @param playerName the name of the player
+     * @return IDResult
+     */
+    private IDResult serveJoinGame (String gameName, String playerName) 
     {    
         try
         {
+            String owner = getOwner(gameName);
+            if(owner != null)
+            {
+                return (IDResult) _router.forward(owner, "joinGame", new Object[] {gameName, playerName});
+            }
+            
             if(gameName == null)
             {
                 return new IDResult("illegal game name");
             }   
             if((!_gameManager.isGameExists()) || !(_gameManager.isGameSameName(gameName)))
             {
-                return new IDResult("this game does not exist");
+                return new IDResult(getNoGameError("this game does not exist"));
             }
             if(_gameManager.isGameActive())
             {
@@ -248,11 +439,20 @@ public class MonopolyGame
             {
                 _gameManager.runGame();
             }
+            if(_router != null)
+            {
+                _router.publish();
+                id = _router.toClusterID(id);
+            }
             return new IDResult(id);
         }
+        catch(IOException e)
+        {
+            return new IDResult("the server of this game can't be reached");
+        }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in join game", e);
+            GameLog.error(gameName, playerName, GameLog.NO_EVENT, "error in join game", e);
             return new IDResult("unknown error");
         }
                
@@ -266,9 +466,30 @@ public class MonopolyGame
      * @return a PlayerDetailsResult
      */
     public PlayerDetailsResult getPlayersDetails(String gameName) 
+    {
+        long start = System.nanoTime();
+        Object trace = getPlayersDetailsMetrics.begin();
+        return getPlayersDetailsMetrics.record(start, trace, this.serveGetPlayersDetails(gameName));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * gets the players details
+     * the call isn't recorded, the operation that called it records it
+     * @param gameName the name of the game
+     * @return a PlayerDetailsResult
+     */
+    private PlayerDetailsResult serveGetPlayersDetails(String gameName) 
     {
         try
         {
+            String owner = getOwner(gameName);
+            if(owner != null)
+            {
+                return (PlayerDetailsResult) _router.forward(owner, "getPlayersDetails", new Object[] {gameName});
+            }
+            
             if(gameName == null)
             {
                 return new PlayerDetailsResult("illegal game name");
@@ -276,10 +497,11 @@ public class MonopolyGame
         
             if(!_gameManager.isGameExists() || !(_gameManager.isGameSameName(gameName)))
             {
-                return new PlayerDetailsResult("this game does not exist");
+                return new PlayerDetailsResult(getNoGameError("this game does not exist"));
             }
         
             ArrayList<Player> players = _gameManager.getGamePlayers();
+            int cash[] = _gameManager.getGamePlayersCash(); // consistent across players
             String names[] = new String[players.size()];
             boolean isHuman[] = new boolean[players.size()];
             boolean isActive[] = new boolean[players.size()];
@@ -291,14 +513,18 @@ public class MonopolyGame
                 names[i] = curr.getName();
                 isHuman[i] = curr.isHuman();
                 isActive[i] = curr.isInGame();
-                money[i] = curr.getCash();
+                money[i] = (i < cash.length) ? cash[i] : curr.getCash();
             }
         
             return new PlayerDetailsResult(names, isHuman, isActive, money);
         }
+        catch(IOException e)
+        {
+            return new PlayerDetailsResult("the server of this game can't be reached");
+        }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in get players details", e);
+            GameLog.error(gameName, "error in get players details", e);
             return new PlayerDetailsResult("unknown error");
         }
     }
@@ -311,35 +537,56 @@ public class MonopolyGame
      * @return EventArrayResult
      */
     public EventArrayResult getAllEvents (int eventID)
+    {
+        long start = System.nanoTime();
+        Object trace = getAllEventsMetrics.begin();
+        EventArrayResult result = this.serveGetAllEvents(eventID);
+        recordDelivery(eventID, result, false);
+        return getAllEventsMetrics.record(start, trace, result);
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * gets the events of the game form the given eventID
+     * the call isn't recorded, the operation that called it records it
+     * @param eventID the last event id of the client
+     * @return EventArrayResult
+     */
+    private EventArrayResult serveGetAllEvents (int eventID) 
     {
         
         try
         {
+            // the clients of a game that is over read its last events from the archive
+            GameArchive finished = _gameManager.getLastFinishedGame();
         
+            if(!_gameManager.isGameExists() && _gameManager.getMovedTo() == null && finished != null)
+            {
+                if(eventID < 0 || eventID > finished.getNumEvents())
+                {
+                    return new EventArrayResult("illegal event id");
+                }
+                return new EventArrayResult(finished.getEvents(eventID));
+            }
+            
             if(!_gameManager.isGameExists() || !_gameManager.isGameActive())
             {
-                return new EventArrayResult("no active game");
+                return new EventArrayResult(getNoGameError("no active game"));
             }
         
-            ArrayList<Event> events = _gameManager.getGameEvents();
+            Event[] toSend = _gameManager.getGameEvents(eventID);
         
-            if(eventID < 0 || eventID > events.size())
+            if(toSend == null)
             {
                 return new EventArrayResult("illegal event id");
             }
-       
-            Event[] toSend = new Event[events.size() - eventID];
-        
-            for(int i = 0; i < toSend.length; i++)
-            {
-                toSend[i] = events.get(i + eventID);
-            }
         
             return new EventArrayResult(toSend); 
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in get all events", e);
+            GameLog.error(_gameManager.getGameName(), null, eventID, "error in get all events", e);
             return new EventArrayResult("unknown error");
         }
        
@@ -356,13 +603,168 @@ public class MonopolyGame
      * @return MonopolyResult
      */
     public MonopolyResult setDiceRollResults (int playerID, int eventID, int dice1, int dice2) 
+    {
+        long start = System.nanoTime();
+        Object trace = setDiceRollResultsMetrics.begin();
+        return setDiceRollResultsMetrics.record(start, trace, this.serveSetDiceRollResultsOnce(playerID, eventID, dice1, dice2, null));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * sets the dice results once, a retry with the same command key gets the result of the first command
+     * without running it again
+     * @param playerID the id of the player
+     * @param eventID the current event id
+     * @param dice1 the first dice
+     * @param dice2 the second dice
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @return MonopolyResult
+     */
+    public MonopolyResult setDiceRollResultsOnce (int playerID, int eventID, int dice1, int dice2, String commandKey) 
+    {
+        long start = System.nanoTime();
+        Object trace = setDiceRollResultsOnceMetrics.begin();
+        return setDiceRollResultsOnceMetrics.record(start, trace, this.serveSetDiceRollResultsOnce(playerID, eventID, dice1, dice2, commandKey));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * sets the dice results once, a retry with the same command key gets the result of the first command
+     * without running it again
+     * the call isn't recorded, the operation that called it records it
+     * @param playerID the id of the player
+     * @param eventID the current event id
+     * @param dice1 the first dice
+     * @param dice2 the second dice
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @return MonopolyResult
+     */
+    private MonopolyResult serveSetDiceRollResultsOnce (int playerID, int eventID, int dice1, int dice2, String commandKey) 
+    {
+        try
+        {
+            String owner = getOwner(playerID);
+            if(owner != null)
+            {
+                return (MonopolyResult) _router.forward(owner, "setDiceRollResultsOnce", new Object[] {playerID, eventID, dice1, dice2, commandKey});
+            }
+            
+            String key = getCommandKey(playerID, commandKey, "dice " + eventID + " " + dice1 + " " + dice2);
+            if(key == null)
+            {
+                return new MonopolyResult("illegal command key");
+            }
+            
+            String done = _gameManager.beginGameCommand(key);
+            if(done != null)
+            {
+                return toResult(done); // a retry
+            }
+            
+            MonopolyResult result = null;
+            try
+            {
+                result = this.executeSetDiceRollResults(playerID, eventID, dice1, dice2);
+                return result;
+            }
+            finally
+            {
+                _gameManager.endGameCommand(toCommand(CommandLog.DICE, key, result), key);
+            }
+        }
+        catch(IOException e)
+        {
+            return new MonopolyResult("the server of this game can't be reached");
+        }
+        catch(Exception e)
+        {
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, eventID, "error in set dice roll results", e);
+            return new MonopolyResult("unknown error");
+        }
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * sets the dice results once and waits until the game asks a player for something again, or the wait time is over.
+     * the client gets the events its command caused with the result, without asking for them
+     * @param playerID the id of the player
+     * @param eventID the current event id
+     * @param dice1 the first dice
+     * @param dice2 the second dice
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @param waitMillis the longest time to wait for the game, 0 returns the events so far
+     * @return CommandResult with the events after eventID
+     */
+    public CommandResult setDiceRollResultsAndWait (int playerID, int eventID, int dice1, int dice2, String commandKey, int waitMillis) 
+    {
+        long start = System.nanoTime();
+        Object trace = setDiceRollResultsAndWaitMetrics.begin();
+        return setDiceRollResultsAndWaitMetrics.record(start, trace, this.serveSetDiceRollResultsAndWait(playerID, eventID, dice1, dice2, commandKey, waitMillis));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * sets the dice results once and waits until the game asks a player for something again, or the wait time is over.
+     * the client gets the events its command caused with the result, without asking for them
+     * the call isn't recorded, the operation that called it records it
+     * @param playerID the id of the player
+     * @param eventID the current event id
+     * @param dice1 the first dice
+     * @param dice2 the second dice
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @param waitMillis the longest time to wait for the game, 0 returns the events so far
+     * @return CommandResult with the events after eventID
+     */
+    private CommandResult serveSetDiceRollResultsAndWait (int playerID, int eventID, int dice1, int dice2, String commandKey, int waitMillis) 
+    {
+        try
+        {
+            String owner = getOwner(playerID);
+            if(owner != null)
+            {
+                return (CommandResult) _router.forward(owner, "setDiceRollResultsAndWait", new Object[] {playerID, eventID, dice1, dice2, commandKey, waitMillis});
+            }
+            
+            if(waitMillis < 0 || waitMillis > MAX_COMMAND_WAIT)
+            {
+                return new CommandResult("illegal wait time");
+            }
+            
+            return this.getCommandEvents(this.serveSetDiceRollResultsOnce(playerID, eventID, dice1, dice2, commandKey), eventID, waitMillis);
+        }
+        catch(IOException e)
+        {
+            return new CommandResult("the server of this game can't be reached");
+        }
+        catch(Exception e)
+        {
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, eventID, "error in set dice roll results and wait", e);
+            return new CommandResult("unknown error");
+        }
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * sets the dice results, the command wasn't done before
+     * @param playerID the id of the player
+     * @param eventID the current event id
+     * @param dice1 the first dice
+     * @param dice2 the second dice
+     * @return MonopolyResult
+     */
+    private MonopolyResult executeSetDiceRollResults (int playerID, int eventID, int dice1, int dice2) 
     {
       
         try
         {
             if(!_gameManager.isGameExists() || !_gameManager.isGameActive())
             {
-                return new MonopolyResult("no active game");
+                return new MonopolyResult(getNoGameError("no active game"));
             }
         
             Event last = _gameManager.getLastGameEvent();
@@ -372,7 +774,7 @@ public class MonopolyGame
                 return new MonopolyResult("illegal event id");
             }
         
-            HumanPlayer player =  _gameManager.getGamePlayerById(playerID);
+            HumanPlayer player =  _gameManager.getGamePlayerById(getLocalID(playerID));
         
             // invalid player id
             if(player == null)
@@ -403,7 +805,7 @@ public class MonopolyGame
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in set dice roll results", e);
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, eventID, "error in set dice roll results", e);
             return new MonopolyResult("unknown error");
         }
         
@@ -417,16 +819,100 @@ public class MonopolyGame
      * @return MonopolyResult
      */
     public MonopolyResult resign (int playerID) 
+    {
+        long start = System.nanoTime();
+        Object trace = resignMetrics.begin();
+        return resignMetrics.record(start, trace, this.serveResignOnce(playerID, null));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * resigns from the game once, a retry with the same command key gets the result of the first command
+     * without running it again
+     * @param playerID the player id
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @return MonopolyResult
+     */
+    public MonopolyResult resignOnce (int playerID, String commandKey) 
+    {
+        long start = System.nanoTime();
+        Object trace = resignOnceMetrics.begin();
+        return resignOnceMetrics.record(start, trace, this.serveResignOnce(playerID, commandKey));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * resigns from the game once, a retry with the same command key gets the result of the first command
+     * without running it again
+     * the call isn't recorded, the operation that called it records it
+     * @param playerID the player id
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @return MonopolyResult
+     */
+    private MonopolyResult serveResignOnce (int playerID, String commandKey) 
+    {
+        try
+        {
+            String owner = getOwner(playerID);
+            if(owner != null)
+            {
+                return (MonopolyResult) _router.forward(owner, "resignOnce", new Object[] {playerID, commandKey});
+            }
+            
+            String key = getCommandKey(playerID, commandKey, "resign");
+            if(key == null)
+            {
+                return new MonopolyResult("illegal command key");
+            }
+            
+            String done = _gameManager.beginGameCommand(key);
+            if(done != null)
+            {
+                return toResult(done); // a retry
+            }
+            
+            MonopolyResult result = null;
+            try
+            {
+                result = this.executeResign(playerID);
+                return result;
+            }
+            finally
+            {
+                _gameManager.endGameCommand(toCommand(CommandLog.RESIGN, key, result), key);
+            }
+        }
+        catch(IOException e)
+        {
+            return new MonopolyResult("the server of this game can't be reached");
+        }
+        catch(Exception e)
+        {
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, GameLog.NO_EVENT, "error in resign", e);
+            return new MonopolyResult("unknown error");
+        }
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * resigns from the game, the command wasn't done before
+     * @param playerID the player id
+     * @return MonopolyResult
+     */
+    private MonopolyResult executeResign (int playerID) 
     {
         
         try
         {
             if(!_gameManager.isGameExists() || !_gameManager.isGameActive())
             {
-                return new MonopolyResult("no active game");
+                return new MonopolyResult(getNoGameError("no active game"));
             }
         
-            HumanPlayer player = _gameManager.getGamePlayerById(playerID);
+            HumanPlayer player = _gameManager.getGamePlayerById(getLocalID(playerID));
         
             if(player == null)
             {
@@ -443,7 +929,7 @@ public class MonopolyGame
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in resign", e);
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, GameLog.NO_EVENT, "error in resign", e);
             return new MonopolyResult("unknown error");
         }
     }
@@ -458,13 +944,163 @@ public class MonopolyGame
      * @return MonopolyResult
      */
     public MonopolyResult buy (int playerID, int eventID, boolean buy) 
+    {
+        long start = System.nanoTime();
+        Object trace = buyMetrics.begin();
+        return buyMetrics.record(start, trace, this.serveBuyOnce(playerID, eventID, buy, null));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * buys an asset or a house once, a retry with the same command key gets the result of the first command
+     * without running it again
+     * @param playerID the player's id
+     * @param eventID the current event id
+     * @param buy the buy decision
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @return MonopolyResult
+     */
+    public MonopolyResult buyOnce (int playerID, int eventID, boolean buy, String commandKey) 
+    {
+        long start = System.nanoTime();
+        Object trace = buyOnceMetrics.begin();
+        return buyOnceMetrics.record(start, trace, this.serveBuyOnce(playerID, eventID, buy, commandKey));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * buys an asset or a house once, a retry with the same command key gets the result of the first command
+     * without running it again
+     * the call isn't recorded, the operation that called it records it
+     * @param playerID the player's id
+     * @param eventID the current event id
+     * @param buy the buy decision
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @return MonopolyResult
+     */
+    private MonopolyResult serveBuyOnce (int playerID, int eventID, boolean buy, String commandKey) 
+    {
+        try
+        {
+            String owner = getOwner(playerID);
+            if(owner != null)
+            {
+                return (MonopolyResult) _router.forward(owner, "buyOnce", new Object[] {playerID, eventID, buy, commandKey});
+            }
+            
+            String key = getCommandKey(playerID, commandKey, "buy " + eventID + " " + buy);
+            if(key == null)
+            {
+                return new MonopolyResult("illegal command key");
+            }
+            
+            String done = _gameManager.beginGameCommand(key);
+            if(done != null)
+            {
+                return toResult(done); // a retry
+            }
+            
+            MonopolyResult result = null;
+            try
+            {
+                result = this.executeBuy(playerID, eventID, buy);
+                return result;
+            }
+            finally
+            {
+                _gameManager.endGameCommand(toCommand(CommandLog.BUY, key, result), key);
+            }
+        }
+        catch(IOException e)
+        {
+            return new MonopolyResult("the server of this game can't be reached");
+        }
+        catch(Exception e)
+        {
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, eventID, "error in buy", e);
+            return new MonopolyResult("unknown error");
+        }
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * buys an asset or a house once and waits until the game asks a player for something again, or the wait time is over.
+     * the client gets the events its command caused with the result, without asking for them
+     * @param playerID the player's id
+     * @param eventID the current event id
+     * @param buy the buy decision
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @param waitMillis the longest time to wait for the game, 0 returns the events so far
+     * @return CommandResult with the events after eventID
+     */
+    public CommandResult buyAndWait (int playerID, int eventID, boolean buy, String commandKey, int waitMillis) 
+    {
+        long start = System.nanoTime();
+        Object trace = buyAndWaitMetrics.begin();
+        return buyAndWaitMetrics.record(start, trace, this.serveBuyAndWait(playerID, eventID, buy, commandKey, waitMillis));
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * buys an asset or a house once and waits until the game asks a player for something again, or the wait time is over.
+     * the client gets the events its command caused with the result, without asking for them
+     * the call isn't recorded, the operation that called it records it
+     * @param playerID the player's id
+     * @param eventID the current event id
+     * @param buy the buy decision
+     * @param commandKey the key the client gave the command, or null to know the retries by their arguments
+     * @param waitMillis the longest time to wait for the game, 0 returns the events so far
+     * @return CommandResult with the events after eventID
+     */
+    private CommandResult serveBuyAndWait (int playerID, int eventID, boolean buy, String commandKey, int waitMillis) 
+    {
+        try
+        {
+            String owner = getOwner(playerID);
+            if(owner != null)
+            {
+                return (CommandResult) _router.forward(owner, "buyAndWait", new Object[] {playerID, eventID, buy, commandKey, waitMillis});
+            }
+            
+            if(waitMillis < 0 || waitMillis > MAX_COMMAND_WAIT)
+            {
+                return new CommandResult("illegal wait time");
+            }
+            
+            return this.getCommandEvents(this.serveBuyOnce(playerID, eventID, buy, commandKey), eventID, waitMillis);
+        }
+        catch(IOException e)
+        {
+            return new CommandResult("the server of this game can't be reached");
+        }
+        catch(Exception e)
+        {
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, eventID, "error in buy and wait", e);
+            return new CommandResult("unknown error");
+        }
+    }
+    
+    //---------------------------------------------------------------------------
+
+    /**
+     * buys an asset or a house, the command wasn't done before
+     * @param playerID the player's id
+     * @param eventID the current event id
+     * @param buy the buy decision
+     * @return MonopolyResult
+     */
+    private MonopolyResult executeBuy (int playerID, int eventID, boolean buy) 
     {
         
         try
         {
             if(!_gameManager.isGameExists() || !_gameManager.isGameActive())
             {
-                return new MonopolyResult("no active game");
+                return new MonopolyResult(getNoGameError("no active game"));
             }
         
             Event last = _gameManager.getLastGameEvent();
@@ -474,7 +1110,7 @@ public class MonopolyGame
                 return new MonopolyResult("illegal event id");
             }
         
-            HumanPlayer player =  _gameManager.getGamePlayerById(playerID);
+            HumanPlayer player =  _gameManager.getGamePlayerById(getLocalID(playerID));
         
             // invalid player id
             if(player == null)
@@ -501,9 +1137,167 @@ public class MonopolyGame
         }
         catch(Exception e)
         {
-            Logger.getLogger(MonopolyGame.class.getName()).log(Level.SEVERE, "error in buy", e);
+            GameLog.error(_gameManager.getGameName(), "#" + playerID, eventID, "error in buy", e);
             return new MonopolyResult("unknown error");
         }
     }
     
+    /**
+     * waits for what a command caused and gets the events since the event it answered
+     * @param result the result of the command
+     * @param eventID the id of the event the command answered
+     * @param waitMillis the longest time to wait
+     * @return CommandResult
+     */
+    private CommandResult getCommandEvents(MonopolyResult result, int eventID, int waitMillis) throws InterruptedException
+    {
+        if(result.isError())
+        {
+            return new CommandResult(result.getErrorMessage());
+        }
+        
+        if(waitMillis > 0)
+        {
+            _gameManager.waitForGamePrompt(eventID, waitMillis);
+        }
+        
+        EventArrayResult events = this.serveGetAllEvents(eventID);
+        if(events.isError())
+        {
+            return new CommandResult(events.getErrorMessage());
+        }
+        recordDelivery(eventID, events, true);
+        
+        Event[] results = events.getResults();
+        return new CommandResult(results, (results.length > 0) ? results[results.length - 1].getEventID() : eventID);
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    // functions
+    //---------------------------------------------------------------------------
+    
+    /**
+     * gets the key a command is kept by in the command log of the game
+     * @param playerID the id of the player
+     * @param commandKey the key the client gave the command, or null
+     * @param arguments the command and its arguments, the key of a command without a client key
+     * @return the key, or null if the client key is illegal
+     */
+    private static String getCommandKey(int playerID, String commandKey, String arguments)
+    {
+        if(commandKey == null)
+        {
+            return playerID + " " + arguments;
+        }
+        if(commandKey.isEmpty() || commandKey.length() > MAX_COMMAND_KEY)
+        {
+            return null;
+        }
+        return playerID + " key " + commandKey; // the keys of different players never meet
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    /**
+     * gets the result of a command from its outcome in the command log
+     * @param outcome the outcome
+     * @return the result
+     */
+    private static MonopolyResult toResult(String outcome)
+    {
+        return outcome.equals(CommandLog.OK) ? new MonopolyResult() : new MonopolyResult(outcome);
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    /**
+     * gets the entry of the command log of a command that ran
+     * @param kind the kind of the command
+     * @param key the key of the command
+     * @param result the result of the command, null if it threw
+     * @return the entry, or null if the command failed unexpectedly and a retry runs it again
+     */
+    private static CommandLog.Command toCommand(byte kind, String key, MonopolyResult result)
+    {
+        if(result == null || "unknown error".equals(result.getErrorMessage()))
+        {
+            return null;
+        }
+        
+        String outcome = (result.isError() && result.getErrorMessage() != null) ? result.getErrorMessage() : CommandLog.OK;
+        return new CommandLog.Command(kind, key, outcome);
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    /**
+     * records the time the events a client got took to reach it, the events of a game that is over aren't recorded
+     * @param eventID the event id the client asked from
+     * @param result the events the client got
+     * @param waited true if the client waited for the events with its command, false if it polled for them
+     */
+    private static void recordDelivery(int eventID, EventArrayResult result, boolean waited)
+    {
+        if(!result.isError() && result.getResults().length > 0 && _gameManager.isGameExists())
+        {
+            _gameManager.gameEventsDelivered(eventID, result.getResults().length, waited);
+        }
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    /**
+     * gets the node of the cluster a game is on
+     * @param gameName the name of the game
+     * @return the address of the node, or null if the game is on this server
+     */
+    private static String getOwner(String gameName)
+    {
+        return (_router != null) ? _router.getOwner(gameName) : null;
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    /**
+     * gets the node of the cluster the game of a player is on
+     * @param playerID the id of the player
+     * @return the address of the node, or null if the game is on this server
+     */
+    private static String getOwner(int playerID)
+    {
+        return (_router != null) ? _router.getOwner(playerID) : null;
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    /**
+     * gets the id of a player in the game of this server
+     * @param playerID the id the client has, with the node index in a cluster
+     * @return the id in the game
+     */
+    private static int getLocalID(int playerID)
+    {
+        return (_router != null) ? GameRouter.toLocalID(playerID) : playerID;
+    }
+    
+    //---------------------------------------------------------------------------
+    
+    /**
+     * gets the error for a call about a game that isn't on this server, 
+     * the clients of a game that was migrated are told where it went
+     * @param error the error if no game was migrated
+     * @return the error
+     */
+    private static String getNoGameError(String error)
+    {
+        String movedTo = _gameManager.getMovedTo();
+        
+        if(movedTo == null)
+        {
+            return error;
+        }
+        return movedTo.length() == 0 ? "this game moved to another server" : "this game moved to " + movedTo;
+    }
+    
 }
\ No newline at end of file
@@ -2,13 +2,14 @@ package monopoly;
 
 
 import gameLogic.Game;
+import java.io.Serializable;
 
 
 /**
  * This class implements the Event interface
  * @author Dana Akerman
  */
-public class MyEvent implements Event
+public class MyEvent implements Event, Serializable // forwarded between the nodes of a cluster
 {
  
     // constants
@@ -34,6 +35,8 @@ public class MyEvent implements Event
     public static final int GET_OUT_OF_JAIL = 18;
     public static final int PAYMENT = 19;
     public static final int USED_JAIL_CARD = 20;
+    
+    private static final long serialVersionUID = 1L;
  
     // data members
     //-------------------------------------------------------
@@ -0,0 +1,128 @@
+package monopoly;
+
+
+import gameLogic.GameManager;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Histogram;
+import gameLogic.metrics.Metrics;
+import gameLogic.tracing.RequestTrace;
+import gameLogic.tracing.Tracing;
+import monopoly.results.MonopolyResult;
+
+
+/**
+ * this class records the latency and the errors of an operation of the web service.
+ * the latency is the histogram rpc.<operation>.nanos, and an error is counted by its kind in
+ * rpc.<operation>.errors.unknown for a failure of the server, .unreachable for a game on a node
+ * of the cluster that can't be reached, and .rejected for a call the game refused.
+ * recording doesn't allocate, it costs about the two System.nanoTime() calls and the count of the game.
+ * the call also ends the flight recorder trace of the operation and the request trace of the call,
+ * if they are traced, and is counted for the game in the memory
+ * @author Dana Akerman
+ */
+class OperationMetrics
+{
+
+    // constants
+    //---------------------------------------------------------------------------
+
+    public static final String UNKNOWN_ERROR = "unknown error";
+    public static final String UNREACHABLE_ERROR = "the server of this game can't be reached";
+
+    // statics
+    //---------------------------------------------------------------------------
+
+    private static final GameManager manager = GameManager.getInstance();
+
+    // data members
+    //---------------------------------------------------------------------------
+
+    private final String _operation;
+    private final Histogram _latency;
+    private final Counter _unknownErrors;
+    private final Counter _unreachableErrors;
+    private final Counter _rejectedErrors;
+
+    // c'tor
+    //---------------------------------------------------------------------------
+
+    /**
+     * constructs the metrics of an operation
+     * @param operation the name of the operation
+     */
+    public OperationMetrics(String operation)
+    {
+        _operation = operation;
+        _latency = Metrics.getHistogram("rpc." + operation + ".nanos");
+        _unknownErrors = Metrics.getCounter("rpc." + operation + ".errors.unknown");
+        _unreachableErrors = Metrics.getCounter("rpc." + operation + ".errors.unreachable");
+        _rejectedErrors = Metrics.getCounter("rpc." + operation + ".errors.rejected");
+    }
+
+    // methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * begins a call of the operation, its request trace starts if it's sampled
+     * @return the flight recorder trace of the call, to pass to record()
+     */
+    public Object begin()
+    {
+        RequestTrace.startRequest(_operation);
+        return Tracing.begin(Tracing.RPC);
+    }
+
+    //---------------------------------------------------------------------------
+
+    /**
+     * records a call of the operation and its error, if it has one
+     * @param startNanos the time the call started, from System.nanoTime()
+     * @param trace the trace of the call, from begin()
+     * @param result the result of the call
+     * @return the result
+     */
+    public <T extends MonopolyResult> T record(long startNanos, Object trace, T result)
+    {
+        _latency.recordSince(startNanos);
+        manager.gameCallServed();
+        Tracing.end(trace, null, _operation, result.isError() ? 1 : 0);
+        RequestTrace.endRequest(result.isError());
+
+        if(result.isError())
+        {
+            String error = result.getErrorMessage();
+
+            if(UNKNOWN_ERROR.equals(error))
+            {
+                _unknownErrors.increment();
+            }
+            else if(UNREACHABLE_ERROR.equals(error))
+            {
+                _unreachableErrors.increment();
+            }
+            else
+            {
+                _rejectedErrors.increment();
+            }
+        }
+        return result;
+    }
+
+    //---------------------------------------------------------------------------
+
+    /**
+     * records a call of an operation that has no errors
+     * @param startNanos the time the call started, from System.nanoTime()
+     * @param trace the trace of the call, from begin()
+     * @param result the result of the call
+     * @return the result
+     */
+    public <T> T recordLatency(long startNanos, Object trace, T result)
+    {
+        _latency.recordSince(startNanos);
+        manager.gameCallServed();
+        Tracing.end(trace, null, _operation, 0);
+        RequestTrace.endRequest(false);
+        return result;
+    }
+}
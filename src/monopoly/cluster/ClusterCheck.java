@@ -0,0 +1,245 @@
+package monopoly.cluster;
+
+
+import gameLogic.metrics.Metrics;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import monopoly.MonopolyGame;
+import monopoly.results.GameDetailsResult;
+import monopoly.results.IDResult;
+import monopoly.results.MonopolyResult;
+import monopoly.results.PlayerDetailsResult;
+
+
+/**
+ * this class checks a cluster of nodes on one machine. this process is the first node and keeps
+ * the directory of the cluster in the memory, the other nodes are processes it starts with the same
+ * class path. it starts a game on every node through the first node, then checks that the directory
+ * lists all the games, that a player joins a game on another node, is read back and resigns through
+ * the first node, and that a call carrying a class the nodes don't read is refused.
+ * the nodes listen on localhost, it exits with 1 if a check fails.
+ * run it with: java monopoly.cluster.ClusterCheck [nodes] [first port]
+ * @author Dana Akerman
+ */
+public class ClusterCheck
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final String NODE = "node"; // the argument of a node this check starts
+    private static final long START_MILLIS = 3000; // the time the started nodes take to listen
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static int failures = 0;
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * runs the check, or a node the check started
+     * @param args number of nodes and the port of the first node, all optional
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if(args.length > 0 && args[0].equals(NODE))
+        {
+            runNode();
+            return;
+        }
+
+        int numNodes = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : 7101;
+
+        String[] nodes = new String[numNodes];
+        for(int i = 0; i < numNodes; i++)
+        {
+            nodes[i] = "127.0.0.1:" + (port + i);
+        }
+        String list = join(nodes);
+
+        System.setProperty(GameRouter.NODES_PROPERTY, list);
+        System.setProperty(GameRouter.SELF_PROPERTY, nodes[0]);
+        MonopolyGame service = new MonopolyGame(); // the directory is up before the other nodes publish
+
+        ArrayList<Process> processes = new ArrayList<Process>();
+        try
+        {
+            for(int i = 1; i < numNodes; i++)
+            {
+                processes.add(startNode(list, nodes[i]));
+            }
+            Thread.sleep(START_MILLIS);
+
+            check(service, nodes);
+        }
+        finally
+        {
+            for(int i = 0; i < processes.size(); i++)
+            {
+                processes.get(i).destroy();
+            }
+        }
+
+        System.out.println("cluster: " + numNodes + " nodes, " + failures + " checks failed");
+        System.exit((failures == 0) ? 0 : 1); // the game threads would keep this process running
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * runs the checks through the first node
+     */
+    private static void check(MonopolyGame service, String[] nodes) throws Exception
+    {
+        // a game on every node, named for the node its name hashes to
+        HashRing ring = new HashRing(HashRing.DEFAULT_POINTS);
+        for(int i = 0; i < nodes.length; i++)
+        {
+            ring.addNode(nodes[i]);
+        }
+
+        String[] games = new String[nodes.length];
+        for(int i = 0; i < nodes.length; i++)
+        {
+            int k = 0;
+            while(!ring.getNode("game" + k).equals(nodes[i]))
+            {
+                k++;
+            }
+            games[i] = "game" + k;
+        }
+
+        for(int i = 0; i < games.length; i++)
+        {
+            MonopolyResult result = service.startGame(games[i], 1, 1, true);
+            expect(!result.isError(), "start " + games[i] + " on " + nodes[i] + ", " + result.getErrorMessage());
+        }
+
+        Thread.sleep(2 * GameRouter.PUBLISH_MILLIS);
+        List<String> waiting = Arrays.asList(service.getWaitingGames());
+        expect(waiting.containsAll(Arrays.asList(games)), "the directory lists " + waiting);
+
+        // a player of a game on the last node
+        String game = games[games.length - 1];
+        GameDetailsResult details = service.getGameDetails(game);
+        expect(!details.isError() && details.getTotalHumanPlayers() == 1, "details of " + game + ", " + details.getErrorMessage());
+
+        IDResult id = service.joinGame(game, "alice");
+        expect(!id.isError(), "join " + game + ", " + id.getErrorMessage());
+        expect((id.getResult() >>> GameRouter.PLAYER_ID_BITS) == nodes.length - 1, "the id " + id.getResult() + " of the node of " + game);
+
+        PlayerDetailsResult players = service.getPlayersDetails(game);
+        expect(!players.isError() && Arrays.asList(players.getNames()).contains("alice"),
+                "players of " + game + ", " + players.getErrorMessage());
+
+        MonopolyResult resigned = service.resign(id.getResult());
+        expect(!resigned.isError(), "resign from " + game + ", " + resigned.getErrorMessage());
+        expect(Metrics.getCounter("cluster.forwarded").get() >= 4, "the calls were forwarded");
+
+        // a class the nodes don't read
+        NodeClient client = new NodeClient(nodes[1]);
+        try
+        {
+            client.call(NodeServer.GAME, "getGameDetails", new Object[] {new ArrayList<String>()});
+            expect(false, "a call with a list was read");
+        }
+        catch(IOException ex)
+        {
+            // refused, the node closed the connection
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * starts another node, a process of this class
+     */
+    private static Process startNode(String nodes, String self) throws IOException
+    {
+        String java = System.getProperty("java.home") + "/bin/java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-D" + GameRouter.NODES_PROPERTY + "=" + nodes, "-D" + GameRouter.SELF_PROPERTY + "=" + self,
+                ClusterCheck.class.getName(), NODE);
+        builder.redirectErrorStream(true);
+        final Process process = builder.start();
+
+        Thread output = new Thread("output of " + self)
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    byte[] buffer = new byte[4096];
+                    InputStream in = process.getInputStream();
+                    for(int n = in.read(buffer); n >= 0; n = in.read(buffer))
+                    {
+                        System.out.write(buffer, 0, n);
+                    }
+                }
+                catch(IOException ex)
+                {
+                    // the node ended
+                }
+            }
+        };
+        output.setDaemon(true);
+        output.start();
+        return process;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * runs a node until the check that started it ends
+     */
+    private static void runNode() throws IOException
+    {
+        new MonopolyGame(); // the node serves the other nodes from here
+
+        while(System.in.read() >= 0)
+        {
+            // the input closes when the check ends
+        }
+        System.exit(0);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * counts a failed check
+     */
+    private static void expect(boolean ok, String what)
+    {
+        if(!ok)
+        {
+            failures++;
+            System.out.println("failed: " + what);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * joins the addresses of the nodes with commas
+     */
+    private static String join(String[] nodes)
+    {
+        StringBuilder list = new StringBuilder();
+        for(int i = 0; i < nodes.length; i++)
+        {
+            list.append((i == 0) ? "" : ",").append(nodes[i]);
+        }
+        return list.toString();
+    }
+}
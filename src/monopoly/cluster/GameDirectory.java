@@ -0,0 +1,38 @@
+package monopoly.cluster;
+
+
+/**
+ * this interface represents the directory of the games of the whole cluster.
+ * every node publishes its waiting and active games, and the router asks the
+ * directory where a game is before it hashes the name
+ * @author Dana Akerman
+ */
+public interface GameDirectory
+{
+    /**
+     * replaces the games of a node
+     * @param node the address of the node
+     * @param waitingGames the names of the waiting games on the node
+     * @param activeGames the names of the active games on the node
+     */
+    void publish(String node, String[] waitingGames, String[] activeGames);
+
+    /**
+     * gets the node a game is on
+     * @param gameName the name of the game
+     * @return the address of the node, or null if no node published the game
+     */
+    String getNode(String gameName);
+
+    /**
+     * gets the waiting games of all the nodes
+     * @return the names of the games, empty if there are none
+     */
+    String[] getWaitingGames();
+
+    /**
+     * gets the active games of all the nodes
+     * @return the names of the games, empty if there are none
+     */
+    String[] getActiveGames();
+}
@@ -0,0 +1,310 @@
+package monopoly.cluster;
+
+
+import gameLogic.GameManager;
+import gameLogic.logging.GameLog;
+import gameLogic.metrics.Counter;
+import gameLogic.metrics.Metrics;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Timer;
+import java.util.TimerTask;
+import monopoly.MonopolyGame;
+
+
+/**
+ * this class routes the operations of MonopolyGame to the node that owns the game, when the
+ * server runs as a node of a cluster. a game belongs to the node the directory lists it on, and
+ * a game that isn't listed, a new one, to the node its name hashes to on the ring. the player ids
+ * carry the index of their node, so the operations of a player are routed by the id. the events
+ * have nothing to route by, the clients read them from the node of their game.
+ * to try it on one machine, run every node with the same -Dmonopoly.cluster.nodes=localhost:7101,localhost:7102
+ * and its own -Dmonopoly.cluster.self, the first node keeps the directory unless
+ * -Dmonopoly.cluster.directory says otherwise
+ * @author Dana Akerman
+ */
+public class GameRouter
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String NODES_PROPERTY = "monopoly.cluster.nodes";         // host:port of every node, comma separated
+    public static final String SELF_PROPERTY = "monopoly.cluster.self";           // host:port of this node, one of the nodes
+    public static final String DIRECTORY_PROPERTY = "monopoly.cluster.directory"; // host:port of the node that keeps the directory
+
+    public static final int PLAYER_ID_BITS = 16;        // the bits of the id of a player in its game, the node index is above them
+    public static final long PUBLISH_MILLIS = 1000;     // the time between publishing the games of this node
+    public static final long EXPIRY_MILLIS = 3 * PUBLISH_MILLIS;
+
+    // statics
+    //-------------------------------------------------------------------
+
+    private static final ThreadLocal<Boolean> forwarded = new ThreadLocal<Boolean>();
+    private static final Counter forwards = Metrics.getCounter("cluster.forwarded");
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final String _self;
+    private final String[] _nodes;
+    private final int _selfIndex;
+    private final HashRing _ring;
+    private final GameDirectory _directory;
+    private final HashMap<String, NodeClient> _clients; // node -> the connection to it
+    private final Timer _timer;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new router
+     * @param nodes the addresses of all the nodes, the same list on every node
+     * @param self the address of this node
+     * @param directory the game directory of the cluster
+     * @throws NullPointerException if an argument is null
+     * @throws IllegalArgumentException if self isn't one of the nodes
+     */
+    public GameRouter(String[] nodes, String self, GameDirectory directory)
+    {
+        if(nodes == null)
+            throw new NullPointerException("nodes is null");
+        if(self == null)
+            throw new NullPointerException("self is null");
+        if(directory == null)
+            throw new NullPointerException("directory is null");
+
+        int selfIndex = -1;
+        _ring = new HashRing(HashRing.DEFAULT_POINTS);
+        for(int i = 0; i < nodes.length; i++)
+        {
+            _ring.addNode(nodes[i]);
+            if(nodes[i].equals(self))
+            {
+                selfIndex = i;
+            }
+        }
+        if(selfIndex < 0)
+            throw new IllegalArgumentException("illegal node, " + self + " isn't one of the nodes");
+
+        _nodes = nodes.clone();
+        _self = self;
+        _selfIndex = selfIndex;
+        _directory = directory;
+        _clients = new HashMap<String, NodeClient>();
+        _timer = new Timer("cluster directory", true);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts publishing the games of this node to the directory
+     */
+    public void start()
+    {
+        _timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                GameRouter.this.publish();
+            }
+        }, 0, PUBLISH_MILLIS);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the address of this node
+     * @return the address of this node
+     */
+    public String getSelf(){return _self;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the node that owns a game, a forwarded operation is always this node's
+     * @param gameName the name of the game
+     * @return the address of the node, null if it's this node
+     */
+    public String getOwner(String gameName)
+    {
+        if(isForwarded() || gameName == null)
+        {
+            return null;
+        }
+
+        String node = _directory.getNode(gameName);
+        if(node == null)
+        {
+            node = _ring.getNode(gameName);
+        }
+        return _self.equals(node) ? null : node;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the node that owns the game of a player, a forwarded operation is always this node's
+     * @param playerID the id of the player, as toClusterID made it
+     * @return the address of the node, null if it's this node
+     */
+    public String getOwner(int playerID)
+    {
+        int index = playerID >>> PLAYER_ID_BITS;
+
+        if(isForwarded() || index == _selfIndex || index >= _nodes.length)
+        {
+            return null;
+        }
+        return _nodes[index];
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * makes the id of a player in the game of this node an id of the cluster
+     * @param localID the id in the game
+     * @return the id with the index of this node
+     */
+    public int toClusterID(int localID){return (_selfIndex << PLAYER_ID_BITS) | localID;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * forwards an operation of MonopolyGame to the node that owns the game
+     * @param node the address of the node
+     * @param method the name of the operation
+     * @param args the arguments of the operation
+     * @return what the operation returned there
+     * @throws IOException if the node can't be reached
+     */
+    public Object forward(String node, String method, Object[] args) throws IOException
+    {
+        NodeClient client;
+
+        synchronized(_clients)
+        {
+            client = _clients.get(node);
+            if(client == null)
+            {
+                client = new NodeClient(node);
+                _clients.put(node, client);
+            }
+        }
+
+        forwards.increment();
+        return client.call(NodeServer.GAME, method, args);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the waiting games of the cluster
+     * @return the names of the games
+     */
+    public String[] getWaitingGames(){return _directory.getWaitingGames();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the active games of the cluster
+     * @return the names of the games
+     */
+    public String[] getActiveGames(){return _directory.getActiveGames();}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * publishes the games of this node to the directory, it's done periodically
+     * and right after a game starts or fills
+     */
+    public void publish()
+    {
+        GameManager manager = GameManager.getInstance();
+        String[] waiting = new String[0];
+        String[] active = new String[0];
+
+        try
+        {
+            if(manager.isGameExists())
+            {
+                String[] name = new String[] {manager.getGameName()};
+                if(manager.isGameActive())
+                {
+                    active = name;
+                }
+                else
+                {
+                    waiting = name;
+                }
+            }
+        }
+        catch(RuntimeException ex)
+        {
+            return; // the game ended meanwhile, the next publish has it right
+        }
+
+        _directory.publish(_self, waiting, active);
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * creates the router of this server from the system properties, and starts it
+     * with the server the other nodes forward to
+     * @param game the game service of this server
+     * @return the router, or null if this server isn't a node of a cluster
+     */
+    public static GameRouter fromProperties(MonopolyGame game)
+    {
+        String nodes = System.getProperty(NODES_PROPERTY);
+        if(nodes == null)
+        {
+            return null;
+        }
+
+        String[] list = nodes.split(",");
+        for(int i = 0; i < list.length; i++)
+        {
+            list[i] = list[i].trim();
+        }
+
+        String self = System.getProperty(SELF_PROPERTY, list[0]);
+        String directoryNode = System.getProperty(DIRECTORY_PROPERTY, list[0]);
+        MemoryGameDirectory kept = self.equals(directoryNode) ? new MemoryGameDirectory(EXPIRY_MILLIS) : null;
+        GameDirectory directory = (kept != null) ? kept : new RemoteGameDirectory(directoryNode);
+
+        GameRouter router = new GameRouter(list, self, directory);
+        new NodeServer(self, game, kept).start();
+        router.start();
+        GameLog.info("cluster node " + self + " of " + list.length + ", the directory is on " + directoryNode);
+        return router;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the id of a player in its game
+     * @param playerID the id of the player in the cluster
+     * @return the id in the game
+     */
+    public static int toLocalID(int playerID){return playerID & ((1 << PLAYER_ID_BITS) - 1);}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if the operation running on this thread was forwarded from another node
+     * @return true if it was forwarded
+     */
+    public static boolean isForwarded(){return forwarded.get() != null;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * marks the operations running on this thread as forwarded
+     */
+    static void setForwarded(){forwarded.set(Boolean.TRUE);}
+}
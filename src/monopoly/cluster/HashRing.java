@@ -0,0 +1,156 @@
+package monopoly.cluster;
+
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * this class is a consistent hash ring of the server nodes. every node is put on the ring
+ * at many points, and a key belongs to the first node point at or after its hash. adding
+ * a node takes about 1/N of the keys, all of them from the other nodes, and removing one
+ * spreads only its own keys over the rest. the hash is md5, the same in every process
+ * @author Dana Akerman
+ */
+public class HashRing
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final int DEFAULT_POINTS = 128; // points per node, fewer spread the keys less evenly
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final int _points;
+    private final TreeMap<Long, String> _ring; // point -> node
+    private final ArrayList<String> _nodes;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new empty ring
+     * @param points the number of points of every node
+     * @throws IllegalArgumentException if points isn't positive
+     */
+    public HashRing(int points)
+    {
+        if(points <= 0)
+            throw new IllegalArgumentException("illegal number of points");
+
+        _points = points;
+        _ring = new TreeMap<Long, String>();
+        _nodes = new ArrayList<String>();
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * adds a node to the ring
+     * @param node the address of the node
+     * @throws NullPointerException if node is null
+     */
+    public synchronized void addNode(String node)
+    {
+        if(node == null)
+            throw new NullPointerException("node is null");
+
+        if(_nodes.contains(node))
+        {
+            return;
+        }
+
+        _nodes.add(node);
+        for(int i = 0; i < _points; i++)
+        {
+            _ring.put(Long.valueOf(hash(node + "#" + i)), node);
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * removes a node from the ring, its keys go to the nodes that follow its points
+     * @param node the address of the node
+     */
+    public synchronized void removeNode(String node)
+    {
+        if(!_nodes.remove(node))
+        {
+            return;
+        }
+
+        for(int i = 0; i < _points; i++)
+        {
+            Long point = Long.valueOf(hash(node + "#" + i));
+            if(node.equals(_ring.get(point)))
+            {
+                _ring.remove(point);
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the node a key belongs to
+     * @param key the key, a game name
+     * @return the address of the node, or null if the ring is empty
+     */
+    public synchronized String getNode(String key)
+    {
+        if(_ring.isEmpty())
+        {
+            return null;
+        }
+
+        Map.Entry<Long, String> entry = _ring.ceilingEntry(Long.valueOf(hash(key)));
+        return (entry != null) ? entry.getValue() : _ring.firstEntry().getValue(); // the ring wraps around
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the nodes on the ring
+     * @return the addresses of the nodes, in the order they were added
+     */
+    public synchronized String[] getNodes(){return _nodes.toArray(new String[_nodes.size()]);}
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * hashes a key to a point on the ring
+     * @param key the key
+     * @return the first 8 bytes of the md5 of the key
+     */
+    public static long hash(String key)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            long hash = 0;
+
+            for(int i = 0; i < 8; i++)
+            {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        }
+        catch(NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException("md5 is missing", ex);
+        }
+        catch(UnsupportedEncodingException ex)
+        {
+            throw new IllegalStateException("utf-8 is missing", ex);
+        }
+    }
+}
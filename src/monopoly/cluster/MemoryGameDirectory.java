@@ -0,0 +1,175 @@
+package monopoly.cluster;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+
+/**
+ * this class keeps the game directory in the memory of one process, the node the other
+ * nodes reach it through. the games of a node that didn't publish for longer than the
+ * expiry time are dropped, so the games of a node that went away stop being listed
+ * @author Dana Akerman
+ */
+public class MemoryGameDirectory implements GameDirectory
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final long _expiryMillis;
+    private final HashMap<String, Games> _nodes; // node -> its games
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new empty directory
+     * @param expiryMillis the time the games of a node are kept without a publish
+     * @throws IllegalArgumentException if expiryMillis isn't positive
+     */
+    public MemoryGameDirectory(long expiryMillis)
+    {
+        if(expiryMillis <= 0)
+            throw new IllegalArgumentException("illegal expiry time");
+
+        _expiryMillis = expiryMillis;
+        _nodes = new HashMap<String, Games>();
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    @Override
+    public synchronized void publish(String node, String[] waitingGames, String[] activeGames)
+    {
+        if(node == null)
+            throw new NullPointerException("node is null");
+
+        _nodes.put(node, new Games(waitingGames, activeGames, System.currentTimeMillis()));
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public synchronized String getNode(String gameName)
+    {
+        this.expire();
+
+        Iterator<String> it = _nodes.keySet().iterator();
+        while(it.hasNext())
+        {
+            String node = it.next();
+            Games games = _nodes.get(node);
+
+            if(contains(games._waiting, gameName) || contains(games._active, gameName))
+            {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public synchronized String[] getWaitingGames()
+    {
+        this.expire();
+
+        ArrayList<String> names = new ArrayList<String>();
+        Iterator<Games> it = _nodes.values().iterator();
+        while(it.hasNext())
+        {
+            addAll(names, it.next()._waiting);
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public synchronized String[] getActiveGames()
+    {
+        this.expire();
+
+        ArrayList<String> names = new ArrayList<String>();
+        Iterator<Games> it = _nodes.values().iterator();
+        while(it.hasNext())
+        {
+            addAll(names, it.next()._active);
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * drops the games of the nodes that didn't publish in time
+     */
+    private void expire()
+    {
+        long now = System.currentTimeMillis();
+
+        Iterator<Games> it = _nodes.values().iterator();
+        while(it.hasNext())
+        {
+            if(now - it.next()._published > _expiryMillis)
+            {
+                it.remove();
+            }
+        }
+    }
+
+    // functions
+    //-------------------------------------------------------------------
+
+    /**
+     * checks if an array of names has the given name
+     */
+    private static boolean contains(String[] names, String name)
+    {
+        for(int i = 0; i < names.length; i++)
+        {
+            if(names[i].equals(name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * adds an array of names to a list
+     */
+    private static void addAll(ArrayList<String> list, String[] names)
+    {
+        for(int i = 0; i < names.length; i++)
+        {
+            list.add(names[i]);
+        }
+    }
+
+    // inner classes
+    //-------------------------------------------------------------------
+
+    /**
+     * the games a node published
+     */
+    private static class Games
+    {
+        private final String[] _waiting;
+        private final String[] _active;
+        private final long _published;
+
+        Games(String[] waiting, String[] active, long published)
+        {
+            _waiting = (waiting != null) ? waiting : new String[0];
+            _active = (active != null) ? active : new String[0];
+            _published = published;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package monopoly.cluster;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+
+/**
+ * this class calls the operations of another node through its NodeServer.
+ * one connection is kept to the node and calls on it go one at a time, a connection
+ * that broke is made again on the next call
+ * @author Dana Akerman
+ */
+public class NodeClient
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final int CONNECT_MILLIS = 2000;
+    private static final int CALL_MILLIS = 30000;
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final String _node;
+    private final String _host;
+    private final int _port;
+    private Socket _socket;
+    private ObjectOutputStream _out;
+    private NodeObjectInputStream _in;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new client, it connects on the first call
+     * @param node the address of the node, host:port
+     * @throws NullPointerException if node is null
+     * @throws IllegalArgumentException if node isn't host:port
+     */
+    public NodeClient(String node)
+    {
+        if(node == null)
+            throw new NullPointerException("node is null");
+
+        int colon = node.lastIndexOf(':');
+        if(colon <= 0)
+            throw new IllegalArgumentException("illegal node address, expected host:port");
+
+        _node = node;
+        _host = node.substring(0, colon);
+        _port = Integer.parseInt(node.substring(colon + 1));
+        _socket = null;
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * gets the address of the node
+     * @return the address of the node
+     */
+    public String getNode(){return _node;}
+
+    //-------------------------------------------------------------------
+
+    /**
+     * calls an operation on the node
+     * @param target NodeServer.GAME or NodeServer.DIRECTORY
+     * @param method the name of the operation
+     * @param args the arguments of the operation
+     * @return what the operation returned
+     * @throws IOException if the node can't be reached or the operation failed there
+     */
+    public synchronized Object call(String target, String method, Object[] args) throws IOException
+    {
+        try
+        {
+            if(_socket == null)
+            {
+                this.connect();
+            }
+
+            _out.writeUTF(target);
+            _out.writeUTF(method);
+            _out.writeObject(args);
+            _out.reset(); // the next call sends its objects again
+            _out.flush();
+
+            if(!_in.readBoolean())
+            {
+                throw new IOException(method + " failed on " + _node + ", " + _in.readUTF());
+            }
+            return _in.readObject();
+        }
+        catch(ClassNotFoundException ex)
+        {
+            this.close();
+            throw new IOException("illegal answer from " + _node + ", " + ex.getMessage());
+        }
+        catch(IOException ex)
+        {
+            this.close();
+            throw ex;
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * closes the connection, the next call makes it again
+     */
+    public synchronized void close()
+    {
+        if(_socket != null)
+        {
+            try
+            {
+                _socket.close();
+            }
+            catch(IOException ex)
+            {
+                // nothing to do
+            }
+        }
+        _socket = null;
+        _out = null;
+        _in = null;
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * connects to the node
+     */
+    private void connect() throws IOException
+    {
+        Socket socket = new Socket();
+        try
+        {
+            socket.connect(new InetSocketAddress(_host, _port), CONNECT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(CALL_MILLIS);
+
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.flush(); // the stream header, the server waits for it
+            _in = new NodeObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            _out = out;
+            _socket = socket;
+        }
+        catch(IOException ex)
+        {
+            socket.close();
+            throw ex;
+        }
+    }
+}
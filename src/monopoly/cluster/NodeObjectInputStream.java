@@ -0,0 +1,65 @@
+package monopoly.cluster;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.HashSet;
+
+
+/**
+ * this class reads the arguments and the answers of the calls between the nodes of a cluster.
+ * only the classes the game operations take and return can be read: strings, boxed primitives,
+ * arrays of them, the events and the results of MonopolyGame. any other class in the stream
+ * fails the call before it's loaded, so a connection can't make this node build other objects
+ * @author Dana Akerman
+ */
+class NodeObjectInputStream extends ObjectInputStream
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    private static final HashSet<String> ALLOWED = new HashSet<String>(Arrays.asList(new String[] {
+            "java.lang.String", "java.lang.Number", "java.lang.Integer", "java.lang.Long", "java.lang.Boolean",
+            "[Ljava.lang.Object;", "[Ljava.lang.String;", "[I", "[Z",
+            "monopoly.MyEvent", "[Lmonopoly.Event;", "[Lmonopoly.MyEvent;",
+            "monopoly.results.MonopolyResult", "monopoly.results.EventArrayResult", "monopoly.results.CommandResult",
+            "monopoly.results.GameDetailsResult", "monopoly.results.IDResult", "monopoly.results.PlayerDetailsResult"}));
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new stream, it reads the stream header
+     * @param in the stream of the connection
+     * @throws IOException if the header can't be read
+     */
+    NodeObjectInputStream(InputStream in) throws IOException
+    {
+        super(in);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+    {
+        if(!ALLOWED.contains(desc.getName()))
+            throw new InvalidClassException(desc.getName(), "not allowed in a cluster call");
+
+        return super.resolveClass(desc);
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException
+    {
+        throw new InvalidClassException("proxy", "not allowed in a cluster call");
+    }
+}
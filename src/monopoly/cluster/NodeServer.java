@@ -0,0 +1,244 @@
+package monopoly.cluster;
+
+
+import gameLogic.logging.GameLog;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import monopoly.MonopolyGame;
+
+
+/**
+ * this class serves the operations other nodes forward here, on a thread per connection.
+ * a call is the target, the operation name and its arguments, the answer is what the
+ * operation returned or the error it failed with. only the game operations of MonopolyGame
+ * and the operations of the directory this node keeps, if it keeps it, can be called, and only
+ * the classes they take can be read from a call (NodeObjectInputStream).
+ * the server listens only on the address of this node in the cluster, not on every interface.
+ * the calls run as forwarded, so they are never forwarded again
+ * @author Dana Akerman
+ */
+public class NodeServer implements Runnable
+{
+
+    // constants
+    //-------------------------------------------------------------------
+
+    public static final String GAME = "game";
+    public static final String DIRECTORY = "directory";
+
+    private static final List<String> GAME_METHODS = Arrays.asList(new String[] {
+            "startGame", "getGameDetails", "joinGame", "getPlayersDetails", "setDiceRollResultsOnce", "resignOnce", "buyOnce",
+            "setDiceRollResultsAndWait", "buyAndWait"});
+    private static final List<String> DIRECTORY_METHODS = Arrays.asList(new String[] {
+            "publish", "getNode", "getWaitingGames", "getActiveGames"});
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final String _host;
+    private final int _port;
+    private final MonopolyGame _game;
+    private final GameDirectory _directory;
+    private final Thread _thread;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new server, call start() to run it
+     * @param node the address of this node, host:port, the server listens on it
+     * @param game the game service of this node
+     * @param directory the directory this node keeps for the cluster, or null
+     * @throws NullPointerException if node or game is null
+     * @throws IllegalArgumentException if node isn't host:port
+     */
+    public NodeServer(String node, MonopolyGame game, GameDirectory directory)
+    {
+        if(node == null)
+            throw new NullPointerException("node is null");
+        if(game == null)
+            throw new NullPointerException("game is null");
+
+        int colon = node.lastIndexOf(':');
+        if(colon <= 0)
+            throw new IllegalArgumentException("illegal node address, expected host:port");
+
+        _host = node.substring(0, colon);
+        _port = Integer.parseInt(node.substring(colon + 1));
+        _game = game;
+        _directory = directory;
+
+        _thread = new Thread(this, "cluster node on " + node);
+        _thread.setDaemon(true);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    /**
+     * starts serving
+     */
+    public void start()
+    {
+        _thread.start();
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public void run()
+    {
+        ServerSocket server;
+        try
+        {
+            server = new ServerSocket(_port, 0, InetAddress.getByName(_host));
+        }
+        catch(IOException ex)
+        {
+            GameLog.error("the cluster node can't listen on " + _host + ":" + _port, ex);
+            return;
+        }
+
+        while(true)
+        {
+            try
+            {
+                final Socket socket = server.accept();
+                Thread connection = new Thread("cluster call from " + socket.getRemoteSocketAddress())
+                {
+                    @Override
+                    public void run()
+                    {
+                        NodeServer.this.serve(socket);
+                    }
+                };
+                connection.setDaemon(true);
+                connection.start();
+            }
+            catch(IOException ex)
+            {
+                GameLog.error("the cluster node can't accept", ex);
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * serves the calls of one connection until it's closed
+     */
+    private void serve(Socket socket)
+    {
+        GameRouter.setForwarded();
+
+        try
+        {
+            socket.setTcpNoDelay(true);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.flush();
+            NodeObjectInputStream in = new NodeObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            while(true)
+            {
+                String target = in.readUTF();
+                String method = in.readUTF();
+                Object[] args = (Object[]) in.readObject();
+
+                Object result = null;
+                String error = null;
+                try
+                {
+                    result = this.invoke(target, method, args);
+                }
+                catch(Exception ex)
+                {
+                    error = ex.toString(); // only the message goes back, the exception isn't a class the other node reads
+                }
+
+                out.writeBoolean(error == null);
+                if(error == null)
+                {
+                    out.writeObject((result instanceof Serializable) ? result : null);
+                }
+                else
+                {
+                    out.writeUTF(error);
+                }
+                out.reset();
+                out.flush();
+            }
+        }
+        catch(EOFException ex)
+        {
+            // the other node closed the connection
+        }
+        catch(Exception ex)
+        {
+            GameLog.error("a cluster call failed", ex);
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch(IOException ex)
+            {
+                // nothing to do
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * invokes an operation on its target
+     */
+    private Object invoke(String target, String method, Object[] args) throws Exception
+    {
+        Object object;
+
+        if(GAME.equals(target) && GAME_METHODS.contains(method))
+        {
+            object = _game;
+        }
+        else if(DIRECTORY.equals(target) && DIRECTORY_METHODS.contains(method) && _directory != null)
+        {
+            object = _directory;
+        }
+        else
+        {
+            throw new IllegalArgumentException("illegal operation " + target + "." + method);
+        }
+
+        Method[] methods = object.getClass().getMethods();
+        for(int i = 0; i < methods.length; i++)
+        {
+            if(methods[i].getName().equals(method) && methods[i].getParameterTypes().length == args.length)
+            {
+                try
+                {
+                    return methods[i].invoke(object, args);
+                }
+                catch(InvocationTargetException ex)
+                {
+                    if(ex.getCause() instanceof Exception)
+                        throw (Exception) ex.getCause();
+                    throw ex;
+                }
+            }
+        }
+        throw new IllegalArgumentException("illegal operation " + target + "." + method);
+    }
+}
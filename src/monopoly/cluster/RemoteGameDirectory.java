@@ -0,0 +1,86 @@
+package monopoly.cluster;
+
+
+import gameLogic.logging.GameLog;
+import java.io.IOException;
+
+
+/**
+ * this class reaches the game directory another node keeps. when that node can't be
+ * reached the directory looks empty, and the router places the games by their hash alone
+ * @author Dana Akerman
+ */
+public class RemoteGameDirectory implements GameDirectory
+{
+
+    // data members
+    //-------------------------------------------------------------------
+
+    private final NodeClient _client;
+
+    // c'tor
+    //-------------------------------------------------------------------
+
+    /**
+     * constructs a new remote directory
+     * @param node the address of the node that keeps the directory
+     */
+    public RemoteGameDirectory(String node)
+    {
+        _client = new NodeClient(node);
+    }
+
+    // methods
+    //-------------------------------------------------------------------
+
+    @Override
+    public void publish(String node, String[] waitingGames, String[] activeGames)
+    {
+        this.call("publish", new Object[] {node, waitingGames, activeGames});
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public String getNode(String gameName)
+    {
+        return (String) this.call("getNode", new Object[] {gameName});
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public String[] getWaitingGames()
+    {
+        String[] games = (String[]) this.call("getWaitingGames", new Object[0]);
+        return (games != null) ? games : new String[0];
+    }
+
+    //-------------------------------------------------------------------
+
+    @Override
+    public String[] getActiveGames()
+    {
+        String[] games = (String[]) this.call("getActiveGames", new Object[0]);
+        return (games != null) ? games : new String[0];
+    }
+
+    //-------------------------------------------------------------------
+
+    /**
+     * calls an operation of the directory
+     * @return what it returned, or null if the directory can't be reached
+     */
+    private Object call(String method, Object[] args)
+    {
+        try
+        {
+            return _client.call(NodeServer.DIRECTORY, method, args);
+        }
+        catch(IOException ex)
+        {
+            GameLog.error("the game directory can't be reached", ex); // the same message for every call, so a storm is suppressed
+            return null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package monopoly.results;
+
+
+import monopoly.Event;
+
+
+/**
+ * the result of a command with the events it caused
+ * @author Dana Akerman
+ */
+public class CommandResult extends EventArrayResult
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private int lastEventID;
+
+    public CommandResult(Event[] results, int lastEventID) 
+    {
+        super (false, null, results);
+        this.lastEventID = lastEventID;
+    }
+
+    public CommandResult(String errorMessage) 
+    {
+        super (errorMessage);
+    }
+
+    public int getLastEventID() 
+    {
+        return lastEventID;
+    }
+
+    public static CommandResult error(String message) 
+    {
+        return new CommandResult(message);
+    }
+}
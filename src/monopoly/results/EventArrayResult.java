@@ -10,6 +10,7 @@ import monopoly.Event;
 public class EventArrayResult extends MonopolyResult
 {
 
+    private static final long serialVersionUID = 1L;
     private static final Event[] EMPTY_RESULTS = new Event[0];
 
     private Event[] results;
@@ -6,6 +6,8 @@ package monopoly.results;
 public class GameDetailsResult extends MonopolyResult
 {
 
+    private static final long serialVersionUID = 1L;
+
     private String status;
     private int totalHumanPlayers;
     private int totalComputerPlayers;
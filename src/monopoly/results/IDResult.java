@@ -5,6 +5,8 @@ package monopoly.results;
  */
 public class IDResult extends MonopolyResult
 {
+    private static final long serialVersionUID = 1L;
+
     private int result;
 
      public IDResult(int value) 
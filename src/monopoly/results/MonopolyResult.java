@@ -1,12 +1,16 @@
 package monopoly.results;
 
+import java.io.Serializable;
+
 /**
  * User: Dana Akerman
  * Date: 3/28/11
  */
-public class MonopolyResult 
+public class MonopolyResult implements Serializable // forwarded between the nodes of a cluster
 {
    
+    private static final long serialVersionUID = 1L;
+
     private boolean hasError;
     private String errorMessage;
 
@@ -5,6 +5,8 @@ package monopoly.results;
  */
 public class PlayerDetailsResult extends MonopolyResult 
 {
+    private static final long serialVersionUID = 1L;
+
     private String[] names;
     private boolean[] isHumans;
     private boolean[] isActive;